@@ -23,6 +23,7 @@ import javassist.ClassPool;
 import javassist.CtClass;
 import javassist.CtConstructor;
 import javassist.CtMethod;
+import javassist.LoaderClassPath;
 import javassist.NotFoundException;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -33,9 +34,15 @@ import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.Instrumentation;
 import java.lang.instrument.UnmodifiableClassException;
 import java.security.ProtectionDomain;
+import java.util.AbstractMap;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class CommunityBranchAgent {
 
@@ -47,53 +54,37 @@ public final class CommunityBranchAgent {
 
     public static void premain(String args, Instrumentation instrumentation) throws UnmodifiableClassException, ClassNotFoundException {
         LOGGER.info("Loading agent");
+        long startTime = System.nanoTime();
 
         Component component = Component.fromString(args).orElseThrow(() -> new IllegalArgumentException("Invalid/missing agent argument"));
 
+        Map<String, Redefiner> redefiners = new LinkedHashMap<>();
         if (component == Component.CE) {
-            redefineEdition(instrumentation, "org.sonar.core.platform.PlatformEditionProvider", redefineOptionalEditionGetMethod());
+            redefiners.put("org.sonar.core.platform.PlatformEditionProvider", redefineOptionalEditionGetMethod());
         } else if (component == Component.WEB) {
-            redefineEdition(instrumentation, "org.sonar.server.almsettings.MultipleAlmFeatureProvider", redefineConstructorEditionProviderField(EditionProvider.Edition.ENTERPRISE));
-            redefineEdition(instrumentation, "org.sonar.server.newcodeperiod.ws.SetAction", redefineConstructorEditionProviderField(EditionProvider.Edition.DEVELOPER));
-            redefineEdition(instrumentation, "org.sonar.server.newcodeperiod.ws.UnsetAction", redefineConstructorEditionProviderField(EditionProvider.Edition.DEVELOPER));
+            redefiners.put("org.sonar.server.almsettings.MultipleAlmFeatureProvider", redefineConstructorEditionProviderField(EditionProvider.Edition.ENTERPRISE));
+            redefiners.put("org.sonar.server.newcodeperiod.ws.SetAction", redefineConstructorEditionProviderField(EditionProvider.Edition.DEVELOPER));
+            redefiners.put("org.sonar.server.newcodeperiod.ws.UnsetAction", redefineConstructorEditionProviderField(EditionProvider.Edition.DEVELOPER));
         }
-    }
-
-    private static void redefineEdition(Instrumentation instrumentation, String targetClassName, Redefiner redefiner) throws ClassNotFoundException, UnmodifiableClassException {
-        instrumentation.addTransformer(new ClassFileTransformer() {
-
-            @Override
-            public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
-                                    ProtectionDomain protectionDomain, byte[] byteCode) {
-
-                String finalTargetClassName = targetClassName.replace(".", "/");
-
-                if (!className.equals(finalTargetClassName)) {
-                    return byteCode;
-                }
 
-                LOGGER.debug("Transforming class " + targetClassName);
-                try {
-                    ClassPool cp = ClassPool.getDefault();
-                    CtClass cc = cp.get(targetClassName);
+        redefineEditions(instrumentation, redefiners);
 
-                    redefiner.redefine(cc);
-
-                    byteCode = cc.toBytecode();
-                    cc.detach();
-                } catch (NotFoundException | CannotCompileException | IOException e) {
-                    LOGGER.error(String.format("Could not transform class %s, will use default class definition", targetClassName), e);
-                }
+        LOGGER.info("Agent loaded in {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
 
-                return byteCode;
+    private static void redefineEditions(Instrumentation instrumentation, Map<String, Redefiner> redefiners) throws ClassNotFoundException, UnmodifiableClassException {
+        EditionTransformer transformer = new EditionTransformer(instrumentation, redefiners);
+        instrumentation.addTransformer(transformer);
+        try {
+            for (String targetClassName : redefiners.keySet()) {
+                instrumentation.retransformClasses(Class.forName(targetClassName));
             }
-
-        });
-
-        instrumentation.retransformClasses(Class.forName(targetClassName));
+        } finally {
+            // the targets have all been loaded by this point, so the transformer has nothing left to patch
+            transformer.unregister();
+        }
     }
 
-
     private static Redefiner redefineOptionalEditionGetMethod() {
         return ctClass -> {
             CtMethod ctMethod = ctClass.getDeclaredMethod("get");
@@ -116,6 +107,66 @@ public final class CommunityBranchAgent {
         }
     }
 
+    /**
+     * Patches each of the target classes the first time it is seen, and removes itself from the instrumentation
+     * once no targets remain so that classes loaded after startup are not passed through it.
+     */
+    private static final class EditionTransformer implements ClassFileTransformer {
+
+        private final Instrumentation instrumentation;
+        private final Map<String, Map.Entry<String, Redefiner>> pendingTargets = new ConcurrentHashMap<>();
+        private final AtomicBoolean registered = new AtomicBoolean(true);
+
+        private EditionTransformer(Instrumentation instrumentation, Map<String, Redefiner> redefiners) {
+            this.instrumentation = instrumentation;
+            redefiners.forEach((targetClassName, redefiner) -> pendingTargets
+                    .put(targetClassName.replace('.', '/'), new AbstractMap.SimpleImmutableEntry<>(targetClassName, redefiner)));
+        }
+
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] byteCode) {
+            Map.Entry<String, Redefiner> target = null == className ? null : pendingTargets.remove(className);
+            if (null == target) {
+                return byteCode;
+            }
+
+            byte[] result = redefine(loader, target.getKey(), target.getValue(), byteCode);
+            if (pendingTargets.isEmpty()) {
+                unregister();
+            }
+            return result;
+        }
+
+        private static byte[] redefine(ClassLoader loader, String targetClassName, Redefiner redefiner, byte[] byteCode) {
+            LOGGER.debug("Transforming class " + targetClassName);
+            long startTime = System.nanoTime();
+            ClassPool classPool = new ClassPool(true);
+            if (null != loader) {
+                classPool.insertClassPath(new LoaderClassPath(loader));
+            }
+            try {
+                CtClass cc = classPool.get(targetClassName);
+
+                redefiner.redefine(cc);
+
+                byte[] result = cc.toBytecode();
+                cc.detach();
+                LOGGER.debug("Transformed class {} in {}ms", targetClassName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                return result;
+            } catch (NotFoundException | CannotCompileException | IOException e) {
+                LOGGER.error(String.format("Could not transform class %s, will use default class definition", targetClassName), e);
+                return byteCode;
+            }
+        }
+
+        private void unregister() {
+            if (registered.compareAndSet(true, false)) {
+                instrumentation.removeTransformer(this);
+            }
+        }
+    }
+
     @FunctionalInterface
     private interface Redefiner {
         void redefine(CtClass ctClass) throws CannotCompileException, NotFoundException;
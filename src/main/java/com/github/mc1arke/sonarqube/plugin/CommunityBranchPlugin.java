@@ -25,6 +25,10 @@ import com.github.mc1arke.sonarqube.plugin.almclient.github.DefaultGithubClientF
 import com.github.mc1arke.sonarqube.plugin.almclient.github.v3.RestApplicationAuthenticationProvider;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.DefaultGitlabClientFactory;
 import com.github.mc1arke.sonarqube.plugin.ce.CommunityReportAnalysisComponentProvider;
+import com.github.mc1arke.sonarqube.plugin.ce.ProjectBranchCache;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.AlmBindingCache;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.AlmCircuitBreaker;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.DecorationFingerprintRepository;
 import com.github.mc1arke.sonarqube.plugin.scanner.CommunityBranchConfigurationLoader;
 import com.github.mc1arke.sonarqube.plugin.scanner.CommunityBranchParamsValidator;
 import com.github.mc1arke.sonarqube.plugin.scanner.CommunityProjectBranchesLoader;
@@ -33,15 +37,21 @@ import com.github.mc1arke.sonarqube.plugin.scanner.ScannerPullRequestPropertySen
 import com.github.mc1arke.sonarqube.plugin.server.CommunityBranchFeatureExtension;
 import com.github.mc1arke.sonarqube.plugin.server.CommunityBranchSupportDelegate;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator.AzureDevopsValidator;
+import com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator.BindingHealthCheck;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator.BitbucketValidator;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator.GithubValidator;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator.GitlabValidator;
+import com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator.ValidationResultCache;
+import com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action.BulkSetBindingAction;
+import com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action.CheckBindingsAction;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action.DeleteBindingAction;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action.SetAzureBindingAction;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action.SetBitbucketBindingAction;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action.SetBitbucketCloudBindingAction;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action.SetGithubBindingAction;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action.SetGitlabBindingAction;
+import com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action.ShowBranchesAction;
+import com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action.ShowPullRequestAction;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action.ValidateBindingAction;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.Plugin;
@@ -59,6 +69,27 @@ public class CommunityBranchPlugin implements Plugin, CoreExtension {
 
     public static final String IMAGE_URL_BASE = "com.github.mc1arke.sonarqube.plugin.branch.image-url-base";
 
+    public static final String PR_SUMMARY_NOTE_EDIT = "com.github.mc1arke.sonarqube.plugin.branch.pullrequest.summary.edit";
+
+    public static final String PR_GITLAB_DRAFT_NOTES = "com.github.mc1arke.sonarqube.plugin.branch.pullrequest.gitlab.draftnotes";
+
+    public static final String PR_GITHUB_REVIEW_COMMENTS = "com.github.mc1arke.sonarqube.plugin.branch.pullrequest.github.reviewcomments";
+
+    public static final String PR_COMMENT_AGGREGATION = "com.github.mc1arke.sonarqube.plugin.branch.pullrequest.comment.aggregation";
+
+    public static final String PR_COMMENT_LIMIT = "com.github.mc1arke.sonarqube.plugin.branch.pullrequest.comment.limit";
+
+    public static final String PR_SUMMARY_ONLY_THRESHOLD = "com.github.mc1arke.sonarqube.plugin.branch.pullrequest.summaryonly.threshold";
+
+    public static final String PR_DECORATION_ATTEMPTS = "com.github.mc1arke.sonarqube.plugin.branch.pullrequest.decoration.attempts";
+    public static final String PR_DECORATION_CONCURRENCY = "com.github.mc1arke.sonarqube.plugin.branch.pullrequest.decoration.concurrency";
+    public static final String PR_DECORATION_PERMIT_WAIT = "com.github.mc1arke.sonarqube.plugin.branch.pullrequest.decoration.permitwait";
+    public static final String PR_DECORATION_FAILURE_THRESHOLD = "com.github.mc1arke.sonarqube.plugin.branch.pullrequest.decoration.failurethreshold";
+    public static final String PR_DECORATION_SUSPEND_DURATION = "com.github.mc1arke.sonarqube.plugin.branch.pullrequest.decoration.suspendduration";
+    public static final String BINDING_HEALTH_CHECK_INTERVAL = "com.github.mc1arke.sonarqube.plugin.branch.binding.healthcheck.interval";
+
+    private static final String PULL_REQUEST_DECORATION_SUBCATEGORY = "Pull Request Decoration";
+
     @Override
     public String getName() {
         return "Community Branch Plugin";
@@ -67,7 +98,8 @@ public class CommunityBranchPlugin implements Plugin, CoreExtension {
     @Override
     public void load(CoreExtension.Context context) {
         if (SonarQubeSide.COMPUTE_ENGINE == context.getRuntime().getSonarQubeSide()) {
-            context.addExtensions(CommunityReportAnalysisComponentProvider.class);
+            context.addExtensions(CommunityReportAnalysisComponentProvider.class, DecorationFingerprintRepository.class,
+                                  AlmCircuitBreaker.class, AlmBindingCache.class, ProjectBranchCache.class);
         } else if (SonarQubeSide.SERVER == context.getRuntime().getSonarQubeSide()) {
             context.addExtensions(CommunityBranchFeatureExtension.class, CommunityBranchSupportDelegate.class,
                                   DeleteBindingAction.class,
@@ -76,7 +108,13 @@ public class CommunityBranchPlugin implements Plugin, CoreExtension {
                                   SetBitbucketBindingAction.class,
                                   SetBitbucketCloudBindingAction.class,
                                   SetGitlabBindingAction.class,
+                                  BulkSetBindingAction.class,
+                                  CheckBindingsAction.class,
+                                  ShowPullRequestAction.class,
+                                  ShowBranchesAction.class,
                     ValidateBindingAction.class,
+                    ValidationResultCache.class,
+                    BindingHealthCheck.class,
 
                     GithubValidator.class,
                     DefaultGithubClientFactory.class,
@@ -133,6 +171,121 @@ public class CommunityBranchPlugin implements Plugin, CoreExtension {
                                           .name("Images base URL")
                                           .description("Base URL used to load the images for the PR comments (please use this only if images are not displayed properly).")
                                           .type(PropertyType.STRING)
+                                          .build(),
+
+                                  PropertyDefinition.builder(PR_SUMMARY_NOTE_EDIT)
+                                          .category(CoreProperties.CATEGORY_GENERAL)
+                                          .subCategory(PULL_REQUEST_DECORATION_SUBCATEGORY)
+                                          .onQualifiers(Qualifiers.PROJECT)
+                                          .name("Edit summary comment in place")
+                                          .description("Update the existing summary comment on a Pull Request when it is re-analysed, rather than adding a new comment for every analysis. Currently supported for Gitlab and Azure DevOps.")
+                                          .type(PropertyType.BOOLEAN)
+                                          .defaultValue("false")
+                                          .build(),
+
+                                  PropertyDefinition.builder(PR_GITLAB_DRAFT_NOTES)
+                                          .category(CoreProperties.CATEGORY_GENERAL)
+                                          .subCategory(PULL_REQUEST_DECORATION_SUBCATEGORY)
+                                          .onQualifiers(Qualifiers.PROJECT)
+                                          .name("Publish Gitlab issue comments as a single review")
+                                          .description("Stage the comments for new issues on a Gitlab Merge Request as draft notes and publish them in one request, so participants receive a single notification for each analysis. Requires a Gitlab version supporting the draft notes API.")
+                                          .type(PropertyType.BOOLEAN)
+                                          .defaultValue("false")
+                                          .build(),
+
+                                  PropertyDefinition.builder(PR_GITHUB_REVIEW_COMMENTS)
+                                          .category(CoreProperties.CATEGORY_GENERAL)
+                                          .subCategory(PULL_REQUEST_DECORATION_SUBCATEGORY)
+                                          .onQualifiers(Qualifiers.PROJECT)
+                                          .name("Publish Github issue comments as a pull request review")
+                                          .description("Post an inline comment for each open issue on a Github Pull Request, grouped into a single review, and resolve the comment threads of issues that have since been fixed. Issues must be on lines included in the Pull Request diff.")
+                                          .type(PropertyType.BOOLEAN)
+                                          .defaultValue("false")
+                                          .build(),
+
+                                  PropertyDefinition.builder(PR_COMMENT_AGGREGATION)
+                                          .category(CoreProperties.CATEGORY_GENERAL)
+                                          .subCategory(PULL_REQUEST_DECORATION_SUBCATEGORY)
+                                          .onQualifiers(Qualifiers.PROJECT)
+                                          .name("Issue comment aggregation")
+                                          .description("Post a comment for each new issue (ISSUE), or a single comment per file listing all of the new issues in that file (FILE). Currently supported for Gitlab and Azure DevOps.")
+                                          .type(PropertyType.SINGLE_SELECT_LIST)
+                                          .options("ISSUE", "FILE")
+                                          .defaultValue("ISSUE")
+                                          .build(),
+
+                                  PropertyDefinition.builder(PR_COMMENT_LIMIT)
+                                          .category(CoreProperties.CATEGORY_GENERAL)
+                                          .subCategory(PULL_REQUEST_DECORATION_SUBCATEGORY)
+                                          .onQualifiers(Qualifiers.PROJECT)
+                                          .name("Maximum new issue comments")
+                                          .description("The maximum number of comments for new issues to post on a Pull Request in a single analysis. The most severe issues are commented on first, and the summary comment states how many issues were left out. Currently supported for Gitlab and Azure DevOps.")
+                                          .type(PropertyType.INTEGER)
+                                          .defaultValue("500")
+                                          .build(),
+
+                                  PropertyDefinition.builder(PR_SUMMARY_ONLY_THRESHOLD)
+                                          .category(CoreProperties.CATEGORY_GENERAL)
+                                          .subCategory(PULL_REQUEST_DECORATION_SUBCATEGORY)
+                                          .onQualifiers(Qualifiers.PROJECT)
+                                          .name("Summary-only issue threshold")
+                                          .description("Only post the summary comment, without any issue comments, when the Pull Request has more open issues than this. Currently supported for Gitlab and Azure DevOps.")
+                                          .type(PropertyType.INTEGER)
+                                          .defaultValue("10000")
+                                          .build(),
+
+                                  PropertyDefinition.builder(PR_DECORATION_ATTEMPTS)
+                                          .category(CoreProperties.CATEGORY_GENERAL)
+                                          .subCategory(PULL_REQUEST_DECORATION_SUBCATEGORY)
+                                          .name("Decoration attempts")
+                                          .description("The number of times decoration of a Pull Request is attempted before giving up, with an increasing delay between each attempt. Only connection failures, timeouts, server errors and rate limiting responses from the ALM are retried. Each attempt repeats the whole decoration so, for Github, every attempt creates a new check run and summary comment.")
+                                          .type(PropertyType.INTEGER)
+                                          .defaultValue("3")
+                                          .build(),
+
+                                  PropertyDefinition.builder(PR_DECORATION_CONCURRENCY)
+                                          .category(CoreProperties.CATEGORY_GENERAL)
+                                          .subCategory(PULL_REQUEST_DECORATION_SUBCATEGORY)
+                                          .name("Concurrent decorations per ALM")
+                                          .description("The number of Pull Requests that can be decorated at the same time using each ALM setting. Further decorations wait until one in progress completes. Changes take effect after a restart.")
+                                          .type(PropertyType.INTEGER)
+                                          .defaultValue("2")
+                                          .build(),
+
+                                  PropertyDefinition.builder(PR_DECORATION_PERMIT_WAIT)
+                                          .category(CoreProperties.CATEGORY_GENERAL)
+                                          .subCategory(PULL_REQUEST_DECORATION_SUBCATEGORY)
+                                          .name("Concurrent decoration check interval")
+                                          .description("The number of seconds between checks, whilst a decoration is waiting for others using the same ALM setting to complete, of whether decorations using that ALM setting have been suspended after repeated failures.")
+                                          .type(PropertyType.INTEGER)
+                                          .defaultValue("30")
+                                          .build(),
+
+                                  PropertyDefinition.builder(PR_DECORATION_FAILURE_THRESHOLD)
+                                          .category(CoreProperties.CATEGORY_GENERAL)
+                                          .subCategory(PULL_REQUEST_DECORATION_SUBCATEGORY)
+                                          .name("Decoration failure threshold")
+                                          .description("The number of consecutive failed decoration attempts using an ALM setting after which decorations using that setting are suspended.")
+                                          .type(PropertyType.INTEGER)
+                                          .defaultValue("3")
+                                          .build(),
+
+                                  PropertyDefinition.builder(PR_DECORATION_SUSPEND_DURATION)
+                                          .category(CoreProperties.CATEGORY_GENERAL)
+                                          .subCategory(PULL_REQUEST_DECORATION_SUBCATEGORY)
+                                          .name("Decoration suspension duration")
+                                          .description("The number of minutes decorations using an ALM setting are suspended for after repeated failures, before a single decoration is attempted to check whether the ALM has recovered.")
+                                          .type(PropertyType.INTEGER)
+                                          .defaultValue("5")
+                                          .build(),
+
+                                  PropertyDefinition.builder(BINDING_HEALTH_CHECK_INTERVAL)
+                                          .category(CoreProperties.CATEGORY_GENERAL)
+                                          .subCategory(PULL_REQUEST_DECORATION_SUBCATEGORY)
+                                          .name("Binding health check interval")
+                                          .description("The number of hours between background checks of every project's ALM binding, with any invalid bindings being logged. Set to 0 to disable the background check. Changes take effect after a restart.")
+                                          .type(PropertyType.INTEGER)
+                                          .defaultValue("0")
                                           .build());
 
         }
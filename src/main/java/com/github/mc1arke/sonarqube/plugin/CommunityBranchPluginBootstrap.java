@@ -23,8 +23,11 @@ import com.github.mc1arke.sonarqube.plugin.classloader.ElevatedClassLoaderFactor
 import com.github.mc1arke.sonarqube.plugin.classloader.ElevatedClassLoaderFactoryProvider;
 import org.sonar.api.Plugin;
 import org.sonar.api.SonarQubeSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -43,6 +46,8 @@ import java.util.Objects;
  */
 public class CommunityBranchPluginBootstrap implements Plugin {
 
+    private static final Logger LOGGER = Loggers.get(CommunityBranchPluginBootstrap.class);
+
     private final ElevatedClassLoaderFactoryProvider elevatedClassLoaderFactoryProvider;
 
     public CommunityBranchPluginBootstrap() {
@@ -59,6 +64,7 @@ public class CommunityBranchPluginBootstrap implements Plugin {
         if (SonarQubeSide.SCANNER != context.getRuntime().getSonarQubeSide()) {
             return;
         }
+        long startTime = System.nanoTime();
         try {
             ClassLoader classLoader =
                     elevatedClassLoaderFactoryProvider.createFactory(context).createClassLoader(getClass());
@@ -70,6 +76,8 @@ public class CommunityBranchPluginBootstrap implements Plugin {
                                       Plugin.class.getName(), instance.getClass().getName()));
             }
             ((Plugin) instance).define(context);
+            LOGGER.debug("Community branch plugin defined in {}ms",
+                         TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
         } catch (ReflectiveOperationException ex) {
             throw new IllegalStateException("Could not create CommunityBranchPlugin instance", ex);
         }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.almclient;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+
+import java.time.Duration;
+
+/**
+ * Deadlines applied to every call made to an ALM, so an unresponsive ALM fails the call rather than holding a
+ * Compute Engine worker until the operating system gives up on the socket.
+ */
+public final class HttpTimeouts {
+
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration READ_TIMEOUT = Duration.ofSeconds(60);
+    public static final Duration CALL_TIMEOUT = Duration.ofMinutes(2);
+
+    private HttpTimeouts() {
+        super();
+    }
+
+    public static CloseableHttpClient createHttpClient() {
+        return HttpClients.custom()
+                .useSystemProperties()
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout((int) CONNECT_TIMEOUT.toMillis())
+                        .setConnectionRequestTimeout((int) CONNECT_TIMEOUT.toMillis())
+                        .setSocketTimeout((int) READ_TIMEOUT.toMillis())
+                        .build())
+                .build();
+    }
+}
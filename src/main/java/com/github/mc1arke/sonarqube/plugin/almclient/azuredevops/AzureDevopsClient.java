@@ -41,8 +41,12 @@ public interface AzureDevopsClient {
 
     void addCommentToThread(String projectName, String repositoryName, int pullRequestId, int threadId, CreateCommentRequest comment) throws IOException;
 
+    void updateCommentOnThread(String projectName, String repositoryName, int pullRequestId, int threadId, int commentId, CreateCommentRequest comment) throws IOException;
+
     void resolvePullRequestThread(String projectName, String repositoryName, int pullRequestId, int threadId) throws IOException;
 
+    void reopenPullRequestThread(String projectName, String repositoryName, int pullRequestId, int threadId) throws IOException;
+
     void submitPullRequestStatus(String projectName, String repositoryName, int pullRequestId, GitPullRequestStatus status) throws IOException;
 
     Repository getRepository(String projectName, String repositoryName) throws IOException;
@@ -18,11 +18,13 @@
  */
 package com.github.mc1arke.sonarqube.plugin.almclient.azuredevops;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.mc1arke.sonarqube.plugin.almclient.UnexpectedResponseException;
 import com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model.CommentThread;
-import com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model.CommentThreadResponse;
 import com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model.Commit;
-import com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model.Commits;
 import com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model.CreateCommentRequest;
 import com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model.CreateCommentThreadRequest;
 import com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model.GitPullRequestStatus;
@@ -40,11 +42,14 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 public class AzureDevopsRestClient implements AzureDevopsClient {
@@ -57,6 +62,7 @@ public class AzureDevopsRestClient implements AzureDevopsClient {
     private final String apiUrl;
     private final ObjectMapper objectMapper;
     private final Supplier<CloseableHttpClient> httpClientFactory;
+    private final Map<Class<?>, ObjectReader> objectReaders = new ConcurrentHashMap<>();
 
     AzureDevopsRestClient(String apiUrl, String authToken, ObjectMapper objectMapper, Supplier<CloseableHttpClient> httpClientFactory) {
         super();
@@ -81,7 +87,7 @@ public class AzureDevopsRestClient implements AzureDevopsClient {
     @Override
     public List<CommentThread> retrieveThreads(String projectId, String repositoryName, int pullRequestId) throws IOException {
         String url = String.format("%s/%s/_apis/git/repositories/%s/pullRequests/%s/threads?api-version=%s", apiUrl, encode(projectId), encode(repositoryName), pullRequestId, API_VERSION);
-        return Objects.requireNonNull(execute(url, "get", null, CommentThreadResponse.class)).getValue();
+        return executeList(url, CommentThread.class);
     }
 
     @Override
@@ -96,11 +102,26 @@ public class AzureDevopsRestClient implements AzureDevopsClient {
         execute(url, "post", objectMapper.writeValueAsString(comment), null);
     }
 
+    @Override
+    public void updateCommentOnThread(String projectId, String repositoryName, int pullRequestId, int threadId, int commentId, CreateCommentRequest comment) throws IOException {
+        String url = String.format("%s/%s/_apis/git/repositories/%s/pullRequests/%s/threads/%s/comments/%s?api-version=%s", apiUrl, encode(projectId), encode(repositoryName), pullRequestId, threadId, commentId, API_VERSION);
+        execute(url, "patch", objectMapper.writeValueAsString(comment), null);
+    }
+
     @Override
     public void resolvePullRequestThread(String projectId, String repositoryName, int pullRequestId, int threadId) throws IOException {
+        updatePullRequestThreadStatus(projectId, repositoryName, pullRequestId, threadId, CommentThreadStatus.CLOSED);
+    }
+
+    @Override
+    public void reopenPullRequestThread(String projectId, String repositoryName, int pullRequestId, int threadId) throws IOException {
+        updatePullRequestThreadStatus(projectId, repositoryName, pullRequestId, threadId, CommentThreadStatus.ACTIVE);
+    }
+
+    private void updatePullRequestThreadStatus(String projectId, String repositoryName, int pullRequestId, int threadId, CommentThreadStatus status) throws IOException {
         String url = String.format("%s/%s/_apis/git/repositories/%s/pullRequests/%s/threads/%s?api-version=%s", apiUrl, encode(projectId), encode(repositoryName), pullRequestId, threadId, API_VERSION);
 
-        UpdateCommentThreadStatusRequest commentThread = new UpdateCommentThreadStatusRequest(CommentThreadStatus.CLOSED);
+        UpdateCommentThreadStatusRequest commentThread = new UpdateCommentThreadStatusRequest(status);
         execute(url, "patch", objectMapper.writeValueAsString(commentThread), null);
     }
 
@@ -113,11 +134,51 @@ public class AzureDevopsRestClient implements AzureDevopsClient {
     @Override
     public List<Commit> getPullRequestCommits(String projectId, String repositoryName, int pullRequestId) throws IOException {
         String url = String.format("%s/%s/_apis/git/repositories/%s/pullRequests/%s/commits?api-version=%s", apiUrl, encode(projectId), encode(repositoryName), pullRequestId, API_VERSION);
-        return Objects.requireNonNull(execute(url, "get", null, Commits.class)).getValue();
+        return executeList(url, Commit.class);
     }
 
 
     private <T> T execute(String url, String method, String content, Class<T> type) throws IOException {
+        return execute(url, method, content, type, (inputStream, responseType) -> objectReader(responseType).readValue(inputStream));
+    }
+
+    /**
+     * Retrieves a collection from Azure Devops, reading each entry from the <code>value</code> array of the response
+     * in turn rather than holding the whole response in memory alongside the parsed entries.
+     */
+    private <T> List<T> executeList(String url, Class<T> type) throws IOException {
+        return execute(url, "get", null, type, (inputStream, responseType) -> {
+            ObjectReader objectReader = objectReader(responseType);
+            List<T> values = new ArrayList<>();
+            try (JsonParser jsonParser = objectReader.createParser(inputStream)) {
+                if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IllegalStateException("Could not parse Azure Devops response: expected a JSON object");
+                }
+                while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = jsonParser.getCurrentName();
+                    JsonToken valueToken = jsonParser.nextToken();
+                    if (!"value".equalsIgnoreCase(fieldName)) {
+                        jsonParser.skipChildren();
+                    } else if (valueToken == JsonToken.START_ARRAY) {
+                        JsonToken elementToken;
+                        while ((elementToken = jsonParser.nextToken()) != JsonToken.END_ARRAY) {
+                            if (null == elementToken) {
+                                throw new IllegalStateException("Could not parse Azure Devops response: unexpected end of JSON array");
+                            }
+                            values.add(objectReader.readValue(jsonParser));
+                        }
+                    } else if (valueToken == JsonToken.START_OBJECT) {
+                        values.add(objectReader.readValue(jsonParser));
+                    } else {
+                        jsonParser.skipChildren();
+                    }
+                }
+            }
+            return values;
+        });
+    }
+
+    private <T, R> R execute(String url, String method, String content, Class<T> type, ResponseReader<T, R> responseReader) throws IOException {
         RequestBuilder requestBuilder = RequestBuilder.create(method)
                 .setUri(url)
                 .addHeader("Authorization", "Basic " + authToken)
@@ -134,10 +195,16 @@ public class AzureDevopsRestClient implements AzureDevopsClient {
             if (null == type) {
                 return null;
             }
-            return objectMapper.readValue(EntityUtils.toString(httpResponse.getEntity(), StandardCharsets.UTF_8), type);
+            try (InputStream inputStream = httpResponse.getEntity().getContent()) {
+                return responseReader.read(inputStream, type);
+            }
         }
     }
 
+    private ObjectReader objectReader(Class<?> type) {
+        return objectReaders.computeIfAbsent(type, objectMapper::readerFor);
+    }
+
     private static void validateResponse(HttpResponse httpResponse) {
         if (httpResponse.getStatusLine().getStatusCode() == 200) {
             return;
@@ -159,10 +226,16 @@ public class AzureDevopsRestClient implements AzureDevopsClient {
                 + System.lineSeparator()
                 + responseContent);
 
-        throw new IllegalStateException("An unexpected response code was returned from the Azure Devops API - Expected: 200, Got: " + httpResponse.getStatusLine().getStatusCode());
+        int statusCode = httpResponse.getStatusLine().getStatusCode();
+        throw new UnexpectedResponseException("An unexpected response code was returned from the Azure Devops API - Expected: 200, Got: " + statusCode, statusCode);
     }
 
     private static String encode(String input) {
         return URLEncoder.encode(input, StandardCharsets.UTF_8).replace("+", "%20");
     }
+
+    @FunctionalInterface
+    private interface ResponseReader<T, R> {
+        R read(InputStream inputStream, Class<T> type) throws IOException;
+    }
 }
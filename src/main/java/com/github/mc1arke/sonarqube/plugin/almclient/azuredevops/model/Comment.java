@@ -10,18 +10,27 @@ import com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model.enums.Com
  */
 public class Comment {
 
+    private final int id;
     private final String content;
     private final IdentityRef author;
     private final CommentType commentType;
 
     @JsonCreator
-    public Comment(@JsonProperty("content") String content, @JsonProperty("author") IdentityRef author,
+    public Comment(@JsonProperty("id") int id, @JsonProperty("content") String content, @JsonProperty("author") IdentityRef author,
                    @JsonProperty("commentType") CommentType commentType) {
+        this.id = id;
         this.content = content;
         this.author = author;
         this.commentType = commentType;
     }
 
+    /**
+     * The comment ID, unique within the comment thread.
+     */
+    public int getId() {
+        return this.id;
+    }
+
     /**
      * The comment content.
      */
@@ -20,6 +20,7 @@ package com.github.mc1arke.sonarqube.plugin.almclient.bitbucket;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.github.mc1arke.sonarqube.plugin.almclient.bitbucket.model.AnnotationUploadLimit;
 import com.github.mc1arke.sonarqube.plugin.almclient.bitbucket.model.CodeInsightsAnnotation;
 import com.github.mc1arke.sonarqube.plugin.almclient.bitbucket.model.CodeInsightsReport;
@@ -46,8 +47,10 @@ import java.time.Instant;
 import java.util.Base64;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
@@ -64,6 +67,7 @@ class BitbucketCloudClient implements BitbucketClient {
 
     private final ObjectMapper objectMapper;
     private final OkHttpClient okHttpClient;
+    private final Map<Class<?>, ObjectReader> objectReaders = new ConcurrentHashMap<>();
 
     BitbucketCloudClient(BitbucketCloudConfiguration config, ObjectMapper objectMapper, OkHttpClient.Builder baseClientBuilder) {
         this(objectMapper, createAuthorisingClient(baseClientBuilder, negotiateBearerToken(config, objectMapper, baseClientBuilder.build())));
@@ -83,8 +87,8 @@ class BitbucketCloudClient implements BitbucketClient {
                 .build();
 
         try (Response response = okHttpClient.newCall(request).execute()) {
-            AuthToken authToken = objectMapper.readValue(
-                    Optional.ofNullable(response.body()).orElseThrow(() -> new IllegalStateException("No response returned by Bitbucket Oauth")).string(), AuthToken.class);
+            AuthToken authToken = objectMapper.readerFor(AuthToken.class).readValue(
+                    Optional.ofNullable(response.body()).orElseThrow(() -> new IllegalStateException("No response returned by Bitbucket Oauth")).byteStream());
             return authToken.getAccessToken();
         } catch (IOException ex) {
             throw new IllegalStateException("Could not retrieve bearer token", ex);
@@ -198,10 +202,10 @@ class BitbucketCloudClient implements BitbucketClient {
         try (Response response = okHttpClient.newCall(req).execute()) {
             validate(response);
 
-            return objectMapper.reader().forType(Repository.class)
+            return objectReader(Repository.class)
                     .readValue(Optional.ofNullable(response.body())
                             .orElseThrow(() -> new IllegalStateException("No response body from BitBucket"))
-                            .string());
+                            .byteStream());
         }
     }
 
@@ -218,6 +222,10 @@ class BitbucketCloudClient implements BitbucketClient {
         }
     }
 
+    private ObjectReader objectReader(Class<?> type) {
+        return objectReaders.computeIfAbsent(type, responseType -> objectMapper.reader().forType(responseType));
+    }
+
     private static OkHttpClient createAuthorisingClient(OkHttpClient.Builder baseClientBuilder, String bearerToken) {
         return baseClientBuilder.addInterceptor(chain -> {
                     Request newRequest = chain.request().newBuilder()
@@ -31,6 +31,10 @@ public class BitbucketCloudException extends RuntimeException {
         return this.code == code;
     }
 
+    public int getCode() {
+        return code;
+    }
+
     @Override
     public String getMessage() {
         return "HTTP Status Code: " + code + "; Message:" + error;
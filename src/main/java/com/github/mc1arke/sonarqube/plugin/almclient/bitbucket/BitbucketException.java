@@ -38,6 +38,10 @@ public class BitbucketException extends RuntimeException {
         return this.code == code;
     }
 
+    public int getCode() {
+        return code;
+    }
+
     @Override
     public String getMessage() {
         return Optional.ofNullable(errors)
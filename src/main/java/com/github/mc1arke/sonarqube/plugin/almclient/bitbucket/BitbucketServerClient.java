@@ -19,6 +19,7 @@
 package com.github.mc1arke.sonarqube.plugin.almclient.bitbucket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.github.mc1arke.sonarqube.plugin.almclient.bitbucket.model.AnnotationUploadLimit;
 import com.github.mc1arke.sonarqube.plugin.almclient.bitbucket.model.CodeInsightsAnnotation;
 import com.github.mc1arke.sonarqube.plugin.almclient.bitbucket.model.CodeInsightsReport;
@@ -45,8 +46,10 @@ import org.sonar.db.alm.setting.ProjectAlmSettingDto;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
@@ -62,6 +65,7 @@ class BitbucketServerClient implements BitbucketClient {
     private final BitbucketServerConfiguration config;
     private final ObjectMapper objectMapper;
     private final OkHttpClient okHttpClient;
+    private final Map<Class<?>, ObjectReader> objectReaders = new ConcurrentHashMap<>();
 
     BitbucketServerClient(BitbucketServerConfiguration config, ObjectMapper objectMapper, OkHttpClient.Builder baseClientBuilder) {
         this(config, objectMapper, createAuthorisingClient(baseClientBuilder, config));
@@ -184,10 +188,10 @@ class BitbucketServerClient implements BitbucketClient {
         try (Response response = okHttpClient.newCall(req).execute()) {
             validate(response);
 
-            return objectMapper.reader().forType(Repository.class)
+            return objectReader(Repository.class)
                     .readValue(Optional.ofNullable(response.body())
                             .orElseThrow(() -> new IllegalStateException("No response body from BitBucket"))
-                            .string());
+                            .byteStream());
         }
     }
 
@@ -199,13 +203,17 @@ class BitbucketServerClient implements BitbucketClient {
         try (Response response = okHttpClient.newCall(req).execute()) {
             validate(response);
 
-            return objectMapper.reader().forType(ServerProperties.class)
+            return objectReader(ServerProperties.class)
                     .readValue(Optional.ofNullable(response.body())
                             .orElseThrow(() -> new IllegalStateException("No response body from BitBucket"))
-                            .string());
+                            .byteStream());
         }
     }
 
+    private ObjectReader objectReader(Class<?> type) {
+        return objectReaders.computeIfAbsent(type, responseType -> objectMapper.reader().forType(responseType));
+    }
+
     private static OkHttpClient createAuthorisingClient(OkHttpClient.Builder clientBuilder, BitbucketServerConfiguration config) {
         return clientBuilder.addInterceptor(chain -> {
                     Request newRequest = chain.request().newBuilder()
@@ -221,8 +229,8 @@ class BitbucketServerClient implements BitbucketClient {
         if (!response.isSuccessful()) {
             ErrorResponse errors = null;
             if (response.body() != null) {
-                errors = objectMapper.reader().forType(ErrorResponse.class)
-                        .readValue(response.body().string());
+                errors = objectReader(ErrorResponse.class)
+                        .readValue(response.body().byteStream());
             }
             throw new BitbucketException(response.code(), errors);
         }
@@ -22,6 +22,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.mc1arke.sonarqube.plugin.InvalidConfigurationException;
+import com.github.mc1arke.sonarqube.plugin.almclient.HttpTimeouts;
 import com.github.mc1arke.sonarqube.plugin.almclient.bitbucket.model.cloud.BitbucketCloudConfiguration;
 import com.github.mc1arke.sonarqube.plugin.almclient.bitbucket.model.server.BitbucketServerConfiguration;
 import okhttp3.OkHttpClient;
@@ -89,6 +90,11 @@ public class DefaultBitbucketClientFactory implements BitbucketClientFactory {
     private static OkHttpClient.Builder createBaseClientBuilder(Supplier<OkHttpClient.Builder> builderSupplier) {
         HttpLoggingInterceptor httpLoggingInterceptor = new HttpLoggingInterceptor(LOGGER::debug);
         httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
-        return builderSupplier.get().addInterceptor(httpLoggingInterceptor);
+        return builderSupplier.get()
+                .connectTimeout(HttpTimeouts.CONNECT_TIMEOUT)
+                .readTimeout(HttpTimeouts.READ_TIMEOUT)
+                .writeTimeout(HttpTimeouts.READ_TIMEOUT)
+                .callTimeout(HttpTimeouts.CALL_TIMEOUT)
+                .addInterceptor(httpLoggingInterceptor);
     }
 }
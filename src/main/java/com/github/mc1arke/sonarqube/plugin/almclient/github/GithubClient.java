@@ -28,4 +28,7 @@ import java.io.IOException;
 public interface GithubClient {
     DecorationResult createCheckRun(AnalysisDetails analysisDetails, AlmSettingDto almSettingDto,
                         ProjectAlmSettingDto projectAlmSettingDto) throws IOException;
+
+    DecorationResult createCheckRunWithoutComments(AnalysisDetails analysisDetails, AlmSettingDto almSettingDto,
+                                                   ProjectAlmSettingDto projectAlmSettingDto) throws IOException;
 }
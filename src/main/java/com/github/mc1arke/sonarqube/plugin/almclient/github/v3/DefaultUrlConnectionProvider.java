@@ -18,6 +18,8 @@
  */
 package com.github.mc1arke.sonarqube.plugin.almclient.github.v3;
 
+import com.github.mc1arke.sonarqube.plugin.almclient.HttpTimeouts;
+
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLConnection;
@@ -26,7 +28,10 @@ public final class DefaultUrlConnectionProvider implements UrlConnectionProvider
 
     @Override
     public URLConnection createUrlConnection(String url) throws IOException {
-        return new URL(url).openConnection();
+        URLConnection urlConnection = new URL(url).openConnection();
+        urlConnection.setConnectTimeout((int) HttpTimeouts.CONNECT_TIMEOUT.toMillis());
+        urlConnection.setReadTimeout((int) HttpTimeouts.READ_TIMEOUT.toMillis());
+        return urlConnection;
     }
 
 }
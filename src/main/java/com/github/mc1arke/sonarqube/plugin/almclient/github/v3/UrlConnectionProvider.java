@@ -21,7 +21,7 @@ package com.github.mc1arke.sonarqube.plugin.almclient.github.v3;
 import java.io.IOException;
 import java.net.URLConnection;
 
-interface UrlConnectionProvider {
+public interface UrlConnectionProvider {
 
     URLConnection createUrlConnection(String url) throws IOException;
 }
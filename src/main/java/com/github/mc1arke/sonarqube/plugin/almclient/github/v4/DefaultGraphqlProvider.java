@@ -18,6 +18,7 @@
  */
 package com.github.mc1arke.sonarqube.plugin.almclient.github.v4;
 
+import com.github.mc1arke.sonarqube.plugin.almclient.HttpTimeouts;
 import io.aexp.nodes.graphql.GraphQLRequestEntity;
 import io.aexp.nodes.graphql.GraphQLTemplate;
 import io.aexp.nodes.graphql.InputObject;
@@ -26,7 +27,7 @@ final class DefaultGraphqlProvider implements GraphqlProvider {
 
     @Override
     public GraphQLTemplate createGraphQLTemplate() {
-        return new GraphQLTemplate();
+        return new GraphQLTemplate((int) HttpTimeouts.CONNECT_TIMEOUT.toMillis(), (int) HttpTimeouts.READ_TIMEOUT.toMillis());
     }
 
     @Override
@@ -18,13 +18,23 @@
  */
 package com.github.mc1arke.sonarqube.plugin.almclient.github.v4;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.mc1arke.sonarqube.plugin.CommunityBranchPlugin;
 import com.github.mc1arke.sonarqube.plugin.almclient.github.GithubClient;
 import com.github.mc1arke.sonarqube.plugin.almclient.github.RepositoryAuthenticationToken;
+import com.github.mc1arke.sonarqube.plugin.almclient.github.v3.DefaultUrlConnectionProvider;
+import com.github.mc1arke.sonarqube.plugin.almclient.github.v3.UrlConnectionProvider;
+import com.github.mc1arke.sonarqube.plugin.almclient.github.v3.model.PullRequestFile;
 import com.github.mc1arke.sonarqube.plugin.almclient.github.v4.model.CheckAnnotationLevel;
 import com.github.mc1arke.sonarqube.plugin.almclient.github.v4.model.CheckConclusionState;
 import com.github.mc1arke.sonarqube.plugin.almclient.github.v4.model.CommentClassifiers;
+import com.github.mc1arke.sonarqube.plugin.almclient.github.v4.model.DiffSide;
+import com.github.mc1arke.sonarqube.plugin.almclient.github.v4.model.PullRequestReviewEvent;
 import com.github.mc1arke.sonarqube.plugin.almclient.github.v4.model.RequestableCheckStatusState;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.AnalysisDetails;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.ChangedLines;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.DecorationResult;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.PostAnalysisIssueVisitor;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.MarkdownFormatterFactory;
@@ -34,6 +44,7 @@ import io.aexp.nodes.graphql.GraphQLRequestEntity;
 import io.aexp.nodes.graphql.GraphQLResponseEntity;
 import io.aexp.nodes.graphql.GraphQLTemplate;
 import io.aexp.nodes.graphql.InputObject;
+import io.aexp.nodes.graphql.exceptions.GraphQLException;
 import io.aexp.nodes.graphql.internal.Error;
 import org.sonar.api.ce.posttask.QualityGate;
 import org.sonar.api.issue.Issue;
@@ -46,7 +57,9 @@ import org.sonar.db.alm.setting.AlmSettingDto;
 import org.sonar.db.alm.setting.ProjectAlmSettingDto;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
@@ -54,12 +67,17 @@ import java.time.Clock;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang.ArrayUtils.isEmpty;
@@ -69,11 +87,16 @@ public class GraphqlGithubClient implements GithubClient {
     private static final Logger LOGGER = Loggers.get(GraphqlGithubClient.class);
     private static final String DATE_TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ssXXX";
     private static final String INPUT = "input";
+    private static final int REVIEW_THREADS_PER_REQUEST = 50;
+    private static final int PULL_REQUEST_FILES_PER_PAGE = 100;
+    private static final ObjectReader PULL_REQUEST_FILES_READER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).readerFor(PullRequestFile[].class);
 
     private final GraphqlProvider graphqlProvider;
     private final Clock clock;
     private final RepositoryAuthenticationToken repositoryAuthenticationToken;
     private final Server server;
+    private final UrlConnectionProvider urlConnectionProvider;
 
     private static final List<String> OPEN_ISSUE_STATUSES =
             Issue.STATUSES.stream().filter(s -> !Issue.STATUS_CLOSED.equals(s) && !Issue.STATUS_RESOLVED.equals(s))
@@ -81,22 +104,40 @@ public class GraphqlGithubClient implements GithubClient {
 
     public GraphqlGithubClient(RepositoryAuthenticationToken repositoryAuthenticationToken,
                                Server server) {
-        this(new DefaultGraphqlProvider(), Clock.systemDefaultZone(), repositoryAuthenticationToken, server);
+        this(new DefaultGraphqlProvider(), Clock.systemDefaultZone(), repositoryAuthenticationToken, server, new DefaultUrlConnectionProvider());
     }
 
     GraphqlGithubClient(GraphqlProvider graphqlProvider, Clock clock,
                         RepositoryAuthenticationToken repositoryAuthenticationToken,
                         Server server) {
+        this(graphqlProvider, clock, repositoryAuthenticationToken, server, new DefaultUrlConnectionProvider());
+    }
+
+    GraphqlGithubClient(GraphqlProvider graphqlProvider, Clock clock,
+                        RepositoryAuthenticationToken repositoryAuthenticationToken,
+                        Server server, UrlConnectionProvider urlConnectionProvider) {
         super();
         this.graphqlProvider = graphqlProvider;
         this.clock = clock;
         this.repositoryAuthenticationToken = repositoryAuthenticationToken;
         this.server = server;
+        this.urlConnectionProvider = urlConnectionProvider;
     }
 
     @Override
     public DecorationResult createCheckRun(AnalysisDetails analysisDetails, AlmSettingDto almSettingDto,
                                ProjectAlmSettingDto projectAlmSettingDto) throws IOException {
+        return createCheckRun(analysisDetails, almSettingDto, projectAlmSettingDto, true);
+    }
+
+    @Override
+    public DecorationResult createCheckRunWithoutComments(AnalysisDetails analysisDetails, AlmSettingDto almSettingDto,
+                                                          ProjectAlmSettingDto projectAlmSettingDto) throws IOException {
+        return createCheckRun(analysisDetails, almSettingDto, projectAlmSettingDto, false);
+    }
+
+    private DecorationResult createCheckRun(AnalysisDetails analysisDetails, AlmSettingDto almSettingDto,
+                                            ProjectAlmSettingDto projectAlmSettingDto, boolean postComments) throws IOException {
         String apiUrl = Optional.ofNullable(almSettingDto.getUrl()).orElseThrow(() -> new IllegalArgumentException("No URL has been set for Github connections"));
         String projectPath = Optional.ofNullable(projectAlmSettingDto.getAlmRepo()).orElseThrow(() -> new IllegalArgumentException("No repository name has been set for Github connections"));
 
@@ -165,8 +206,19 @@ public class GraphqlGithubClient implements GithubClient {
                               inputObjectArguments, checkRunOutputContentBuilder, graphQLRequestEntityBuilder);
 
 
-        if (Optional.ofNullable(projectAlmSettingDto.getSummaryCommentEnabled()).orElse(true)) {
-            postSummaryComment(graphqlUrl, headers, projectPath, analysisDetails.getBranchName(), summary);
+        boolean postSummaryComment = postComments && Optional.ofNullable(projectAlmSettingDto.getSummaryCommentEnabled()).orElse(true);
+        boolean postReviewComments = postComments && analysisDetails.getConfigurationProperty(CommunityBranchPlugin.PR_GITHUB_REVIEW_COMMENTS).map(Boolean::parseBoolean).orElse(false);
+
+        if (postSummaryComment || postReviewComments) {
+            String login = getLogin(graphqlUrl, headers);
+
+            if (postSummaryComment) {
+                postSummaryComment(graphqlUrl, headers, projectPath, analysisDetails.getBranchName(), summary, login);
+            }
+
+            if (postReviewComments) {
+                postReviewComments(apiUrl, graphqlUrl, headers, projectPath, analysisDetails, issues, login);
+            }
         }
 
         return DecorationResult.builder()
@@ -175,9 +227,7 @@ public class GraphqlGithubClient implements GithubClient {
 
     }
 
-    private void postSummaryComment(String graphqlUrl, Map<String, String> headers, String projectPath, String pullRequestKey, String summary) throws IOException {
-        String login = getLogin(graphqlUrl, headers);
-
+    private void postSummaryComment(String graphqlUrl, Map<String, String> headers, String projectPath, String pullRequestKey, String summary, String login) throws IOException {
         String[] paths = projectPath.split("/", 2);
         String owner = paths[0];
         String projectName = paths[1];
@@ -211,6 +261,160 @@ public class GraphqlGithubClient implements GithubClient {
 
     }
 
+    private void postReviewComments(String apiUrl, String graphqlUrl, Map<String, String> headers, String projectPath, AnalysisDetails analysisDetails,
+                                    List<PostAnalysisIssueVisitor.ComponentIssue> issues, String login) throws IOException {
+        String[] paths = projectPath.split("/", 2);
+        String owner = paths[0];
+        String projectName = paths[1];
+
+        GetReviewThreads.PullRequest pullRequest = getReviewThreads(graphqlUrl, headers, projectName, analysisDetails.getBranchName(), owner, null);
+
+        Map<String, PostAnalysisIssueVisitor.ComponentIssue> openIssues = issues.stream()
+                .filter(i -> i.getComponent().getReportAttributes().getScmPath().isPresent())
+                .filter(i -> i.getComponent().getType() == Component.Type.FILE)
+                .filter(i -> i.getIssue().getLine() != null)
+                .filter(i -> i.getIssue().resolution() == null)
+                .filter(i -> OPEN_ISSUE_STATUSES.contains(i.getIssue().status()))
+                .collect(Collectors.toMap(i -> i.getIssue().key(), Function.identity(), (a, b) -> a, LinkedHashMap::new));
+
+        Set<String> commentedIssueKeys = new HashSet<>();
+        for (ReviewThreads.ReviewThreadNode thread : getReviewThreads(pullRequest, graphqlUrl, headers, projectName, analysisDetails.getBranchName(), owner)) {
+            Optional<AnalysisDetails.ProjectIssueIdentifier> issueIdentifier = thread.getComments().getNodes().stream()
+                    .findFirst()
+                    .filter(c -> null != c.getAuthor() && login.equalsIgnoreCase(c.getAuthor().getLogin()))
+                    .flatMap(c -> AnalysisDetails.parseIssueMarker(c.getBody()))
+                    .filter(i -> analysisDetails.getAnalysisProjectKey().equals(i.getProjectKey()));
+
+            if (issueIdentifier.isEmpty()) {
+                continue;
+            }
+
+            String issueKey = issueIdentifier.get().getIssueKey();
+            if (openIssues.containsKey(issueKey)) {
+                commentedIssueKeys.add(issueKey);
+            } else if (!thread.isResolved()) {
+                resolveReviewThread(graphqlUrl, headers, thread.getId());
+            }
+        }
+
+        ChangedLines changedLines;
+        try {
+            changedLines = getChangedLines(apiUrl, headers, projectPath, analysisDetails.getBranchName());
+        } catch (IOException ex) {
+            LOGGER.warn("Could not retrieve the diff for Pull Request " + analysisDetails.getBranchName() + " so no new review comments will be posted", ex);
+            return;
+        }
+
+        // Github rejects a whole review if any thread is on a line outside of the diff
+        List<InputObject<Object>> reviewThreads = openIssues.values().stream()
+                .filter(i -> !commentedIssueKeys.contains(i.getIssue().key()))
+                .filter(i -> changedLines.isChanged(i.getComponent().getReportAttributes().getScmPath().orElseThrow(), i.getIssue().getLine()).orElse(false))
+                .map(i -> createReviewThread(i, analysisDetails))
+                .collect(Collectors.toList());
+
+        for (int i = 0; i < reviewThreads.size(); i += REVIEW_THREADS_PER_REQUEST) {
+            List<InputObject<Object>> batch = reviewThreads.subList(i, Math.min(i + REVIEW_THREADS_PER_REQUEST, reviewThreads.size()));
+
+            InputObject<Object> input = graphqlProvider.createInputObject()
+                    .put("pullRequestId", pullRequest.getId())
+                    .put("commitOID", analysisDetails.getCommitSha())
+                    .put("event", PullRequestReviewEvent.COMMENT)
+                    .put("threads", batch)
+                    .build();
+
+            GraphQLRequestEntity graphQLRequestEntity = graphqlProvider.createRequestBuilder()
+                    .url(graphqlUrl)
+                    .headers(headers)
+                    .request(AddPullRequestReview.class)
+                    .arguments(new Arguments("addPullRequestReview", new Argument<>(INPUT, input)))
+                    .requestMethod(GraphQLTemplate.GraphQLMethod.MUTATE)
+                    .build();
+
+            try {
+                executeRequest((r, t) -> graphqlProvider.createGraphQLTemplate().mutate(r, t), graphQLRequestEntity, AddPullRequestReview.class);
+            } catch (IllegalStateException | GraphQLException ex) {
+                LOGGER.warn("Could not post review comments for " + batch.size() + " issues", ex);
+            }
+        }
+    }
+
+    private ChangedLines getChangedLines(String apiUrl, Map<String, String> headers, String projectPath, String pullRequestKey) throws IOException {
+        ChangedLines.Builder changedLines = ChangedLines.builder();
+        int page = 1;
+        PullRequestFile[] files;
+        do {
+            URLConnection connection = urlConnectionProvider.createUrlConnection(String.format("%s/repos/%s/pulls/%s/files?per_page=%d&page=%d",
+                    getV3Url(apiUrl), projectPath, pullRequestKey, PULL_REQUEST_FILES_PER_PAGE, page));
+            connection.setRequestProperty("Authorization", headers.get("Authorization"));
+            connection.setRequestProperty("Accept", "application/vnd.github.v3+json");
+            try (InputStream inputStream = connection.getInputStream()) {
+                files = PULL_REQUEST_FILES_READER.readValue(inputStream);
+            }
+            // files with no patch are binary or too large for Github to diff, so comments can't be placed on them
+            Arrays.stream(files)
+                    .filter(file -> null != file.getPatch())
+                    .forEach(file -> changedLines.withUnifiedDiff(file.getFilename(), file.getPatch()));
+            page++;
+        } while (files.length == PULL_REQUEST_FILES_PER_PAGE);
+        return changedLines.build();
+    }
+
+    private InputObject<Object> createReviewThread(PostAnalysisIssueVisitor.ComponentIssue componentIssue, AnalysisDetails analysisDetails) {
+        String body = AnalysisDetails.appendIssueMarker(analysisDetails.createAnalysisIssueSummary(componentIssue, new MarkdownFormatterFactory()),
+                analysisDetails.getAnalysisProjectKey(), componentIssue.getIssue().key());
+
+        return graphqlProvider.createInputObject()
+                .put("path", componentIssue.getComponent().getReportAttributes().getScmPath().orElseThrow())
+                .put("line", componentIssue.getIssue().getLine())
+                .put("side", DiffSide.RIGHT)
+                .put("body", escapeString(body))
+                .build();
+    }
+
+    private List<ReviewThreads.ReviewThreadNode> getReviewThreads(GetReviewThreads.PullRequest pullRequest, String graphqlUrl, Map<String, String> headers, String projectName, String pullRequestKey, String owner) throws MalformedURLException {
+        List<ReviewThreads.ReviewThreadNode> reviewThreads = new ArrayList<>(pullRequest.getReviewThreads().getNodes());
+
+        PageInfo currentPageInfo = pullRequest.getReviewThreads().getPageInfo();
+        if (currentPageInfo.hasNextPage()) {
+            GetReviewThreads.PullRequest response = getReviewThreads(graphqlUrl, headers, projectName, pullRequestKey, owner, currentPageInfo);
+            reviewThreads.addAll(getReviewThreads(response, graphqlUrl, headers, projectName, pullRequestKey, owner));
+        }
+
+        return reviewThreads;
+    }
+
+    private GetReviewThreads.PullRequest getReviewThreads(String graphqlUrl, Map<String, String> headers, String projectName, String pullRequestKey, String owner, PageInfo pageInfo) throws MalformedURLException {
+        GraphQLRequestEntity getReviewThreads =
+                graphqlProvider.createRequestBuilder()
+                        .url(graphqlUrl)
+                        .headers(headers)
+                        .request(GetReviewThreads.class)
+                        .arguments(
+                                new Arguments("repository", new Argument<>("owner", owner), new Argument<>("name", projectName)),
+                                new Arguments("repository.pullRequest", new Argument<>("number", Integer.valueOf(pullRequestKey))),
+                                new Arguments("repository.pullRequest.reviewThreads", new Argument<>("first", 100), new Argument<>("after", Optional.ofNullable(pageInfo).map(PageInfo::getEndCursor).orElse(null)))
+                        )
+                        .build();
+
+        return executeRequest((r, t) -> graphqlProvider.createGraphQLTemplate().query(r, t), getReviewThreads, GetReviewThreads.class).getResponse().getPullRequest();
+    }
+
+    private void resolveReviewThread(String graphqlUrl, Map<String, String> headers, String threadId) throws MalformedURLException {
+        InputObject<Object> input = graphqlProvider.createInputObject()
+                .put("threadId", threadId)
+                .build();
+
+        GraphQLRequestEntity graphQLRequestEntity = graphqlProvider.createRequestBuilder()
+                .url(graphqlUrl)
+                .headers(headers)
+                .request(ResolveReviewThread.class)
+                .arguments(new Arguments("resolveReviewThread", new Argument<>(INPUT, input)))
+                .requestMethod(GraphQLTemplate.GraphQLMethod.MUTATE)
+                .build();
+
+        executeRequest((r, t) -> graphqlProvider.createGraphQLTemplate().mutate(r, t), graphQLRequestEntity, ResolveReviewThread.class);
+    }
+
     private List<Comments.CommentNode> getComments(GetPullRequest.PullRequest pullRequest, String graphqlUrl, Map<String, String> headers, String projectName, String pullRequestKey, String owner) throws MalformedURLException {
         List<Comments.CommentNode> comments = new ArrayList<>(pullRequest.getComments().getNodes());
 
@@ -352,6 +556,10 @@ public class GraphqlGithubClient implements GithubClient {
         }).collect(Collectors.toList());
     }
 
+    private static String escapeString(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\r", "").replace("\n", "\\n");
+    }
+
     private static String getGraphqlUrl(String apiUrl) {
         if (apiUrl.endsWith("/")) {
             apiUrl = apiUrl.substring(0, apiUrl.length() - 1);
@@ -364,6 +572,16 @@ public class GraphqlGithubClient implements GithubClient {
         return apiUrl;
     }
 
+    private static String getV3Url(String apiUrl) {
+        if (apiUrl.endsWith("/")) {
+            apiUrl = apiUrl.substring(0, apiUrl.length() - 1);
+        }
+        if (apiUrl.endsWith("/api")) {
+            apiUrl = apiUrl + "/v3";
+        }
+        return apiUrl;
+    }
+
     private static CheckAnnotationLevel mapToGithubAnnotationLevel(String sonarqubeSeverity) {
         switch (sonarqubeSeverity) {
             case Severity.INFO:
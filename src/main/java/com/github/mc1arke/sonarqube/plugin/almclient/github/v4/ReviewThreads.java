@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.almclient.github.v4;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.aexp.nodes.graphql.annotations.GraphQLArgument;
+import io.aexp.nodes.graphql.annotations.GraphQLProperty;
+
+import java.util.List;
+
+public class ReviewThreads {
+    private final List<ReviewThreadNode> nodes;
+    private final PageInfo pageInfo;
+
+    @JsonCreator
+    public ReviewThreads(@JsonProperty("nodes") List<ReviewThreadNode> nodes, @JsonProperty("pageInfo") PageInfo pageInfo) {
+        this.nodes = nodes;
+        this.pageInfo = pageInfo;
+    }
+
+    public List<ReviewThreadNode> getNodes() {
+        return nodes;
+    }
+
+    public PageInfo getPageInfo() {
+        return pageInfo;
+    }
+
+
+    public static class ReviewThreadNode {
+
+        private final String id;
+        @GraphQLProperty(name = "isResolved")
+        private final boolean resolved;
+        @GraphQLProperty(name = "comments", arguments = {@GraphQLArgument(name = "first", value = "1", type = "Integer")})
+        private final ReviewComments comments;
+
+        @JsonCreator
+        public ReviewThreadNode(@JsonProperty("id") String id, @JsonProperty("resolved") boolean resolved, @JsonProperty("comments") ReviewComments comments) {
+            this.id = id;
+            this.resolved = resolved;
+            this.comments = comments;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean isResolved() {
+            return resolved;
+        }
+
+        public ReviewComments getComments() {
+            return comments;
+        }
+    }
+
+    public static class ReviewComments {
+
+        private final List<ReviewCommentNode> nodes;
+
+        @JsonCreator
+        public ReviewComments(@JsonProperty("nodes") List<ReviewCommentNode> nodes) {
+            this.nodes = nodes;
+        }
+
+        public List<ReviewCommentNode> getNodes() {
+            return nodes;
+        }
+    }
+
+    public static class ReviewCommentNode {
+
+        private final String body;
+        private final Actor author;
+
+        @JsonCreator
+        public ReviewCommentNode(@JsonProperty("body") String body, @JsonProperty("author") Actor author) {
+            this.body = body;
+            this.author = author;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public Actor getAuthor() {
+            return author;
+        }
+    }
+}
@@ -19,8 +19,11 @@
 package com.github.mc1arke.sonarqube.plugin.almclient.gitlab;
 
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Commit;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.CommitNote;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Discussion;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.DraftNote;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequest;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequestChanges;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequestNote;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.PipelineStatus;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Project;
@@ -37,14 +40,28 @@ public interface GitlabClient {
 
     List<Commit> getMergeRequestCommits(long projectId, long mergeRequestIid) throws IOException;
 
+    MergeRequestChanges getMergeRequestChanges(long projectId, long mergeRequestIid) throws IOException;
+
     List<Discussion> getMergeRequestDiscussions(long projectId, long mergeRequestIid) throws IOException;
 
     Discussion addMergeRequestDiscussion(long projectId, long mergeRequestIid, MergeRequestNote commitNote) throws IOException;
 
+    List<DraftNote> getMergeRequestDraftNotes(long projectId, long mergeRequestIid) throws IOException;
+
+    void addMergeRequestDraftNote(long projectId, long mergeRequestIid, CommitNote commitNote) throws IOException;
+
+    void deleteMergeRequestDraftNote(long projectId, long mergeRequestIid, long draftNoteId) throws IOException;
+
+    void publishMergeRequestDraftNotes(long projectId, long mergeRequestIid) throws IOException;
+
     void addMergeRequestDiscussionNote(long projectId, long mergeRequestIid, String discussionId, String noteContent) throws IOException;
 
+    void updateMergeRequestDiscussionNote(long projectId, long mergeRequestIid, String discussionId, long noteId, String noteContent) throws IOException;
+
     void resolveMergeRequestDiscussion(long projectId, long mergeRequestIid, String discussionId) throws IOException;
 
+    void unresolveMergeRequestDiscussion(long projectId, long mergeRequestIid, String discussionId) throws IOException;
+
     void setMergeRequestPipelineStatus(long projectId, String commitRevision, PipelineStatus status) throws IOException;
 
     Project getProject(String projectSlug) throws IOException;
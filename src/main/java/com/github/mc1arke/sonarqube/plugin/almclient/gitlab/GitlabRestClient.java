@@ -18,12 +18,18 @@
  */
 package com.github.mc1arke.sonarqube.plugin.almclient.gitlab;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.github.mc1arke.sonarqube.plugin.almclient.LinkHeaderReader;
+import com.github.mc1arke.sonarqube.plugin.almclient.UnexpectedResponseException;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Commit;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.CommitNote;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Discussion;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.DraftNote;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequest;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequestChanges;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequestNote;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.PipelineStatus;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Project;
@@ -31,6 +37,7 @@ import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.User;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
@@ -43,13 +50,16 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -62,6 +72,7 @@ class GitlabRestClient implements GitlabClient {
     private final ObjectMapper objectMapper;
     private final LinkHeaderReader linkHeaderReader;
     private final Supplier<CloseableHttpClient> httpClientFactory;
+    private final Map<Class<?>, ObjectReader> objectReaders = new ConcurrentHashMap<>();
 
     GitlabRestClient(String baseGitlabApiUrl, String authToken, LinkHeaderReader linkHeaderReader, ObjectMapper objectMapper, Supplier<CloseableHttpClient> httpClientFactory) {
         this.baseGitlabApiUrl = baseGitlabApiUrl;
@@ -86,6 +97,11 @@ class GitlabRestClient implements GitlabClient {
         return entities(new HttpGet(String.format("%s/projects/%s/merge_requests/%s/commits", baseGitlabApiUrl, projectId, mergeRequestIid)), Commit.class);
     }
 
+    @Override
+    public MergeRequestChanges getMergeRequestChanges(long projectId, long mergeRequestIid) throws IOException {
+        return entity(new HttpGet(String.format("%s/projects/%s/merge_requests/%s/changes?access_raw_diffs=true", baseGitlabApiUrl, projectId, mergeRequestIid)), MergeRequestChanges.class);
+    }
+
     @Override
     public List<Discussion> getMergeRequestDiscussions(long projectId, long mergeRequestIid) throws IOException {
         return entities(new HttpGet(String.format("%s/projects/%s/merge_requests/%s/discussions", baseGitlabApiUrl, projectId, mergeRequestIid)), Discussion.class);
@@ -99,16 +115,7 @@ class GitlabRestClient implements GitlabClient {
         requestContent.add(new BasicNameValuePair("body", mergeRequestNote.getContent()));
 
         if (mergeRequestNote instanceof CommitNote) {
-            CommitNote commitNote = (CommitNote) mergeRequestNote;
-            requestContent.addAll(Arrays.asList(
-                new BasicNameValuePair("position[base_sha]", commitNote.getBaseSha()),
-                new BasicNameValuePair("position[start_sha]", commitNote.getStartSha()),
-                new BasicNameValuePair("position[head_sha]", commitNote.getHeadSha()),
-                new BasicNameValuePair("position[old_path]", commitNote.getOldPath()),
-                new BasicNameValuePair("position[new_path]", commitNote.getNewPath()),
-                new BasicNameValuePair("position[new_line]", String.valueOf(commitNote.getNewLine())),
-                new BasicNameValuePair("position[position_type]", "text"))
-            );
+            requestContent.addAll(createPositionFields((CommitNote) mergeRequestNote));
         }
 
         HttpPost httpPost = new HttpPost(targetUrl);
@@ -117,6 +124,39 @@ class GitlabRestClient implements GitlabClient {
         return entity(httpPost, Discussion.class, httpResponse -> validateResponse(httpResponse, 201, "Discussion successfully created"));
     }
 
+    @Override
+    public List<DraftNote> getMergeRequestDraftNotes(long projectId, long mergeRequestIid) throws IOException {
+        return entities(new HttpGet(String.format("%s/projects/%s/merge_requests/%s/draft_notes", baseGitlabApiUrl, projectId, mergeRequestIid)), DraftNote.class);
+    }
+
+    @Override
+    public void addMergeRequestDraftNote(long projectId, long mergeRequestIid, CommitNote commitNote) throws IOException {
+        String targetUrl = String.format("%s/projects/%s/merge_requests/%s/draft_notes", baseGitlabApiUrl, projectId, mergeRequestIid);
+
+        List<NameValuePair> requestContent = new ArrayList<>();
+        requestContent.add(new BasicNameValuePair("note", commitNote.getContent()));
+        requestContent.addAll(createPositionFields(commitNote));
+
+        HttpPost httpPost = new HttpPost(targetUrl);
+        httpPost.addHeader("Content-type", ContentType.APPLICATION_FORM_URLENCODED.getMimeType());
+        httpPost.setEntity(new UrlEncodedFormEntity(requestContent, StandardCharsets.UTF_8));
+        entity(httpPost, null, httpResponse -> validateResponse(httpResponse, 201, "Draft note successfully created"));
+    }
+
+    @Override
+    public void deleteMergeRequestDraftNote(long projectId, long mergeRequestIid, long draftNoteId) throws IOException {
+        String targetUrl = String.format("%s/projects/%s/merge_requests/%s/draft_notes/%s", baseGitlabApiUrl, projectId, mergeRequestIid, draftNoteId);
+
+        entity(new HttpDelete(targetUrl), null, httpResponse -> validateResponse(httpResponse, 204, "Draft note deleted"));
+    }
+
+    @Override
+    public void publishMergeRequestDraftNotes(long projectId, long mergeRequestIid) throws IOException {
+        String targetUrl = String.format("%s/projects/%s/merge_requests/%s/draft_notes/bulk_publish", baseGitlabApiUrl, projectId, mergeRequestIid);
+
+        entity(new HttpPost(targetUrl), null, httpResponse -> validateResponse(httpResponse, 204, "Draft notes published"));
+    }
+
     @Override
     public void addMergeRequestDiscussionNote(long projectId, long mergeRequestIid, String discussionId, String noteContent) throws IOException {
         String targetUrl = String.format("%s/projects/%s/merge_requests/%s/discussions/%s/notes", baseGitlabApiUrl, projectId, mergeRequestIid, discussionId);
@@ -126,6 +166,16 @@ class GitlabRestClient implements GitlabClient {
         entity(httpPost, null, httpResponse -> validateResponse(httpResponse, 201, "Commit discussions note added"));
     }
 
+    @Override
+    public void updateMergeRequestDiscussionNote(long projectId, long mergeRequestIid, String discussionId, long noteId, String noteContent) throws IOException {
+        String targetUrl = String.format("%s/projects/%s/merge_requests/%s/discussions/%s/notes/%s", baseGitlabApiUrl, projectId, mergeRequestIid, discussionId, noteId);
+
+        HttpPut httpPut = new HttpPut(targetUrl);
+        httpPut.addHeader("Content-type", ContentType.APPLICATION_FORM_URLENCODED.getMimeType());
+        httpPut.setEntity(new UrlEncodedFormEntity(Collections.singletonList(new BasicNameValuePair("body", noteContent)), StandardCharsets.UTF_8));
+        entity(httpPut, null, httpResponse -> validateResponse(httpResponse, 200, "Commit discussions note updated"));
+    }
+
     @Override
     public void resolveMergeRequestDiscussion(long projectId, long mergeRequestIid, String discussionId) throws IOException {
         String discussionIdUrl = String.format("%s/projects/%s/merge_requests/%s/discussions/%s?resolved=true", baseGitlabApiUrl, projectId, mergeRequestIid, discussionId);
@@ -134,6 +184,14 @@ class GitlabRestClient implements GitlabClient {
         entity(httpPut, null);
     }
 
+    @Override
+    public void unresolveMergeRequestDiscussion(long projectId, long mergeRequestIid, String discussionId) throws IOException {
+        String discussionIdUrl = String.format("%s/projects/%s/merge_requests/%s/discussions/%s?resolved=false", baseGitlabApiUrl, projectId, mergeRequestIid, discussionId);
+
+        HttpPut httpPut = new HttpPut(discussionIdUrl);
+        entity(httpPut, null);
+    }
+
     @Override
     public void setMergeRequestPipelineStatus(long projectId, String commitRevision, PipelineStatus status) throws IOException {
         List<NameValuePair> entityFields = new ArrayList<>(Arrays.asList(
@@ -164,6 +222,17 @@ class GitlabRestClient implements GitlabClient {
         return entity(new HttpGet(String.format("%s/projects/%s", baseGitlabApiUrl, URLEncoder.encode(projectSlug, StandardCharsets.UTF_8))), Project.class);
     }
 
+    private static List<NameValuePair> createPositionFields(CommitNote commitNote) {
+        return Arrays.asList(
+                new BasicNameValuePair("position[base_sha]", commitNote.getBaseSha()),
+                new BasicNameValuePair("position[start_sha]", commitNote.getStartSha()),
+                new BasicNameValuePair("position[head_sha]", commitNote.getHeadSha()),
+                new BasicNameValuePair("position[old_path]", commitNote.getOldPath()),
+                new BasicNameValuePair("position[new_path]", commitNote.getNewPath()),
+                new BasicNameValuePair("position[new_line]", String.valueOf(commitNote.getNewLine())),
+                new BasicNameValuePair("position[position_type]", "text"));
+    }
+
     private <X> X entity(HttpRequestBase httpRequest, Class<X> type) throws IOException {
         return entity(httpRequest, type, httpResponse -> validateResponse(httpResponse, 200, null));
     }
@@ -179,7 +248,9 @@ class GitlabRestClient implements GitlabClient {
             if (null == type) {
                 return null;
             }
-            return objectMapper.readValue(EntityUtils.toString(httpResponse.getEntity(), StandardCharsets.UTF_8), type);
+            try (InputStream inputStream = httpResponse.getEntity().getContent()) {
+                return objectReader(type).readValue(inputStream);
+            }
         }
     }
 
@@ -195,8 +266,7 @@ class GitlabRestClient implements GitlabClient {
 
             responseValidator.accept(httpResponse);
 
-            List<X> entities = new ArrayList<>(objectMapper.readValue(EntityUtils.toString(httpResponse.getEntity(), StandardCharsets.UTF_8),
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, type)));
+            List<X> entities = readEntities(httpResponse, type);
 
             Optional<String> nextURL = Optional.ofNullable(httpResponse.getFirstHeader("Link"))
                     .map(NameValuePair::getValue)
@@ -209,6 +279,35 @@ class GitlabRestClient implements GitlabClient {
         }
     }
 
+    private <X> List<X> readEntities(HttpResponse httpResponse, Class<X> type) throws IOException {
+        ObjectReader objectReader = objectReader(type);
+        List<X> entities = new ArrayList<>();
+
+        // read one element at a time so the full response body is never held in memory alongside the parsed entities
+        try (InputStream inputStream = httpResponse.getEntity().getContent();
+             JsonParser jsonParser = objectReader.createParser(inputStream)) {
+            JsonToken rootToken = jsonParser.nextToken();
+            if (rootToken == JsonToken.START_OBJECT) {
+                entities.add(objectReader.readValue(jsonParser));
+            } else if (rootToken == JsonToken.START_ARRAY) {
+                JsonToken elementToken;
+                while ((elementToken = jsonParser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (null == elementToken) {
+                        throw new IllegalStateException("Could not parse Gitlab response: unexpected end of JSON array");
+                    }
+                    entities.add(objectReader.readValue(jsonParser));
+                }
+            } else {
+                throw new IllegalStateException("Could not parse Gitlab response: expected a JSON array");
+            }
+        }
+        return entities;
+    }
+
+    private ObjectReader objectReader(Class<?> type) {
+        return objectReaders.computeIfAbsent(type, objectMapper::readerFor);
+    }
+
     private static void validateResponse(HttpResponse httpResponse, int expectedStatus, String successLogMessage) {
         if (httpResponse.getStatusLine().getStatusCode() == expectedStatus) {
             LOGGER.debug(Optional.ofNullable(successLogMessage).map(v -> v + System.lineSeparator()).orElse("") + httpResponse);
@@ -230,7 +329,8 @@ class GitlabRestClient implements GitlabClient {
                 + System.lineSeparator()
                 + responseContent);
 
-        throw new IllegalStateException("An unexpected response code was returned from the Gitlab API - Expected: " + expectedStatus + ", Got: " + httpResponse.getStatusLine().getStatusCode());
+        int statusCode = httpResponse.getStatusLine().getStatusCode();
+        throw new UnexpectedResponseException("An unexpected response code was returned from the Gitlab API - Expected: " + expectedStatus + ", Got: " + statusCode, statusCode);
 
     }
 
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class Change {
+    private final String newPath;
+    private final String diff;
+    private final boolean deletedFile;
+
+    public Change(@JsonProperty("new_path") String newPath, @JsonProperty("diff") String diff,
+                  @JsonProperty("deleted_file") boolean deletedFile) {
+        this.newPath = newPath;
+        this.diff = diff;
+        this.deletedFile = deletedFile;
+    }
+
+    public String getNewPath() {
+        return newPath;
+    }
+
+    public String getDiff() {
+        return diff;
+    }
+
+    public boolean isDeletedFile() {
+        return deletedFile;
+    }
+}
@@ -16,23 +16,26 @@
  * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
  *
  */
-package com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model;
+package com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import java.util.List;
-
-public class Commits {
-
-    private final List<Commit> value;
+public class DraftNote {
+    private final long id;
+    private final String note;
 
     @JsonCreator
-    public Commits(@JsonProperty("value") List<Commit> value) {
-        this.value = value;
+    public DraftNote(@JsonProperty("id") long id, @JsonProperty("note") String note) {
+        this.id = id;
+        this.note = note;
+    }
+
+    public long getId() {
+        return id;
     }
 
-    public List<Commit> getValue() {
-        return value;
+    public String getNote() {
+        return note;
     }
 }
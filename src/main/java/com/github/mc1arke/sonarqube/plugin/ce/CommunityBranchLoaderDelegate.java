@@ -30,7 +30,12 @@ import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.project.Project;
 
 import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * @author Michael Clarke
@@ -39,27 +44,30 @@ public class CommunityBranchLoaderDelegate implements BranchLoaderDelegate {
 
     private final DbClient dbClient;
     private final MutableAnalysisMetadataHolder metadataHolder;
+    private final ProjectBranchCache projectBranchCache;
 
-    public CommunityBranchLoaderDelegate(DbClient dbClient, MutableAnalysisMetadataHolder analysisMetadataHolder) {
+    public CommunityBranchLoaderDelegate(DbClient dbClient, MutableAnalysisMetadataHolder analysisMetadataHolder,
+                                         ProjectBranchCache projectBranchCache) {
         this.dbClient = dbClient;
         this.metadataHolder = analysisMetadataHolder;
+        this.projectBranchCache = projectBranchCache;
     }
 
     @Override
     public void load(@Nonnull ScannerReport.Metadata metadata) {
-        Branch branch = load(metadata, metadataHolder.getProject(), dbClient);
+        Branch branch = load(metadata, metadataHolder.getProject());
 
         metadataHolder.setBranch(branch);
         metadataHolder.setPullRequestKey(metadata.getPullRequestKey());
     }
 
-    private static Branch load(ScannerReport.Metadata metadata, Project project, DbClient dbClient) {
+    private Branch load(ScannerReport.Metadata metadata, Project project) {
         String targetBranchName = StringUtils.trimToNull(metadata.getTargetBranchName());
         String branchName = StringUtils.trimToNull(metadata.getBranchName());
         String projectUuid = StringUtils.trimToNull(project.getUuid());
 
         if (null == branchName) {
-            Optional<BranchDto> branchDto = findBranchByUuid(projectUuid, dbClient);
+            Optional<BranchDto> branchDto = findBranchByUuid(projectUuid);
             if (branchDto.isPresent()) {
                 BranchDto dto = branchDto.get();
                 return new CommunityBranch(dto.getKey(), dto.getBranchType(), dto.isMain(), null, null,
@@ -75,58 +83,66 @@ public class CommunityBranchLoaderDelegate implements BranchLoaderDelegate {
             }
 
             if (ScannerReport.Metadata.BranchType.PULL_REQUEST == branchType) {
-                return createPullRequest(metadata, dbClient, branchName, projectUuid, targetBranch, targetBranchName);
+                return createPullRequest(metadata, branchName, projectUuid, targetBranch, targetBranchName);
             } else if (ScannerReport.Metadata.BranchType.BRANCH == branchType) {
-                return createBranch(dbClient, branchName, projectUuid, targetBranch);
+                return createBranch(branchName, projectUuid, targetBranch);
             } else {
                 throw new IllegalStateException(String.format("Invalid branch type '%s'", branchType.name()));
             }
         }
     }
 
-    private static Branch createPullRequest(ScannerReport.Metadata metadata, DbClient dbClient, String branchName,
-                                            String projectUuid, String targetBranch, String targetBranchName) {
-        Optional<BranchDto> branchDto = findBranchByKey(projectUuid, targetBranch, dbClient);
-        if (branchDto.isPresent()) {
-            String pullRequestKey = metadata.getPullRequestKey();
-
-            BranchDto dto = branchDto.get();
-            return new CommunityBranch(branchName, BranchType.PULL_REQUEST, false, dto.getUuid(), pullRequestKey,
-                                       targetBranchName);
-        } else {
+    private Branch createPullRequest(ScannerReport.Metadata metadata, String branchName, String projectUuid,
+                                     String targetBranch, String targetBranchName) {
+        Map<String, BranchDto> branches = findBranchesByKey(projectUuid, Collections.singleton(targetBranch));
+        BranchDto dto = branches.get(targetBranch);
+        if (null == dto) {
             throw new IllegalStateException(
                     String.format("Could not find target branch '%s' in project", targetBranch));
         }
+        String pullRequestKey = metadata.getPullRequestKey();
+        return new CommunityBranch(branchName, BranchType.PULL_REQUEST, false, dto.getUuid(), pullRequestKey,
+                                   targetBranchName);
     }
 
-    private static Branch createBranch(DbClient dbClient, String branchName, String projectUuid, String targetBranch) {
+    private Branch createBranch(String branchName, String projectUuid, String targetBranch) {
+        Set<String> branchKeys = new HashSet<>();
+        branchKeys.add(branchName);
+        if (null != targetBranch) {
+            branchKeys.add(targetBranch);
+        }
+        Map<String, BranchDto> branches = findBranchesByKey(projectUuid, branchKeys);
+
         String targetUuid;
         if (null == targetBranch) {
             targetUuid = projectUuid;
         } else {
-            Optional<BranchDto> branchDto = findBranchByKey(projectUuid, targetBranch, dbClient);
-            if (branchDto.isPresent()) {
-                targetUuid = branchDto.get().getUuid();
-            } else {
+            BranchDto targetBranchDto = branches.get(targetBranch);
+            if (null == targetBranchDto) {
                 throw new IllegalStateException(
                         String.format("Could not find target branch '%s' in project", targetBranch));
             }
+            targetUuid = targetBranchDto.getUuid();
         }
         return new CommunityBranch(branchName, BranchType.BRANCH,
-                                   findBranchByKey(projectUuid, branchName, dbClient).map(BranchDto::isMain)
+                                   Optional.ofNullable(branches.get(branchName)).map(BranchDto::isMain)
                                            .orElse(false), targetUuid, null, null);
     }
 
-    private static Optional<BranchDto> findBranchByUuid(String projectUuid, DbClient dbClient) {
+    private Optional<BranchDto> findBranchByUuid(String projectUuid) {
         try (DbSession dbSession = dbClient.openSession(false)) {
             return dbClient.branchDao().selectByUuid(dbSession, projectUuid);
         }
     }
 
-    private static Optional<BranchDto> findBranchByKey(String projectUuid, String key, DbClient dbClient) {
-        try (DbSession dbSession = dbClient.openSession(false)) {
-            return dbClient.branchDao().selectByBranchKey(dbSession, projectUuid, key);
-        }
+    private Map<String, BranchDto> findBranchesByKey(String projectUuid, Set<String> keys) {
+        return projectBranchCache.getBranches(projectUuid, keys, missingKeys -> {
+            try (DbSession dbSession = dbClient.openSession(false)) {
+                return dbClient.branchDao().selectByKeys(dbSession, projectUuid, missingKeys).stream()
+                        .filter(branch -> BranchType.BRANCH == branch.getBranchType())
+                        .collect(Collectors.toList());
+            }
+        });
     }
 
 }
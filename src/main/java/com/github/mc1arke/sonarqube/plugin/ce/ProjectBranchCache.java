@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce;
+
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.utils.System2;
+import org.sonar.db.component.BranchDto;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Holds the branches recently resolved for each project, so that analyses of a project arriving in quick succession
+ * do not each look up the same branches. Only branches that were found are held, so a branch created by an
+ * analysis is picked up by the next analysis that needs it, and entries expire after a short time to limit how long
+ * a renamed or deleted branch can be returned.
+ */
+@ComputeEngineSide
+public class ProjectBranchCache {
+
+    private static final long TIME_TO_LIVE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final int MAX_ENTRIES = 1000;
+
+    private final System2 system2;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public ProjectBranchCache(System2 system2) {
+        super();
+        this.system2 = system2;
+    }
+
+    /**
+     * Retrieves the requested branches of a project, using the loader to retrieve any branches not currently held in
+     * a single call.
+     *
+     * @return the branches that could be found, keyed by branch name
+     */
+    public Map<String, BranchDto> getBranches(String projectUuid, Set<String> branchKeys,
+                                              Function<Set<String>, Collection<BranchDto>> branchLoader) {
+        Map<String, BranchDto> branches = new HashMap<>();
+        synchronized (entries) {
+            Entry entry = entries.get(projectUuid);
+            if (null != entry && system2.now() < entry.expiresAt) {
+                branchKeys.stream()
+                        .filter(entry.branches::containsKey)
+                        .forEach(key -> branches.put(key, entry.branches.get(key)));
+            }
+        }
+
+        Set<String> missingKeys = branchKeys.stream()
+                .filter(key -> !branches.containsKey(key))
+                .collect(Collectors.toSet());
+        if (missingKeys.isEmpty()) {
+            return branches;
+        }
+
+        Map<String, BranchDto> loadedBranches = branchLoader.apply(missingKeys).stream()
+                .filter(branch -> missingKeys.contains(branch.getKey()))
+                .collect(Collectors.toMap(BranchDto::getKey, branch -> branch, (first, second) -> first));
+        branches.putAll(loadedBranches);
+
+        synchronized (entries) {
+            Entry entry = entries.get(projectUuid);
+            if (null == entry || system2.now() >= entry.expiresAt) {
+                entry = new Entry(system2.now() + TIME_TO_LIVE_MILLIS);
+                entries.put(projectUuid, entry);
+            }
+            entry.branches.putAll(loadedBranches);
+        }
+        return branches;
+    }
+
+    private static final class Entry {
+
+        private final Map<String, BranchDto> branches = new HashMap<>();
+        private final long expiresAt;
+
+        private Entry(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.utils.System2;
+import org.sonar.db.alm.setting.AlmSettingDto;
+import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Holds the ALM binding of recently decorated projects, including projects with no binding, so repeated
+ * analyses of a project do not look the binding up on each run. Bindings are changed through the web server,
+ * which runs in a separate process to the Compute Engine, so entries expire after a short time rather than
+ * being invalidated when a binding changes.
+ */
+@ComputeEngineSide
+public class AlmBindingCache {
+
+    private static final long TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_ENTRIES = 1000;
+
+    private final System2 system2;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public AlmBindingCache(System2 system2) {
+        super();
+        this.system2 = system2;
+    }
+
+    public AlmBinding getBinding(String projectUuid, Supplier<AlmBinding> bindingLoader) {
+        synchronized (entries) {
+            Entry entry = entries.get(projectUuid);
+            if (null != entry && system2.now() < entry.expiresAt) {
+                return entry.almBinding;
+            }
+        }
+
+        AlmBinding almBinding = bindingLoader.get();
+        synchronized (entries) {
+            entries.put(projectUuid, new Entry(almBinding, system2.now() + TIME_TO_LIVE_MILLIS));
+        }
+        return almBinding;
+    }
+
+    public static final class AlmBinding {
+
+        private final ProjectAlmSettingDto projectAlmSettingDto;
+        private final AlmSettingDto almSettingDto;
+
+        public AlmBinding(ProjectAlmSettingDto projectAlmSettingDto, AlmSettingDto almSettingDto) {
+            super();
+            this.projectAlmSettingDto = projectAlmSettingDto;
+            this.almSettingDto = almSettingDto;
+        }
+
+        public Optional<ProjectAlmSettingDto> getProjectAlmSetting() {
+            return Optional.ofNullable(projectAlmSettingDto);
+        }
+
+        public Optional<AlmSettingDto> getAlmSetting() {
+            return Optional.ofNullable(almSettingDto);
+        }
+    }
+
+    private static final class Entry {
+
+        private final AlmBinding almBinding;
+        private final long expiresAt;
+
+        private Entry(AlmBinding almBinding, long expiresAt) {
+            this.almBinding = almBinding;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
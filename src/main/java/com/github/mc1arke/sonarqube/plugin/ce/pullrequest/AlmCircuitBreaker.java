@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import com.github.mc1arke.sonarqube.plugin.CommunityBranchPlugin;
+import com.github.mc1arke.sonarqube.plugin.InvalidConfigurationException;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.alm.setting.AlmSettingDto;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Isolates decorations for each configured ALM. After a number of consecutive failed decoration attempts against an
+ * ALM, further decorations for it are skipped until a cool-down has passed, after which a single decoration
+ * is allowed through to probe whether the ALM has recovered. Each ALM also has its own limit on concurrent
+ * decorations, so Compute Engine workers waiting on one slow ALM cannot hold up decorations for the others. A
+ * decoration waits for as long as it takes for a concurrent decoration to complete, and is only skipped if the
+ * ALM's decorations are suspended whilst it waits. Each call covers a single attempt, so a caller retrying a failed
+ * decoration does so outside the breaker and does not hold back other decorations whilst it backs off.
+ */
+@ComputeEngineSide
+public class AlmCircuitBreaker {
+
+    private static final Logger LOGGER = Loggers.get(AlmCircuitBreaker.class);
+
+    private static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    private static final int DEFAULT_SUSPEND_DURATION_MINUTES = 5;
+    private static final int DEFAULT_CONCURRENCY = 2;
+    private static final int DEFAULT_PERMIT_WAIT_SECONDS = 30;
+
+    private final Configuration configuration;
+    private final System2 system2;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    public AlmCircuitBreaker(Configuration configuration, System2 system2) {
+        super();
+        this.configuration = configuration;
+        this.system2 = system2;
+    }
+
+    public <T> Optional<T> execute(AlmSettingDto almSettingDto, Supplier<T> decoration) {
+        String almName = almSettingDto.getKey();
+        Circuit circuit = circuits.computeIfAbsent(almSettingDto.getUuid(), k -> new Circuit(getConfiguredValue(CommunityBranchPlugin.PR_DECORATION_CONCURRENCY, DEFAULT_CONCURRENCY)));
+        long suspendDurationMillis = TimeUnit.MINUTES.toMillis(getConfiguredValue(CommunityBranchPlugin.PR_DECORATION_SUSPEND_DURATION, DEFAULT_SUSPEND_DURATION_MINUTES));
+
+        boolean probe;
+        synchronized (circuit) {
+            if (circuit.openedAt >= 0) {
+                if (system2.now() - circuit.openedAt < suspendDurationMillis || circuit.probeInProgress) {
+                    LOGGER.warn("Decoration skipped as recent decorations using ALM '" + almName + "' have failed");
+                    return Optional.empty();
+                }
+                circuit.probeInProgress = true;
+                probe = true;
+            } else {
+                probe = false;
+            }
+        }
+
+        if (!acquirePermit(circuit, almName, probe)) {
+            releaseProbe(circuit, probe);
+            return Optional.empty();
+        }
+
+        try {
+            T result = decoration.get();
+            synchronized (circuit) {
+                circuit.consecutiveFailures = 0;
+                circuit.openedAt = -1;
+                circuit.probeInProgress = false;
+            }
+            return Optional.ofNullable(result);
+        } catch (InvalidConfigurationException ex) {
+            releaseProbe(circuit, probe);
+            throw ex;
+        } catch (RuntimeException ex) {
+            synchronized (circuit) {
+                circuit.consecutiveFailures++;
+                if (probe || circuit.consecutiveFailures >= getConfiguredValue(CommunityBranchPlugin.PR_DECORATION_FAILURE_THRESHOLD, DEFAULT_FAILURE_THRESHOLD)) {
+                    circuit.openedAt = system2.now();
+                    LOGGER.warn("Decorations using ALM '" + almName + "' will be skipped for the next " + TimeUnit.MILLISECONDS.toMinutes(suspendDurationMillis) + " minutes after repeated failures");
+                }
+                circuit.probeInProgress = false;
+            }
+            throw ex;
+        } finally {
+            circuit.permits.release();
+        }
+    }
+
+    private boolean acquirePermit(Circuit circuit, String almName, boolean probe) {
+        long permitWaitSeconds = getConfiguredValue(CommunityBranchPlugin.PR_DECORATION_PERMIT_WAIT, DEFAULT_PERMIT_WAIT_SECONDS);
+        try {
+            while (true) {
+                boolean acquired = circuit.permits.tryAcquire(permitWaitSeconds, TimeUnit.SECONDS);
+                // the decorations being waited on may have failed and suspended the ALM's decorations
+                if (isSuspended(circuit, probe)) {
+                    if (acquired) {
+                        circuit.permits.release();
+                    }
+                    LOGGER.warn("Decoration skipped as decorations using ALM '" + almName + "' failed whilst waiting for them to complete");
+                    return false;
+                }
+                if (acquired) {
+                    return true;
+                }
+                LOGGER.info("Waiting for decorations already in progress using ALM '" + almName + "' to complete");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Decoration skipped as it was interrupted whilst waiting for decorations using ALM '" + almName + "' to complete");
+            return false;
+        }
+    }
+
+    private int getConfiguredValue(String property, int defaultValue) {
+        return Math.max(1, configuration.getInt(property).orElse(defaultValue));
+    }
+
+    private static boolean isSuspended(Circuit circuit, boolean probe) {
+        if (probe) {
+            return false;
+        }
+        synchronized (circuit) {
+            return circuit.openedAt >= 0;
+        }
+    }
+
+    private static void releaseProbe(Circuit circuit, boolean probe) {
+        if (probe) {
+            synchronized (circuit) {
+                circuit.probeInProgress = false;
+            }
+        }
+    }
+
+    private static final class Circuit {
+
+        private final Semaphore permits;
+        private int consecutiveFailures;
+        private long openedAt = -1;
+        private boolean probeInProgress;
+
+        private Circuit(int concurrency) {
+            this.permits = new Semaphore(concurrency);
+        }
+    }
+}
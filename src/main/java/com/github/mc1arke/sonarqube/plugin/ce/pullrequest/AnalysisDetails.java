@@ -57,7 +57,9 @@ import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -67,6 +69,11 @@ import java.util.stream.Collectors;
 
 public class AnalysisDetails {
 
+    public static final String SUMMARY_COMMENT_ISSUE_KEY = "decorator-summary-comment";
+
+    private static final String ISSUE_MARKER_PREFIX = "<!-- sonarqube-issue ";
+    private static final String ISSUE_MARKER_SUFFIX = " -->";
+
     private static final List<String> CLOSED_ISSUE_STATUS = Arrays.asList(Issue.STATUS_CLOSED, Issue.STATUS_RESOLVED);
 
     private static final List<BigDecimal> COVERAGE_LEVELS =
@@ -123,6 +130,35 @@ public class AnalysisDetails {
         }
     }
 
+    /**
+     * Appends a hidden marker to the note content so the project and issue the note was created for can be
+     * identified on subsequent analyses without having to parse the rendered content of the note.
+     */
+    public static String appendIssueMarker(String noteContent, String projectKey, String issueKey) {
+        return noteContent + System.lineSeparator() + ISSUE_MARKER_PREFIX + projectKey + " " + issueKey + ISSUE_MARKER_SUFFIX;
+    }
+
+    public static Optional<ProjectIssueIdentifier> parseIssueMarker(String noteContent) {
+        if (null == noteContent) {
+            return Optional.empty();
+        }
+
+        int markerStart = noteContent.lastIndexOf(ISSUE_MARKER_PREFIX);
+        if (markerStart < 0) {
+            return Optional.empty();
+        }
+
+        int projectKeyStart = markerStart + ISSUE_MARKER_PREFIX.length();
+        int markerEnd = noteContent.indexOf(ISSUE_MARKER_SUFFIX, projectKeyStart);
+        int separator = noteContent.indexOf(' ', projectKeyStart);
+        if (markerEnd < 0 || separator < 0 || separator >= markerEnd) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new ProjectIssueIdentifier(noteContent.substring(projectKeyStart, separator),
+                noteContent.substring(separator + 1, markerEnd)));
+    }
+
     public Optional<ProjectIssueIdentifier> parseIssueIdFromUrl(String issueUrl) {
         URI url = URI.create(issueUrl);
         List<NameValuePair> parameters = URLEncodedUtils.parse(url, StandardCharsets.UTF_8);
@@ -138,7 +174,7 @@ public class AnalysisDetails {
         String projectId = optionalProjectId.get();
 
         if (url.getPath().endsWith("/dashboard")) {
-            return Optional.of(new ProjectIssueIdentifier(projectId, "decorator-summary-comment"));
+            return Optional.of(new ProjectIssueIdentifier(projectId, SUMMARY_COMMENT_ISSUE_KEY));
         } else if (url.getPath().endsWith("security_hotspots")) {
             return parameters.stream()
                     .filter(parameter -> "hotspots".equals(parameter.getName()))
@@ -166,6 +202,10 @@ public class AnalysisDetails {
         return Optional.ofNullable(scannerContext.getProperties().get(propertyName));
     }
 
+    public Optional<String> getConfigurationProperty(String propertyName) {
+        return configuration.get(propertyName);
+    }
+
     public String createAnalysisSummary(FormatterFactory formatterFactory) {
 
         BigDecimal newCoverage = getNewCoverage().orElse(null);
@@ -263,6 +303,23 @@ public class AnalysisDetails {
         return formatterFactory.documentFormatter().format(document, formatterFactory);
     }
 
+    public String createAnalysisFileIssueSummary(String filePath, List<PostAnalysisIssueVisitor.ComponentIssue> componentIssues, FormatterFactory formatterFactory) {
+        ListItem[] issueItems = componentIssues.stream()
+                .map(PostAnalysisIssueVisitor.ComponentIssue::getIssue)
+                .sorted(Comparator.comparing(PostAnalysisIssueVisitor.LightIssue::getLine, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .map(issue -> new ListItem(new Text(String.format("**Line %s:** %s %s - %s ", issue.getLine(), issue.severity(), issue.type().name(), issue.getMessage())),
+                        new Link(getIssueUrl(issue), new Text("View in SonarQube"))))
+                .toArray(ListItem[]::new);
+
+        Document document = new Document(
+                new Paragraph(new Text(String.format("**%s in** `%s`", pluralOf(componentIssues.size(), "Issue", "Issues"), filePath))),
+                new com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.List(
+                        com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.List.Style.BULLET, issueItems),
+                new Paragraph(new Text(String.format("**Project ID:** %s", project.getKey())))
+        );
+        return formatterFactory.documentFormatter().format(document, formatterFactory);
+    }
+
     public String getBaseImageUrl() {
         return configuration.get(CommunityBranchPlugin.IMAGE_URL_BASE)
                 .orElse(publicRootURL + "/static/communityBranchPlugin")
@@ -338,6 +395,10 @@ public class AnalysisDetails {
         return project.getName();
     }
 
+    public List<QualityGate.Condition> getQualityGateConditions() {
+        return new ArrayList<>(qualityGate.getConditions());
+    }
+
     public List<QualityGate.Condition> findFailedConditions() {
         return qualityGate.getConditions().stream().filter(c -> c.getStatus() == QualityGate.EvaluationStatus.ERROR)
                 .collect(Collectors.toList());
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An index of the lines added or modified by a pull request, built from the diff the ALM reports for it. Each file's
+ * changed lines are held as ordered, non-overlapping intervals so checking whether an issue line falls inside the
+ * change is a single lookup rather than a walk over the file's SCM history.
+ */
+public final class ChangedLines {
+
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -\\d+(?:,\\d+)? \\+(\\d+)(?:,\\d+)? @@.*");
+
+    private final Map<String, NavigableMap<Integer, Integer>> changedIntervals;
+    private final Set<String> unknownFiles;
+
+    private ChangedLines(Builder builder) {
+        super();
+        this.changedIntervals = builder.changedIntervals;
+        this.unknownFiles = builder.unknownFiles;
+    }
+
+    /**
+     * Checks whether the given line of a file was added or modified by the pull request.
+     *
+     * @param filePath the path of the file, relative to the repository root
+     * @param line the 1-based line number in the new version of the file
+     * @return whether the line is part of the change, or an empty Optional if the diff for the file could not be
+     * retrieved and the caller has to determine this some other way
+     */
+    public Optional<Boolean> isChanged(String filePath, int line) {
+        if (unknownFiles.contains(filePath)) {
+            return Optional.empty();
+        }
+        return Optional.of(Optional.ofNullable(changedIntervals.get(filePath))
+                .map(intervals -> intervals.floorEntry(line))
+                .map(interval -> line <= interval.getValue())
+                .orElse(false));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+
+        private final Map<String, NavigableMap<Integer, Integer>> changedIntervals = new HashMap<>();
+        private final Set<String> unknownFiles = new HashSet<>();
+
+        private Builder() {
+            super();
+        }
+
+        /**
+         * Records the lines added in a file based on its unified diff. Only lines with a <code>+</code> marker are
+         * recorded since context lines have not been changed by the pull request.
+         */
+        public Builder withUnifiedDiff(String filePath, String diff) {
+            NavigableMap<Integer, Integer> intervals = changedIntervals.computeIfAbsent(filePath, k -> new TreeMap<>());
+            int newLine = -1;
+            for (String diffLine : diff.split("\r?\n")) {
+                Matcher hunkHeader = HUNK_HEADER.matcher(diffLine);
+                if (hunkHeader.matches()) {
+                    newLine = Integer.parseInt(hunkHeader.group(1));
+                } else if (newLine < 0 || diffLine.startsWith("-") || diffLine.startsWith("\\")) {
+                    continue;
+                } else if (diffLine.startsWith("+")) {
+                    addLine(intervals, newLine);
+                    newLine++;
+                } else {
+                    newLine++;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Marks a file as changed without its diff being available, such as where the ALM has truncated the diff
+         * for a large file, so lookups for the file are left to the caller.
+         */
+        public Builder withUnknownFile(String filePath) {
+            unknownFiles.add(filePath);
+            return this;
+        }
+
+        public ChangedLines build() {
+            return new ChangedLines(this);
+        }
+
+        private static void addLine(NavigableMap<Integer, Integer> intervals, int line) {
+            Map.Entry<Integer, Integer> previous = intervals.floorEntry(line);
+            if (null != previous && previous.getValue() >= line - 1) {
+                intervals.put(previous.getKey(), Math.max(previous.getValue(), line));
+            } else {
+                intervals.put(line, line);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import com.github.mc1arke.sonarqube.plugin.CommunityBranchPlugin;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.ce.posttask.QualityGate;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.ce.task.projectanalysis.measure.Measure;
+import org.sonar.db.alm.setting.AlmSettingDto;
+import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers a fingerprint of the last decoration completed for each Pull Request, so that an analysis
+ * re-submitted for the same commit with the same outcome does not repeat all the calls to the ALM.
+ * The fingerprint covers everything that is rendered into the decoration: the issues, the Quality Gate
+ * conditions, the measures shown in the summary, and the settings that change how the decoration is posted.
+ * The fingerprints are held in memory only, meaning a Compute Engine restart causes at most one
+ * redundant decoration for each Pull Request.
+ */
+@ComputeEngineSide
+public class DecorationFingerprintRepository {
+
+    private static final int MAX_ENTRIES = 1000;
+    private static final char SEPARATOR = '\u0000';
+
+    private static final List<String> DECORATION_PROPERTIES = Arrays.asList(CommunityBranchPlugin.IMAGE_URL_BASE,
+            CommunityBranchPlugin.PR_SUMMARY_NOTE_EDIT, CommunityBranchPlugin.PR_GITLAB_DRAFT_NOTES,
+            CommunityBranchPlugin.PR_GITHUB_REVIEW_COMMENTS, CommunityBranchPlugin.PR_COMMENT_AGGREGATION,
+            CommunityBranchPlugin.PR_COMMENT_LIMIT, CommunityBranchPlugin.PR_SUMMARY_ONLY_THRESHOLD);
+
+    private final Map<String, Entry> entries;
+
+    public DecorationFingerprintRepository() {
+        this(MAX_ENTRIES);
+    }
+
+    DecorationFingerprintRepository(int maxEntries) {
+        super();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized Optional<DecorationResult> findMatchingDecoration(String projectUuid, String pullRequestKey,
+                                                                          String fingerprint) {
+        return Optional.ofNullable(entries.get(createKey(projectUuid, pullRequestKey)))
+                .filter(entry -> entry.fingerprint.equals(fingerprint))
+                .map(entry -> entry.decorationResult);
+    }
+
+    public synchronized void recordDecoration(String projectUuid, String pullRequestKey, String fingerprint,
+                                              DecorationResult decorationResult) {
+        entries.put(createKey(projectUuid, pullRequestKey), new Entry(fingerprint, decorationResult));
+    }
+
+    public static String createFingerprint(AnalysisDetails analysisDetails, AlmSettingDto almSettingDto,
+                                           ProjectAlmSettingDto projectAlmSettingDto,
+                                           PullRequestBuildStatusDecorator decorator) {
+        StringBuilder content = new StringBuilder()
+                .append(analysisDetails.getCommitSha()).append(SEPARATOR)
+                .append(analysisDetails.getQualityGateStatus()).append(SEPARATOR)
+                .append(almSettingDto.getUuid()).append(SEPARATOR)
+                .append(projectAlmSettingDto.getAlmRepo()).append(SEPARATOR)
+                .append(projectAlmSettingDto.getAlmSlug()).append(SEPARATOR)
+                .append(projectAlmSettingDto.getSummaryCommentEnabled()).append(SEPARATOR)
+                .append(decorator.getClass().getName()).append(SEPARATOR);
+
+        for (String property : DECORATION_PROPERTIES) {
+            content.append(property).append('=').append(analysisDetails.getConfigurationProperty(property).orElse(null))
+                    .append(SEPARATOR);
+        }
+
+        List<QualityGate.Condition> conditions = analysisDetails.getQualityGateConditions().stream()
+                .sorted(Comparator.comparing(QualityGate.Condition::getMetricKey))
+                .collect(Collectors.toList());
+        for (QualityGate.Condition condition : conditions) {
+            content.append(condition.getMetricKey()).append(SEPARATOR)
+                    .append(condition.getStatus()).append(SEPARATOR)
+                    .append(condition.getOperator()).append(SEPARATOR)
+                    .append(condition.getErrorThreshold()).append(SEPARATOR)
+                    .append(QualityGate.EvaluationStatus.NO_VALUE == condition.getStatus() ? null : condition.getValue())
+                    .append(SEPARATOR);
+        }
+
+        for (String metricKey : Arrays.asList(CoreMetrics.COVERAGE_KEY, CoreMetrics.DUPLICATED_LINES_DENSITY_KEY)) {
+            content.append(metricKey).append('=')
+                    .append(analysisDetails.findMeasure(metricKey).map(Measure::getDoubleValue).orElse(null))
+                    .append(SEPARATOR);
+        }
+
+        List<PostAnalysisIssueVisitor.LightIssue> issues = analysisDetails.getPostAnalysisIssueVisitor().getIssues().stream()
+                .map(PostAnalysisIssueVisitor.ComponentIssue::getIssue)
+                .sorted(Comparator.comparing(PostAnalysisIssueVisitor.LightIssue::key))
+                .collect(Collectors.toList());
+        for (PostAnalysisIssueVisitor.LightIssue issue : issues) {
+            content.append(issue.key()).append(SEPARATOR)
+                    .append(issue.status()).append(SEPARATOR)
+                    .append(issue.resolution()).append(SEPARATOR)
+                    .append(issue.severity()).append(SEPARATOR)
+                    .append(issue.type()).append(SEPARATOR)
+                    .append(issue.getLine()).append(SEPARATOR)
+                    .append(issue.getMessage()).append(SEPARATOR);
+        }
+
+        return sha256(content.toString());
+    }
+
+    private static String sha256(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Could not create decoration fingerprint", ex);
+        }
+    }
+
+    private static String createKey(String projectUuid, String pullRequestKey) {
+        return projectUuid + SEPARATOR + pullRequestKey;
+    }
+
+    private static final class Entry {
+
+        private final String fingerprint;
+        private final DecorationResult decorationResult;
+
+        private Entry(String fingerprint, DecorationResult decorationResult) {
+            this.fingerprint = fingerprint;
+            this.decorationResult = decorationResult;
+        }
+    }
+}
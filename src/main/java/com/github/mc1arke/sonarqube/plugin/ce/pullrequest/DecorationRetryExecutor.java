@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import com.github.mc1arke.sonarqube.plugin.CommunityBranchPlugin;
+import com.github.mc1arke.sonarqube.plugin.InvalidConfigurationException;
+import com.github.mc1arke.sonarqube.plugin.almclient.UnexpectedResponseException;
+import com.github.mc1arke.sonarqube.plugin.almclient.bitbucket.BitbucketCloudException;
+import com.github.mc1arke.sonarqube.plugin.almclient.bitbucket.BitbucketException;
+import io.aexp.nodes.graphql.exceptions.GraphQLException;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Re-runs a decoration that failed for a transient reason - an I/O failure, a timeout, or the ALM responding
+ * with a server error or rate limit - with an exponential backoff between attempts. Any other failure, such as
+ * invalid configuration or a rejected request, would fail identically on every attempt so is thrown immediately.
+ * Each attempt runs the whole decoration again: Gitlab, Bitbucket and Azure Devops decorators locate the comments
+ * they previously posted through the issue markers, but the Github decorator creates a new check run and summary
+ * comment on every attempt.
+ */
+@ComputeEngineSide
+public class DecorationRetryExecutor {
+
+    private static final Logger LOGGER = Loggers.get(DecorationRetryExecutor.class);
+
+    private static final int DEFAULT_ATTEMPTS = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 2000;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final Configuration configuration;
+    private final long initialBackoffMillis;
+
+    public DecorationRetryExecutor(Configuration configuration) {
+        this(configuration, INITIAL_BACKOFF_MILLIS);
+    }
+
+    DecorationRetryExecutor(Configuration configuration, long initialBackoffMillis) {
+        super();
+        this.configuration = configuration;
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    public <T> T execute(Supplier<T> decoration) {
+        int attempts = Math.max(1, configuration.getInt(CommunityBranchPlugin.PR_DECORATION_ATTEMPTS).orElse(DEFAULT_ATTEMPTS));
+        long backoffMillis = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return decoration.get();
+            } catch (RuntimeException ex) {
+                if (attempt >= attempts || !isTransient(ex)) {
+                    throw ex;
+                }
+                LOGGER.warn(String.format("Pull Request decoration attempt %d of %d failed. Retrying in %dms", attempt, attempts, backoffMillis), ex);
+                sleep(backoffMillis);
+                backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; null != cause; cause = cause.getCause()) {
+            if (cause instanceof InvalidConfigurationException) {
+                return false;
+            }
+            if (cause instanceof IOException || cause instanceof TimeoutException) {
+                return true;
+            }
+            OptionalInt statusCode = getStatusCode(cause);
+            if (statusCode.isPresent()) {
+                return statusCode.getAsInt() >= 500 || statusCode.getAsInt() == TOO_MANY_REQUESTS;
+            }
+        }
+        return false;
+    }
+
+    private static OptionalInt getStatusCode(Throwable failure) {
+        if (failure instanceof UnexpectedResponseException) {
+            return OptionalInt.of(((UnexpectedResponseException) failure).getStatusCode());
+        } else if (failure instanceof BitbucketException) {
+            return OptionalInt.of(((BitbucketException) failure).getCode());
+        } else if (failure instanceof BitbucketCloudException) {
+            return OptionalInt.of(((BitbucketCloudException) failure).getCode());
+        } else if (failure instanceof GraphQLException) {
+            return Optional.ofNullable(((GraphQLException) failure).getStatus())
+                    .filter(status -> status.matches("\\d{3}"))
+                    .map(status -> OptionalInt.of(Integer.parseInt(status)))
+                    .orElse(OptionalInt.empty());
+        }
+        return OptionalInt.empty();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst waiting to retry Pull Request decoration", ex);
+        }
+    }
+}
@@ -18,13 +18,22 @@
  */
 package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
 
+import com.github.mc1arke.sonarqube.plugin.CommunityBranchPlugin;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.Document;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.FormatterFactory;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.Heading;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.ListItem;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.MarkdownFormatterFactory;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.Text;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.platform.Server;
+import org.sonar.ce.task.projectanalysis.component.Component;
 import org.sonar.ce.task.projectanalysis.scm.Changeset;
+import org.sonar.ce.task.projectanalysis.scm.ScmInfo;
 import org.sonar.ce.task.projectanalysis.scm.ScmInfoRepository;
 import org.sonar.db.alm.setting.AlmSettingDto;
 import org.sonar.db.alm.setting.ProjectAlmSettingDto;
@@ -33,11 +42,17 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public abstract class DiscussionAwarePullRequestDecorator<C, P, U, D, N> implements PullRequestBuildStatusDecorator {
 
@@ -49,6 +64,9 @@ public abstract class DiscussionAwarePullRequestDecorator<C, P, U, D, N> impleme
             Issue.STATUSES.stream().filter(s -> !Issue.STATUS_CLOSED.equals(s) && !Issue.STATUS_RESOLVED.equals(s))
                     .collect(Collectors.toList());
 
+    private static final String FILE_AGGREGATION = "FILE";
+    private static final String FILE_NOTE_ISSUE_KEY_PREFIX = "file:";
+
     private static final String VIEW_IN_SONARQUBE_LABEL = "View in SonarQube";
     private static final Pattern NOTE_MARKDOWN_VIEW_LINK_PATTERN = Pattern.compile("^\\[" + VIEW_IN_SONARQUBE_LABEL + "]\\((.*?)\\)$");
 
@@ -72,41 +90,113 @@ public abstract class DiscussionAwarePullRequestDecorator<C, P, U, D, N> impleme
                 .filter(i -> OPEN_ISSUE_STATUSES.contains(i.getIssue().getStatus()))
                 .collect(Collectors.toList());
 
+        List<D> discussions = getDiscussions(client, pullRequest);
+
+        Optional<Pair<D, N>> existingSummaryNote = analysis.getConfigurationProperty(CommunityBranchPlugin.PR_SUMMARY_NOTE_EDIT)
+                .map(Boolean::parseBoolean)
+                .filter(Boolean::booleanValue)
+                .flatMap(enabled -> findSummaryNote(client, discussions, user, analysis));
+
+        List<String> decorationNotes = new ArrayList<>();
+        Optional<Integer> summaryOnlyThreshold = getIntegerConfigurationProperty(analysis, CommunityBranchPlugin.PR_SUMMARY_ONLY_THRESHOLD);
+        if (summaryOnlyThreshold.filter(threshold -> openSonarqubeIssues.size() > threshold).isPresent()) {
+            decorationNotes.add(String.format("Issue comments were not updated as the %d open issues in this analysis exceed the limit of %d.",
+                    openSonarqubeIssues.size(), summaryOnlyThreshold.get()));
+        } else {
+            decorateIssues(client, pullRequest, user, discussions, existingSummaryNote, openSonarqubeIssues, analysis, decorationNotes);
+        }
+
+        if (existingSummaryNote.isPresent()) {
+            updateSummaryNote(client, pullRequest, existingSummaryNote.get().getLeft(), existingSummaryNote.get().getRight(), analysis, decorationNotes);
+        } else {
+            submitSummaryNote(client, pullRequest, analysis, decorationNotes);
+        }
+        submitPipelineStatus(client, pullRequest, analysis, server.getPublicRootUrl());
+
+        DecorationResult.Builder builder = DecorationResult.builder();
+        createFrontEndUrl(pullRequest, analysis).ifPresent(builder::withPullRequestUrl);
+        return builder.build();
+    }
+
+    @Override
+    public DecorationResult decorateQualityGateStatusOnly(AnalysisDetails analysis, AlmSettingDto almSettingDto,
+                                                          ProjectAlmSettingDto projectAlmSettingDto) {
+        C client = createClient(almSettingDto, projectAlmSettingDto);
+
+        P pullRequest = getPullRequest(client, almSettingDto, projectAlmSettingDto, analysis);
+        submitPipelineStatus(client, pullRequest, analysis, server.getPublicRootUrl());
+
+        DecorationResult.Builder builder = DecorationResult.builder();
+        createFrontEndUrl(pullRequest, analysis).ifPresent(builder::withPullRequestUrl);
+        return builder.build();
+    }
+
+    private void decorateIssues(C client, P pullRequest, U user, List<D> discussions, Optional<Pair<D, N>> existingSummaryNote,
+                                List<PostAnalysisIssueVisitor.ComponentIssue> openSonarqubeIssues, AnalysisDetails analysis,
+                                List<String> decorationNotes) {
         List<Triple<D, N, Optional<AnalysisDetails.ProjectIssueIdentifier>>> currentProjectSonarqueComments = findOpenSonarqubeComments(client,
-                pullRequest,
+                discussions,
                 user,
                 analysis)
                 .stream()
                 .filter(comment -> isCommentFromCurrentProject(comment, analysis.getAnalysisProjectKey()))
+                .filter(comment -> existingSummaryNote.map(summaryNote -> summaryNote.getLeft() != comment.getLeft()).orElse(true))
                 .collect(Collectors.toList());
 
+        boolean aggregateByFile = analysis.getConfigurationProperty(CommunityBranchPlugin.PR_COMMENT_AGGREGATION)
+                .filter(FILE_AGGREGATION::equalsIgnoreCase)
+                .isPresent();
+
+        Map<String, Pair<D, N>> fileComments = new LinkedHashMap<>();
+        List<Triple<D, N, Optional<AnalysisDetails.ProjectIssueIdentifier>>> issueComments = new ArrayList<>();
+        for (Triple<D, N, Optional<AnalysisDetails.ProjectIssueIdentifier>> comment : currentProjectSonarqueComments) {
+            Optional<String> filePath = comment.getRight()
+                    .map(AnalysisDetails.ProjectIssueIdentifier::getIssueKey)
+                    .filter(issueKey -> issueKey.startsWith(FILE_NOTE_ISSUE_KEY_PREFIX))
+                    .map(issueKey -> issueKey.substring(FILE_NOTE_ISSUE_KEY_PREFIX.length()));
+            if (aggregateByFile && filePath.isPresent() && !fileComments.containsKey(filePath.get())) {
+                fileComments.put(filePath.get(), new ImmutablePair<>(comment.getLeft(), comment.getMiddle()));
+            } else {
+                issueComments.add(comment);
+            }
+        }
+
         List<String> commentKeysForOpenComments = closeOldDiscussionsAndExtractRemainingKeys(client,
                 user,
-                currentProjectSonarqueComments,
+                issueComments,
                 openSonarqubeIssues,
                 pullRequest);
 
-        List<String> commitIds = getCommitIdsForPullRequest(client, pullRequest);
+        Optional<ChangedLines> changedLines = getChangedLines(client, pullRequest);
+        Supplier<List<String>> commitIds = new MemoizedSupplier<>(() -> getCommitIdsForPullRequest(client, pullRequest));
+        Map<Component, Optional<ScmInfo>> scmInfoByComponent = new HashMap<>();
         List<Pair<PostAnalysisIssueVisitor.ComponentIssue, String>> uncommentedIssues = findIssuesWithoutComments(openSonarqubeIssues,
                 commentKeysForOpenComments)
                 .stream()
-                .map(issue -> loadScmPathsForIssues(issue, analysis))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .filter(issue -> isIssueFromCommitInCurrentRequest(issue.getLeft(), commitIds, scmInfoRepository))
+                .collect(Collectors.groupingBy(PostAnalysisIssueVisitor.ComponentIssue::getComponent, LinkedHashMap::new, Collectors.toList()))
+                .values()
+                .stream()
+                .flatMap(componentIssues -> loadScmPathsForIssues(componentIssues, analysis))
+                .filter(issue -> changedLines.flatMap(index -> index.isChanged(issue.getRight(), issue.getLeft().getIssue().getLine()))
+                        .orElseGet(() -> isIssueFromCommitInCurrentRequest(issue.getLeft(), commitIds, scmInfoByComponent)))
                 .collect(Collectors.toList());
 
-        uncommentedIssues.forEach(issue -> submitCommitNoteForIssue(client,
-                pullRequest,
-                issue.getLeft(),
-                issue.getRight(),
-                analysis));
-        submitSummaryNote(client, pullRequest, analysis);
-        submitPipelineStatus(client, pullRequest, analysis, server.getPublicRootUrl());
+        Optional<Integer> commentLimit = getIntegerConfigurationProperty(analysis, CommunityBranchPlugin.PR_COMMENT_LIMIT);
+        if (aggregateByFile) {
+            submitFileNotesForIssues(client, pullRequest, user, fileComments, uncommentedIssues, analysis, commentLimit, decorationNotes);
+            return;
+        }
 
-        DecorationResult.Builder builder = DecorationResult.builder();
-        createFrontEndUrl(pullRequest, analysis).ifPresent(builder::withPullRequestUrl);
-        return builder.build();
+        if (commentLimit.filter(limit -> uncommentedIssues.size() > limit).isPresent()) {
+            RankedSelection<Pair<PostAnalysisIssueVisitor.ComponentIssue, String>> selection = new RankedSelection<>(commentLimit.get(),
+                    RankedSelection.SEVERITY_RANK_COUNT, issue -> RankedSelection.severityRank(issue.getLeft()));
+            uncommentedIssues.forEach(selection::offer);
+            decorationNotes.add(String.format("Comments were only added for the %d most severe of the %d new issues in this analysis.",
+                    commentLimit.get(), uncommentedIssues.size()));
+            submitCommitNotesForIssues(client, pullRequest, selection.getSelected(), analysis);
+        } else {
+            submitCommitNotesForIssues(client, pullRequest, uncommentedIssues, analysis);
+        }
     }
 
     protected abstract C createClient(AlmSettingDto almSettingDto, ProjectAlmSettingDto projectAlmSettingDto);
@@ -119,11 +209,41 @@ public abstract class DiscussionAwarePullRequestDecorator<C, P, U, D, N> impleme
 
     protected abstract List<String> getCommitIdsForPullRequest(C client, P pullRequest);
 
+    /**
+     * Retrieves the lines changed by the pull request so issues can be matched against the diff directly. Where no
+     * index is available, issues are matched against the pull request's commits using the SCM details of each file.
+     */
+    protected Optional<ChangedLines> getChangedLines(C client, P pullRequest) {
+        return Optional.empty();
+    }
+
     protected abstract void submitPipelineStatus(C client, P pullRequest, AnalysisDetails analysis, String sonarqubeRootUrl);
 
+    /**
+     * Submits a comment for each of the issues that has been raised on a line changed by the pull request. Submits
+     * each issue individually by default, but can be overridden where the ALM allows comments to be batched.
+     */
+    protected void submitCommitNotesForIssues(C client, P pullRequest, List<Pair<PostAnalysisIssueVisitor.ComponentIssue, String>> issues,
+                                              AnalysisDetails analysis) {
+        issues.forEach(issue -> submitCommitNoteForIssue(client,
+                pullRequest,
+                issue.getLeft(),
+                issue.getRight(),
+                analysis));
+    }
+
     protected abstract void submitCommitNoteForIssue(C client, P pullRequest, PostAnalysisIssueVisitor.ComponentIssue issue, String filePath,
                                                      AnalysisDetails analysis);
 
+    /**
+     * Submits a single comment containing the content generated for all the new issues in a file, positioned against
+     * the first of those issues in the file.
+     */
+    protected abstract void submitCommitNoteForFile(C client, P pullRequest, PostAnalysisIssueVisitor.ComponentIssue issue, String filePath,
+                                                    String content);
+
+    protected abstract void updateNote(C client, P pullRequest, D discussion, N note, String content);
+
     protected abstract String getNoteContent(C client, N note);
 
     protected abstract List<N> getNotesForDiscussion(C client, D discussion);
@@ -136,12 +256,92 @@ public abstract class DiscussionAwarePullRequestDecorator<C, P, U, D, N> impleme
 
     protected abstract void resolveDiscussion(C client, D discussion, P pullRequest);
 
-    protected abstract void submitSummaryNote(C client, P pullRequest, AnalysisDetails analysis);
+    protected abstract void submitSummaryNote(C client, P pullRequest, AnalysisDetails analysis, List<String> decorationNotes);
+
+    protected abstract void updateSummaryNote(C client, P pullRequest, D discussion, N note, AnalysisDetails analysis, List<String> decorationNotes);
+
+    /**
+     * Creates the content of the summary note, listing any notes about issues that were left out of the decoration
+     * under the analysis summary.
+     */
+    protected static String createSummaryNoteContent(AnalysisDetails analysis, FormatterFactory formatterFactory, List<String> decorationNotes) {
+        String summary = analysis.createAnalysisSummary(formatterFactory);
+        if (!decorationNotes.isEmpty()) {
+            Document document = new Document(new Heading(2, new Text("Decoration Notes")),
+                    new com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.List(
+                            com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.List.Style.BULLET,
+                            decorationNotes.stream().map(note -> new ListItem(new Text(note))).toArray(ListItem[]::new)));
+            summary = summary + System.lineSeparator() + formatterFactory.documentFormatter().format(document, formatterFactory);
+        }
+        return AnalysisDetails.appendIssueMarker(summary, analysis.getAnalysisProjectKey(), AnalysisDetails.SUMMARY_COMMENT_ISSUE_KEY);
+    }
 
     protected abstract List<D> getDiscussions(C client, P pullRequest);
 
     protected abstract boolean isNoteFromCurrentUser(N note, U user);
 
+    /**
+     * Reconciles the per-file comments with the new issues in each file: comments for files without any remaining
+     * issues are resolved, comments with an outdated list of issues are updated in place, and a new comment is
+     * submitted for each remaining file. Where there are more remaining files than the comment limit, only the files
+     * containing the most severe issues are commented on.
+     */
+    private void submitFileNotesForIssues(C client, P pullRequest, U user, Map<String, Pair<D, N>> fileComments,
+                                          List<Pair<PostAnalysisIssueVisitor.ComponentIssue, String>> issues, AnalysisDetails analysis,
+                                          Optional<Integer> commentLimit, List<String> decorationNotes) {
+        Map<String, List<PostAnalysisIssueVisitor.ComponentIssue>> issuesByFile = issues.stream()
+                .collect(Collectors.groupingBy(Pair::getRight, LinkedHashMap::new, Collectors.mapping(Pair::getLeft, Collectors.toList())));
+
+        for (Map.Entry<String, Pair<D, N>> fileComment : fileComments.entrySet()) {
+            D discussion = fileComment.getValue().getLeft();
+            N note = fileComment.getValue().getRight();
+            List<PostAnalysisIssueVisitor.ComponentIssue> fileIssues = issuesByFile.remove(fileComment.getKey());
+            if (null == fileIssues) {
+                resolveOrPlaceFinalCommentOnDiscussion(client, user, discussion, pullRequest);
+                continue;
+            }
+
+            String content = createFileNoteContent(fileComment.getKey(), fileIssues, analysis);
+            if (!normaliseNoteContent(content).equals(normaliseNoteContent(getNoteContent(client, note)))) {
+                updateNote(client, pullRequest, discussion, note, content);
+            }
+        }
+
+        List<Map.Entry<String, List<PostAnalysisIssueVisitor.ComponentIssue>>> newFileIssues = new ArrayList<>(issuesByFile.entrySet());
+        if (commentLimit.filter(limit -> issuesByFile.size() > limit).isPresent()) {
+            RankedSelection<Map.Entry<String, List<PostAnalysisIssueVisitor.ComponentIssue>>> selection = new RankedSelection<>(commentLimit.get(),
+                    RankedSelection.SEVERITY_RANK_COUNT, fileIssues -> fileIssues.getValue().stream()
+                            .mapToInt(RankedSelection::severityRank)
+                            .min()
+                            .orElse(RankedSelection.SEVERITY_RANK_COUNT - 1));
+            newFileIssues.forEach(selection::offer);
+            decorationNotes.add(String.format("Comments were only added for the %d most severely affected of the %d files with new issues in this analysis.",
+                    commentLimit.get(), newFileIssues.size()));
+            newFileIssues = selection.getSelected();
+        }
+
+        newFileIssues.forEach(fileIssues -> submitCommitNoteForFile(client,
+                pullRequest,
+                fileIssues.getValue().stream().min(Comparator.comparing(issue -> issue.getIssue().getLine())).orElseThrow(),
+                fileIssues.getKey(),
+                createFileNoteContent(fileIssues.getKey(), fileIssues.getValue(), analysis)));
+    }
+
+    private static String createFileNoteContent(String filePath, List<PostAnalysisIssueVisitor.ComponentIssue> issues, AnalysisDetails analysis) {
+        return AnalysisDetails.appendIssueMarker(analysis.createAnalysisFileIssueSummary(filePath, issues, new MarkdownFormatterFactory()),
+                analysis.getAnalysisProjectKey(), FILE_NOTE_ISSUE_KEY_PREFIX + filePath);
+    }
+
+    private static Optional<Integer> getIntegerConfigurationProperty(AnalysisDetails analysis, String propertyName) {
+        return analysis.getConfigurationProperty(propertyName)
+                .filter(value -> !value.isBlank())
+                .map(Integer::parseInt);
+    }
+
+    private static String normaliseNoteContent(String content) {
+        return null == content ? "" : content.replace("\r\n", "\n").trim();
+    }
+
     private static List<PostAnalysisIssueVisitor.ComponentIssue> findIssuesWithoutComments(List<PostAnalysisIssueVisitor.ComponentIssue> openSonarqubeIssues,
                                                                                            List<String> openGitlabIssueIdentifiers) {
         return openSonarqubeIssues.stream()
@@ -150,31 +350,52 @@ public abstract class DiscussionAwarePullRequestDecorator<C, P, U, D, N> impleme
                 .collect(Collectors.toList());
     }
 
-    private static Optional<Pair<PostAnalysisIssueVisitor.ComponentIssue, String>> loadScmPathsForIssues(PostAnalysisIssueVisitor.ComponentIssue componentIssue,
-                                                                                                         AnalysisDetails analysis) {
-        return Optional.of(componentIssue)
-                .map(issue -> new ImmutablePair<>(issue, analysis.getSCMPathForIssue(issue)))
-                .filter(pair -> pair.getRight().isPresent())
-                .map(pair -> new ImmutablePair<>(pair.getLeft(), pair.getRight().get()));
+    /**
+     * Resolves the SCM path for a group of issues raised against the same component. The path is a property of the
+     * component rather than the issue, so it's only read from the report attributes once for the whole group.
+     */
+    private static Stream<Pair<PostAnalysisIssueVisitor.ComponentIssue, String>> loadScmPathsForIssues(List<PostAnalysisIssueVisitor.ComponentIssue> componentIssues,
+                                                                                                       AnalysisDetails analysis) {
+        return analysis.getSCMPathForIssue(componentIssues.get(0))
+                .map(scmPath -> componentIssues.stream()
+                        .<Pair<PostAnalysisIssueVisitor.ComponentIssue, String>>map(issue -> new ImmutablePair<>(issue, scmPath)))
+                .orElseGet(Stream::empty);
     }
 
-    private static boolean isIssueFromCommitInCurrentRequest(PostAnalysisIssueVisitor.ComponentIssue componentIssue, List<String> commitIds, ScmInfoRepository scmInfoRepository) {
+    private boolean isIssueFromCommitInCurrentRequest(PostAnalysisIssueVisitor.ComponentIssue componentIssue, Supplier<List<String>> commitIds,
+                                                      Map<Component, Optional<ScmInfo>> scmInfoByComponent) {
         return Optional.of(componentIssue)
-                .map(issue -> new ImmutablePair<>(issue.getIssue(), scmInfoRepository.getScmInfo(issue.getComponent())))
+                .map(issue -> new ImmutablePair<>(issue.getIssue(), scmInfoByComponent.computeIfAbsent(issue.getComponent(), scmInfoRepository::getScmInfo)))
                 .filter(issuePair -> issuePair.getRight().isPresent())
                 .map(issuePair -> new ImmutablePair<>(issuePair.getLeft(), issuePair.getRight().get()))
                 .filter(issuePair -> null != issuePair.getLeft().getLine())
                 .filter(issuePair -> issuePair.getRight().hasChangesetForLine(issuePair.getLeft().getLine()))
                 .map(issuePair -> issuePair.getRight().getChangesetForLine(issuePair.getLeft().getLine()))
                 .map(Changeset::getRevision)
-                .filter(commitIds::contains)
+                .filter(revision -> commitIds.get().contains(revision))
                 .isPresent();
     }
 
-    private List<Triple<D, N, Optional<AnalysisDetails.ProjectIssueIdentifier>>> findOpenSonarqubeComments(C client, P pullRequest,
+    private Optional<Pair<D, N>> findSummaryNote(C client, List<D> discussions, U currentUser, AnalysisDetails analysisDetails) {
+        return discussions.stream()
+                .filter(this::isEditable)
+                .map(discussion -> getNotesForDiscussion(client, discussion).stream()
+                        .findFirst()
+                        .filter(note -> isNoteFromCurrentUser(note, currentUser))
+                        .filter(note -> parseIssueDetails(client, note, analysisDetails)
+                                .filter(identifier -> analysisDetails.getAnalysisProjectKey().equals(identifier.getProjectKey()))
+                                .filter(identifier -> AnalysisDetails.SUMMARY_COMMENT_ISSUE_KEY.equals(identifier.getIssueKey()))
+                                .isPresent())
+                        .<Pair<D, N>>map(note -> new ImmutablePair<>(discussion, note)))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .reduce((first, second) -> second);
+    }
+
+    private List<Triple<D, N, Optional<AnalysisDetails.ProjectIssueIdentifier>>> findOpenSonarqubeComments(C client, List<D> discussions,
                                                                            U currentUser,
                                                                            AnalysisDetails analysisDetails) {
-        return getDiscussions(client, pullRequest).stream()
+        return discussions.stream()
                 .map(discussion -> {
                     List<N> commentsForDiscussion = getNotesForDiscussion(client, discussion);
                     return commentsForDiscussion.stream()
@@ -233,7 +454,15 @@ public abstract class DiscussionAwarePullRequestDecorator<C, P, U, D, N> impleme
 
     }
 
+    protected boolean isEditable(D discussion) {
+        return true;
+    }
+
     protected Optional<AnalysisDetails.ProjectIssueIdentifier> parseIssueDetails(C client, N note, AnalysisDetails analysisDetails) {
+        Optional<AnalysisDetails.ProjectIssueIdentifier> issueIdentifier = AnalysisDetails.parseIssueMarker(getNoteContent(client, note));
+        if (issueIdentifier.isPresent()) {
+            return issueIdentifier;
+        }
         return parseIssueDetails(client, note, analysisDetails, VIEW_IN_SONARQUBE_LABEL, NOTE_MARKDOWN_VIEW_LINK_PATTERN);
     }
 
@@ -264,4 +493,26 @@ public abstract class DiscussionAwarePullRequestDecorator<C, P, U, D, N> impleme
         return comment.getRight().filter(projectIssueIdentifier -> projectId.equals(projectIssueIdentifier.getProjectKey())).isPresent();
     }
 
+
+    /**
+     * Loads a value on first use and reuses it for every later use, so details that are only needed for some issues,
+     * such as the pull request's commits where the diff of a file is not available, are not requested otherwise.
+     */
+    private static final class MemoizedSupplier<T> implements Supplier<T> {
+
+        private final Supplier<T> delegate;
+        private T value;
+
+        private MemoizedSupplier(Supplier<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T get() {
+            if (null == value) {
+                value = delegate.get();
+            }
+            return value;
+        }
+    }
 }
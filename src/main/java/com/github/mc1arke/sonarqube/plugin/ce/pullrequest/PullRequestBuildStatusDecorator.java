@@ -29,5 +29,12 @@ public interface PullRequestBuildStatusDecorator {
     DecorationResult decorateQualityGateStatus(AnalysisDetails analysisDetails, AlmSettingDto almSettingDto,
                                    ProjectAlmSettingDto projectAlmSettingDto);
 
+    /**
+     * Publishes the Quality Gate status of the analysed commit without adding, updating or resolving any comments on
+     * the Pull Request.
+     */
+    DecorationResult decorateQualityGateStatusOnly(AnalysisDetails analysisDetails, AlmSettingDto almSettingDto,
+                                                   ProjectAlmSettingDto projectAlmSettingDto);
+
     List<ALM> alm();
 }
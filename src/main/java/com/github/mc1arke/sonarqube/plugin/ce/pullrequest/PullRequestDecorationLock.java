@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialises decoration of a single Pull Request across Compute Engine workers using a lease held in the
+ * internal properties table. Each Pull Request maps to its own lease, so decoration of different Pull
+ * Requests still runs in parallel. The lease is renewed in the background for as long as the decoration
+ * runs, so a long decoration keeps it. A lease that has not been renewed within its duration, such as one
+ * left by a worker that stopped mid-decoration, is taken over by the next worker requesting it. Each worker
+ * only renews or releases the lease while it still holds the value it wrote, so a worker whose lease was
+ * taken over never removes the new holder's lease.
+ */
+@ComputeEngineSide
+public class PullRequestDecorationLock {
+
+    private static final Logger LOGGER = Loggers.get(PullRequestDecorationLock.class);
+
+    private static final String LOCK_PREFIX = "lock.";
+    private static final int LOCK_NAME_LENGTH = 15;
+    private static final int LEASE_DURATION_SECONDS = 600;
+    private static final int LEASE_RENEWALS_PER_DURATION = 3;
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+
+    private final DbClient dbClient;
+    private final System2 system2;
+    private final int leaseDurationSeconds;
+    private final long pollIntervalMillis;
+
+    public PullRequestDecorationLock(DbClient dbClient, System2 system2) {
+        this(dbClient, system2, LEASE_DURATION_SECONDS, POLL_INTERVAL_MILLIS);
+    }
+
+    PullRequestDecorationLock(DbClient dbClient, System2 system2, int leaseDurationSeconds, long pollIntervalMillis) {
+        super();
+        this.dbClient = dbClient;
+        this.system2 = system2;
+        this.leaseDurationSeconds = leaseDurationSeconds;
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    public void runExclusively(String projectUuid, String pullRequestKey, Runnable action) {
+        String lockName = createLockName(projectUuid, pullRequestKey);
+        Lease lease = acquire(lockName, pullRequestKey);
+        ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pull-request-decoration-lock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long renewalIntervalMillis = Math.max(1, TimeUnit.SECONDS.toMillis(leaseDurationSeconds) / LEASE_RENEWALS_PER_DURATION);
+        renewer.scheduleAtFixedRate(() -> renew(lease, pullRequestKey), renewalIntervalMillis, renewalIntervalMillis, TimeUnit.MILLISECONDS);
+        try {
+            action.run();
+        } finally {
+            renewer.shutdownNow();
+            release(lease);
+        }
+    }
+
+    private Lease acquire(String lockName, String pullRequestKey) {
+        boolean waiting = false;
+        Optional<Lease> lease;
+        while ((lease = tryLock(lockName)).isEmpty()) {
+            if (!waiting) {
+                LOGGER.info("Waiting for another decoration of Pull Request " + pullRequestKey + " to complete");
+                waiting = true;
+            }
+            try {
+                Thread.sleep(pollIntervalMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted whilst waiting for Pull Request decoration lock", ex);
+            }
+        }
+        return lease.get();
+    }
+
+    private Optional<Lease> tryLock(String lockName) {
+        try (DbSession dbSession = dbClient.openSession(false)) {
+            boolean acquired = dbClient.internalPropertiesDao().tryLock(dbSession, lockName, leaseDurationSeconds);
+            dbSession.commit();
+            if (!acquired) {
+                return Optional.empty();
+            }
+            // the value written by tryLock is the time the lease was taken, which identifies this holder
+            return dbClient.internalPropertiesDao().selectByKey(dbSession, LOCK_PREFIX + lockName)
+                    .map(value -> new Lease(lockName, value));
+        }
+    }
+
+    private void renew(Lease lease, String pullRequestKey) {
+        try {
+            synchronized (lease) {
+                if (lease.lost) {
+                    return;
+                }
+                try (DbSession dbSession = dbClient.openSession(false)) {
+                    if (!isHeld(dbSession, lease)) {
+                        lease.lost = true;
+                        LOGGER.warn("The decoration lock for Pull Request " + pullRequestKey + " was taken over by another worker");
+                        return;
+                    }
+                    String value = String.valueOf(system2.now());
+                    dbClient.internalPropertiesDao().save(dbSession, LOCK_PREFIX + lease.lockName, value);
+                    dbSession.commit();
+                    lease.value = value;
+                }
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Could not renew the decoration lock for Pull Request " + pullRequestKey, ex);
+        }
+    }
+
+    private void release(Lease lease) {
+        synchronized (lease) {
+            try (DbSession dbSession = dbClient.openSession(false)) {
+                if (lease.lost || !isHeld(dbSession, lease)) {
+                    LOGGER.debug("Decoration lock " + lease.lockName + " is held by another worker so has not been released");
+                    return;
+                }
+                dbClient.internalPropertiesDao().delete(dbSession, LOCK_PREFIX + lease.lockName);
+                dbSession.commit();
+            }
+        }
+    }
+
+    private boolean isHeld(DbSession dbSession, Lease lease) {
+        return dbClient.internalPropertiesDao().selectByKey(dbSession, LOCK_PREFIX + lease.lockName)
+                .filter(lease.value::equals)
+                .isPresent();
+    }
+
+    static String createLockName(String projectUuid, String pullRequestKey) {
+        String key = projectUuid + '\u0000' + pullRequestKey;
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString().replace("-", "")
+                .substring(0, LOCK_NAME_LENGTH);
+    }
+
+    private static final class Lease {
+
+        private final String lockName;
+        private String value;
+        private boolean lost;
+
+        private Lease(String lockName, String value) {
+            this.lockName = lockName;
+            this.value = value;
+        }
+    }
+}
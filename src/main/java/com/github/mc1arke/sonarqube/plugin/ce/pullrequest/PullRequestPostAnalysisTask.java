@@ -34,12 +34,15 @@ import org.sonar.db.DbSession;
 import org.sonar.db.alm.setting.ALM;
 import org.sonar.db.alm.setting.AlmSettingDto;
 import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskCharacteristicDto;
 import org.sonar.db.component.BranchDao;
 import org.sonar.db.component.BranchDto;
 import org.sonar.db.protobuf.DbProjectBranches;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class PullRequestPostAnalysisTask implements PostProjectAnalysisTask {
 
@@ -53,12 +56,21 @@ public class PullRequestPostAnalysisTask implements PostProjectAnalysisTask {
     private final TreeRootHolder treeRootHolder;
     private final Configuration configuration;
     private final DbClient dbClient;
+    private final DecorationFingerprintRepository decorationFingerprintRepository;
+    private final PullRequestDecorationLock pullRequestDecorationLock;
+    private final DecorationRetryExecutor decorationRetryExecutor;
+    private final AlmCircuitBreaker almCircuitBreaker;
+    private final AlmBindingCache almBindingCache;
 
     public PullRequestPostAnalysisTask(Server server,
                                        List<PullRequestBuildStatusDecorator> pullRequestDecorators,
                                        PostAnalysisIssueVisitor postAnalysisIssueVisitor,
                                        MetricRepository metricRepository, MeasureRepository measureRepository,
-                                       TreeRootHolder treeRootHolder, Configuration configuration, DbClient dbClient) {
+                                       TreeRootHolder treeRootHolder, Configuration configuration, DbClient dbClient,
+                                       DecorationFingerprintRepository decorationFingerprintRepository,
+                                       PullRequestDecorationLock pullRequestDecorationLock,
+                                       DecorationRetryExecutor decorationRetryExecutor,
+                                       AlmCircuitBreaker almCircuitBreaker, AlmBindingCache almBindingCache) {
         super();
         this.server = server;
         this.pullRequestDecorators = pullRequestDecorators;
@@ -68,6 +80,11 @@ public class PullRequestPostAnalysisTask implements PostProjectAnalysisTask {
         this.treeRootHolder = treeRootHolder;
         this.configuration = configuration;
         this.dbClient = dbClient;
+        this.decorationFingerprintRepository = decorationFingerprintRepository;
+        this.pullRequestDecorationLock = pullRequestDecorationLock;
+        this.decorationRetryExecutor = decorationRetryExecutor;
+        this.almCircuitBreaker = almCircuitBreaker;
+        this.almBindingCache = almBindingCache;
     }
 
     @Override
@@ -94,10 +111,12 @@ public class PullRequestPostAnalysisTask implements PostProjectAnalysisTask {
 
         ProjectAlmSettingDto projectAlmSettingDto;
         Optional<AlmSettingDto> optionalAlmSettingDto;
+        boolean supersededByQueuedAnalysis;
         try (DbSession dbSession = dbClient.openSession(false)) {
-
-            Optional<ProjectAlmSettingDto> optionalProjectAlmSettingDto =
-                    dbClient.projectAlmSettingDao().selectByProject(dbSession, projectAnalysis.getProject().getUuid());
+            String projectUuid = projectAnalysis.getProject().getUuid();
+            AlmBindingCache.AlmBinding almBinding =
+                    almBindingCache.getBinding(projectUuid, () -> loadAlmBinding(dbSession, projectUuid));
+            Optional<ProjectAlmSettingDto> optionalProjectAlmSettingDto = almBinding.getProjectAlmSetting();
 
             if (optionalProjectAlmSettingDto.isEmpty()) {
                 LOGGER.debug("No ALM has been set on the current project");
@@ -105,9 +124,8 @@ public class PullRequestPostAnalysisTask implements PostProjectAnalysisTask {
             }
 
             projectAlmSettingDto = optionalProjectAlmSettingDto.get();
-            String almSettingUuid = projectAlmSettingDto.getAlmSettingUuid();
-            optionalAlmSettingDto = dbClient.almSettingDao().selectByUuid(dbSession, almSettingUuid);
-
+            optionalAlmSettingDto = almBinding.getAlmSetting();
+            supersededByQueuedAnalysis = isSupersededByQueuedAnalysis(dbSession, projectAnalysis, optionalBranchName.get());
         }
 
         if (optionalAlmSettingDto.isEmpty()) {
@@ -156,12 +174,96 @@ public class PullRequestPostAnalysisTask implements PostProjectAnalysisTask {
                                     projectAnalysis.getScannerContext());
 
         PullRequestBuildStatusDecorator pullRequestDecorator = optionalPullRequestDecorator.get();
+        String pullRequestKey = optionalBranchName.get();
+        if (supersededByQueuedAnalysis) {
+            LOGGER.info("A newer analysis of this Pull Request is queued. Only the Quality Gate status will be published, with comments left to the newer analysis");
+            pullRequestDecorationLock.runExclusively(projectAnalysis.getProject().getUuid(), pullRequestKey,
+                    () -> decorateQualityGateStatusOnly(pullRequestDecorator, analysisDetails, almSettingDto, projectAlmSettingDto)
+                            .flatMap(DecorationResult::getPullRequestUrl)
+                            .ifPresent(pullRequestUrl -> persistPullRequestUrl(pullRequestUrl, projectAnalysis, pullRequestKey)));
+            return;
+        }
+
+        pullRequestDecorationLock.runExclusively(projectAnalysis.getProject().getUuid(), pullRequestKey,
+                () -> decoratePullRequest(pullRequestDecorator, analysisDetails, almSettingDto, projectAlmSettingDto,
+                                          projectAnalysis, pullRequestKey));
+    }
+
+    private Optional<DecorationResult> decorateQualityGateStatusOnly(PullRequestBuildStatusDecorator pullRequestDecorator,
+                                                                     AnalysisDetails analysisDetails, AlmSettingDto almSettingDto,
+                                                                     ProjectAlmSettingDto projectAlmSettingDto) {
+        return decorationRetryExecutor.execute(() -> almCircuitBreaker.execute(almSettingDto,
+                () -> pullRequestDecorator.decorateQualityGateStatusOnly(analysisDetails, almSettingDto, projectAlmSettingDto)));
+    }
+
+    private void decoratePullRequest(PullRequestBuildStatusDecorator pullRequestDecorator, AnalysisDetails analysisDetails,
+                                     AlmSettingDto almSettingDto, ProjectAlmSettingDto projectAlmSettingDto,
+                                     ProjectAnalysis projectAnalysis, String pullRequestKey) {
+        String projectUuid = projectAnalysis.getProject().getUuid();
+        String fingerprint = DecorationFingerprintRepository.createFingerprint(analysisDetails, almSettingDto,
+                projectAlmSettingDto, pullRequestDecorator);
+        Optional<DecorationResult> previousDecorationResult =
+                decorationFingerprintRepository.findMatchingDecoration(projectUuid, pullRequestKey, fingerprint);
+        if (previousDecorationResult.isPresent()) {
+            LOGGER.info("Pull Request has already been decorated with identical results for commit " + analysisDetails.getCommitSha() + ". Only the Quality Gate status will be refreshed");
+            decorateQualityGateStatusOnly(pullRequestDecorator, analysisDetails, almSettingDto, projectAlmSettingDto)
+                    .orElse(previousDecorationResult.get())
+                    .getPullRequestUrl().ifPresent(pullRequestUrl -> persistPullRequestUrl(pullRequestUrl, projectAnalysis, pullRequestKey));
+            return;
+        }
+
         LOGGER.info("using pull request decorator " + pullRequestDecorator.getClass().getName());
-        DecorationResult decorationResult = pullRequestDecorator.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+        Optional<DecorationResult> optionalDecorationResult = decorationRetryExecutor.execute(
+                () -> almCircuitBreaker.execute(almSettingDto,
+                        () -> pullRequestDecorator.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto)));
+        if (optionalDecorationResult.isEmpty()) {
+            return;
+        }
+
+        DecorationResult decorationResult = optionalDecorationResult.get();
+        decorationFingerprintRepository.recordDecoration(projectUuid, pullRequestKey, fingerprint, decorationResult);
+
+        decorationResult.getPullRequestUrl().ifPresent(pullRequestUrl -> persistPullRequestUrl(pullRequestUrl, projectAnalysis, pullRequestKey));
+    }
+
+    private AlmBindingCache.AlmBinding loadAlmBinding(DbSession dbSession, String projectUuid) {
+        Optional<ProjectAlmSettingDto> optionalProjectAlmSettingDto =
+                dbClient.projectAlmSettingDao().selectByProject(dbSession, projectUuid);
+        if (optionalProjectAlmSettingDto.isEmpty()) {
+            return new AlmBindingCache.AlmBinding(null, null);
+        }
 
-        decorationResult.getPullRequestUrl().ifPresent(pullRequestUrl -> persistPullRequestUrl(pullRequestUrl, projectAnalysis, optionalBranchName.get()));
+        ProjectAlmSettingDto projectAlmSettingDto = optionalProjectAlmSettingDto.get();
+        Optional<AlmSettingDto> optionalAlmSettingDto =
+                dbClient.almSettingDao().selectByUuid(dbSession, projectAlmSettingDto.getAlmSettingUuid());
+        return new AlmBindingCache.AlmBinding(projectAlmSettingDto, optionalAlmSettingDto.orElse(null));
     }
 
+    private boolean isSupersededByQueuedAnalysis(DbSession dbSession, ProjectAnalysis projectAnalysis, String pullRequestKey) {
+        String currentTaskUuid = projectAnalysis.getCeTask().getId();
+        List<CeQueueDto> queuedTasks = dbClient.ceQueueDao().selectByMainComponentUuid(dbSession, projectAnalysis.getProject().getUuid());
+        Optional<Long> currentTaskCreatedAt = queuedTasks.stream()
+                .filter(queuedTask -> currentTaskUuid.equals(queuedTask.getUuid()))
+                .map(CeQueueDto::getCreatedAt)
+                .findFirst();
+        if (currentTaskCreatedAt.isEmpty()) {
+            return false;
+        }
+
+        List<String> laterTaskUuids = queuedTasks.stream()
+                .filter(queuedTask -> !currentTaskUuid.equals(queuedTask.getUuid()))
+                .filter(queuedTask -> queuedTask.getCreatedAt() > currentTaskCreatedAt.get())
+                .map(CeQueueDto::getUuid)
+                .collect(Collectors.toList());
+
+        if (laterTaskUuids.isEmpty()) {
+            return false;
+        }
+
+        return dbClient.ceTaskCharacteristicsDao().selectByTaskUuids(dbSession, laterTaskUuids).stream()
+                .anyMatch(characteristic -> CeTaskCharacteristicDto.PULL_REQUEST.equals(characteristic.getKey())
+                        && pullRequestKey.equals(characteristic.getValue()));
+    }
 
     private static Optional<PullRequestBuildStatusDecorator> findCurrentPullRequestStatusDecorator(
             AlmSettingDto almSetting, List<PullRequestBuildStatusDecorator> pullRequestDecorators) {
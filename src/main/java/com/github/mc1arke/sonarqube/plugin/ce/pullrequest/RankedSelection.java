@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import org.sonar.api.rule.Severity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Keeps the first <code>limit</code> items in rank order from a stream of items, where the rank is a small integer
+ * such as a severity index. Items are held in one bucket per rank so selection needs no sort: once the limit is
+ * reached, each new item displaces the most recently added item of the worst populated rank, which keeps the
+ * selection identical to a stable sort followed by truncation.
+ */
+public final class RankedSelection<T> {
+
+    public static final int SEVERITY_RANK_COUNT = Severity.ALL.size() + 1;
+
+    private final int limit;
+    private final ToIntFunction<T> rankFunction;
+    private final List<List<T>> buckets;
+    private int selectedCount;
+    private int offeredCount;
+
+    public RankedSelection(int limit, int rankCount, ToIntFunction<T> rankFunction) {
+        super();
+        this.limit = limit;
+        this.rankFunction = rankFunction;
+        this.buckets = new ArrayList<>(rankCount);
+        for (int i = 0; i < rankCount; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Creates a selection that keeps the most severe issues, with issues of an unknown severity ranked last.
+     */
+    public static RankedSelection<PostAnalysisIssueVisitor.ComponentIssue> bySeverity(int limit) {
+        return new RankedSelection<>(limit, SEVERITY_RANK_COUNT, RankedSelection::severityRank);
+    }
+
+    public void offer(T item) {
+        offeredCount++;
+        if (limit <= 0) {
+            return;
+        }
+        int rank = rankFunction.applyAsInt(item);
+        if (selectedCount == limit) {
+            int worstRank = worstPopulatedRank();
+            if (rank >= worstRank) {
+                return;
+            }
+            List<T> worstBucket = buckets.get(worstRank);
+            worstBucket.remove(worstBucket.size() - 1);
+            selectedCount--;
+        }
+        buckets.get(rank).add(item);
+        selectedCount++;
+    }
+
+    public List<T> getSelected() {
+        List<T> selected = new ArrayList<>(selectedCount);
+        buckets.forEach(selected::addAll);
+        return selected;
+    }
+
+    public int getDiscardedCount() {
+        return offeredCount - selectedCount;
+    }
+
+    /**
+     * Ranks the most severe issues first, with any issue of an unrecognised severity ranked last.
+     */
+    public static int severityRank(PostAnalysisIssueVisitor.ComponentIssue componentIssue) {
+        int severityIndex = Severity.ALL.indexOf(componentIssue.getIssue().severity());
+        return severityIndex < 0 ? Severity.ALL.size() : Severity.ALL.size() - 1 - severityIndex;
+    }
+
+    private int worstPopulatedRank() {
+        for (int i = buckets.size() - 1; i >= 0; i--) {
+            if (!buckets.get(i).isEmpty()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -140,33 +140,58 @@ public class AzureDevOpsPullRequestDecorator extends DiscussionAwarePullRequestD
     @Override
     protected void submitCommitNoteForIssue(AzureDevopsClient client, PullRequest pullRequest, PostAnalysisIssueVisitor.ComponentIssue issue, String filePath,
                                             AnalysisDetails analysis) {
-        String issueSummary = analysis.createAnalysisIssueSummary(issue, formatterFactory);
-        DbIssues.Locations location = issue.getIssue().getLocations();
+        String issueSummary = AnalysisDetails.appendIssueMarker(analysis.createAnalysisIssueSummary(issue, formatterFactory), analysis.getAnalysisProjectKey(), issue.getIssue().key());
 
         try {
-            CreateCommentRequest comment = new CreateCommentRequest(issueSummary);
-            CommentPosition fileStart = new CommentPosition(
-                    location.getTextRange().getEndLine(),
-                    location.getTextRange().getEndOffset() + 1
-            );
-            CommentPosition fileEnd = new CommentPosition(
-                    location.getTextRange().getStartLine(),
-                    location.getTextRange().getStartOffset() + 1
-            );
-            String file = filePath.startsWith("/") ? filePath : "/" + filePath;
-            CommentThreadContext commentThreadContext = new CommentThreadContext(file, fileStart, fileEnd);
-            CreateCommentThreadRequest thread = new CreateCommentThreadRequest(commentThreadContext, Collections.singletonList(comment), CommentThreadStatus.ACTIVE);
-            client.createThread(pullRequest.getRepository().getProject().getName(), pullRequest.getRepository().getName(), pullRequest.getId(), thread);
+            createCommentThread(client, pullRequest, issue, filePath, issueSummary);
         } catch (IOException ex) {
             throw new IllegalStateException("Could not submit commit comment to Azure Devops", ex);
         }
     }
 
+    @Override
+    protected void submitCommitNoteForFile(AzureDevopsClient client, PullRequest pullRequest, PostAnalysisIssueVisitor.ComponentIssue issue, String filePath,
+                                           String content) {
+        try {
+            createCommentThread(client, pullRequest, issue, filePath, content);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not submit file comment to Azure Devops", ex);
+        }
+    }
+
+    @Override
+    protected void updateNote(AzureDevopsClient client, PullRequest pullRequest, CommentThread discussion, Comment note, String content) {
+        try {
+            client.updateCommentOnThread(pullRequest.getRepository().getProject().getName(), pullRequest.getRepository().getName(), pullRequest.getId(), discussion.getId(), note.getId(), new CreateCommentRequest(content));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not update comment in Azure Devops", ex);
+        }
+    }
+
+    private static void createCommentThread(AzureDevopsClient client, PullRequest pullRequest, PostAnalysisIssueVisitor.ComponentIssue issue, String filePath,
+                                            String content) throws IOException {
+        DbIssues.Locations location = issue.getIssue().getLocations();
+
+        CreateCommentRequest comment = new CreateCommentRequest(content);
+        CommentPosition fileStart = new CommentPosition(
+                location.getTextRange().getEndLine(),
+                location.getTextRange().getEndOffset() + 1
+        );
+        CommentPosition fileEnd = new CommentPosition(
+                location.getTextRange().getStartLine(),
+                location.getTextRange().getStartOffset() + 1
+        );
+        String file = filePath.startsWith("/") ? filePath : "/" + filePath;
+        CommentThreadContext commentThreadContext = new CommentThreadContext(file, fileStart, fileEnd);
+        CreateCommentThreadRequest thread = new CreateCommentThreadRequest(commentThreadContext, Collections.singletonList(comment), CommentThreadStatus.ACTIVE);
+        client.createThread(pullRequest.getRepository().getProject().getName(), pullRequest.getRepository().getName(), pullRequest.getId(), thread);
+    }
+
 
     @Override
-    protected void submitSummaryNote(AzureDevopsClient client, PullRequest pullRequest, AnalysisDetails analysis) {
+    protected void submitSummaryNote(AzureDevopsClient client, PullRequest pullRequest, AnalysisDetails analysis, List<String> decorationNotes) {
         try {
-            String summaryCommentBody = analysis.createAnalysisSummary(formatterFactory);
+            String summaryCommentBody = createSummaryNoteContent(analysis, formatterFactory, decorationNotes);
             CreateCommentRequest comment = new CreateCommentRequest(summaryCommentBody);
             CreateCommentThreadRequest commentThread = new CreateCommentThreadRequest(null, Collections.singletonList(comment), CommentThreadStatus.ACTIVE);
             CommentThread summaryComment = client.createThread(pullRequest.getRepository().getProject().getName(), pullRequest.getRepository().getName(), pullRequest.getId(), commentThread);
@@ -178,6 +203,26 @@ public class AzureDevOpsPullRequestDecorator extends DiscussionAwarePullRequestD
         }
     }
 
+    @Override
+    protected void updateSummaryNote(AzureDevopsClient client, PullRequest pullRequest, CommentThread discussion, Comment note, AnalysisDetails analysis, List<String> decorationNotes) {
+        try {
+            String summaryCommentBody = createSummaryNoteContent(analysis, formatterFactory, decorationNotes);
+            String projectName = pullRequest.getRepository().getProject().getName();
+            String repositoryName = pullRequest.getRepository().getName();
+            client.updateCommentOnThread(projectName, repositoryName, pullRequest.getId(), discussion.getId(), note.getId(), new CreateCommentRequest(summaryCommentBody));
+            boolean closed = discussion.getStatus() == CommentThreadStatus.CLOSED;
+            if (analysis.getQualityGateStatus() == QualityGate.Status.OK) {
+                if (!closed) {
+                    client.resolvePullRequestThread(projectName, repositoryName, pullRequest.getId(), discussion.getId());
+                }
+            } else if (closed) {
+                client.reopenPullRequestThread(projectName, repositoryName, pullRequest.getId(), discussion.getId());
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not update summary comment in Azure Devops", ex);
+        }
+    }
+
     protected List<CommentThread> getDiscussions(AzureDevopsClient client, PullRequest pullRequest) {
         try {
             return client.retrieveThreads(pullRequest.getRepository().getProject().getName(), pullRequest.getRepository().getName(), pullRequest.getId());
@@ -206,6 +251,11 @@ public class AzureDevOpsPullRequestDecorator extends DiscussionAwarePullRequestD
         return discussion.isDeleted() || discussion.getStatus() == CommentThreadStatus.CLOSED;
     }
 
+    @Override
+    protected boolean isEditable(CommentThread discussion) {
+        return !discussion.isDeleted();
+    }
+
     @Override
     protected boolean isUserNote(Comment note) {
         return CommentType.TEXT == note.getCommentType();
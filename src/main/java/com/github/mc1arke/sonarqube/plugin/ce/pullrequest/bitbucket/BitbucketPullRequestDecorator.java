@@ -28,7 +28,9 @@ import com.github.mc1arke.sonarqube.plugin.almclient.bitbucket.model.DataValue;
 import com.github.mc1arke.sonarqube.plugin.almclient.bitbucket.model.ReportData;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.AnalysisDetails;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.DecorationResult;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.PostAnalysisIssueVisitor;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.PullRequestBuildStatusDecorator;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.RankedSelection;
 import com.google.common.annotations.VisibleForTesting;
 import org.sonar.api.ce.posttask.QualityGate;
 import org.sonar.api.issue.Issue;
@@ -46,12 +48,10 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
@@ -75,6 +75,16 @@ public class BitbucketPullRequestDecorator implements PullRequestBuildStatusDeco
 
     @Override
     public DecorationResult decorateQualityGateStatus(AnalysisDetails analysisDetails, AlmSettingDto almSettingDto, ProjectAlmSettingDto projectAlmSettingDto) {
+        return decorate(analysisDetails, almSettingDto, projectAlmSettingDto, true);
+    }
+
+    @Override
+    public DecorationResult decorateQualityGateStatusOnly(AnalysisDetails analysisDetails, AlmSettingDto almSettingDto, ProjectAlmSettingDto projectAlmSettingDto) {
+        return decorate(analysisDetails, almSettingDto, projectAlmSettingDto, false);
+    }
+
+    private DecorationResult decorate(AnalysisDetails analysisDetails, AlmSettingDto almSettingDto, ProjectAlmSettingDto projectAlmSettingDto,
+                                      boolean updateAnnotations) {
         BitbucketClient client = bitbucketClientFactory.createClient(projectAlmSettingDto, almSettingDto);
         try {
             if (!client.supportsCodeInsights()) {
@@ -97,7 +107,9 @@ public class BitbucketPullRequestDecorator implements PullRequestBuildStatusDeco
             client.uploadReport(project, repo,
                     analysisDetails.getCommitSha(), codeInsightsReport);
 
-            updateAnnotations(client, project, repo, analysisDetails);
+            if (updateAnnotations) {
+                updateAnnotations(client, project, repo, analysisDetails);
+            }
         } catch (IOException e) {
             LOGGER.error("Could not decorate pull request for project {}", analysisDetails.getAnalysisProjectKey(), e);
         }
@@ -125,39 +137,38 @@ public class BitbucketPullRequestDecorator implements PullRequestBuildStatusDeco
     }
 
     private void updateAnnotations(BitbucketClient client, String project, String repo, AnalysisDetails analysisDetails) throws IOException {
-        final AtomicInteger chunkCounter = new AtomicInteger(0);
-
         client.deleteAnnotations(project, repo, analysisDetails.getCommitSha());
 
         AnnotationUploadLimit uploadLimit = client.getAnnotationUploadLimit();
 
-        Map<Integer, Set<CodeInsightsAnnotation>> annotationChunks = analysisDetails.getPostAnalysisIssueVisitor().getIssues().stream()
+        RankedSelection<PostAnalysisIssueVisitor.ComponentIssue> selection = RankedSelection.bySeverity(maximumNumberOfAnnotations(uploadLimit));
+        analysisDetails.getPostAnalysisIssueVisitor().getIssues().stream()
                 .filter(i -> i.getComponent().getReportAttributes().getScmPath().isPresent())
                 .filter(i -> i.getComponent().getType() == Component.Type.FILE)
                 .filter(i -> OPEN_ISSUE_STATUSES.contains(i.getIssue().status()))
                 .filter(i -> !(i.getIssue().type() == RuleType.SECURITY_HOTSPOT && Issue.SECURITY_HOTSPOT_RESOLUTIONS
                     .contains(i.getIssue().resolution())))
-                .sorted(Comparator.comparing(a -> Severity.ALL.indexOf(a.getIssue().severity())))
-                .map(componentIssue -> {
-                    String path = componentIssue.getComponent().getReportAttributes().getScmPath().get();
-                    return client.createCodeInsightsAnnotation(componentIssue.getIssue().key(),
-                            Optional.ofNullable(componentIssue.getIssue().getLine()).orElse(0),
-                            analysisDetails.getIssueUrl(componentIssue.getIssue()),
-                            componentIssue.getIssue().getMessage(),
-                            path,
-                            toBitbucketSeverity(componentIssue.getIssue().severity()),
-                            toBitbucketType(componentIssue.getIssue().type()));
-                }).collect(Collectors.groupingBy(s -> chunkCounter.getAndIncrement() / uploadLimit.getAnnotationBatchSize(), toSet()));
-
-        int totalAnnotationsCounter = 1;
-        for (Set<CodeInsightsAnnotation> annotations : annotationChunks.values()) {
-            try {
-                if (exceedsMaximumNumberOfAnnotations(totalAnnotationsCounter++, uploadLimit)) {
-                    LOGGER.warn("This project has too many issues. The provider only supports {}." +
-                            " The remaining annotations will be truncated.", uploadLimit.getTotalAllowedAnnotations());
-                    break;
-                }
+                .forEach(selection::offer);
 
+        if (selection.getDiscardedCount() > 0) {
+            LOGGER.warn("This project has too many issues. The provider only supports {}." +
+                    " The remaining annotations will be truncated.", uploadLimit.getTotalAllowedAnnotations());
+        }
+
+        List<PostAnalysisIssueVisitor.ComponentIssue> selectedIssues = selection.getSelected();
+        for (int chunkStart = 0; chunkStart < selectedIssues.size(); chunkStart += uploadLimit.getAnnotationBatchSize()) {
+            Set<CodeInsightsAnnotation> annotations = selectedIssues.subList(chunkStart, Math.min(chunkStart + uploadLimit.getAnnotationBatchSize(), selectedIssues.size())).stream()
+                    .map(componentIssue -> {
+                        String path = componentIssue.getComponent().getReportAttributes().getScmPath().get();
+                        return client.createCodeInsightsAnnotation(componentIssue.getIssue().key(),
+                                Optional.ofNullable(componentIssue.getIssue().getLine()).orElse(0),
+                                analysisDetails.getIssueUrl(componentIssue.getIssue()),
+                                componentIssue.getIssue().getMessage(),
+                                path,
+                                toBitbucketSeverity(componentIssue.getIssue().severity()),
+                                toBitbucketType(componentIssue.getIssue().type()));
+                    }).collect(toSet());
+            try {
                 client.uploadAnnotations(project, repo, analysisDetails.getCommitSha(), annotations);
             } catch (BitbucketException e) {
                 if (e.isError(BitbucketException.PAYLOAD_TOO_LARGE)) {
@@ -169,9 +180,14 @@ public class BitbucketPullRequestDecorator implements PullRequestBuildStatusDeco
         }
     }
 
+    /**
+     * Only whole batches are uploaded, so the limit is the number of annotations in the batches that fit within the
+     * total allowed by the provider.
+     */
     @VisibleForTesting
-    static boolean exceedsMaximumNumberOfAnnotations(int chunkCounter, AnnotationUploadLimit uploadLimit) {
-        return (chunkCounter * uploadLimit.getAnnotationBatchSize()) > uploadLimit.getTotalAllowedAnnotations();
+    static int maximumNumberOfAnnotations(AnnotationUploadLimit uploadLimit) {
+        int batchSize = uploadLimit.getAnnotationBatchSize();
+        return uploadLimit.getTotalAllowedAnnotations() / batchSize * batchSize;
     }
 
     private String toBitbucketSeverity(String severity) {
@@ -49,6 +49,17 @@ public class GithubPullRequestDecorator implements PullRequestBuildStatusDecorat
 
     }
 
+    @Override
+    public DecorationResult decorateQualityGateStatusOnly(AnalysisDetails analysisDetails, AlmSettingDto almSettingDto,
+                                                          ProjectAlmSettingDto projectAlmSettingDto) {
+        try {
+            return githubClientFactory.createClient(projectAlmSettingDto, almSettingDto)
+                    .createCheckRunWithoutComments(analysisDetails, almSettingDto, projectAlmSettingDto);
+        } catch (Exception ex) {
+            throw new IllegalStateException("Could not decorate Pull Request on Github", ex);
+        }
+    }
+
     @Override
     public List<ALM> alm() {
         return Collections.singletonList(ALM.GITHUB);
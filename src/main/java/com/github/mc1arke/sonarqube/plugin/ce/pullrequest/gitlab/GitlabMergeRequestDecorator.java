@@ -18,23 +18,31 @@
  */
 package com.github.mc1arke.sonarqube.plugin.ce.pullrequest.gitlab;
 
+import com.github.mc1arke.sonarqube.plugin.CommunityBranchPlugin;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.GitlabClient;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.GitlabClientFactory;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Change;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Commit;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.CommitNote;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Discussion;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.DraftNote;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequest;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequestChanges;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequestNote;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Note;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.PipelineStatus;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.User;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.AnalysisDetails;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.ChangedLines;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.DiscussionAwarePullRequestDecorator;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.PostAnalysisIssueVisitor;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.FormatterFactory;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.markup.MarkdownFormatterFactory;
+import org.apache.commons.lang3.tuple.Pair;
 import org.sonar.api.ce.posttask.QualityGate;
 import org.sonar.api.platform.Server;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.ce.task.projectanalysis.scm.ScmInfoRepository;
 import org.sonar.db.alm.setting.ALM;
 import org.sonar.db.alm.setting.AlmSettingDto;
@@ -55,6 +63,8 @@ public class GitlabMergeRequestDecorator extends DiscussionAwarePullRequestDecor
     public static final String PULLREQUEST_GITLAB_PIPELINE_ID =
             "com.github.mc1arke.sonarqube.plugin.branch.pullrequest.gitlab.pipelineId";
 
+    private static final Logger LOGGER = Loggers.get(GitlabMergeRequestDecorator.class);
+
     private final GitlabClientFactory gitlabClientFactory;
     private final FormatterFactory formatterFactory;
 
@@ -117,6 +127,33 @@ public class GitlabMergeRequestDecorator extends DiscussionAwarePullRequestDecor
         }
     }
 
+    @Override
+    protected Optional<ChangedLines> getChangedLines(GitlabClient gitlabClient, MergeRequest mergeRequest) {
+        MergeRequestChanges mergeRequestChanges;
+        try {
+            mergeRequestChanges = gitlabClient.getMergeRequestChanges(mergeRequest.getSourceProjectId(), mergeRequest.getIid());
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not retrieve changes for Merge Request", ex);
+        }
+
+        if (mergeRequestChanges.isOverflow()) {
+            return Optional.empty();
+        }
+
+        ChangedLines.Builder builder = ChangedLines.builder();
+        for (Change change : mergeRequestChanges.getChanges()) {
+            if (change.isDeletedFile()) {
+                continue;
+            }
+            if (null == change.getDiff() || change.getDiff().isEmpty()) {
+                builder.withUnknownFile(change.getNewPath());
+            } else {
+                builder.withUnifiedDiff(change.getNewPath(), change.getDiff());
+            }
+        }
+        return Optional.of(builder.build());
+    }
+
     @Override
     protected void submitPipelineStatus(GitlabClient gitlabClient, MergeRequest mergeRequest, AnalysisDetails analysis, String sonarqubeRootUrl) {
         Long pipelineId = analysis.getScannerProperty(PULLREQUEST_GITLAB_PIPELINE_ID)
@@ -146,28 +183,86 @@ public class GitlabMergeRequestDecorator extends DiscussionAwarePullRequestDecor
     }
 
     @Override
-    protected void submitCommitNoteForIssue(GitlabClient client, MergeRequest mergeRequest, PostAnalysisIssueVisitor.ComponentIssue issue, String path, AnalysisDetails analysis) {
-        String issueSummary = analysis.createAnalysisIssueSummary(issue, formatterFactory);
+    protected void submitCommitNotesForIssues(GitlabClient client, MergeRequest mergeRequest, List<Pair<PostAnalysisIssueVisitor.ComponentIssue, String>> issues,
+                                              AnalysisDetails analysis) {
+        boolean useDraftNotes = analysis.getConfigurationProperty(CommunityBranchPlugin.PR_GITLAB_DRAFT_NOTES)
+                .map(Boolean::parseBoolean)
+                .orElse(false);
+        if (!useDraftNotes) {
+            super.submitCommitNotesForIssues(client, mergeRequest, issues, analysis);
+            return;
+        }
+        if (issues.isEmpty()) {
+            return;
+        }
 
-        Integer line = Optional.ofNullable(issue.getIssue().getLine()).orElseThrow(() -> new IllegalStateException("No line is associated with this issue"));
+        try {
+            // drafts left behind by an earlier decoration that failed before publishing would otherwise be published alongside these ones
+            List<DraftNote> draftNotes = client.getMergeRequestDraftNotes(mergeRequest.getSourceProjectId(), mergeRequest.getIid());
+            boolean foreignDraftNotes = false;
+            for (DraftNote draftNote : draftNotes) {
+                if (isDraftNoteForProject(draftNote, analysis)) {
+                    client.deleteMergeRequestDraftNote(mergeRequest.getSourceProjectId(), mergeRequest.getIid(), draftNote.getId());
+                } else {
+                    foreignDraftNotes = true;
+                }
+            }
+            if (foreignDraftNotes) {
+                // publishing is done for all of the user's drafts, so would also publish a review the user has in progress
+                LOGGER.info("Merge request has draft notes not created by SonarQube. Submitting issues as individual discussions");
+                super.submitCommitNotesForIssues(client, mergeRequest, issues, analysis);
+                return;
+            }
+            for (Pair<PostAnalysisIssueVisitor.ComponentIssue, String> issue : issues) {
+                client.addMergeRequestDraftNote(mergeRequest.getSourceProjectId(), mergeRequest.getIid(), createCommitNote(mergeRequest, issue.getLeft(), issue.getRight(), createIssueNoteContent(issue.getLeft(), analysis)));
+            }
+            client.publishMergeRequestDraftNotes(mergeRequest.getSourceProjectId(), mergeRequest.getIid());
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not submit draft commit comments to Gitlab", ex);
+        }
+    }
+
+    private static boolean isDraftNoteForProject(DraftNote draftNote, AnalysisDetails analysis) {
+        return AnalysisDetails.parseIssueMarker(draftNote.getNote())
+                .filter(identifier -> analysis.getAnalysisProjectKey().equals(identifier.getProjectKey()))
+                .isPresent();
+    }
+
+    @Override
+    protected void submitCommitNoteForIssue(GitlabClient client, MergeRequest mergeRequest, PostAnalysisIssueVisitor.ComponentIssue issue, String path, AnalysisDetails analysis) {
+        CommitNote commitNote = createCommitNote(mergeRequest, issue, path, createIssueNoteContent(issue, analysis));
 
         try {
-            client.addMergeRequestDiscussion(mergeRequest.getSourceProjectId(), mergeRequest.getIid(), new CommitNote(issueSummary,
-                    mergeRequest.getDiffRefs().getBaseSha(),
-                    mergeRequest.getDiffRefs().getStartSha(),
-                    mergeRequest.getDiffRefs().getHeadSha(),
-                    path,
-                    path,
-                    line));
+            client.addMergeRequestDiscussion(mergeRequest.getSourceProjectId(), mergeRequest.getIid(), commitNote);
         } catch (IOException ex) {
             throw new IllegalStateException("Could not submit commit comment to Gitlab", ex);
         }
     }
 
     @Override
-    protected void submitSummaryNote(GitlabClient client, MergeRequest mergeRequest, AnalysisDetails analysis) {
+    protected void submitCommitNoteForFile(GitlabClient client, MergeRequest mergeRequest, PostAnalysisIssueVisitor.ComponentIssue issue, String path, String content) {
+        CommitNote commitNote = createCommitNote(mergeRequest, issue, path, content);
+
+        try {
+            client.addMergeRequestDiscussion(mergeRequest.getSourceProjectId(), mergeRequest.getIid(), commitNote);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not submit file comment to Gitlab", ex);
+        }
+    }
+
+    @Override
+    protected void updateNote(GitlabClient client, MergeRequest mergeRequest, Discussion discussion, Note note, String content) {
         try {
-            String summaryCommentBody = analysis.createAnalysisSummary(formatterFactory);
+            client.updateMergeRequestDiscussionNote(mergeRequest.getSourceProjectId(), mergeRequest.getIid(), discussion.getId(), note.getId(), content);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not update comment in Gitlab", ex);
+        }
+    }
+
+    @Override
+    protected void submitSummaryNote(GitlabClient client, MergeRequest mergeRequest, AnalysisDetails analysis, List<String> decorationNotes) {
+        try {
+            String summaryCommentBody = createSummaryNoteContent(analysis, formatterFactory, decorationNotes);
             Discussion summaryComment = client.addMergeRequestDiscussion(mergeRequest.getSourceProjectId(),
                     mergeRequest.getIid(),
                     new MergeRequestNote(summaryCommentBody));
@@ -180,6 +275,22 @@ public class GitlabMergeRequestDecorator extends DiscussionAwarePullRequestDecor
 
     }
 
+    @Override
+    protected void updateSummaryNote(GitlabClient client, MergeRequest mergeRequest, Discussion discussion, Note note, AnalysisDetails analysis, List<String> decorationNotes) {
+        try {
+            String summaryCommentBody = createSummaryNoteContent(analysis, formatterFactory, decorationNotes);
+            client.updateMergeRequestDiscussionNote(mergeRequest.getSourceProjectId(), mergeRequest.getIid(), discussion.getId(), note.getId(), summaryCommentBody);
+            boolean passed = analysis.getQualityGateStatus() == QualityGate.Status.OK;
+            if (passed && !note.isResolved()) {
+                client.resolveMergeRequestDiscussion(mergeRequest.getSourceProjectId(), mergeRequest.getIid(), discussion.getId());
+            } else if (!passed && note.isResolved()) {
+                client.unresolveMergeRequestDiscussion(mergeRequest.getSourceProjectId(), mergeRequest.getIid(), discussion.getId());
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not update summary comment in Gitlab", ex);
+        }
+    }
+
     @Override
     protected List<Discussion> getDiscussions(GitlabClient client, MergeRequest pullRequest) {
         try {
@@ -235,4 +346,19 @@ public class GitlabMergeRequestDecorator extends DiscussionAwarePullRequestDecor
         }
     }
 
+    private String createIssueNoteContent(PostAnalysisIssueVisitor.ComponentIssue issue, AnalysisDetails analysis) {
+        return AnalysisDetails.appendIssueMarker(analysis.createAnalysisIssueSummary(issue, formatterFactory), analysis.getAnalysisProjectKey(), issue.getIssue().key());
+    }
+
+    private static CommitNote createCommitNote(MergeRequest mergeRequest, PostAnalysisIssueVisitor.ComponentIssue issue, String path, String content) {
+        Integer line = Optional.ofNullable(issue.getIssue().getLine()).orElseThrow(() -> new IllegalStateException("No line is associated with this issue"));
+
+        return new CommitNote(content,
+                mergeRequest.getDiffRefs().getBaseSha(),
+                mergeRequest.getDiffRefs().getStartSha(),
+                mergeRequest.getDiffRefs().getHeadSha(),
+                path,
+                path,
+                line);
+    }
 }
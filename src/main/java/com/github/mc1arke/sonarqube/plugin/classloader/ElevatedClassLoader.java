@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.classloader;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A ClassLoader that looks up classes from a primary ClassLoader, falling back to a secondary ClassLoader if the
+ * primary ClassLoader could not provide the class. The result of each lookup is remembered, so subsequent requests for
+ * the same class are answered without consulting either delegate, including for a class neither delegate could
+ * provide.
+ *
+ * @see ElevatedClassLoaderFactory#createClassLoader(ClassLoader, ClassLoader)
+ */
+/*package*/ final class ElevatedClassLoader extends ClassLoader {
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    private final ClassLoader primaryClassLoader;
+    private final ClassLoader fallbackClassLoader;
+    private final Map<String, Class<?>> loadedClasses = new ConcurrentHashMap<>();
+    private final Set<String> missingClasses = ConcurrentHashMap.newKeySet();
+
+    /*package*/ ElevatedClassLoader(ClassLoader primaryClassLoader, ClassLoader fallbackClassLoader) {
+        super(null);
+        this.primaryClassLoader = primaryClassLoader;
+        this.fallbackClassLoader = fallbackClassLoader;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        Class<?> loadedClass = loadedClasses.get(name);
+        if (null != loadedClass) {
+            return loadedClass;
+        }
+        throwIfMissing(name);
+
+        synchronized (getClassLoadingLock(name)) {
+            loadedClass = loadedClasses.get(name);
+            if (null != loadedClass) {
+                return loadedClass;
+            }
+            throwIfMissing(name);
+
+            loadedClass = findInDelegates(name);
+            loadedClasses.put(name, loadedClass);
+            return loadedClass;
+        }
+    }
+
+    private void throwIfMissing(String name) throws ClassNotFoundException {
+        if (missingClasses.contains(name)) {
+            throw new ClassNotFoundException(name);
+        }
+    }
+
+    private Class<?> findInDelegates(String name) throws ClassNotFoundException {
+        try {
+            return primaryClassLoader.loadClass(name);
+        } catch (ClassNotFoundException ex) {
+            // fall through to the fallback ClassLoader
+        }
+
+        try {
+            return fallbackClassLoader.loadClass(name);
+        } catch (ClassNotFoundException ex) {
+            missingClasses.add(name);
+            throw ex;
+        }
+    }
+
+    @Override
+    protected URL findResource(String name) {
+        URL resource = primaryClassLoader.getResource(name);
+        if (null == resource) {
+            resource = fallbackClassLoader.getResource(name);
+        }
+        return resource;
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(String name) throws IOException {
+        Enumeration<URL> resources = primaryClassLoader.getResources(name);
+        if (!resources.hasMoreElements()) {
+            resources = fallbackClassLoader.getResources(name);
+        }
+        return resources;
+    }
+
+}
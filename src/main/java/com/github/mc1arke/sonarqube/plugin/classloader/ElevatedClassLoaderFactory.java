@@ -43,7 +43,8 @@ public interface ElevatedClassLoaderFactory {
      * <code>pluginClassLoader</code> but using the <code>coreClassLoader</code> as a fall back if the requested class
      * could not be found, and then falling back to the original <code>pluginClassLoader</code> if the class still could
      * not be found. This allows loading classes from the plugin, from SonarQube core, and from any sibling plugins that
-     * have been defined as dependencies of the current plugin.
+     * have been defined as dependencies of the current plugin. Resources are located in the same order, and the outcome
+     * of each class look-up is cached so repeated requests for a class do not go back through the fallback chain.
      *
      * @param pluginClassLoader the ClassLoader to find the current Plugin's classes from, and to fall back to in the
      *                          event a class from a dependent plugin is required
@@ -66,22 +67,6 @@ public interface ElevatedClassLoaderFactory {
          */
         ClassLoader newPluginClassLoader =
                 URLClassLoader.newInstance(((URLClassLoader) pluginClassLoader).getURLs(), coreClassLoader); //NOSONAR
-        return new ClassLoader() {
-            @Override
-            public Class<?> loadClass(String name) throws ClassNotFoundException {
-                return loadClass(name, false);
-            }
-
-            @Override
-            public Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-                try {
-                    return newPluginClassLoader.loadClass(name);
-                } catch (ClassNotFoundException ex) {
-                    return pluginClassLoader.loadClass(name);
-                }
-            }
-        };
-
-
+        return new ElevatedClassLoader(newPluginClassLoader, pluginClassLoader);
     }
 }
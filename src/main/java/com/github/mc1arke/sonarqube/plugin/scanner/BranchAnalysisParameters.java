@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.scanner;
+
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.config.ScannerProperties;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Resolves the branch and Pull Request parameters for the current analysis, including any values that can be
+ * derived from the environment of a supported CI system, so that all scanner components agree on what is being
+ * analysed.
+ */
+/*package*/ final class BranchAnalysisParameters {
+
+    private static final List<String> BRANCH_PARAMETERS = Arrays.asList(ScannerProperties.BRANCH_NAME,
+            ScannerProperties.PULL_REQUEST_KEY, ScannerProperties.PULL_REQUEST_BRANCH, ScannerProperties.PULL_REQUEST_BASE);
+
+    private BranchAnalysisParameters() {
+        super();
+    }
+
+    /*package*/ static Map<String, String> resolve(Configuration configuration, System2 system2) {
+        Map<String, String> localSettings = new HashMap<>();
+        for (String parameter : BRANCH_PARAMETERS) {
+            configuration.get(parameter).ifPresent(value -> localSettings.put(parameter, value));
+        }
+        return autoConfigure(localSettings, system2);
+    }
+
+    /*package*/ static Map<String, String> autoConfigure(Map<String, String> localSettings, System2 system2) {
+        Map<String, String> mutableLocalSettings = new HashMap<>(localSettings);
+        if (Boolean.parseBoolean(system2.envVariable("GITLAB_CI"))) {
+            //GitLab CI auto configuration
+            if (system2.envVariable("CI_MERGE_REQUEST_IID") != null) {
+                // we are inside a merge request
+                Optional.ofNullable(system2.envVariable("CI_MERGE_REQUEST_IID")).ifPresent(
+                        v -> mutableLocalSettings.putIfAbsent(ScannerProperties.PULL_REQUEST_KEY, v));
+                Optional.ofNullable(system2.envVariable("CI_MERGE_REQUEST_SOURCE_BRANCH_NAME")).ifPresent(
+                        v -> mutableLocalSettings.putIfAbsent(ScannerProperties.PULL_REQUEST_BRANCH, v));
+                Optional.ofNullable(system2.envVariable("CI_MERGE_REQUEST_TARGET_BRANCH_NAME")).ifPresent(
+                        v -> mutableLocalSettings.putIfAbsent(ScannerProperties.PULL_REQUEST_BASE, v));
+            } else {
+                // branch or tag
+                Optional.ofNullable(system2.envVariable("CI_COMMIT_REF_NAME")).ifPresent(
+                        v -> mutableLocalSettings.putIfAbsent(ScannerProperties.BRANCH_NAME, v));
+            }
+        }
+        if (Boolean.parseBoolean(system2.envVariable("TF_BUILD"))) {
+            Optional.ofNullable(system2.envVariable("SYSTEM_PULLREQUEST_PULLREQUESTID")).ifPresent(
+                    v -> mutableLocalSettings.putIfAbsent(ScannerProperties.PULL_REQUEST_KEY, v));
+            Optional.ofNullable(system2.envVariable("SYSTEM_PULLREQUEST_SOURCEBRANCH")).ifPresent(
+                    v -> mutableLocalSettings.putIfAbsent(ScannerProperties.PULL_REQUEST_BRANCH, v));
+            Optional.ofNullable(system2.envVariable("SYSTEM_PULLREQUEST_TARGETBRANCH")).ifPresent(
+                    v -> mutableLocalSettings.putIfAbsent(ScannerProperties.PULL_REQUEST_BASE, v));
+
+        }
+        return Collections.unmodifiableMap(mutableLocalSettings);
+    }
+}
@@ -33,7 +33,6 @@ import org.sonar.scanner.scan.branch.ProjectPullRequests;
 
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
@@ -65,7 +64,7 @@ public class CommunityBranchConfigurationLoader implements BranchConfigurationLo
     @Override
     public BranchConfiguration load(Map<String, String> localSettings, ProjectBranches projectBranches,
                                     ProjectPullRequests pullRequests) {
-        localSettings = autoConfigure(localSettings);
+        localSettings = BranchAnalysisParameters.autoConfigure(localSettings, system2);
 
         if (null != localSettings.get(ScannerProperties.BRANCH_TARGET)) { //NOSONAR - purposefully checking for a deprecated parameter
             String warning = String.format("Property '%s' is no longer supported", ScannerProperties.BRANCH_TARGET); //NOSONAR - reporting use of deprecated parameter
@@ -85,36 +84,6 @@ public class CommunityBranchConfigurationLoader implements BranchConfigurationLo
         return new DefaultBranchConfiguration();
     }
 
-    private Map<String, String> autoConfigure(Map<String, String> localSettings) {
-        Map<String, String> mutableLocalSettings = new HashMap<>(localSettings);
-        if (Boolean.parseBoolean(system2.envVariable("GITLAB_CI"))) {
-            //GitLab CI auto configuration
-            if (system2.envVariable("CI_MERGE_REQUEST_IID") != null) {
-                // we are inside a merge request
-                Optional.ofNullable(system2.envVariable("CI_MERGE_REQUEST_IID")).ifPresent(
-                        v -> mutableLocalSettings.putIfAbsent(ScannerProperties.PULL_REQUEST_KEY, v));
-                Optional.ofNullable(system2.envVariable("CI_MERGE_REQUEST_SOURCE_BRANCH_NAME")).ifPresent(
-                        v -> mutableLocalSettings.putIfAbsent(ScannerProperties.PULL_REQUEST_BRANCH, v));
-                Optional.ofNullable(system2.envVariable("CI_MERGE_REQUEST_TARGET_BRANCH_NAME")).ifPresent(
-                        v -> mutableLocalSettings.putIfAbsent(ScannerProperties.PULL_REQUEST_BASE, v));
-            } else {
-                // branch or tag
-                Optional.ofNullable(system2.envVariable("CI_COMMIT_REF_NAME")).ifPresent(
-                        v -> mutableLocalSettings.putIfAbsent(ScannerProperties.BRANCH_NAME, v));
-            }
-        }
-        if (Boolean.parseBoolean(system2.envVariable("TF_BUILD"))) {
-            Optional.ofNullable(system2.envVariable("SYSTEM_PULLREQUEST_PULLREQUESTID")).ifPresent(
-                    v -> mutableLocalSettings.putIfAbsent(ScannerProperties.PULL_REQUEST_KEY, v));
-            Optional.ofNullable(system2.envVariable("SYSTEM_PULLREQUEST_SOURCEBRANCH")).ifPresent(
-                    v -> mutableLocalSettings.putIfAbsent(ScannerProperties.PULL_REQUEST_BRANCH, v));
-            Optional.ofNullable(system2.envVariable("SYSTEM_PULLREQUEST_TARGETBRANCH")).ifPresent(
-                    v -> mutableLocalSettings.putIfAbsent(ScannerProperties.PULL_REQUEST_BASE, v));
-
-        }
-        return Collections.unmodifiableMap(mutableLocalSettings);
-    }
-
     private static BranchConfiguration createBranchConfiguration(String branchName, ProjectBranches branches) {
         BranchInfo existingBranch = branches.get(branchName);
 
@@ -19,7 +19,13 @@
 package com.github.mc1arke.sonarqube.plugin.scanner;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.MessageException;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.config.ScannerProperties;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonar.scanner.protocol.GsonHelper;
 import org.sonar.scanner.scan.branch.BranchInfo;
@@ -32,42 +38,98 @@ import org.sonarqube.ws.client.WsResponse;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
- * Loads the branches currently known by SonarQube from the server component for client applications.
+ * Loads the branches currently known by SonarQube from the server component for client applications. Only the
+ * branches involved in the current analysis and the main branch are requested from the server, falling back to
+ * streaming the list of all branches for the project if the server does not support the targeted lookup.
  *
  * @author Michael Clarke
  */
 public class CommunityProjectBranchesLoader implements ProjectBranchesLoader {
 
+    private static final Logger LOGGER = Loggers.get(CommunityProjectBranchesLoader.class);
     private static final String PROJECT_BRANCHES_URL =
             String.format("/%s/%s?%s=", ProjectBranchesParameters.CONTROLLER, ProjectBranchesParameters.ACTION_LIST,
                           ProjectBranchesParameters.PARAM_PROJECT);
+    private static final String PROJECT_BRANCH_URL =
+            String.format("/%s/show?%s=", ProjectBranchesParameters.CONTROLLER, ProjectBranchesParameters.PARAM_PROJECT);
+    private static final String BRANCH_PARAMETER = "&branch=";
 
     private final ScannerWsClient scannerWsClient;
+    private final Configuration configuration;
+    private final System2 system2;
+    private final ServerResponseCache serverResponseCache;
     private final Gson gson;
 
-    public CommunityProjectBranchesLoader(ScannerWsClient scannerWsClient) {
+    public CommunityProjectBranchesLoader(ScannerWsClient scannerWsClient, Configuration configuration, System2 system2) {
+        this(scannerWsClient, configuration, system2, new ServerResponseCache(configuration));
+    }
+
+    /*package*/ CommunityProjectBranchesLoader(ScannerWsClient scannerWsClient, Configuration configuration, System2 system2,
+                                               ServerResponseCache serverResponseCache) {
         super();
         this.scannerWsClient = scannerWsClient;
+        this.configuration = configuration;
+        this.system2 = system2;
+        this.serverResponseCache = serverResponseCache;
         this.gson = GsonHelper.create();
     }
 
     @Override
     public ProjectBranches load(String projectKey) {
+        Map<String, String> analysisParameters = BranchAnalysisParameters.resolve(configuration, system2);
+        Set<String> branchNames = new LinkedHashSet<>();
+        Stream.of(analysisParameters.get(ScannerProperties.BRANCH_NAME), analysisParameters.get(ScannerProperties.PULL_REQUEST_BASE))
+                .filter(Objects::nonNull)
+                .filter(name -> !name.isEmpty())
+                .forEach(branchNames::add);
+
+        Optional<ProjectBranches> branches = loadBranches(projectKey, branchNames);
+        if (branches.isPresent()) {
+            return branches.get();
+        }
+        LOGGER.debug("Targeted branch lookup is not supported by the server. Loading all branches instead");
+        return loadAllBranches(projectKey, branch -> branch.isMain() || branchNames.contains(branch.name()));
+    }
+
+    private Optional<ProjectBranches> loadBranches(String projectKey, Set<String> branchNames) {
         try {
-            GetRequest branchesGetRequest =
-                    new GetRequest(PROJECT_BRANCHES_URL + URLEncoder.encode(projectKey, StandardCharsets.UTF_8.name()));
-            try (WsResponse branchesResponse = scannerWsClient
-                    .call(branchesGetRequest); Reader reader = branchesResponse
-                .contentReader()) {
-                BranchesResponse parsedResponse = gson.fromJson(reader, BranchesResponse.class);
-                return new ProjectBranches(parsedResponse.getBranches());
+            StringBuilder branchUrl = new StringBuilder(PROJECT_BRANCH_URL).append(encode(projectKey));
+            for (String branchName : branchNames) {
+                branchUrl.append(BRANCH_PARAMETER).append(encode(branchName));
             }
+            GetRequest branchGetRequest = new GetRequest(branchUrl.toString());
+            String content = serverResponseCache.call(scannerWsClient, branchGetRequest);
+            return Optional.of(new ProjectBranches(readBranches(gson.newJsonReader(new StringReader(content)), branch -> true)));
+        } catch (IOException e) {
+            throw MessageException.of("Could not load branches from server", e);
+        } catch (HttpException e) {
+            if (404 == e.code()) {
+                return Optional.empty();
+            } else {
+                throw MessageException.of("Could not load branches from server", e);
+            }
+        }
+    }
+
+    private ProjectBranches loadAllBranches(String projectKey, Predicate<BranchInfo> filter) {
+        try {
+            GetRequest branchesGetRequest = new GetRequest(PROJECT_BRANCHES_URL + encode(projectKey));
+            return new ProjectBranches(call(branchesGetRequest, filter));
         } catch (IOException e) {
             throw MessageException.of("Could not load branches from server", e);
         } catch (HttpException e) {
@@ -79,6 +141,41 @@ public class CommunityProjectBranchesLoader implements ProjectBranchesLoader {
         }
     }
 
+    private List<BranchInfo> call(GetRequest getRequest, Predicate<BranchInfo> filter) throws IOException {
+        try (WsResponse branchesResponse = scannerWsClient.call(getRequest); Reader reader = branchesResponse.contentReader()) {
+            return readBranches(gson.newJsonReader(reader), filter);
+        }
+    }
+
+    /**
+     * Reads each branch from the response in turn rather than binding the whole response in one go, so only the
+     * branches that pass the filter are retained whilst the response is being read.
+     */
+    private List<BranchInfo> readBranches(JsonReader jsonReader, Predicate<BranchInfo> filter) throws IOException {
+        List<BranchInfo> branches = new ArrayList<>();
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            if (!"branches".equals(jsonReader.nextName())) {
+                jsonReader.skipValue();
+                continue;
+            }
+            jsonReader.beginArray();
+            while (jsonReader.hasNext()) {
+                BranchInfo branch = gson.fromJson(jsonReader, BranchInfo.class);
+                if (filter.test(branch)) {
+                    branches.add(branch);
+                }
+            }
+            jsonReader.endArray();
+        }
+        jsonReader.endObject();
+        return branches;
+    }
+
+    private static String encode(String value) throws UnsupportedEncodingException {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+    }
+
     /*package*/ static class BranchesResponse {
 
         private final List<BranchInfo> branches;
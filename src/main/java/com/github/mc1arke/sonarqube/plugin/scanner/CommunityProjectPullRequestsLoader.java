@@ -23,9 +23,12 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.MessageException;
+import org.sonar.api.utils.System2;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.config.ScannerProperties;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonar.scanner.scan.branch.ProjectPullRequests;
 import org.sonar.scanner.scan.branch.ProjectPullRequestsLoader;
@@ -36,16 +39,21 @@ import org.sonarqube.ws.client.WsResponse;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Loads the Pull Requests currently known by SonarQube from the server component for client applications.
+ * Where the current analysis is for a Pull Request then only that Pull Request is requested from the server, falling
+ * back to retrieving all Pull Requests for the project if the server does not support the targeted lookup.
  *
  * @author Michael Clarke
  */
@@ -53,13 +61,26 @@ public class CommunityProjectPullRequestsLoader implements ProjectPullRequestsLo
 
     private static final Logger LOGGER = Loggers.get(CommunityProjectPullRequestsLoader.class);
     private static final String PROJECT_PULL_REQUESTS_URL = "/api/project_pull_requests/list?project=";
+    private static final String PROJECT_PULL_REQUEST_URL = "/api/project_pull_requests/show?project=%s&pullRequest=%s";
+    private static final DateTimeFormatter ANALYSIS_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssZ");
 
     private final ScannerWsClient scannerWsClient;
+    private final Configuration configuration;
+    private final System2 system2;
+    private final ServerResponseCache serverResponseCache;
     private final Gson gson;
 
-    public CommunityProjectPullRequestsLoader(ScannerWsClient scannerWsClient) {
+    public CommunityProjectPullRequestsLoader(ScannerWsClient scannerWsClient, Configuration configuration, System2 system2) {
+        this(scannerWsClient, configuration, system2, new ServerResponseCache(configuration));
+    }
+
+    /*package*/ CommunityProjectPullRequestsLoader(ScannerWsClient scannerWsClient, Configuration configuration, System2 system2,
+                                                   ServerResponseCache serverResponseCache) {
         super();
         this.scannerWsClient = scannerWsClient;
+        this.configuration = configuration;
+        this.system2 = system2;
+        this.serverResponseCache = serverResponseCache;
         this.gson =
                 new GsonBuilder().registerTypeAdapter(PullRequestInfo.class, createPullRequestInfoJsonDeserialiser())
                         .create();
@@ -74,10 +95,9 @@ public class CommunityProjectPullRequestsLoader implements ProjectPullRequestsLo
                 if(analysisDate == null) {
                     LOGGER.warn("Analysis Date not provided in Pull Requests API response. Will use '0' date");
                 } else {
-                    parsedDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ")
-                            .parse(analysisDate).getTime();
+                    parsedDate = OffsetDateTime.parse(analysisDate, ANALYSIS_DATE_FORMAT).toInstant().toEpochMilli();
                 }
-            } catch (ParseException e) {
+            } catch (DateTimeParseException e) {
                 LOGGER.warn("Could not parse date from Pull Requests API response. Will use '0' date", e);
             }
             final String base = Optional.ofNullable(jsonObject.get("base")).map(JsonElement::getAsString).orElse(null);
@@ -88,16 +108,37 @@ public class CommunityProjectPullRequestsLoader implements ProjectPullRequestsLo
 
     @Override
     public ProjectPullRequests load(String projectKey) {
+        Optional<String> pullRequestKey = Optional.ofNullable(BranchAnalysisParameters.resolve(configuration, system2)
+                .get(ScannerProperties.PULL_REQUEST_KEY));
+        if (pullRequestKey.isPresent()) {
+            Optional<ProjectPullRequests> pullRequest = loadPullRequest(projectKey, pullRequestKey.get());
+            if (pullRequest.isPresent()) {
+                return pullRequest.get();
+            }
+            LOGGER.debug("Targeted Pull Request lookup is not supported by the server. Loading all Pull Requests instead");
+        }
+        return loadAllPullRequests(projectKey);
+    }
+
+    private Optional<ProjectPullRequests> loadPullRequest(String projectKey, String pullRequestKey) {
         try {
-            GetRequest branchesGetRequest = new GetRequest(
-                    PROJECT_PULL_REQUESTS_URL + URLEncoder.encode(projectKey, StandardCharsets.UTF_8.name()));
-
-            try (WsResponse branchesResponse = scannerWsClient
-                    .call(branchesGetRequest); Reader reader = branchesResponse
-                .contentReader()) {
-                PullRequestsResponse parsedResponse = gson.fromJson(reader, PullRequestsResponse.class);
-                return new ProjectPullRequests(parsedResponse.getPullRequests());
+            GetRequest pullRequestGetRequest = new GetRequest(String.format(PROJECT_PULL_REQUEST_URL, encode(projectKey), encode(pullRequestKey)));
+            return Optional.of(new ProjectPullRequests(parse(new StringReader(serverResponseCache.call(scannerWsClient, pullRequestGetRequest)))));
+        } catch (IOException e) {
+            throw MessageException.of("Could not load pull requests from server", e);
+        } catch (HttpException e) {
+            if (404 == e.code()) {
+                return Optional.empty();
+            } else {
+                throw MessageException.of("Could not load pull requests from server", e);
             }
+        }
+    }
+
+    private ProjectPullRequests loadAllPullRequests(String projectKey) {
+        try {
+            GetRequest branchesGetRequest = new GetRequest(PROJECT_PULL_REQUESTS_URL + encode(projectKey));
+            return new ProjectPullRequests(call(branchesGetRequest));
         } catch (IOException e) {
             throw MessageException.of("Could not load pull requests from server", e);
         } catch (HttpException e) {
@@ -109,6 +150,21 @@ public class CommunityProjectPullRequestsLoader implements ProjectPullRequestsLo
         }
     }
 
+    private List<PullRequestInfo> call(GetRequest getRequest) throws IOException {
+        try (WsResponse response = scannerWsClient.call(getRequest); Reader reader = response.contentReader()) {
+            return parse(reader);
+        }
+    }
+
+    private List<PullRequestInfo> parse(Reader reader) {
+        PullRequestsResponse parsedResponse = gson.fromJson(reader, PullRequestsResponse.class);
+        return parsedResponse.getPullRequests();
+    }
+
+    private static String encode(String value) throws UnsupportedEncodingException {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+    }
+
     /*package*/ static class PullRequestsResponse {
 
         private final List<PullRequestInfo> pullRequests;
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.scanner;
+
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonarqube.ws.client.GetRequest;
+import org.sonarqube.ws.client.HttpException;
+import org.sonarqube.ws.client.WsResponse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Keeps a copy of each server response that carries an ETag in the scanner's user cache, and revalidates the copy
+ * on later requests so an unchanged response is not downloaded again. The user cache is used rather than the
+ * project's working directory since the scanner empties the working directory at the start of every analysis.
+ * Any failure to read or write the cache is logged and the request handled as if no copy was held. A copy's
+ * modification time is refreshed whenever it is used, and copies that have not been used for
+ * {@link #MAXIMUM_AGE} are removed whenever a new response is written, so responses for branches or servers
+ * that are no longer analysed do not accumulate.
+ */
+/*package*/ class ServerResponseCache {
+
+    private static final Logger LOGGER = Loggers.get(ServerResponseCache.class);
+    private static final int NOT_MODIFIED = 304;
+    /*package*/ static final Duration MAXIMUM_AGE = Duration.ofDays(30);
+
+    private final Path cacheDirectory;
+    private final String serverUrl;
+
+    /*package*/ ServerResponseCache(Configuration configuration) {
+        this(configuration.get("sonar.userHome").map(Paths::get)
+                        .orElseGet(() -> Paths.get(System.getProperty("user.home"), ".sonar"))
+                        .resolve("cache").resolve("community-branch-plugin"),
+                configuration.get("sonar.host.url").orElse("http://localhost:9000"));
+    }
+
+    /*package*/ ServerResponseCache(Path cacheDirectory, String serverUrl) {
+        super();
+        this.cacheDirectory = cacheDirectory;
+        this.serverUrl = serverUrl;
+    }
+
+    /*package*/ String call(ScannerWsClient scannerWsClient, GetRequest getRequest) throws IOException {
+        Path cacheFile = cacheDirectory.resolve(sha256(serverUrl + getRequest.getPath()));
+        Optional<CachedResponse> cachedResponse = read(cacheFile);
+        cachedResponse.ifPresent(cached -> getRequest.setHeader("If-None-Match", cached.entityTag));
+
+        try (WsResponse response = scannerWsClient.call(getRequest); Reader reader = response.contentReader()) {
+            String content = readFully(reader);
+            response.header("ETag").ifPresent(entityTag -> write(cacheFile, entityTag, content));
+            return content;
+        } catch (HttpException ex) {
+            if (NOT_MODIFIED == ex.code() && cachedResponse.isPresent()) {
+                LOGGER.debug("Using cached response for {}", getRequest.getPath());
+                touch(cacheFile);
+                return cachedResponse.get().content;
+            }
+            throw ex;
+        }
+    }
+
+    private static Optional<CachedResponse> read(Path cacheFile) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return Optional.empty();
+        }
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            String entityTag = reader.readLine();
+            if (null == entityTag || entityTag.isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(new CachedResponse(entityTag, readFully(reader)));
+        } catch (IOException ex) {
+            LOGGER.debug("Could not read cached response from " + cacheFile, ex);
+            return Optional.empty();
+        }
+    }
+
+    private static void write(Path cacheFile, String entityTag, String content) {
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            Path temporaryFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+            try {
+                try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                    writer.write(entityTag);
+                    writer.write('\n');
+                    writer.write(content);
+                }
+                // replace any existing copy in a single step so concurrent analyses never read a partial response
+                Files.move(temporaryFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+        } catch (IOException ex) {
+            LOGGER.debug("Could not write cached response to " + cacheFile, ex);
+        }
+        removeExpired(cacheFile.getParent());
+    }
+
+    private static void touch(Path cacheFile) {
+        try {
+            Files.setLastModifiedTime(cacheFile, FileTime.from(Instant.now()));
+        } catch (IOException ex) {
+            LOGGER.debug("Could not update modification time of " + cacheFile, ex);
+        }
+    }
+
+    private static void removeExpired(Path cacheDirectory) {
+        FileTime expiry = FileTime.from(Instant.now().minus(MAXIMUM_AGE));
+        try (DirectoryStream<Path> cacheFiles = Files.newDirectoryStream(cacheDirectory)) {
+            for (Path cacheFile : cacheFiles) {
+                removeIfExpired(cacheFile, expiry);
+            }
+        } catch (IOException ex) {
+            LOGGER.debug("Could not list cached responses in " + cacheDirectory, ex);
+        }
+    }
+
+    private static void removeIfExpired(Path cacheFile, FileTime expiry) {
+        try {
+            // another analysis may be removing the same copies, so a copy that has already gone is not a failure
+            if (Files.getLastModifiedTime(cacheFile).compareTo(expiry) < 0) {
+                Files.deleteIfExists(cacheFile);
+            }
+        } catch (IOException ex) {
+            LOGGER.debug("Could not remove expired cached response " + cacheFile, ex);
+        }
+    }
+
+    private static String readFully(Reader reader) throws IOException {
+        StringWriter content = new StringWriter();
+        reader.transferTo(content);
+        return content.toString();
+    }
+
+    private static String sha256(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Could not create cache key", ex);
+        }
+    }
+
+    private static final class CachedResponse {
+
+        private final String entityTag;
+        private final String content;
+
+        private CachedResponse(String entityTag, String content) {
+            this.entityTag = entityTag;
+            this.content = content;
+        }
+    }
+}
@@ -48,14 +48,27 @@ public class AzureDevopsValidator implements Validator {
 
     @Override
     public void validate(ProjectAlmSettingDto projectAlmSettingDto, AlmSettingDto almSettingDto) {
-        AzureDevopsClient azureDevopsClient;
+        validateProject(createClient(projectAlmSettingDto, almSettingDto), projectAlmSettingDto);
+    }
+
+    @Override
+    public ProjectBindingValidator forAlmSetting(AlmSettingDto almSettingDto) {
+        // the client only depends on the ALM setting so can be created once and then shared between projects
+        SharedClient<AzureDevopsClient> sharedClient = new SharedClient<>(projectAlmSettingDto -> createClient(projectAlmSettingDto, almSettingDto));
+        return projectAlmSettingDto -> validateProject(sharedClient.get(projectAlmSettingDto), projectAlmSettingDto);
+    }
+
+    private AzureDevopsClient createClient(ProjectAlmSettingDto projectAlmSettingDto, AlmSettingDto almSettingDto) {
         try {
-            azureDevopsClient = azureDevopsClientFactory.createClient(projectAlmSettingDto, almSettingDto);
+            return azureDevopsClientFactory.createClient(projectAlmSettingDto, almSettingDto);
         } catch (InvalidConfigurationException ex) {
             throw ex;
         } catch (RuntimeException ex) {
             throw new InvalidConfigurationException(InvalidConfigurationException.Scope.PROJECT, "Could not create Azure Devops client - " + ex.getMessage(), ex);
         }
+    }
+
+    private static void validateProject(AzureDevopsClient azureDevopsClient, ProjectAlmSettingDto projectAlmSettingDto) {
         String projectName = Optional.ofNullable(StringUtils.trimToNull(projectAlmSettingDto.getAlmSlug())).orElseThrow(() -> new InvalidConfigurationException(InvalidConfigurationException.Scope.PROJECT, "Repository slug must be provided"));
         String repositoryName = Optional.ofNullable(StringUtils.trimToNull(projectAlmSettingDto.getAlmRepo())).orElseThrow(() -> new InvalidConfigurationException(InvalidConfigurationException.Scope.PROJECT, "Repository name must be provided"));
         try {
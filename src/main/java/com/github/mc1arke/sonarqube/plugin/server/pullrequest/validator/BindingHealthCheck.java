@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator;
+
+import com.github.mc1arke.sonarqube.plugin.CommunityBranchPlugin;
+import com.github.mc1arke.sonarqube.plugin.InvalidConfigurationException;
+import org.sonar.api.Startable;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.alm.setting.AlmSettingDto;
+import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+import org.sonar.db.project.ProjectDto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Validates every project binding on the server, checking the bindings for each ALM setting with a single
+ * validator so that an authenticated client can be shared between all projects using that setting. Checks are
+ * run with bounded parallelism to avoid overwhelming any ALM, and can be requested on-demand or run periodically
+ * in the background with any failures being logged.
+ */
+@ServerSide
+public class BindingHealthCheck implements Startable {
+
+    private static final Logger LOGGER = Loggers.get(BindingHealthCheck.class);
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private final DbClient dbClient;
+    private final List<Validator> validators;
+    private final Configuration configuration;
+    private final int parallelism;
+    private ScheduledExecutorService scheduler;
+
+    public BindingHealthCheck(DbClient dbClient, List<Validator> validators, Configuration configuration) {
+        this(dbClient, validators, configuration, DEFAULT_PARALLELISM);
+    }
+
+    BindingHealthCheck(DbClient dbClient, List<Validator> validators, Configuration configuration, int parallelism) {
+        super();
+        this.dbClient = dbClient;
+        this.validators = validators;
+        this.configuration = configuration;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void start() {
+        int intervalHours = configuration.getInt(CommunityBranchPlugin.BINDING_HEALTH_CHECK_INTERVAL).orElse(0);
+        if (intervalHours <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "binding-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runScheduledCheck, intervalHours, intervalHours, TimeUnit.HOURS);
+    }
+
+    @Override
+    public void stop() {
+        if (null != scheduler) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public Report check() {
+        List<Failure> failures = Collections.synchronizedList(new ArrayList<>());
+        Map<Optional<AlmSettingDto>, List<ProjectBinding>> bindingsBySetting;
+        try (DbSession dbSession = dbClient.openSession(false)) {
+            bindingsBySetting = loadBindings(dbSession);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<CompletableFuture<Void>> checks = new ArrayList<>();
+            for (Map.Entry<Optional<AlmSettingDto>, List<ProjectBinding>> entry : bindingsBySetting.entrySet()) {
+                AlmSettingDto almSettingDto = entry.getKey().orElse(null);
+                if (null == almSettingDto) {
+                    entry.getValue().forEach(binding -> failures.add(new Failure(binding.project.getKey(), null,
+                            InvalidConfigurationException.Scope.PROJECT.name(), "The ALM setting bound to the project no longer exists")));
+                    continue;
+                }
+
+                Optional<Validator.ProjectBindingValidator> validator = validators.stream()
+                        .filter(v -> v.alm().contains(almSettingDto.getAlm()))
+                        .findFirst()
+                        .map(v -> v.forAlmSetting(almSettingDto));
+                for (ProjectBinding binding : entry.getValue()) {
+                    if (validator.isEmpty()) {
+                        failures.add(new Failure(binding.project.getKey(), almSettingDto.getKey(), InvalidConfigurationException.Scope.PROJECT.name(),
+                                String.format("The %s ALM is not supported by any validators", almSettingDto.getAlm())));
+                        continue;
+                    }
+                    checks.add(CompletableFuture.runAsync(() -> validate(validator.get(), binding, almSettingDto)
+                            .ifPresent(failures::add), executorService));
+                }
+            }
+            CompletableFuture.allOf(checks.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        int checked = bindingsBySetting.values().stream().mapToInt(List::size).sum();
+        List<Failure> sortedFailures = new ArrayList<>(failures);
+        sortedFailures.sort(Comparator.comparing(Failure::getProject));
+        return new Report(checked, sortedFailures);
+    }
+
+    private Map<Optional<AlmSettingDto>, List<ProjectBinding>> loadBindings(DbSession dbSession) {
+        Map<String, AlmSettingDto> almSettings = dbClient.almSettingDao().selectAll(dbSession).stream()
+                .collect(Collectors.toMap(AlmSettingDto::getUuid, Function.identity()));
+
+        Map<Optional<AlmSettingDto>, List<ProjectBinding>> bindingsBySetting = new LinkedHashMap<>();
+        for (ProjectDto project : dbClient.projectDao().selectProjects(dbSession)) {
+            dbClient.projectAlmSettingDao().selectByProject(dbSession, project)
+                    .ifPresent(projectAlmSettingDto -> bindingsBySetting
+                            .computeIfAbsent(Optional.ofNullable(almSettings.get(projectAlmSettingDto.getAlmSettingUuid())), k -> new ArrayList<>())
+                            .add(new ProjectBinding(project, projectAlmSettingDto)));
+        }
+        return bindingsBySetting;
+    }
+
+    private static Optional<Failure> validate(Validator.ProjectBindingValidator validator, ProjectBinding binding, AlmSettingDto almSettingDto) {
+        try {
+            validator.validate(binding.projectAlmSettingDto);
+            return Optional.empty();
+        } catch (InvalidConfigurationException ex) {
+            return Optional.of(new Failure(binding.project.getKey(), almSettingDto.getKey(), ex.getScope().name(), ex.getMessage()));
+        } catch (RuntimeException ex) {
+            return Optional.of(new Failure(binding.project.getKey(), almSettingDto.getKey(), InvalidConfigurationException.Scope.PROJECT.name(),
+                    "Could not validate binding - " + ex.getMessage()));
+        }
+    }
+
+    private void runScheduledCheck() {
+        try {
+            Report report = check();
+            for (Failure failure : report.getFailures()) {
+                LOGGER.warn("Binding for project '{}' to ALM setting '{}' is invalid: {}", failure.getProject(), failure.getAlmSetting(), failure.getMessage());
+            }
+            LOGGER.info("Checked {} project bindings, {} failed validation", report.getChecked(), report.getFailures().size());
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Could not check project bindings", ex);
+        }
+    }
+
+    private static final class ProjectBinding {
+
+        private final ProjectDto project;
+        private final ProjectAlmSettingDto projectAlmSettingDto;
+
+        private ProjectBinding(ProjectDto project, ProjectAlmSettingDto projectAlmSettingDto) {
+            this.project = project;
+            this.projectAlmSettingDto = projectAlmSettingDto;
+        }
+    }
+
+    public static final class Report {
+
+        private final int checked;
+        private final List<Failure> failures;
+
+        Report(int checked, List<Failure> failures) {
+            this.checked = checked;
+            this.failures = Collections.unmodifiableList(failures);
+        }
+
+        public int getChecked() {
+            return checked;
+        }
+
+        public List<Failure> getFailures() {
+            return failures;
+        }
+    }
+
+    public static final class Failure {
+
+        private final String project;
+        private final String almSetting;
+        private final String scope;
+        private final String message;
+
+        Failure(String project, String almSetting, String scope, String message) {
+            this.project = project;
+            this.almSetting = almSetting;
+            this.scope = scope;
+            this.message = message;
+        }
+
+        public String getProject() {
+            return project;
+        }
+
+        public String getAlmSetting() {
+            return almSetting;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
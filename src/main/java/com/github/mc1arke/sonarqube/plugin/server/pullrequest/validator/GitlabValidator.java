@@ -41,14 +41,27 @@ public class GitlabValidator implements Validator {
 
     @Override
     public void validate(ProjectAlmSettingDto projectAlmSettingDto, AlmSettingDto almSettingDto) {
-        GitlabClient gitlabClient;
+        validateProject(createClient(projectAlmSettingDto, almSettingDto), projectAlmSettingDto);
+    }
+
+    @Override
+    public ProjectBindingValidator forAlmSetting(AlmSettingDto almSettingDto) {
+        // the client only depends on the ALM setting so can be created once and then shared between projects
+        SharedClient<GitlabClient> sharedClient = new SharedClient<>(projectAlmSettingDto -> createClient(projectAlmSettingDto, almSettingDto));
+        return projectAlmSettingDto -> validateProject(sharedClient.get(projectAlmSettingDto), projectAlmSettingDto);
+    }
+
+    private GitlabClient createClient(ProjectAlmSettingDto projectAlmSettingDto, AlmSettingDto almSettingDto) {
         try {
-            gitlabClient = gitlabClientFactory.createClient(projectAlmSettingDto, almSettingDto);
+            return gitlabClientFactory.createClient(projectAlmSettingDto, almSettingDto);
         } catch (InvalidConfigurationException ex) {
             throw ex;
         } catch (RuntimeException ex) {
             throw new InvalidConfigurationException(InvalidConfigurationException.Scope.PROJECT, "Could not create Gitlab client - " + ex.getMessage(), ex);
         }
+    }
+
+    private static void validateProject(GitlabClient gitlabClient, ProjectAlmSettingDto projectAlmSettingDto) {
         try {
             gitlabClient.getProject(projectAlmSettingDto.getAlmRepo());
         } catch (IOException | RuntimeException ex) {
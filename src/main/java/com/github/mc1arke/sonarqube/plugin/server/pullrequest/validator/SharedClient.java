@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator;
+
+import com.github.mc1arke.sonarqube.plugin.InvalidConfigurationException;
+import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+
+import java.util.function.Function;
+
+/**
+ * Creates a client on the first request and hands the same client to every later request, using double-checked
+ * locking so concurrent project checks never create more than one client. A failure to create the client is also
+ * remembered, so it is reported to every project bound to the ALM setting without trying to create the client again.
+ */
+/*package*/ final class SharedClient<T> {
+
+    private final Function<ProjectAlmSettingDto, T> clientFactory;
+    private volatile T client;
+    private volatile InvalidConfigurationException failure;
+
+    /*package*/ SharedClient(Function<ProjectAlmSettingDto, T> clientFactory) {
+        super();
+        this.clientFactory = clientFactory;
+    }
+
+    /*package*/ T get(ProjectAlmSettingDto projectAlmSettingDto) {
+        T result = client;
+        if (null != result) {
+            return result;
+        }
+        synchronized (this) {
+            if (null == client && null == failure) {
+                try {
+                    client = clientFactory.apply(projectAlmSettingDto);
+                } catch (InvalidConfigurationException ex) {
+                    failure = ex;
+                }
+            }
+            if (null != failure) {
+                throw new InvalidConfigurationException(failure.getScope(), failure.getMessage(), failure);
+            }
+            return client;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator;
+
+import com.github.mc1arke.sonarqube.plugin.InvalidConfigurationException;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.utils.System2;
+import org.sonar.db.alm.setting.AlmSettingDto;
+import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the outcome of recent binding validations so that repeated views of a project's settings do not
+ * call the ALM each time. Outcomes are keyed on the last update time of both the project binding and the ALM
+ * setting, so any change to either is validated afresh. Concurrent requests for the same binding wait for a
+ * single validation rather than each calling the ALM.
+ */
+@ServerSide
+public class ValidationResultCache {
+
+    private static final long TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int MAX_ENTRIES = 1000;
+
+    private final System2 system2;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public ValidationResultCache(System2 system2) {
+        super();
+        this.system2 = system2;
+    }
+
+    public void validate(ProjectAlmSettingDto projectAlmSettingDto, AlmSettingDto almSettingDto, boolean force,
+                         Validator validator) {
+        String key = projectAlmSettingDto.getUuid() + ':' + projectAlmSettingDto.getUpdatedAt() + ':'
+                + almSettingDto.getUuid() + ':' + almSettingDto.getUpdatedAt();
+
+        Entry entry;
+        boolean owner = false;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (null == entry || (!entry.isInProgress() && (force || system2.now() >= entry.expiresAt))) {
+                entry = new Entry();
+                entries.put(key, entry);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            runValidation(key, entry, projectAlmSettingDto, almSettingDto, validator);
+        }
+
+        InvalidConfigurationException outcome;
+        try {
+            outcome = entry.outcome.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw ex;
+        }
+        if (null != outcome) {
+            throw outcome;
+        }
+    }
+
+    private void runValidation(String key, Entry entry, ProjectAlmSettingDto projectAlmSettingDto,
+                               AlmSettingDto almSettingDto, Validator validator) {
+        try {
+            validator.validate(projectAlmSettingDto, almSettingDto);
+            complete(entry, null);
+        } catch (InvalidConfigurationException ex) {
+            complete(entry, ex);
+        } catch (RuntimeException | Error ex) {
+            // any other failure is not remembered, but waiting requests must still be released
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            entry.outcome.completeExceptionally(ex);
+        }
+    }
+
+    private void complete(Entry entry, InvalidConfigurationException outcome) {
+        entry.expiresAt = system2.now() + TIME_TO_LIVE_MILLIS;
+        entry.outcome.complete(outcome);
+    }
+
+    private static final class Entry {
+
+        private final CompletableFuture<InvalidConfigurationException> outcome = new CompletableFuture<>();
+        private volatile long expiresAt;
+
+        private boolean isInProgress() {
+            return !outcome.isDone();
+        }
+    }
+}
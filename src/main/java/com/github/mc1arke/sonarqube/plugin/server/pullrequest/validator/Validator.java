@@ -31,4 +31,20 @@ public interface Validator {
     void validate(ProjectAlmSettingDto projectAlmSettingDto, AlmSettingDto almSettingDto);
 
     List<ALM> alm();
+
+    /**
+     * Creates a validator for checking many project bindings against the same ALM setting. Implementations whose
+     * client only depends on the ALM setting should create a single client and share it across every project being
+     * checked, and the returned validator must be safe to call from multiple threads.
+     */
+    default ProjectBindingValidator forAlmSetting(AlmSettingDto almSettingDto) {
+        return projectAlmSettingDto -> validate(projectAlmSettingDto, almSettingDto);
+    }
+
+    @FunctionalInterface
+    interface ProjectBindingValidator {
+
+        void validate(ProjectAlmSettingDto projectAlmSettingDto);
+
+    }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action;
+
+import org.sonar.api.web.UserRole;
+import org.sonar.db.permission.GlobalPermission;
+import org.sonar.db.project.ProjectDto;
+import org.sonar.server.exceptions.ForbiddenException;
+import org.sonar.server.user.UserSession;
+
+/*package*/ final class AnalysisPermissions {
+
+    private AnalysisPermissions() {
+        super();
+    }
+
+    /**
+     * Checks the current user can either browse the project or run an analysis against it, matching the permissions
+     * needed to list a project's branches and Pull Requests.
+     */
+    /*package*/ static void checkCanBrowseOrScan(UserSession userSession, ProjectDto project) {
+        if (userSession.hasProjectPermission(UserRole.USER, project) || userSession.hasProjectPermission(UserRole.SCAN, project)
+                || userSession.hasPermission(GlobalPermission.SCAN)) {
+            return;
+        }
+        throw new ForbiddenException("Insufficient privileges");
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.web.UserRole;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.alm.setting.ALM;
+import org.sonar.db.alm.setting.AlmSettingDto;
+import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+import org.sonar.db.project.ProjectDto;
+import org.sonar.server.almsettings.ws.AlmSettingsWsAction;
+import org.sonar.server.user.UserSession;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Binds many projects to their ALM repositories in a single request. Bindings are read as a stream of JSON
+ * objects, either newline delimited or wrapped in an array, and written in batches with one transaction per
+ * batch. A result for each binding is streamed back as newline delimited JSON once its batch is committed,
+ * so an invalid binding does not prevent the others from being saved. Each batch is saved all-or-nothing: if the
+ * database rejects any part of it, the batch is rolled back, every binding in it is reported as an error, and
+ * processing continues with the next batch.
+ */
+public class BulkSetBindingAction implements AlmSettingsWsAction {
+
+    private static final String BINDINGS_PARAMETER = "bindings";
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    private static final int BATCH_SIZE = 100;
+
+    private final DbClient dbClient;
+    private final UserSession userSession;
+    private final ObjectMapper objectMapper;
+
+    public BulkSetBindingAction(DbClient dbClient, UserSession userSession) {
+        super();
+        this.dbClient = dbClient;
+        this.userSession = userSession;
+        this.objectMapper = new ObjectMapper()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @Override
+    public void define(WebService.NewController context) {
+        WebService.NewAction action = context.createAction("bulk_set_binding").setPost(true).setHandler(this);
+        action.createParam(BINDINGS_PARAMETER).setRequired(true)
+                .setDescription("Newline delimited JSON objects, or a JSON array of objects, each containing 'project' and 'almSetting' keys, "
+                        + "a 'repository' for all ALMs other than Gitlab, a 'slug' for Bitbucket Server and the project name for Azure DevOps, "
+                        + "and optionally 'summaryCommentEnabled' for Github. Bindings are saved in batches of " + BATCH_SIZE + ", with each batch "
+                        + "saved all-or-nothing: if any binding in a batch cannot be saved to the database, none of the bindings in that batch are "
+                        + "saved and each is reported as an error");
+    }
+
+    @Override
+    public void handle(Request request, Response response) throws IOException {
+        userSession.checkLoggedIn();
+
+        InputStream bindingsInput = Optional.ofNullable(request.paramAsInputStream(BINDINGS_PARAMETER))
+                .orElseThrow(() -> new IllegalArgumentException("The 'bindings' parameter is missing"));
+
+        Response.Stream stream = response.stream();
+        stream.setMediaType(NDJSON_MEDIA_TYPE);
+        OutputStream output = stream.output();
+
+        Map<String, Optional<AlmSettingDto>> almSettings = new HashMap<>();
+        try (DbSession dbSession = dbClient.openSession(true);
+             MappingIterator<BindingRequest> bindingRequests = objectMapper.readerFor(BindingRequest.class).readValues(bindingsInput)) {
+            List<BindingRequest> batch = new ArrayList<>(BATCH_SIZE);
+            while (bindingRequests.hasNextValue()) {
+                batch.add(bindingRequests.nextValue());
+                if (batch.size() == BATCH_SIZE) {
+                    writeResults(output, saveBatch(dbSession, batch, almSettings));
+                    batch.clear();
+                }
+            }
+            writeResults(output, saveBatch(dbSession, batch, almSettings));
+        }
+    }
+
+    private List<BindingResult> saveBatch(DbSession dbSession, List<BindingRequest> batch, Map<String, Optional<AlmSettingDto>> almSettings) {
+        if (batch.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            List<BindingResult> results = saveBindings(dbSession, batch, almSettings);
+            dbSession.commit();
+            return results;
+        } catch (RuntimeException ex) {
+            dbSession.rollback();
+            String error = "Could not save the batch containing this binding: " + ex.getMessage();
+            return batch.stream()
+                    .map(bindingRequest -> new BindingResult(bindingRequest.getProject(), error))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private List<BindingResult> saveBindings(DbSession dbSession, List<BindingRequest> batch, Map<String, Optional<AlmSettingDto>> almSettings) {
+        Set<String> projectKeys = batch.stream()
+                .map(BindingRequest::getProject)
+                .filter(StringUtils::isNotBlank)
+                .collect(Collectors.toSet());
+        Map<String, ProjectDto> projects = dbClient.projectDao().selectProjectsByKeys(dbSession, projectKeys).stream()
+                .collect(Collectors.toMap(ProjectDto::getKey, Function.identity()));
+
+        List<BindingResult> results = new ArrayList<>(batch.size());
+        for (BindingRequest bindingRequest : batch) {
+            try {
+                ProjectDto project = Optional.ofNullable(projects.get(bindingRequest.getProject()))
+                        .orElseThrow(() -> new IllegalArgumentException(String.format("Project '%s' could not be found", bindingRequest.getProject())));
+                if (!userSession.hasProjectPermission(UserRole.ADMIN, project)) {
+                    throw new IllegalArgumentException("Insufficient privileges to bind project");
+                }
+                AlmSettingDto almSettingDto = almSettings.computeIfAbsent(bindingRequest.getAlmSetting(),
+                                k -> null == k ? Optional.empty() : dbClient.almSettingDao().selectByKey(dbSession, k))
+                        .orElseThrow(() -> new IllegalArgumentException(String.format("ALM setting '%s' could not be found", bindingRequest.getAlmSetting())));
+
+                dbClient.projectAlmSettingDao().insertOrUpdate(dbSession, createProjectAlmSettingDto(project, almSettingDto, bindingRequest),
+                        almSettingDto.getUuid(), project.getName(), project.getKey());
+                results.add(new BindingResult(bindingRequest.getProject(), null));
+            } catch (IllegalArgumentException ex) {
+                results.add(new BindingResult(bindingRequest.getProject(), ex.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    private static ProjectAlmSettingDto createProjectAlmSettingDto(ProjectDto project, AlmSettingDto almSettingDto, BindingRequest bindingRequest) {
+        ALM alm = almSettingDto.getAlm();
+        if (ALM.GITLAB != alm && StringUtils.isBlank(bindingRequest.getRepository())) {
+            throw new IllegalArgumentException("A repository must be provided");
+        }
+        if ((ALM.BITBUCKET == alm || ALM.AZURE_DEVOPS == alm) && StringUtils.isBlank(bindingRequest.getSlug())) {
+            throw new IllegalArgumentException("A slug must be provided");
+        }
+
+        return new ProjectAlmSettingDto()
+                .setProjectUuid(project.getUuid())
+                .setAlmSettingUuid(almSettingDto.getUuid())
+                .setAlmRepo(bindingRequest.getRepository())
+                .setAlmSlug(ALM.BITBUCKET == alm || ALM.AZURE_DEVOPS == alm ? bindingRequest.getSlug() : null)
+                .setSummaryCommentEnabled(ALM.GITHUB == alm ? bindingRequest.getSummaryCommentEnabled() : null)
+                .setMonorepo(false);
+    }
+
+    private void writeResults(OutputStream output, List<BindingResult> results) throws IOException {
+        for (BindingResult result : results) {
+            objectMapper.writeValue(output, result);
+            output.write('\n');
+        }
+        output.flush();
+    }
+
+    static final class BindingRequest {
+
+        private final String project;
+        private final String almSetting;
+        private final String repository;
+        private final String slug;
+        private final Boolean summaryCommentEnabled;
+
+        @JsonCreator
+        BindingRequest(@JsonProperty("project") String project, @JsonProperty("almSetting") String almSetting,
+                       @JsonProperty("repository") String repository, @JsonProperty("slug") String slug,
+                       @JsonProperty("summaryCommentEnabled") Boolean summaryCommentEnabled) {
+            this.project = project;
+            this.almSetting = almSetting;
+            this.repository = repository;
+            this.slug = slug;
+            this.summaryCommentEnabled = summaryCommentEnabled;
+        }
+
+        String getProject() {
+            return project;
+        }
+
+        String getAlmSetting() {
+            return almSetting;
+        }
+
+        String getRepository() {
+            return repository;
+        }
+
+        String getSlug() {
+            return slug;
+        }
+
+        Boolean getSummaryCommentEnabled() {
+            return summaryCommentEnabled;
+        }
+    }
+
+    static final class BindingResult {
+
+        private final String project;
+        private final String error;
+
+        BindingResult(String project, String error) {
+            this.project = project;
+            this.error = error;
+        }
+
+        @JsonProperty("project")
+        public String getProject() {
+            return project;
+        }
+
+        @JsonProperty("status")
+        public String getStatus() {
+            return null == error ? "OK" : "ERROR";
+        }
+
+        @JsonProperty("error")
+        public String getError() {
+            return error;
+        }
+    }
+}
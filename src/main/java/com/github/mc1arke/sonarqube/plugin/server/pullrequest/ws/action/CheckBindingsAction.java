@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator.BindingHealthCheck;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.server.almsettings.ws.AlmSettingsWsAction;
+import org.sonar.server.user.UserSession;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Validates the ALM binding of every project on the server and returns a report listing each binding that
+ * failed validation. Only available to system administrators since it reveals details of every bound project.
+ */
+public class CheckBindingsAction implements AlmSettingsWsAction {
+
+    private static final String JSON_MEDIA_TYPE = "application/json";
+
+    private final BindingHealthCheck bindingHealthCheck;
+    private final UserSession userSession;
+    private final ObjectMapper objectMapper;
+
+    public CheckBindingsAction(BindingHealthCheck bindingHealthCheck, UserSession userSession) {
+        super();
+        this.bindingHealthCheck = bindingHealthCheck;
+        this.userSession = userSession;
+        this.objectMapper = new ObjectMapper()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @Override
+    public void define(WebService.NewController context) {
+        context.createAction("check_bindings").setPost(true).setHandler(this)
+                .setDescription("Validate the ALM binding of every project, returning the number of bindings checked and details of those that failed");
+    }
+
+    @Override
+    public void handle(Request request, Response response) throws IOException {
+        userSession.checkIsSystemAdministrator();
+
+        BindingHealthCheck.Report report = bindingHealthCheck.check();
+
+        Response.Stream stream = response.stream();
+        stream.setMediaType(JSON_MEDIA_TYPE);
+        OutputStream output = stream.output();
+        objectMapper.writeValue(output, report);
+        output.flush();
+    }
+}
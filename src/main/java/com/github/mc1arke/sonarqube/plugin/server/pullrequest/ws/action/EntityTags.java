@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action;
+
+import com.google.protobuf.Message;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Adds an ETag to responses so a client holding a copy of a previous response can revalidate it with
+ * If-None-Match and be sent a body-less 304 response if nothing has changed.
+ */
+/*package*/ final class EntityTags {
+
+    private static final int NOT_MODIFIED = 304;
+
+    private EntityTags() {
+        super();
+    }
+
+    /**
+     * Sets the ETag for the message on the response, and completes the response as 'Not Modified' if the request
+     * already holds the same version of the message.
+     *
+     * @return true if the response has been completed and the message should not be written
+     */
+    /*package*/ static boolean completeIfNotModified(Message message, Request request, Response response) {
+        String entityTag = createEntityTag(message, request.getMediaType());
+        response.setHeader("ETag", entityTag);
+        if (request.header("If-None-Match").filter(entityTag::equals).isPresent()) {
+            response.stream().setStatus(NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    private static String createEntityTag(Message message, String mediaType) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(String.valueOf(mediaType).getBytes(StandardCharsets.UTF_8));
+            byte[] digest = messageDigest.digest(message.toByteArray());
+            StringBuilder entityTag = new StringBuilder(digest.length * 2 + 2).append('"');
+            for (byte b : digest) {
+                entityTag.append(String.format("%02x", b));
+            }
+            return entityTag.append('"').toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Could not create entity tag", ex);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action;
+
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.DateUtils;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.BranchDto;
+import org.sonar.db.component.BranchType;
+import org.sonar.db.project.ProjectDto;
+import org.sonar.server.branch.ws.BranchWsAction;
+import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.user.UserSession;
+import org.sonar.server.ws.WsUtils;
+import org.sonarqube.ws.Common;
+import org.sonarqube.ws.ProjectBranches;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Retrieves the requested branches of a project, along with the project's main branch, in the same format as the
+ * core branch listing, so that a scanner only needs to download the branches involved in its analysis.
+ */
+public class ShowBranchesAction implements BranchWsAction {
+
+    private static final String PROJECT_PARAMETER = "project";
+    private static final String BRANCH_PARAMETER = "branch";
+    private static final int MAX_BRANCHES = 10;
+
+    private final DbClient dbClient;
+    private final ComponentFinder componentFinder;
+    private final UserSession userSession;
+    private final ProtoBufWriter protoBufWriter;
+
+    public ShowBranchesAction(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession) {
+        this(dbClient, componentFinder, userSession, WsUtils::writeProtobuf);
+    }
+
+    ShowBranchesAction(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession, ProtoBufWriter protoBufWriter) {
+        super();
+        this.dbClient = dbClient;
+        this.componentFinder = componentFinder;
+        this.userSession = userSession;
+        this.protoBufWriter = protoBufWriter;
+    }
+
+    @Override
+    public void define(WebService.NewController context) {
+        WebService.NewAction action = context.createAction("show").setHandler(this)
+                .setDescription("Show the requested branches of a project along with the main branch, omitting any requested branches that have not been analysed");
+        action.createParam(PROJECT_PARAMETER).setRequired(true);
+        action.createParam(BRANCH_PARAMETER).setRequired(false)
+                .setDescription(String.format("Name of a branch to show. Repeat the parameter to show up to %d branches", MAX_BRANCHES));
+    }
+
+    @Override
+    public void handle(Request request, Response response) {
+        String projectKey = request.mandatoryParam(PROJECT_PARAMETER);
+        List<String> branchNames = Optional.ofNullable(request.multiParam(BRANCH_PARAMETER)).orElse(List.of());
+        if (branchNames.size() > MAX_BRANCHES) {
+            throw new IllegalArgumentException(String.format("No more than %d branches can be requested", MAX_BRANCHES));
+        }
+
+        try (DbSession dbSession = dbClient.openSession(false)) {
+            ProjectDto project = componentFinder.getProjectByKey(dbSession, projectKey);
+            AnalysisPermissions.checkCanBrowseOrScan(userSession, project);
+
+            Map<String, BranchDto> branches = new LinkedHashMap<>();
+            dbClient.branchDao().selectByUuid(dbSession, project.getUuid())
+                    .ifPresent(mainBranch -> branches.put(mainBranch.getUuid(), mainBranch));
+            for (String branchName : branchNames) {
+                dbClient.branchDao().selectByBranchKey(dbSession, project.getUuid(), branchName)
+                        .filter(branch -> BranchType.BRANCH == branch.getBranchType())
+                        .ifPresent(branch -> branches.putIfAbsent(branch.getUuid(), branch));
+            }
+
+            List<ProjectBranches.Branch> responseBranches = new ArrayList<>(branches.size());
+            for (BranchDto branch : branches.values()) {
+                responseBranches.add(createBranch(dbSession, branch));
+            }
+            ProjectBranches.ListWsResponse listWsResponse = ProjectBranches.ListWsResponse.newBuilder().addAllBranches(responseBranches).build();
+            if (!EntityTags.completeIfNotModified(listWsResponse, request, response)) {
+                protoBufWriter.write(listWsResponse, request, response);
+            }
+        }
+    }
+
+    private ProjectBranches.Branch createBranch(DbSession dbSession, BranchDto branch) {
+        ProjectBranches.Branch.Builder builder = ProjectBranches.Branch.newBuilder()
+                .setName(branch.getKey())
+                .setIsMain(branch.isMain())
+                .setType(Common.BranchType.valueOf(branch.getBranchType().name()))
+                .setExcludedFromPurge(branch.isExcludeFromPurge());
+        dbClient.snapshotDao().selectLastAnalysisByComponentUuid(dbSession, branch.getUuid())
+                .ifPresent(snapshot -> builder.setAnalysisDate(DateUtils.formatDateTime(snapshot.getCreatedAt())));
+        return builder.build();
+    }
+}
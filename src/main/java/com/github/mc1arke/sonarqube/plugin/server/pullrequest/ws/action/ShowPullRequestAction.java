@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action;
+
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.DateUtils;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.BranchDto;
+import org.sonar.db.component.BranchType;
+import org.sonar.db.project.ProjectDto;
+import org.sonar.db.protobuf.DbProjectBranches;
+import org.sonar.server.branch.pr.ws.PullRequestWsAction;
+import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.user.UserSession;
+import org.sonar.server.ws.WsUtils;
+import org.sonarqube.ws.ProjectPullRequests;
+
+import java.util.Optional;
+
+/**
+ * Retrieves a single Pull Request for a project in the same format as the core Pull Request listing, so that a
+ * scanner analysing a Pull Request does not have to download every Pull Request known for the project.
+ */
+public class ShowPullRequestAction implements PullRequestWsAction {
+
+    private static final String PROJECT_PARAMETER = "project";
+    private static final String PULL_REQUEST_PARAMETER = "pullRequest";
+
+    private final DbClient dbClient;
+    private final ComponentFinder componentFinder;
+    private final UserSession userSession;
+    private final ProtoBufWriter protoBufWriter;
+
+    public ShowPullRequestAction(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession) {
+        this(dbClient, componentFinder, userSession, WsUtils::writeProtobuf);
+    }
+
+    ShowPullRequestAction(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession, ProtoBufWriter protoBufWriter) {
+        super();
+        this.dbClient = dbClient;
+        this.componentFinder = componentFinder;
+        this.userSession = userSession;
+        this.protoBufWriter = protoBufWriter;
+    }
+
+    @Override
+    public void define(WebService.NewController context) {
+        WebService.NewAction action = context.createAction("show").setHandler(this)
+                .setDescription("Show a single Pull Request of a project, returning an empty list if the Pull Request has not been analysed");
+        action.createParam(PROJECT_PARAMETER).setRequired(true);
+        action.createParam(PULL_REQUEST_PARAMETER).setRequired(true);
+    }
+
+    @Override
+    public void handle(Request request, Response response) {
+        String projectKey = request.mandatoryParam(PROJECT_PARAMETER);
+        String pullRequestKey = request.mandatoryParam(PULL_REQUEST_PARAMETER);
+
+        try (DbSession dbSession = dbClient.openSession(false)) {
+            ProjectDto project = componentFinder.getProjectByKey(dbSession, projectKey);
+            AnalysisPermissions.checkCanBrowseOrScan(userSession, project);
+
+            ProjectPullRequests.ListWsResponse.Builder responseBuilder = ProjectPullRequests.ListWsResponse.newBuilder();
+            dbClient.branchDao().selectByPullRequestKey(dbSession, project.getUuid(), pullRequestKey)
+                    .filter(branch -> BranchType.PULL_REQUEST == branch.getBranchType())
+                    .map(branch -> createPullRequest(dbSession, branch))
+                    .ifPresent(responseBuilder::addPullRequests);
+
+            ProjectPullRequests.ListWsResponse listWsResponse = responseBuilder.build();
+            if (!EntityTags.completeIfNotModified(listWsResponse, request, response)) {
+                protoBufWriter.write(listWsResponse, request, response);
+            }
+        }
+    }
+
+    private ProjectPullRequests.PullRequest createPullRequest(DbSession dbSession, BranchDto branch) {
+        ProjectPullRequests.PullRequest.Builder builder = ProjectPullRequests.PullRequest.newBuilder().setKey(branch.getKey());
+
+        DbProjectBranches.PullRequestData pullRequestData = branch.getPullRequestData();
+        if (null != pullRequestData) {
+            builder.setBranch(pullRequestData.getBranch())
+                    .setTitle(pullRequestData.getTitle())
+                    .setUrl(pullRequestData.getUrl())
+                    .setTarget(pullRequestData.getTarget());
+        } else {
+            builder.setBranch(branch.getKey());
+        }
+
+        Optional<BranchDto> mergeBranch = Optional.ofNullable(branch.getMergeBranchUuid())
+                .flatMap(uuid -> dbClient.branchDao().selectByUuid(dbSession, uuid));
+        if (mergeBranch.isPresent()) {
+            builder.setBase(mergeBranch.get().getKey());
+        } else {
+            builder.setIsOrphan(true);
+        }
+
+        dbClient.snapshotDao().selectLastAnalysisByComponentUuid(dbSession, branch.getUuid())
+                .ifPresent(snapshot -> builder.setAnalysisDate(DateUtils.formatDateTime(snapshot.getCreatedAt())));
+
+        return builder.build();
+    }
+}
@@ -19,6 +19,7 @@
 package com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action;
 
 import com.github.mc1arke.sonarqube.plugin.InvalidConfigurationException;
+import com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator.ValidationResultCache;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator.Validator;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
@@ -38,16 +39,21 @@ import java.util.List;
 
 public class ValidateBindingAction extends ProjectWsAction {
 
+    private static final String FORCE_PARAMETER = "force";
+
     private final List<Validator> validators;
+    private final ValidationResultCache validationResultCache;
 
-    public ValidateBindingAction(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession, List<Validator> validators) {
+    public ValidateBindingAction(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession, List<Validator> validators,
+                                 ValidationResultCache validationResultCache) {
         super("validate_binding", dbClient, componentFinder, userSession, true, UserRole.USER);
         this.validators = validators;
+        this.validationResultCache = validationResultCache;
     }
 
     @Override
     protected void configureAction(WebService.NewAction action) {
-        //no-op
+        action.createParam(FORCE_PARAMETER).setRequired(false).setBooleanPossibleValues();
     }
 
     @Override
@@ -55,10 +61,10 @@ public class ValidateBindingAction extends ProjectWsAction {
         DbClient dbClient = getDbClient();
         dbClient.projectAlmSettingDao()
                 .selectByProject(dbSession, project)
-                .ifPresent(projectAlmSettingDto -> validateProject(projectAlmSettingDto, dbSession, dbClient, validators));
+                .ifPresent(projectAlmSettingDto -> validateProject(projectAlmSettingDto, dbSession, dbClient, Boolean.TRUE.equals(request.paramAsBoolean(FORCE_PARAMETER))));
     }
 
-    private static void validateProject(ProjectAlmSettingDto projectAlmSettingDto, DbSession dbSession, DbClient dbClient, List<Validator> validators) {
+    private void validateProject(ProjectAlmSettingDto projectAlmSettingDto, DbSession dbSession, DbClient dbClient, boolean force) {
         try {
             AlmSettingDto almSettingDto = dbClient.almSettingDao().selectByUuid(dbSession, projectAlmSettingDto.getAlmSettingUuid())
                 .orElseThrow(() -> new InvalidConfigurationException(InvalidConfigurationException.Scope.PROJECT, "The ALM setting bound to the project no longer exists"));
@@ -70,7 +76,7 @@ public class ValidateBindingAction extends ProjectWsAction {
                     .findFirst()
                     .orElseThrow(() -> new InvalidConfigurationException(InvalidConfigurationException.Scope.PROJECT, String.format("The %s ALM is not supported by any validators", targetAlm)));
 
-            validator.validate(projectAlmSettingDto, almSettingDto);
+            validationResultCache.validate(projectAlmSettingDto, almSettingDto, force, validator);
         } catch (InvalidConfigurationException ex) {
             throw new BadConfigurationException(ex.getScope().name(), ex.getMessage());
         }
@@ -39,12 +39,15 @@ import java.lang.instrument.Instrumentation;
 import java.lang.instrument.UnmodifiableClassException;
 import java.lang.reflect.Field;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 public class CommunityBranchAgentTest {
 
@@ -64,11 +67,11 @@ public class CommunityBranchAgentTest {
 
         ArgumentCaptor<ClassFileTransformer> classFileTransformerArgumentCaptor = ArgumentCaptor.forClass(ClassFileTransformer.class);
         verify(instrumentation).retransformClasses(MultipleAlmFeatureProvider.class);
-        verify(instrumentation, times(3)).addTransformer(classFileTransformerArgumentCaptor.capture());
+        verify(instrumentation).addTransformer(classFileTransformerArgumentCaptor.capture());
 
         try (InputStream inputStream = MultipleAlmFeatureProvider.class.getResourceAsStream(MultipleAlmFeatureProvider.class.getSimpleName())) {
             byte[] input = IOUtils.toByteArray(inputStream);
-            byte[] result = classFileTransformerArgumentCaptor.getAllValues().get(0).transform(classLoader, MultipleAlmFeatureProvider.class.getName().replaceAll("\\.", "/"), getClass(), getClass().getProtectionDomain(), input);
+            byte[] result = classFileTransformerArgumentCaptor.getValue().transform(classLoader, MultipleAlmFeatureProvider.class.getName().replaceAll("\\.", "/"), getClass(), getClass().getProtectionDomain(), input);
             Class<?> redefined = classLoader.loadClass(MultipleAlmFeatureProvider.class.getName(), result);
 
             PlatformEditionProvider platformEditionProvider = mock(PlatformEditionProvider.class);
@@ -90,11 +93,11 @@ public class CommunityBranchAgentTest {
 
         ArgumentCaptor<ClassFileTransformer> classFileTransformerArgumentCaptor = ArgumentCaptor.forClass(ClassFileTransformer.class);
         verify(instrumentation).retransformClasses(SetAction.class);
-        verify(instrumentation, times(3)).addTransformer(classFileTransformerArgumentCaptor.capture());
+        verify(instrumentation).addTransformer(classFileTransformerArgumentCaptor.capture());
 
         try (InputStream inputStream = SetAction.class.getResourceAsStream(SetAction.class.getSimpleName())) {
             byte[] input = IOUtils.toByteArray(inputStream);
-            byte[] result = classFileTransformerArgumentCaptor.getAllValues().get(1).transform(classLoader, SetAction.class.getName().replaceAll("\\.", "/"), getClass(), getClass().getProtectionDomain(), input);
+            byte[] result = classFileTransformerArgumentCaptor.getValue().transform(classLoader, SetAction.class.getName().replaceAll("\\.", "/"), getClass(), getClass().getProtectionDomain(), input);
 
             Class<?> setActionClass = classLoader.loadClass(SetAction.class.getName(), result);
 
@@ -122,11 +125,11 @@ public class CommunityBranchAgentTest {
 
         ArgumentCaptor<ClassFileTransformer> classFileTransformerArgumentCaptor = ArgumentCaptor.forClass(ClassFileTransformer.class);
         verify(instrumentation).retransformClasses(UnsetAction.class);
-        verify(instrumentation, times(3)).addTransformer(classFileTransformerArgumentCaptor.capture());
+        verify(instrumentation).addTransformer(classFileTransformerArgumentCaptor.capture());
 
         try (InputStream inputStream = SetAction.class.getResourceAsStream(SetAction.class.getSimpleName())) {
             byte[] input = IOUtils.toByteArray(inputStream);
-            byte[] result = classFileTransformerArgumentCaptor.getAllValues().get(2).transform(classLoader, UnsetAction.class.getName().replaceAll("\\.", "/"), getClass(), getClass().getProtectionDomain(), input);
+            byte[] result = classFileTransformerArgumentCaptor.getValue().transform(classLoader, UnsetAction.class.getName().replaceAll("\\.", "/"), getClass(), getClass().getProtectionDomain(), input);
 
             Class<?> unsetActionClass = classLoader.loadClass(UnsetAction.class.getName(), result);
             DbClient dbClient = mock(DbClient.class);
@@ -152,7 +155,7 @@ public class CommunityBranchAgentTest {
 
         ArgumentCaptor<ClassFileTransformer> classFileTransformerArgumentCaptor = ArgumentCaptor.forClass(ClassFileTransformer.class);
         verify(instrumentation).retransformClasses(MultipleAlmFeatureProvider.class);
-        verify(instrumentation, times(3)).addTransformer(classFileTransformerArgumentCaptor.capture());
+        verify(instrumentation).addTransformer(classFileTransformerArgumentCaptor.capture());
 
         byte[] input = new byte[]{1, 2, 3, 4, 5, 6};
         byte[] result = classFileTransformerArgumentCaptor.getValue().transform(getClass().getClassLoader(), "com/github/mc1arke/Dummy", getClass(), getClass().getProtectionDomain(), input);
@@ -197,6 +200,47 @@ public class CommunityBranchAgentTest {
             assertThat(redefined.getConstructor().newInstance().get()).isEqualTo(Optional.of(EditionProvider.Edition.DEVELOPER));
         }
     }
+    @Test
+    public void checkTransformerRemovedOnceWebTargetsLoaded() throws UnmodifiableClassException, ClassNotFoundException {
+        Instrumentation instrumentation = mock(Instrumentation.class);
+
+        CommunityBranchAgent.premain("web", instrumentation);
+
+        ArgumentCaptor<ClassFileTransformer> classFileTransformerArgumentCaptor = ArgumentCaptor.forClass(ClassFileTransformer.class);
+        verify(instrumentation).addTransformer(classFileTransformerArgumentCaptor.capture());
+        verify(instrumentation).retransformClasses(MultipleAlmFeatureProvider.class);
+        verify(instrumentation).retransformClasses(SetAction.class);
+        verify(instrumentation).retransformClasses(UnsetAction.class);
+        verify(instrumentation).removeTransformer(classFileTransformerArgumentCaptor.getValue());
+        verifyNoMoreInteractions(instrumentation);
+    }
+
+    @Test
+    public void checkTransformerRemovesItselfOnceCeTargetPatched() throws ReflectiveOperationException, IOException, UnmodifiableClassException, IllegalClassFormatException {
+        Instrumentation instrumentation = mock(Instrumentation.class);
+        AtomicReference<ClassFileTransformer> registeredTransformer = new AtomicReference<>();
+        doAnswer(invocation -> {
+            registeredTransformer.set(invocation.getArgument(0));
+            return null;
+        }).when(instrumentation).addTransformer(any());
+        doAnswer(invocation -> {
+            ClassFileTransformer transformer = registeredTransformer.get();
+            try (InputStream inputStream = PlatformEditionProvider.class.getResourceAsStream(PlatformEditionProvider.class.getSimpleName() + ".class")) {
+                byte[] input = IOUtils.toByteArray(inputStream);
+                String className = PlatformEditionProvider.class.getName().replaceAll("\\.", "/");
+                assertThat(transformer.transform(getClass().getClassLoader(), className, PlatformEditionProvider.class, getClass().getProtectionDomain(), input)).isNotEqualTo(input);
+                assertThat(transformer.transform(getClass().getClassLoader(), className, PlatformEditionProvider.class, getClass().getProtectionDomain(), input)).isEqualTo(input);
+            }
+            return null;
+        }).when(instrumentation).retransformClasses(any());
+
+        CommunityBranchAgent.premain("ce", instrumentation);
+
+        verify(instrumentation).addTransformer(registeredTransformer.get());
+        verify(instrumentation).retransformClasses(PlatformEditionProvider.class);
+        verify(instrumentation).removeTransformer(registeredTransformer.get());
+        verifyNoMoreInteractions(instrumentation);
+    }
 
     private static class CustomClassloader extends ClassLoader {
 
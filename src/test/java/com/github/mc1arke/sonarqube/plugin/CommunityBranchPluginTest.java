@@ -19,6 +19,10 @@
 package com.github.mc1arke.sonarqube.plugin;
 
 import com.github.mc1arke.sonarqube.plugin.ce.CommunityReportAnalysisComponentProvider;
+import com.github.mc1arke.sonarqube.plugin.ce.ProjectBranchCache;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.AlmBindingCache;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.AlmCircuitBreaker;
+import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.DecorationFingerprintRepository;
 import com.github.mc1arke.sonarqube.plugin.scanner.CommunityBranchConfigurationLoader;
 import com.github.mc1arke.sonarqube.plugin.scanner.CommunityBranchParamsValidator;
 import com.github.mc1arke.sonarqube.plugin.scanner.CommunityProjectBranchesLoader;
@@ -35,7 +39,6 @@ import org.sonar.api.SonarQubeSide;
 import org.sonar.core.extension.CoreExtension;
 
 import java.util.Arrays;
-import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -101,8 +104,9 @@ public class CommunityBranchPluginTest {
         verify(context, times(2)).addExtensions(argumentCaptor.capture(), argumentCaptor.capture());
 
 
-        assertEquals(Collections.singletonList(CommunityReportAnalysisComponentProvider.class),
-                     argumentCaptor.getAllValues().subList(0, 1));
+        assertEquals(Arrays.asList(CommunityReportAnalysisComponentProvider.class, DecorationFingerprintRepository.class,
+                                   AlmCircuitBreaker.class, AlmBindingCache.class, ProjectBranchCache.class),
+                     argumentCaptor.getAllValues().subList(0, 5));
     }
 
 
@@ -118,7 +122,7 @@ public class CommunityBranchPluginTest {
         final ArgumentCaptor<Object> argumentCaptor = ArgumentCaptor.forClass(Object.class);
         verify(context, times(2)).addExtensions(argumentCaptor.capture(), argumentCaptor.capture());
 
-        assertEquals(22, argumentCaptor.getAllValues().size());
+        assertEquals(40, argumentCaptor.getAllValues().size());
 
         assertEquals(Arrays.asList(CommunityBranchFeatureExtension.class, CommunityBranchSupportDelegate.class),
                      argumentCaptor.getAllValues().subList(0, 2));
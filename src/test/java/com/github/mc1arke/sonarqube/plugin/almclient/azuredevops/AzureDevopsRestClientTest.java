@@ -1,6 +1,8 @@
 package com.github.mc1arke.sonarqube.plugin.almclient.azuredevops;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model.CommentThread;
 import com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model.CreateCommentRequest;
 import com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model.GitPullRequestStatus;
 import com.github.mc1arke.sonarqube.plugin.almclient.azuredevops.model.GitStatusContext;
@@ -16,13 +18,14 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -116,7 +119,9 @@ class AzureDevopsRestClientTest {
         when(closeableHttpResponse.getEntity()).thenReturn(new StringEntity("content", StandardCharsets.UTF_8));
         when(closeableHttpClient.execute(any())).thenReturn(closeableHttpResponse);
         PullRequest pullRequest = mock(PullRequest.class);
-        when(objectMapper.readValue(any(String.class), eq(PullRequest.class))).thenReturn(pullRequest);
+        ObjectReader objectReader = mock(ObjectReader.class);
+        when(objectMapper.readerFor(PullRequest.class)).thenReturn(objectReader);
+        when(objectReader.readValue(any(InputStream.class))).thenReturn(pullRequest);
 
         PullRequest result = underTest.retrievePullRequest("projectId", "repository Name", 123);
 
@@ -130,4 +135,21 @@ class AzureDevopsRestClientTest {
         assertThat(request.getEntity()).isNull();
         assertThat(result).isSameAs(pullRequest);
     }
-}
\ No newline at end of file
+
+    @Test
+    void checkRetrieveThreadsReadsEachThreadFromValueArray() throws IOException {
+        AzureDevopsRestClient underTest = new AzureDevopsRestClient("http://test.url", "authToken", new ObjectMapper(), () -> closeableHttpClient);
+
+        CloseableHttpResponse closeableHttpResponse = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(closeableHttpResponse.getStatusLine()).thenReturn(statusLine);
+        when(closeableHttpResponse.getEntity()).thenReturn(new StringEntity("{\"count\": 2, \"extra\": {\"value\": [{\"id\": 99}]}, \"value\": [{\"id\": 1, \"isDeleted\": false}, {\"id\": 2, \"isDeleted\": true}]}", StandardCharsets.UTF_8));
+        when(closeableHttpClient.execute(any())).thenReturn(closeableHttpResponse);
+
+        List<CommentThread> result = underTest.retrieveThreads("projectId", "repository", 123);
+
+        assertThat(result).extracting(CommentThread::getId).containsExactly(1, 2);
+        assertThat(result).extracting(CommentThread::isDeleted).containsExactly(false, true);
+    }
+}
@@ -45,7 +45,10 @@ import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.sonar.api.ce.posttask.QualityGate;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Set;
@@ -92,11 +95,11 @@ public class BitbucketServerClientUnitTest {
         when(call.execute()).thenReturn(response);
         when(response.isSuccessful()).thenReturn(true);
         when(response.body()).thenReturn(responseBody);
-        when(responseBody.string()).thenReturn("test");
+        when(responseBody.byteStream()).thenReturn(new ByteArrayInputStream("test".getBytes(StandardCharsets.UTF_8)));
 
         when(mapper.reader()).thenReturn(reader);
         when(reader.forType(ServerProperties.class)).thenReturn(reader);
-        when(reader.readValue(any(String.class))).thenReturn(serverProperties);
+        when(reader.readValue(any(InputStream.class))).thenReturn(serverProperties);
 
         // when
         boolean result = underTest.supportsCodeInsights();
@@ -119,11 +122,11 @@ public class BitbucketServerClientUnitTest {
         when(call.execute()).thenReturn(response);
         when(response.isSuccessful()).thenReturn(true);
         when(response.body()).thenReturn(responseBody);
-        when(responseBody.string()).thenReturn("test");
+        when(responseBody.byteStream()).thenReturn(new ByteArrayInputStream("test".getBytes(StandardCharsets.UTF_8)));
 
         when(mapper.reader()).thenReturn(reader);
         when(reader.forType(ServerProperties.class)).thenReturn(reader);
-        when(reader.readValue(any(String.class))).thenReturn(serverProperties);
+        when(reader.readValue(any(InputStream.class))).thenReturn(serverProperties);
 
         // when
         boolean result = underTest.supportsCodeInsights();
@@ -146,11 +149,11 @@ public class BitbucketServerClientUnitTest {
         when(call.execute()).thenReturn(response);
         when(response.isSuccessful()).thenReturn(true);
         when(response.body()).thenReturn(responseBody);
-        when(responseBody.string()).thenReturn("test");
+        when(responseBody.byteStream()).thenReturn(new ByteArrayInputStream("test".getBytes(StandardCharsets.UTF_8)));
 
         when(mapper.reader()).thenReturn(reader);
         when(reader.forType(ServerProperties.class)).thenReturn(reader);
-        when(reader.readValue(any(String.class))).thenReturn(serverProperties);
+        when(reader.readValue(any(InputStream.class))).thenReturn(serverProperties);
 
         // when
         boolean result = underTest.supportsCodeInsights();
@@ -188,11 +191,11 @@ public class BitbucketServerClientUnitTest {
         when(call.execute()).thenReturn(response);
         when(response.isSuccessful()).thenReturn(true);
         when(response.body()).thenReturn(responseBody);
-        when(responseBody.string()).thenReturn("{version: '5.0'}");
+        when(responseBody.byteStream()).thenReturn(new ByteArrayInputStream("{version: '5.0'}".getBytes(StandardCharsets.UTF_8)));
 
         when(mapper.reader()).thenReturn(reader);
         when(reader.forType(ServerProperties.class)).thenReturn(reader);
-        when(reader.readValue(any(String.class))).thenReturn(serverProperties);
+        when(reader.readValue(any(InputStream.class))).thenReturn(serverProperties);
 
         // when
         ServerProperties result = underTest.getServerProperties();
@@ -284,14 +287,14 @@ public class BitbucketServerClientUnitTest {
         when(call.execute()).thenReturn(response);
         when(response.isSuccessful()).thenReturn(false);
         when(response.body()).thenReturn(responseBody);
-        when(responseBody.string()).thenReturn("error!");
+        when(responseBody.byteStream()).thenReturn(new ByteArrayInputStream("error!".getBytes(StandardCharsets.UTF_8)));
         when(response.code()).thenReturn(400);
 
         when(mapper.writeValueAsString(report)).thenReturn("{payload}");
 
         when(mapper.reader()).thenReturn(reader);
         when(reader.forType(ErrorResponse.class)).thenReturn(reader);
-        when(reader.readValue(any(String.class))).thenReturn(errorResponse);
+        when(reader.readValue(any(InputStream.class))).thenReturn(errorResponse);
 
 
         // when,then
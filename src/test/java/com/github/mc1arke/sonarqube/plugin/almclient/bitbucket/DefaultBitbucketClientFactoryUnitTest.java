@@ -1,5 +1,6 @@
 package com.github.mc1arke.sonarqube.plugin.almclient.bitbucket;
 
+import com.github.mc1arke.sonarqube.plugin.almclient.HttpTimeouts;
 import okhttp3.OkHttpClient;
 import okhttp3.ResponseBody;
 import org.junit.Test;
@@ -10,11 +11,15 @@ import org.sonar.db.alm.setting.ALM;
 import org.sonar.db.alm.setting.AlmSettingDto;
 import org.sonar.db.alm.setting.ProjectAlmSettingDto;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DefaultBitbucketClientFactoryUnitTest {
@@ -30,9 +35,13 @@ public class DefaultBitbucketClientFactoryUnitTest {
                 .setAlmRepo("almRepo");
         OkHttpClient.Builder builder = mock(OkHttpClient.Builder.class, Mockito.RETURNS_DEEP_STUBS);
         when(builder.addInterceptor(any())).thenReturn(builder);
+        when(builder.connectTimeout(any(Duration.class))).thenReturn(builder);
+        when(builder.readTimeout(any(Duration.class))).thenReturn(builder);
+        when(builder.writeTimeout(any(Duration.class))).thenReturn(builder);
+        when(builder.callTimeout(any(Duration.class))).thenReturn(builder);
 
         ResponseBody responseBody = mock(ResponseBody.class);
-        when(responseBody.string()).thenReturn("{}");
+        when(responseBody.byteStream()).thenReturn(new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
         when(builder.build().newCall(any()).execute().body()).thenReturn(responseBody);
 
         Settings settings = mock(Settings.class);
@@ -44,6 +53,9 @@ public class DefaultBitbucketClientFactoryUnitTest {
 
         // then
         assertTrue(client instanceof BitbucketCloudClient);
+        verify(builder).connectTimeout(HttpTimeouts.CONNECT_TIMEOUT);
+        verify(builder).readTimeout(HttpTimeouts.READ_TIMEOUT);
+        verify(builder).callTimeout(HttpTimeouts.CALL_TIMEOUT);
     }
 
     @Test
@@ -21,6 +21,7 @@ package com.github.mc1arke.sonarqube.plugin.almclient.github.v3;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.net.URLConnection;
 
 import static org.junit.Assert.assertEquals;
 
@@ -31,4 +32,11 @@ public class DefaultUrlConnectionProviderTest {
         DefaultUrlConnectionProvider testCase = new DefaultUrlConnectionProvider();
         assertEquals("http://localhost/", testCase.createUrlConnection("http://localhost/").getURL().toString());
     }
+
+    @Test
+    public void testTimeoutsSetOnConnection() throws IOException {
+        URLConnection urlConnection = new DefaultUrlConnectionProvider().createUrlConnection("http://localhost/");
+        assertEquals(10000, urlConnection.getConnectTimeout());
+        assertEquals(60000, urlConnection.getReadTimeout());
+    }
 }
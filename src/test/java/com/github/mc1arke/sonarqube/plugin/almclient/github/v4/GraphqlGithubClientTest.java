@@ -20,6 +20,7 @@ package com.github.mc1arke.sonarqube.plugin.almclient.github.v4;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.mc1arke.sonarqube.plugin.almclient.github.RepositoryAuthenticationToken;
+import com.github.mc1arke.sonarqube.plugin.almclient.github.v3.UrlConnectionProvider;
 import com.github.mc1arke.sonarqube.plugin.almclient.github.v4.model.CheckAnnotationLevel;
 import com.github.mc1arke.sonarqube.plugin.almclient.github.v4.model.CheckConclusionState;
 import com.github.mc1arke.sonarqube.plugin.almclient.github.v4.model.RequestableCheckStatusState;
@@ -41,7 +42,10 @@ import org.sonar.ce.task.projectanalysis.component.ReportAttributes;
 import org.sonar.db.alm.setting.AlmSettingDto;
 import org.sonar.db.alm.setting.ProjectAlmSettingDto;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -654,6 +658,140 @@ public class GraphqlGithubClientTest {
         assertThat(annotationsArgumentCaptor.getAllValues().get(2)).hasSize(20);
     }
 
+    @Test
+    public void checkReviewCommentsPostedInBatchesAndStaleThreadsResolved() throws IOException {
+        ReportAttributes reportAttributes = mock(ReportAttributes.class);
+        when(reportAttributes.getScmPath()).thenReturn(Optional.of("path/to/file"));
+        Component component = mock(Component.class);
+        when(component.getType()).thenReturn(Component.Type.FILE);
+        when(component.getReportAttributes()).thenReturn(reportAttributes);
+        List<PostAnalysisIssueVisitor.ComponentIssue> issues = IntStream.range(0, 55)
+                .mapToObj(i -> {
+                    PostAnalysisIssueVisitor.LightIssue defaultIssue = mock(PostAnalysisIssueVisitor.LightIssue.class);
+                    when(defaultIssue.key()).thenReturn("issue" + i);
+                    when(defaultIssue.getLine()).thenReturn(i + 1);
+                    when(defaultIssue.severity()).thenReturn(Severity.INFO);
+                    when(defaultIssue.getMessage()).thenReturn("message");
+                    when(defaultIssue.status()).thenReturn(Issue.STATUS_OPEN);
+                    when(defaultIssue.resolution()).thenReturn(null);
+                    PostAnalysisIssueVisitor.ComponentIssue componentIssue = mock(PostAnalysisIssueVisitor.ComponentIssue.class);
+                    when(componentIssue.getComponent()).thenReturn(component);
+                    when(componentIssue.getIssue()).thenReturn(defaultIssue);
+                    return componentIssue;
+                }).collect(Collectors.toList());
+
+        PostAnalysisIssueVisitor postAnalysisIssuesVisitor = mock(PostAnalysisIssueVisitor.class);
+        when(postAnalysisIssuesVisitor.getIssues()).thenReturn(issues);
+
+        AnalysisDetails analysisDetails = mock(AnalysisDetails.class);
+        when(analysisDetails.getPostAnalysisIssueVisitor()).thenReturn(postAnalysisIssuesVisitor);
+        when(analysisDetails.getBranchName()).thenReturn("13579");
+        when(analysisDetails.getAnalysisProjectKey()).thenReturn("projectKey");
+        when(analysisDetails.getAnalysisDate()).thenReturn(new Date());
+        when(analysisDetails.getCommitSha()).thenReturn("commitSha");
+        when(analysisDetails.createAnalysisIssueSummary(any(), any())).thenReturn("issue \"summary\"");
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.github.reviewcomments")).thenReturn(Optional.of("true"));
+
+        List<InputObject.Builder> builders = new ArrayList<>();
+
+        GraphqlProvider graphqlProvider = mock(GraphqlProvider.class);
+        when(graphqlProvider.createInputObject()).thenAnswer(i -> {
+            InputObject.Builder builder = spy(new InputObject.Builder<>());
+            builders.add(builder);
+            return builder;
+        });
+
+        when(graphqlProvider.createRequestBuilder()).thenAnswer(i -> GraphQLRequestEntity.Builder());
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        GraphQLTemplate graphQLTemplate = mock(GraphQLTemplate.class);
+        GraphQLResponseEntity<CreateCheckRun> graphQLResponseEntity =
+                objectMapper.readValue("{\"response\": {\"checkRun\": {\"id\": \"ABC\"}}}", objectMapper.getTypeFactory().constructParametricType(GraphQLResponseEntity.class, CreateCheckRun.class));
+        when(graphQLTemplate.mutate(any(), eq(CreateCheckRun.class))).thenReturn(graphQLResponseEntity);
+        GraphQLResponseEntity<UpdateCheckRun> updateCheckRunResponseEntity =
+                objectMapper.readValue("{\"response\": {\"checkRun\": {\"id\": \"ABC\"}}}", objectMapper.getTypeFactory().constructParametricType(GraphQLResponseEntity.class, UpdateCheckRun.class));
+        when(graphQLTemplate.mutate(any(), eq(UpdateCheckRun.class))).thenReturn(updateCheckRunResponseEntity);
+        GraphQLResponseEntity<Viewer> viewerResponseEntity =
+                objectMapper.readValue("{\"response\": {\"login\": \"test-sonar[bot]\"}}", objectMapper.getTypeFactory().constructParametricType(GraphQLResponseEntity.class, Viewer.class));
+        when(graphQLTemplate.query(any(), eq(Viewer.class))).thenReturn(viewerResponseEntity);
+
+        String firstPage = "{\"response\": {\"pullRequest\": {\"id\": \"PR_ID\", \"reviewThreads\": {" +
+                "\"nodes\": [" +
+                "{\"id\": \"thread1\", \"resolved\": false, \"comments\": {\"nodes\": [{\"body\": \"content\\n<!-- sonarqube-issue projectKey issue3 -->\", \"author\": {\"__typename\": \"Bot\", \"login\": \"test-sonar\"}}]}}," +
+                "{\"id\": \"thread2\", \"resolved\": false, \"comments\": {\"nodes\": [{\"body\": \"content\\n<!-- sonarqube-issue projectKey fixedIssue -->\", \"author\": {\"__typename\": \"Bot\", \"login\": \"test-sonar\"}}]}}" +
+                "], \"pageInfo\": {\"hasNextPage\": true, \"endCursor\": \"cursor\"}}}}}";
+        String secondPage = "{\"response\": {\"pullRequest\": {\"id\": \"PR_ID\", \"reviewThreads\": {" +
+                "\"nodes\": [" +
+                "{\"id\": \"thread3\", \"resolved\": true, \"comments\": {\"nodes\": [{\"body\": \"content\\n<!-- sonarqube-issue projectKey otherFixedIssue -->\", \"author\": {\"__typename\": \"Bot\", \"login\": \"test-sonar\"}}]}}," +
+                "{\"id\": \"thread4\", \"resolved\": false, \"comments\": {\"nodes\": [{\"body\": \"content\\n<!-- sonarqube-issue otherProject issue4 -->\", \"author\": {\"__typename\": \"Bot\", \"login\": \"test-sonar\"}}]}}," +
+                "{\"id\": \"thread5\", \"resolved\": false, \"comments\": {\"nodes\": [{\"body\": \"content\\n<!-- sonarqube-issue projectKey anotherIssue -->\", \"author\": {\"__typename\": \"User\", \"login\": \"someone\"}}]}}" +
+                "], \"pageInfo\": {\"hasNextPage\": false, \"endCursor\": null}}}}}";
+        GraphQLResponseEntity<GetReviewThreads> firstPageResponseEntity =
+                objectMapper.readValue(firstPage, objectMapper.getTypeFactory().constructParametricType(GraphQLResponseEntity.class, GetReviewThreads.class));
+        GraphQLResponseEntity<GetReviewThreads> secondPageResponseEntity =
+                objectMapper.readValue(secondPage, objectMapper.getTypeFactory().constructParametricType(GraphQLResponseEntity.class, GetReviewThreads.class));
+        ArgumentCaptor<GraphQLRequestEntity> reviewThreadsRequestCaptor = ArgumentCaptor.forClass(GraphQLRequestEntity.class);
+        when(graphQLTemplate.query(reviewThreadsRequestCaptor.capture(), eq(GetReviewThreads.class))).thenReturn(firstPageResponseEntity, secondPageResponseEntity);
+
+        GraphQLResponseEntity<ResolveReviewThread> resolveResponseEntity =
+                objectMapper.readValue("{\"response\": {}}", objectMapper.getTypeFactory().constructParametricType(GraphQLResponseEntity.class, ResolveReviewThread.class));
+        ArgumentCaptor<GraphQLRequestEntity> resolveRequestCaptor = ArgumentCaptor.forClass(GraphQLRequestEntity.class);
+        when(graphQLTemplate.mutate(resolveRequestCaptor.capture(), eq(ResolveReviewThread.class))).thenReturn(resolveResponseEntity);
+
+        GraphQLResponseEntity<AddPullRequestReview> failedReviewResponseEntity =
+                objectMapper.readValue("{\"errors\": [{\"message\":\"Pull request review thread line must be part of the diff\", \"locations\": []}]}", objectMapper.getTypeFactory().constructParametricType(GraphQLResponseEntity.class, AddPullRequestReview.class));
+        GraphQLResponseEntity<AddPullRequestReview> reviewResponseEntity =
+                objectMapper.readValue("{\"response\": {}}", objectMapper.getTypeFactory().constructParametricType(GraphQLResponseEntity.class, AddPullRequestReview.class));
+        ArgumentCaptor<GraphQLRequestEntity> reviewRequestCaptor = ArgumentCaptor.forClass(GraphQLRequestEntity.class);
+        when(graphQLTemplate.mutate(reviewRequestCaptor.capture(), eq(AddPullRequestReview.class))).thenReturn(failedReviewResponseEntity, reviewResponseEntity);
+
+        when(graphqlProvider.createGraphQLTemplate()).thenReturn(graphQLTemplate);
+
+        RepositoryAuthenticationToken repositoryAuthenticationToken = mock(RepositoryAuthenticationToken.class);
+        when(repositoryAuthenticationToken.getAuthenticationToken()).thenReturn("dummy");
+
+        ProjectAlmSettingDto projectAlmSettingDto = mock(ProjectAlmSettingDto.class);
+        when(projectAlmSettingDto.getAlmRepo()).thenReturn("dummy/repo");
+        when(projectAlmSettingDto.getSummaryCommentEnabled()).thenReturn(false);
+        AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        when(almSettingDto.getUrl()).thenReturn("http://host.name");
+
+        // the diff covers every issue other than the one on line 55, and is split over two pages of files
+        StringBuilder patch = new StringBuilder("@@ -0,0 +1,54 @@");
+        IntStream.range(0, 54).forEach(i -> patch.append("\\n+line"));
+        String firstFilesPage = IntStream.range(0, 99)
+                .mapToObj(i -> "{\"filename\": \"other/file" + i + "\", \"status\": \"modified\"}")
+                .collect(Collectors.joining(",", "[{\"filename\": \"path/to/file\", \"patch\": \"" + patch + "\"},", "]"));
+        HttpURLConnection firstFilesConnection = mock(HttpURLConnection.class);
+        when(firstFilesConnection.getInputStream()).thenReturn(new ByteArrayInputStream(firstFilesPage.getBytes(StandardCharsets.UTF_8)));
+        HttpURLConnection secondFilesConnection = mock(HttpURLConnection.class);
+        when(secondFilesConnection.getInputStream()).thenReturn(new ByteArrayInputStream("[{\"filename\": \"image.png\"}]".getBytes(StandardCharsets.UTF_8)));
+        UrlConnectionProvider urlConnectionProvider = mock(UrlConnectionProvider.class);
+        when(urlConnectionProvider.createUrlConnection("http://host.name/repos/dummy/repo/pulls/13579/files?per_page=100&page=1")).thenReturn(firstFilesConnection);
+        when(urlConnectionProvider.createUrlConnection("http://host.name/repos/dummy/repo/pulls/13579/files?per_page=100&page=2")).thenReturn(secondFilesConnection);
+
+        GraphqlGithubClient testCase = new GraphqlGithubClient(graphqlProvider, clock, repositoryAuthenticationToken, mock(Server.class), urlConnectionProvider);
+        testCase.createCheckRun(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(firstFilesConnection).setRequestProperty("Authorization", "Bearer dummy");
+        verify(graphQLTemplate).query(any(), eq(Viewer.class));
+
+        assertThat(reviewThreadsRequestCaptor.getAllValues()).hasSize(2);
+        assertThat(reviewThreadsRequestCaptor.getAllValues().get(1).getRequest()).contains("reviewThreads : reviewThreads (first:100,after:\"cursor\")");
+
+        assertThat(resolveRequestCaptor.getAllValues()).hasSize(1);
+        assertThat(resolveRequestCaptor.getValue().getRequest()).contains("threadId:\"thread2\"");
+
+        assertThat(reviewRequestCaptor.getAllValues()).hasSize(2);
+        String firstReview = reviewRequestCaptor.getAllValues().get(0).getRequest();
+        assertThat(firstReview).contains("pullRequestId:\"PR_ID\"", "commitOID:\"commitSha\"", "event:COMMENT",
+                "path:\"path/to/file\"", "line:1,", "side:RIGHT", "body:\"issue \\\"summary\\\"\\n<!-- sonarqube-issue projectKey issue0 -->\"")
+                .doesNotContain("sonarqube-issue projectKey issue3 -->");
+        assertThat(firstReview.split("path:", -1)).hasSize(51);
+        assertThat(reviewRequestCaptor.getAllValues().get(1).getRequest().split("path:", -1)).hasSize(4);
+        assertThat(reviewRequestCaptor.getAllValues().get(1).getRequest()).doesNotContain("sonarqube-issue projectKey issue54 -->");
+    }
+
     @Test
     public void checkCorrectDefaultValuesInjected() {
         Clock clock = Clock.systemDefaultZone();
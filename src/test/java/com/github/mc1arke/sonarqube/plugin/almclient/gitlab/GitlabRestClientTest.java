@@ -1,7 +1,10 @@
 package com.github.mc1arke.sonarqube.plugin.almclient.gitlab;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.github.mc1arke.sonarqube.plugin.almclient.LinkHeaderReader;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.CommitNote;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Discussion;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequestNote;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
@@ -9,7 +12,9 @@ import org.apache.http.StatusLine;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicNameValuePair;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -17,6 +22,7 @@ import org.mockito.ArgumentCaptor;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -68,6 +74,7 @@ class GitlabRestClientTest {
         HttpEntity httpEntity = mock(HttpEntity.class);
         when(closeableHttpResponse.getEntity()).thenReturn(httpEntity);
         when(closeableHttpClient.execute(any())).thenReturn(closeableHttpResponse);
+        when(objectMapper.readerFor(Discussion.class)).thenReturn(mock(ObjectReader.class));
 
         MergeRequestNote mergeRequestNote = new MergeRequestNote("Merge request note");
 
@@ -84,4 +91,91 @@ class GitlabRestClientTest {
         assertThat(request.getEntity()).usingRecursiveComparison().isEqualTo(new UrlEncodedFormEntity(List.of(new BasicNameValuePair("body", "Merge request note")), StandardCharsets.UTF_8));
     }
 
-}
\ No newline at end of file
+    @Test
+    void checkMergeRequestDiscussionNoteUpdatedWithPut() throws IOException {
+        CloseableHttpResponse closeableHttpResponse = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(closeableHttpResponse.getStatusLine()).thenReturn(statusLine);
+        when(closeableHttpClient.execute(any())).thenReturn(closeableHttpResponse);
+
+        GitlabRestClient underTest = new GitlabRestClient("http://api.url", "token", linkHeaderReader, objectMapper, () -> closeableHttpClient);
+        underTest.updateMergeRequestDiscussionNote(123, 321, "discussionId", 99, "Updated note");
+
+        ArgumentCaptor<HttpUriRequest> requestArgumentCaptor = ArgumentCaptor.forClass(HttpUriRequest.class);
+        verify(closeableHttpClient).execute(requestArgumentCaptor.capture());
+
+        HttpEntityEnclosingRequest request = (HttpEntityEnclosingRequest) requestArgumentCaptor.getValue();
+
+        assertThat(request.getRequestLine().getMethod()).isEqualTo("PUT");
+        assertThat(request.getRequestLine().getUri()).isEqualTo("http://api.url/projects/123/merge_requests/321/discussions/discussionId/notes/99");
+        assertThat(request.getEntity()).usingRecursiveComparison().isEqualTo(new UrlEncodedFormEntity(List.of(new BasicNameValuePair("body", "Updated note")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void checkDraftNoteCreatedWithPosition() throws IOException {
+        CloseableHttpResponse closeableHttpResponse = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(201);
+        when(closeableHttpResponse.getStatusLine()).thenReturn(statusLine);
+        when(closeableHttpClient.execute(any())).thenReturn(closeableHttpResponse);
+
+        GitlabRestClient underTest = new GitlabRestClient("http://api.url", "token", linkHeaderReader, objectMapper, () -> closeableHttpClient);
+        underTest.addMergeRequestDraftNote(123, 321, new CommitNote("Draft note", "base", "start", "head", "old/path", "new/path", 12));
+
+        ArgumentCaptor<HttpUriRequest> requestArgumentCaptor = ArgumentCaptor.forClass(HttpUriRequest.class);
+        verify(closeableHttpClient).execute(requestArgumentCaptor.capture());
+
+        HttpEntityEnclosingRequest request = (HttpEntityEnclosingRequest) requestArgumentCaptor.getValue();
+
+        assertThat(request.getRequestLine().getMethod()).isEqualTo("POST");
+        assertThat(request.getRequestLine().getUri()).isEqualTo("http://api.url/projects/123/merge_requests/321/draft_notes");
+        assertThat(request.getEntity()).usingRecursiveComparison().isEqualTo(new UrlEncodedFormEntity(List.of(
+                new BasicNameValuePair("note", "Draft note"),
+                new BasicNameValuePair("position[base_sha]", "base"),
+                new BasicNameValuePair("position[start_sha]", "start"),
+                new BasicNameValuePair("position[head_sha]", "head"),
+                new BasicNameValuePair("position[old_path]", "old/path"),
+                new BasicNameValuePair("position[new_path]", "new/path"),
+                new BasicNameValuePair("position[new_line]", "12"),
+                new BasicNameValuePair("position[position_type]", "text")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void checkDraftNotesPublishedInBulk() throws IOException {
+        CloseableHttpResponse closeableHttpResponse = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(204);
+        when(closeableHttpResponse.getStatusLine()).thenReturn(statusLine);
+        when(closeableHttpClient.execute(any())).thenReturn(closeableHttpResponse);
+
+        GitlabRestClient underTest = new GitlabRestClient("http://api.url", "token", linkHeaderReader, objectMapper, () -> closeableHttpClient);
+        underTest.publishMergeRequestDraftNotes(123, 321);
+
+        ArgumentCaptor<HttpUriRequest> requestArgumentCaptor = ArgumentCaptor.forClass(HttpUriRequest.class);
+        verify(closeableHttpClient).execute(requestArgumentCaptor.capture());
+
+        assertThat(requestArgumentCaptor.getValue().getRequestLine().getMethod()).isEqualTo("POST");
+        assertThat(requestArgumentCaptor.getValue().getRequestLine().getUri()).isEqualTo("http://api.url/projects/123/merge_requests/321/draft_notes/bulk_publish");
+    }
+
+    @Test
+    void checkDiscussionsReadFromEachPageOfResponse() throws IOException {
+        CloseableHttpResponse firstPage = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(firstPage.getStatusLine()).thenReturn(statusLine);
+        when(firstPage.getEntity()).thenReturn(new StringEntity("[{\"id\": \"first\", \"notes\": []}, {\"id\": \"second\"}]", StandardCharsets.UTF_8));
+        when(firstPage.getFirstHeader("Link")).thenReturn(new BasicHeader("Link", "next"));
+        CloseableHttpResponse secondPage = mock(CloseableHttpResponse.class);
+        when(secondPage.getStatusLine()).thenReturn(statusLine);
+        when(secondPage.getEntity()).thenReturn(new StringEntity("[{\"id\": \"third\"}]", StandardCharsets.UTF_8));
+        when(closeableHttpClient.execute(any())).thenReturn(firstPage, secondPage);
+        when(linkHeaderReader.findNextLink("next")).thenReturn(Optional.of("http://api.url/next-page"));
+
+        GitlabRestClient underTest = new GitlabRestClient("http://api.url", "token", linkHeaderReader, new ObjectMapper(), () -> closeableHttpClient);
+        List<Discussion> discussions = underTest.getMergeRequestDiscussions(123, 321);
+
+        assertThat(discussions).extracting(Discussion::getId).containsExactly("first", "second", "third");
+    }
+}
@@ -23,6 +23,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
+import org.sonar.api.utils.System2;
 import org.sonar.ce.task.projectanalysis.analysis.Branch;
 import org.sonar.ce.task.projectanalysis.analysis.MutableAnalysisMetadataHolder;
 import org.sonar.ce.task.projectanalysis.component.BranchLoaderDelegate;
@@ -34,6 +35,9 @@ import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.project.Project;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
@@ -57,7 +61,9 @@ public class CommunityBranchLoaderDelegateTest {
     private final ExpectedException expectedException = ExpectedException.none();
     private final MutableAnalysisMetadataHolder metadataHolder = mock(MutableAnalysisMetadataHolder.class);
     private final DbClient dbClient = mock(DbClient.class);
-    private final BranchLoaderDelegate testCase = new CommunityBranchLoaderDelegate(dbClient, metadataHolder);
+    private final ProjectBranchCache projectBranchCache = new ProjectBranchCache(mock(System2.class));
+    private final BranchLoaderDelegate testCase =
+            new CommunityBranchLoaderDelegate(dbClient, metadataHolder, projectBranchCache);
 
     @Rule
     public ExpectedException expectedException() {
@@ -68,7 +74,7 @@ public class CommunityBranchLoaderDelegateTest {
     public void testNoBranchDetailsNoExistingBranchThrowsException() {
 
         BranchDao branchDao = mock(BranchDao.class);
-        when(branchDao.selectByBranchKey(any(), any(), any())).thenReturn(Optional.empty());
+        when(branchDao.selectByUuid(any(), any())).thenReturn(Optional.empty());
 
         ScannerReport.Metadata metadata = ScannerReport.Metadata.getDefaultInstance();
         when(dbClient.branchDao()).thenReturn(branchDao);
@@ -126,7 +132,6 @@ public class CommunityBranchLoaderDelegateTest {
     public void testBranchNameNoMatchingBranch() {
 
         BranchDao branchDao = mock(BranchDao.class);
-        when(branchDao.selectByBranchKey(any(), any(), any())).thenReturn(Optional.empty());
 
         ScannerReport.Metadata metadata =
                 ScannerReport.Metadata.getDefaultInstance().toBuilder().setBranchName("branch").build();
@@ -145,13 +150,14 @@ public class CommunityBranchLoaderDelegateTest {
     public void testBranchNameMatchingBranch() {
         BranchDto branchDto = mock(BranchDto.class);
         when(branchDto.getBranchType()).thenReturn(BranchType.BRANCH);
-        when(branchDto.getKey()).thenReturn("branchKey");
+        when(branchDto.getKey()).thenReturn("branch");
         when(branchDto.getMergeBranchUuid()).thenReturn("mergeBranchUuid");
         when(branchDto.getProjectUuid()).thenReturn("projectUuid");
         when(branchDto.getUuid()).thenReturn("branchUuid");
 
         BranchDao branchDao = mock(BranchDao.class);
-        when(branchDao.selectByBranchKey(any(), eq("projectUuid"), eq("branch"))).thenReturn(Optional.of(branchDto));
+        when(branchDao.selectByKeys(any(), eq("projectUuid"), eq(Collections.singleton("branch"))))
+                .thenReturn(Collections.singletonList(branchDto));
 
         ScannerReport.Metadata metadata =
                 ScannerReport.Metadata.getDefaultInstance().toBuilder().setBranchName("branch")
@@ -181,7 +187,7 @@ public class CommunityBranchLoaderDelegateTest {
         verify(dbClient).openSession(anyBoolean());
         verifyNoMoreInteractions(dbClient);
 
-        verify(branchDao).selectByBranchKey(any(), any(), any());
+        verify(branchDao).selectByKeys(any(), any(), any());
         verifyNoMoreInteractions(branchDao);
     }
 
@@ -189,12 +195,13 @@ public class CommunityBranchLoaderDelegateTest {
     public void testBranchNamePullRequest() {
         BranchDto branchDto = mock(BranchDto.class);
         when(branchDto.getBranchType()).thenReturn(BranchType.BRANCH);
-        when(branchDto.getKey()).thenReturn("branchKey");
+        when(branchDto.getKey()).thenReturn("branch");
         when(branchDto.getUuid()).thenReturn("mergeBranchUuid");
         when(branchDto.getProjectUuid()).thenReturn("projectUuid");
 
         BranchDao branchDao = mock(BranchDao.class);
-        when(branchDao.selectByBranchKey(any(), eq("projectUuid"), eq("branch"))).thenReturn(Optional.of(branchDto));
+        when(branchDao.selectByKeys(any(), eq("projectUuid"), eq(Collections.singleton("branch"))))
+                .thenReturn(Collections.singletonList(branchDto));
 
         ScannerReport.Metadata metadata =
                 ScannerReport.Metadata.getDefaultInstance().toBuilder().setBranchName("sourceBranch")
@@ -229,14 +236,14 @@ public class CommunityBranchLoaderDelegateTest {
         verify(dbClient).openSession(anyBoolean());
         verifyNoMoreInteractions(dbClient);
 
-        verify(branchDao).selectByBranchKey(any(), any(), any());
+        verify(branchDao).selectByKeys(any(), any(), any());
         verifyNoMoreInteractions(branchDao);
     }
 
     @Test
     public void testBranchNamePullRequestNoSuchTarget() {
         BranchDao branchDao = mock(BranchDao.class);
-        when(branchDao.selectByBranchKey(any(), eq("projectUuid"), eq("branch"))).thenReturn(Optional.empty());
+        when(branchDao.selectByKeys(any(), eq("projectUuid"), any())).thenReturn(Collections.emptyList());
 
         ScannerReport.Metadata metadata =
                 ScannerReport.Metadata.getDefaultInstance().toBuilder().setBranchName("sourceBranch")
@@ -259,23 +266,22 @@ public class CommunityBranchLoaderDelegateTest {
     public void testBranchNameMatchingBranchWithTargetBranch() {
         BranchDto sourceBranchDto = mock(BranchDto.class);
         when(sourceBranchDto.getBranchType()).thenReturn(BranchType.BRANCH);
-        when(sourceBranchDto.getKey()).thenReturn("branchKey");
+        when(sourceBranchDto.getKey()).thenReturn("branch");
         when(sourceBranchDto.getMergeBranchUuid()).thenReturn("mergeBranchUuid");
         when(sourceBranchDto.getProjectUuid()).thenReturn("projectUuid");
         when(sourceBranchDto.getUuid()).thenReturn("branchUuid");
 
         BranchDto targetBranchDto = mock(BranchDto.class);
         when(targetBranchDto.getBranchType()).thenReturn(BranchType.BRANCH);
-        when(targetBranchDto.getKey()).thenReturn("targetBranchKey");
+        when(targetBranchDto.getKey()).thenReturn("mergeBranchName");
         when(targetBranchDto.getMergeBranchUuid()).thenReturn("targetMergeBranchUuid");
         when(targetBranchDto.getProjectUuid()).thenReturn("projectUuid");
         when(targetBranchDto.getUuid()).thenReturn("targetBranchUuid");
 
         BranchDao branchDao = mock(BranchDao.class);
-        when(branchDao.selectByBranchKey(any(), eq("projectUuid"), eq("branch")))
-                .thenReturn(Optional.of(sourceBranchDto));
-        when(branchDao.selectByBranchKey(any(), eq("projectUuid"), eq("mergeBranchName")))
-                .thenReturn(Optional.of(targetBranchDto));
+        when(branchDao.selectByKeys(any(), eq("projectUuid"),
+                                    eq(new HashSet<>(Arrays.asList("branch", "mergeBranchName")))))
+                .thenReturn(Arrays.asList(sourceBranchDto, targetBranchDto));
 
         ScannerReport.Metadata metadata =
                 ScannerReport.Metadata.getDefaultInstance().toBuilder().setBranchName("branch")
@@ -305,11 +311,11 @@ public class CommunityBranchLoaderDelegateTest {
 
         verifyNoMoreInteractions(metadataHolder);
 
-        verify(dbClient, times(2)).branchDao();
-        verify(dbClient, times(2)).openSession(anyBoolean());
+        verify(dbClient).branchDao();
+        verify(dbClient).openSession(anyBoolean());
         verifyNoMoreInteractions(dbClient);
 
-        verify(branchDao, times(2)).selectByBranchKey(any(), any(), any());
+        verify(branchDao).selectByKeys(any(), any(), any());
         verifyNoMoreInteractions(branchDao);
     }
 
@@ -317,15 +323,14 @@ public class CommunityBranchLoaderDelegateTest {
     public void testBranchNameMatchingBranchWithTargetBranchMissingTargetBranch() {
         BranchDto sourceBranchDto = mock(BranchDto.class);
         when(sourceBranchDto.getBranchType()).thenReturn(BranchType.BRANCH);
-        when(sourceBranchDto.getKey()).thenReturn("branchKey");
+        when(sourceBranchDto.getKey()).thenReturn("branch");
         when(sourceBranchDto.getMergeBranchUuid()).thenReturn("mergeBranchUuid");
         when(sourceBranchDto.getProjectUuid()).thenReturn("projectUuid");
         when(sourceBranchDto.getUuid()).thenReturn("branchUuid");
 
         BranchDao branchDao = mock(BranchDao.class);
-        when(branchDao.selectByBranchKey(any(), eq("projectUuid"), eq("branch")))
-                .thenReturn(Optional.of(sourceBranchDto));
-        when(branchDao.selectByBranchKey(any(), eq("projectUuid"), eq("mergeBranchName"))).thenReturn(Optional.empty());
+        when(branchDao.selectByKeys(any(), eq("projectUuid"), any()))
+                .thenReturn(Collections.singletonList(sourceBranchDto));
 
         ScannerReport.Metadata metadata =
                 ScannerReport.Metadata.getDefaultInstance().toBuilder().setBranchName("branch")
@@ -344,4 +349,36 @@ public class CommunityBranchLoaderDelegateTest {
         testCase.load(metadata);
     }
 
+    @Test
+    public void testBranchesLoadedByEarlierAnalysisReusedWithoutOpeningSession() {
+        BranchDto branchDto = mock(BranchDto.class);
+        when(branchDto.getBranchType()).thenReturn(BranchType.BRANCH);
+        when(branchDto.getKey()).thenReturn("branch");
+        when(branchDto.getUuid()).thenReturn("mergeBranchUuid");
+
+        BranchDao branchDao = mock(BranchDao.class);
+        when(branchDao.selectByKeys(any(), eq("projectUuid"), eq(Collections.singleton("branch"))))
+                .thenReturn(Collections.singletonList(branchDto));
+
+        ScannerReport.Metadata metadata =
+                ScannerReport.Metadata.getDefaultInstance().toBuilder().setBranchName("sourceBranch")
+                        .setReferenceBranchName("branch").setBranchType(ScannerReport.Metadata.BranchType.PULL_REQUEST)
+                        .setPullRequestKey("pullRequestKey")
+                        .build();
+
+        when(dbClient.branchDao()).thenReturn(branchDao);
+        when(metadataHolder.getProject()).thenReturn(new Project("projectUuid", "key", "name", "description", new ArrayList<>()));
+
+        testCase.load(metadata);
+        new CommunityBranchLoaderDelegate(dbClient, metadataHolder, projectBranchCache).load(metadata);
+
+        ArgumentCaptor<Branch> branchArgumentCaptor = ArgumentCaptor.forClass(Branch.class);
+        verify(metadataHolder, times(2)).setBranch(branchArgumentCaptor.capture());
+        assertEquals("mergeBranchUuid", branchArgumentCaptor.getAllValues().get(1).getReferenceBranchUuid());
+
+        verify(dbClient).branchDao();
+        verify(dbClient).openSession(anyBoolean());
+        verifyNoMoreInteractions(dbClient);
+    }
+
 }
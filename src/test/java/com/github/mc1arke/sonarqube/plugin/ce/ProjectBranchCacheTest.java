@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce;
+
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.component.BranchDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class ProjectBranchCacheTest {
+
+    private final System2 system2 = mock(System2.class);
+    private final ProjectBranchCache testCase = new ProjectBranchCache(system2);
+
+    @Test
+    public void testBranchesReusedUntilExpiry() {
+        BranchDto branchDto = branch("branch");
+        List<Set<String>> loads = new ArrayList<>();
+
+        doReturn(0L).when(system2).now();
+        Map<String, BranchDto> branches = testCase.getBranches("project", Collections.singleton("branch"), keys -> {
+            loads.add(keys);
+            return Collections.singletonList(branchDto);
+        });
+        assertThat(branches).containsEntry("branch", branchDto);
+
+        doReturn(29999L).when(system2).now();
+        assertThat(testCase.getBranches("project", Collections.singleton("branch"), keys -> {
+            loads.add(keys);
+            return Collections.emptyList();
+        })).containsEntry("branch", branchDto);
+        assertThat(loads).hasSize(1);
+
+        doReturn(30000L).when(system2).now();
+        assertThat(testCase.getBranches("project", Collections.singleton("branch"), keys -> {
+            loads.add(keys);
+            return Collections.emptyList();
+        })).isEmpty();
+        assertThat(loads).hasSize(2);
+    }
+
+    @Test
+    public void testOnlyMissingBranchesLoaded() {
+        BranchDto branchDto = branch("branch");
+        BranchDto targetBranchDto = branch("target");
+        List<Set<String>> loads = new ArrayList<>();
+
+        testCase.getBranches("project", Collections.singleton("branch"), keys -> {
+            loads.add(keys);
+            return Collections.singletonList(branchDto);
+        });
+        Map<String, BranchDto> branches =
+                testCase.getBranches("project", new HashSet<>(Arrays.asList("branch", "target")), keys -> {
+                    loads.add(keys);
+                    return Collections.singletonList(targetBranchDto);
+                });
+
+        assertThat(branches).containsEntry("branch", branchDto).containsEntry("target", targetBranchDto);
+        assertThat(loads).containsExactly(Collections.singleton("branch"), Collections.singleton("target"));
+    }
+
+    @Test
+    public void testMissingBranchesNotCached() {
+        List<Set<String>> loads = new ArrayList<>();
+
+        testCase.getBranches("project", Collections.singleton("branch"), keys -> {
+            loads.add(keys);
+            return Collections.emptyList();
+        });
+        BranchDto branchDto = branch("branch");
+        Map<String, BranchDto> branches = testCase.getBranches("project", Collections.singleton("branch"), keys -> {
+            loads.add(keys);
+            return Collections.singletonList(branchDto);
+        });
+
+        assertThat(branches).containsEntry("branch", branchDto);
+        assertThat(loads).hasSize(2);
+    }
+
+    private static BranchDto branch(String key) {
+        BranchDto branchDto = mock(BranchDto.class);
+        doReturn(key).when(branchDto).getKey();
+        return branchDto;
+    }
+}
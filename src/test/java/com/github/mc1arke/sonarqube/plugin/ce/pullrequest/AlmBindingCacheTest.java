@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.alm.setting.AlmSettingDto;
+import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class AlmBindingCacheTest {
+
+    private final System2 system2 = mock(System2.class);
+    private final AlmBindingCache testCase = new AlmBindingCache(system2);
+
+    @Test
+    public void testBindingReusedUntilExpiry() {
+        AtomicInteger loads = new AtomicInteger();
+        ProjectAlmSettingDto projectAlmSettingDto = mock(ProjectAlmSettingDto.class);
+        AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        Supplier<AlmBindingCache.AlmBinding> loader = () -> {
+            loads.incrementAndGet();
+            return new AlmBindingCache.AlmBinding(projectAlmSettingDto, almSettingDto);
+        };
+
+        doReturn(0L).when(system2).now();
+        AlmBindingCache.AlmBinding almBinding = testCase.getBinding("project", loader);
+        assertThat(almBinding.getProjectAlmSetting()).containsSame(projectAlmSettingDto);
+        assertThat(almBinding.getAlmSetting()).containsSame(almSettingDto);
+
+        doReturn(59999L).when(system2).now();
+        assertThat(testCase.getBinding("project", loader)).isSameAs(almBinding);
+        assertThat(loads).hasValue(1);
+
+        doReturn(60000L).when(system2).now();
+        assertThat(testCase.getBinding("project", loader)).isNotSameAs(almBinding);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    public void testMissingBindingCachedPerProject() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<AlmBindingCache.AlmBinding> loader = () -> {
+            loads.incrementAndGet();
+            return new AlmBindingCache.AlmBinding(null, null);
+        };
+
+        assertThat(testCase.getBinding("project", loader).getProjectAlmSetting()).isEmpty();
+        assertThat(testCase.getBinding("project", loader).getAlmSetting()).isEmpty();
+        testCase.getBinding("other-project", loader);
+
+        assertThat(loads).hasValue(2);
+    }
+}
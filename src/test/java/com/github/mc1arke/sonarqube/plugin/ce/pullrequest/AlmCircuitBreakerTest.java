@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import com.github.mc1arke.sonarqube.plugin.CommunityBranchPlugin;
+import com.github.mc1arke.sonarqube.plugin.InvalidConfigurationException;
+import org.junit.Test;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.System2;
+import org.sonar.db.alm.setting.AlmSettingDto;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class AlmCircuitBreakerTest {
+
+    private final System2 system2 = mock(System2.class);
+    private final Configuration configuration = mock(Configuration.class);
+    private final AlmCircuitBreaker testCase = new AlmCircuitBreaker(configuration, system2);
+    private final AlmSettingDto almSettingDto = createAlmSettingDto("uuid");
+
+    @Test
+    public void testDecorationsSkippedAfterConsecutiveFailuresUntilProbeSucceeds() {
+        doReturn(0L).when(system2).now();
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> testCase.execute(almSettingDto, failingDecoration())).isInstanceOf(IllegalStateException.class);
+        }
+
+        assertThat(testCase.execute(almSettingDto, () -> "result")).isEmpty();
+        assertThat(testCase.execute(createAlmSettingDto("other-uuid"), () -> "result")).contains("result");
+
+        doReturn(TimeUnit.MINUTES.toMillis(5)).when(system2).now();
+        assertThat(testCase.execute(almSettingDto, () -> "result")).contains("result");
+        assertThat(testCase.execute(almSettingDto, () -> "result")).contains("result");
+    }
+
+    @Test
+    public void testFailedProbeReopensCircuit() {
+        doReturn(0L).when(system2).now();
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> testCase.execute(almSettingDto, failingDecoration())).isInstanceOf(IllegalStateException.class);
+        }
+
+        doReturn(TimeUnit.MINUTES.toMillis(5)).when(system2).now();
+        assertThatThrownBy(() -> testCase.execute(almSettingDto, failingDecoration())).isInstanceOf(IllegalStateException.class);
+
+        doReturn(TimeUnit.MINUTES.toMillis(6)).when(system2).now();
+        assertThat(testCase.execute(almSettingDto, () -> "result")).isEmpty();
+    }
+
+    @Test
+    public void testSuccessResetsFailureCountAndConfigurationErrorsIgnored() {
+        doReturn(0L).when(system2).now();
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> testCase.execute(almSettingDto, failingDecoration())).isInstanceOf(IllegalStateException.class);
+        }
+        assertThat(testCase.execute(almSettingDto, () -> "result")).contains("result");
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> testCase.execute(almSettingDto, failingDecoration())).isInstanceOf(IllegalStateException.class);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> testCase.execute(almSettingDto, () -> {
+                throw new InvalidConfigurationException(InvalidConfigurationException.Scope.PROJECT, "Invalid");
+            })).isInstanceOf(InvalidConfigurationException.class);
+        }
+
+        assertThat(testCase.execute(almSettingDto, () -> "result")).contains("result");
+    }
+
+    @Test
+    public void testThresholdAndSuspensionConfigurable() {
+        doReturn(Optional.of(1)).when(configuration).getInt(CommunityBranchPlugin.PR_DECORATION_FAILURE_THRESHOLD);
+        doReturn(Optional.of(10)).when(configuration).getInt(CommunityBranchPlugin.PR_DECORATION_SUSPEND_DURATION);
+        doReturn(0L).when(system2).now();
+        assertThatThrownBy(() -> testCase.execute(almSettingDto, failingDecoration())).isInstanceOf(IllegalStateException.class);
+
+        doReturn(TimeUnit.MINUTES.toMillis(9)).when(system2).now();
+        assertThat(testCase.execute(almSettingDto, () -> "result")).isEmpty();
+
+        doReturn(TimeUnit.MINUTES.toMillis(10)).when(system2).now();
+        assertThat(testCase.execute(almSettingDto, () -> "result")).contains("result");
+    }
+
+    @Test
+    public void testDecorationWaitsWhenConcurrentDecorationLimitReached() throws Exception {
+        doReturn(Optional.of(1)).when(configuration).getInt(CommunityBranchPlugin.PR_DECORATION_PERMIT_WAIT);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blockingDecoration = () -> testCase.execute(almSettingDto, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return "result";
+        });
+        Thread first = new Thread(blockingDecoration);
+        Thread second = new Thread(blockingDecoration);
+        first.start();
+        second.start();
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Optional<String>> waitingDecoration = CompletableFuture.supplyAsync(() -> testCase.execute(almSettingDto, () -> "waited"));
+        assertThat(testCase.execute(createAlmSettingDto("other-uuid"), () -> "result")).contains("result");
+        assertThat(waitingDecoration).isNotDone();
+
+        release.countDown();
+        first.join();
+        second.join();
+        assertThat(waitingDecoration.get(10, TimeUnit.SECONDS)).contains("waited");
+    }
+
+    @Test
+    public void testWaitingDecorationSkippedWhenCircuitOpensWhilstWaiting() throws Exception {
+        doReturn(Optional.of(1)).when(configuration).getInt(CommunityBranchPlugin.PR_DECORATION_CONCURRENCY);
+        doReturn(Optional.of(1)).when(configuration).getInt(CommunityBranchPlugin.PR_DECORATION_PERMIT_WAIT);
+        doReturn(Optional.of(1)).when(configuration).getInt(CommunityBranchPlugin.PR_DECORATION_FAILURE_THRESHOLD);
+        doReturn(0L).when(system2).now();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> failingDecoration = CompletableFuture.runAsync(() -> testCase.execute(almSettingDto, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Could not decorate");
+        }));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Optional<String>> waitingDecoration = CompletableFuture.supplyAsync(() -> testCase.execute(almSettingDto, () -> "waited"));
+        release.countDown();
+
+        assertThatThrownBy(() -> failingDecoration.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(waitingDecoration.get(10, TimeUnit.SECONDS)).isEmpty();
+    }
+
+    private static Supplier<String> failingDecoration() {
+        return () -> {
+            throw new IllegalStateException("Could not decorate");
+        };
+    }
+
+    private static AlmSettingDto createAlmSettingDto(String uuid) {
+        AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        doReturn(uuid).when(almSettingDto).getUuid();
+        doReturn("key").when(almSettingDto).getKey();
+        return almSettingDto;
+    }
+}
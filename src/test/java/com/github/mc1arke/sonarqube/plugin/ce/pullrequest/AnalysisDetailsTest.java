@@ -861,6 +861,59 @@ public class AnalysisDetailsTest {
         );
     }
 
+    @Test
+    public void testCreateAnalysisFileIssueSummary() {
+        FormatterFactory formatterFactory = mock(FormatterFactory.class);
+
+        AnalysisDetails.BranchDetails branchDetails = mock(AnalysisDetails.BranchDetails.class);
+        when(branchDetails.getBranchName()).thenReturn("branchName");
+
+        PostAnalysisIssueVisitor.LightIssue laterIssue = mock(PostAnalysisIssueVisitor.LightIssue.class);
+        when(laterIssue.type()).thenReturn(RuleType.BUG);
+        when(laterIssue.getMessage()).thenReturn("second message");
+        when(laterIssue.severity()).thenReturn("MAJOR");
+        when(laterIssue.key()).thenReturn("issueKey2");
+        when(laterIssue.getLine()).thenReturn(20);
+        PostAnalysisIssueVisitor.ComponentIssue laterComponentIssue = mock(PostAnalysisIssueVisitor.ComponentIssue.class);
+        when(laterComponentIssue.getIssue()).thenReturn(laterIssue);
+
+        PostAnalysisIssueVisitor.LightIssue earlierIssue = mock(PostAnalysisIssueVisitor.LightIssue.class);
+        when(earlierIssue.type()).thenReturn(RuleType.CODE_SMELL);
+        when(earlierIssue.getMessage()).thenReturn("first message");
+        when(earlierIssue.severity()).thenReturn("MINOR");
+        when(earlierIssue.key()).thenReturn("issueKey1");
+        when(earlierIssue.getLine()).thenReturn(3);
+        PostAnalysisIssueVisitor.ComponentIssue earlierComponentIssue = mock(PostAnalysisIssueVisitor.ComponentIssue.class);
+        when(earlierComponentIssue.getIssue()).thenReturn(earlierIssue);
+
+        Project project = mock(Project.class);
+        when(project.getKey()).thenReturn("projectKey");
+
+        Formatter<Document> documentFormatter = mock(Formatter.class);
+        when(formatterFactory.documentFormatter()).thenReturn(documentFormatter);
+
+        AnalysisDetails analysisDetails =
+                new AnalysisDetails(branchDetails, mock(PostAnalysisIssueVisitor.class),
+                        mock(QualityGate.class), mock(AnalysisDetails.MeasuresHolder.class),
+                        mock(Analysis.class), project, mock(Configuration.class), "http://localhost:9000", mock(ScannerContext.class));
+
+        ArgumentCaptor<Document> documentArgumentCaptor = ArgumentCaptor.forClass(Document.class);
+        analysisDetails.createAnalysisFileIssueSummary("path/to/file", Arrays.asList(laterComponentIssue, earlierComponentIssue), formatterFactory);
+        verify(documentFormatter).format(documentArgumentCaptor.capture(), any());
+
+        assertThat(documentArgumentCaptor.getValue()).usingRecursiveComparison().isEqualTo(
+                new Document(
+                        new Paragraph(new Text("**2 Issues in** `path/to/file`")),
+                        new List(List.Style.BULLET,
+                                new ListItem(new Text("**Line 3:** MINOR CODE_SMELL - first message "),
+                                        new Link("http://localhost:9000/project/issues?id=projectKey&pullRequest=branchName&issues=issueKey1&open=issueKey1", new Text("View in SonarQube"))),
+                                new ListItem(new Text("**Line 20:** MAJOR BUG - second message "),
+                                        new Link("http://localhost:9000/project/issues?id=projectKey&pullRequest=branchName&issues=issueKey2&open=issueKey2", new Text("View in SonarQube")))),
+                        new Paragraph(new Text("**Project ID:** projectKey"))
+                )
+        );
+    }
+
     @Test
     public void testFakeIdReturnedForSummaryComment() {
         AnalysisDetails analysisDetails = new AnalysisDetails(mock(AnalysisDetails.BranchDetails.class), mock(PostAnalysisIssueVisitor.class),
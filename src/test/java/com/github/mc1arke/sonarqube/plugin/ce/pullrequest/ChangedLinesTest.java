@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChangedLinesTest {
+
+    @Test
+    public void shouldOnlyMarkAddedLinesFromEachHunkAsChanged() {
+        ChangedLines underTest = ChangedLines.builder()
+                .withUnifiedDiff("src/File.java", "@@ -1,4 +1,5 @@\n" +
+                        " first\n" +
+                        "-second\n" +
+                        "+second changed\n" +
+                        "+second added\n" +
+                        " third\n" +
+                        " fourth\n" +
+                        "@@ -20,2 +21,3 @@ class File {\n" +
+                        " context\n" +
+                        "+added\n" +
+                        " context\n" +
+                        "\\ No newline at end of file\n")
+                .build();
+
+        assertThat(underTest.isChanged("src/File.java", 1)).contains(false);
+        assertThat(underTest.isChanged("src/File.java", 2)).contains(true);
+        assertThat(underTest.isChanged("src/File.java", 3)).contains(true);
+        assertThat(underTest.isChanged("src/File.java", 4)).contains(false);
+        assertThat(underTest.isChanged("src/File.java", 21)).contains(false);
+        assertThat(underTest.isChanged("src/File.java", 22)).contains(true);
+        assertThat(underTest.isChanged("src/File.java", 23)).contains(false);
+    }
+
+    @Test
+    public void shouldHandleNewFilesAndSingleLineHunkHeaders() {
+        ChangedLines underTest = ChangedLines.builder()
+                .withUnifiedDiff("new.txt", "@@ -0,0 +1 @@\r\n+only line\r\n")
+                .build();
+
+        assertThat(underTest.isChanged("new.txt", 1)).contains(true);
+        assertThat(underTest.isChanged("new.txt", 2)).contains(false);
+    }
+
+    @Test
+    public void shouldReportFilesOutsideTheDiffAsUnchanged() {
+        ChangedLines underTest = ChangedLines.builder().build();
+
+        assertThat(underTest.isChanged("untouched.txt", 10)).contains(false);
+    }
+
+    @Test
+    public void shouldReportNoResultForFilesWithUnknownChanges() {
+        ChangedLines underTest = ChangedLines.builder()
+                .withUnknownFile("large.txt")
+                .build();
+
+        assertThat(underTest.isChanged("large.txt", 10)).isEmpty();
+    }
+}
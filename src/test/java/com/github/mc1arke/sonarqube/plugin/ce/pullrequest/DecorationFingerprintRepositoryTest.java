@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import com.github.mc1arke.sonarqube.plugin.CommunityBranchPlugin;
+import org.junit.Test;
+import org.sonar.api.ce.posttask.QualityGate;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.ce.task.projectanalysis.measure.Measure;
+import org.sonar.db.alm.setting.AlmSettingDto;
+import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+public class DecorationFingerprintRepositoryTest {
+
+    @Test
+    public void testMatchingDecorationReturnedOnlyForSameFingerprint() {
+        DecorationFingerprintRepository testCase = new DecorationFingerprintRepository();
+        DecorationResult decorationResult = DecorationResult.builder().withPullRequestUrl("url").build();
+        testCase.recordDecoration("project", "pr", "fingerprint", decorationResult);
+
+        assertThat(testCase.findMatchingDecoration("project", "pr", "fingerprint")).contains(decorationResult);
+        assertThat(testCase.findMatchingDecoration("project", "pr", "other")).isEmpty();
+        assertThat(testCase.findMatchingDecoration("project", "other", "fingerprint")).isEmpty();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryEvicted() {
+        DecorationFingerprintRepository testCase = new DecorationFingerprintRepository(2);
+        DecorationResult decorationResult = DecorationResult.builder().build();
+        testCase.recordDecoration("project", "pr1", "fingerprint", decorationResult);
+        testCase.recordDecoration("project", "pr2", "fingerprint", decorationResult);
+        testCase.findMatchingDecoration("project", "pr1", "fingerprint");
+        testCase.recordDecoration("project", "pr3", "fingerprint", decorationResult);
+
+        assertThat(testCase.findMatchingDecoration("project", "pr1", "fingerprint")).isPresent();
+        assertThat(testCase.findMatchingDecoration("project", "pr2", "fingerprint")).isEmpty();
+        assertThat(testCase.findMatchingDecoration("project", "pr3", "fingerprint")).isPresent();
+    }
+
+    @Test
+    public void testFingerprintIgnoresIssueOrderButReflectsIssueChanges() {
+        PostAnalysisIssueVisitor.ComponentIssue issue1 = mockComponentIssue("key1", "OPEN");
+        PostAnalysisIssueVisitor.ComponentIssue issue2 = mockComponentIssue("key2", "OPEN");
+        PostAnalysisIssueVisitor.ComponentIssue resolvedIssue2 = mockComponentIssue("key2", "RESOLVED");
+
+        AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        doReturn("uuid").when(almSettingDto).getUuid();
+        ProjectAlmSettingDto projectAlmSettingDto = mock(ProjectAlmSettingDto.class);
+        doReturn("repo").when(projectAlmSettingDto).getAlmRepo();
+        PullRequestBuildStatusDecorator decorator = mock(PullRequestBuildStatusDecorator.class);
+
+        PostAnalysisIssueVisitor postAnalysisIssueVisitor = mock(PostAnalysisIssueVisitor.class);
+        AnalysisDetails analysisDetails = mock(AnalysisDetails.class);
+        doReturn("sha").when(analysisDetails).getCommitSha();
+        doReturn(QualityGate.Status.OK).when(analysisDetails).getQualityGateStatus();
+        doReturn(postAnalysisIssueVisitor).when(analysisDetails).getPostAnalysisIssueVisitor();
+
+        doReturn(Arrays.asList(issue1, issue2)).when(postAnalysisIssueVisitor).getIssues();
+        String fingerprint = DecorationFingerprintRepository.createFingerprint(analysisDetails, almSettingDto, projectAlmSettingDto, decorator);
+
+        doReturn(Arrays.asList(issue2, issue1)).when(postAnalysisIssueVisitor).getIssues();
+        assertThat(DecorationFingerprintRepository.createFingerprint(analysisDetails, almSettingDto, projectAlmSettingDto, decorator)).isEqualTo(fingerprint);
+
+        doReturn(Arrays.asList(issue1, resolvedIssue2)).when(postAnalysisIssueVisitor).getIssues();
+        assertThat(DecorationFingerprintRepository.createFingerprint(analysisDetails, almSettingDto, projectAlmSettingDto, decorator)).isNotEqualTo(fingerprint);
+
+        doReturn(Arrays.asList(issue1, issue2)).when(postAnalysisIssueVisitor).getIssues();
+        doReturn("other-sha").when(analysisDetails).getCommitSha();
+        assertThat(DecorationFingerprintRepository.createFingerprint(analysisDetails, almSettingDto, projectAlmSettingDto, decorator)).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    public void testFingerprintReflectsMeasuresConditionsAndSettings() {
+        AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        ProjectAlmSettingDto projectAlmSettingDto = mock(ProjectAlmSettingDto.class);
+        PullRequestBuildStatusDecorator decorator = mock(PullRequestBuildStatusDecorator.class);
+
+        PostAnalysisIssueVisitor postAnalysisIssueVisitor = mock(PostAnalysisIssueVisitor.class);
+        doReturn(Collections.singletonList(mockComponentIssue("key1", "OPEN"))).when(postAnalysisIssueVisitor).getIssues();
+
+        QualityGate.Condition newCoverageCondition = mock(QualityGate.Condition.class);
+        doReturn(CoreMetrics.NEW_COVERAGE_KEY).when(newCoverageCondition).getMetricKey();
+        doReturn(QualityGate.EvaluationStatus.OK).when(newCoverageCondition).getStatus();
+        doReturn("85.0").when(newCoverageCondition).getValue();
+        QualityGate.Condition newDuplicationCondition = mock(QualityGate.Condition.class);
+        doReturn(CoreMetrics.NEW_DUPLICATED_LINES_DENSITY_KEY).when(newDuplicationCondition).getMetricKey();
+        doReturn(QualityGate.EvaluationStatus.NO_VALUE).when(newDuplicationCondition).getStatus();
+        doThrow(new IllegalStateException("No value")).when(newDuplicationCondition).getValue();
+
+        Measure coverage = mock(Measure.class);
+        doReturn(75.0).when(coverage).getDoubleValue();
+
+        AnalysisDetails analysisDetails = mock(AnalysisDetails.class);
+        doReturn("sha").when(analysisDetails).getCommitSha();
+        doReturn(QualityGate.Status.OK).when(analysisDetails).getQualityGateStatus();
+        doReturn(postAnalysisIssueVisitor).when(analysisDetails).getPostAnalysisIssueVisitor();
+        doReturn(Arrays.asList(newDuplicationCondition, newCoverageCondition)).when(analysisDetails).getQualityGateConditions();
+        doReturn(Optional.of(coverage)).when(analysisDetails).findMeasure(CoreMetrics.COVERAGE_KEY);
+        doReturn(Optional.empty()).when(analysisDetails).findMeasure(CoreMetrics.DUPLICATED_LINES_DENSITY_KEY);
+        doReturn(Optional.empty()).when(analysisDetails).getConfigurationProperty(any());
+
+        String fingerprint = DecorationFingerprintRepository.createFingerprint(analysisDetails, almSettingDto, projectAlmSettingDto, decorator);
+        assertThat(DecorationFingerprintRepository.createFingerprint(analysisDetails, almSettingDto, projectAlmSettingDto, decorator)).isEqualTo(fingerprint);
+
+        doReturn("90.0").when(newCoverageCondition).getValue();
+        String changedConditionFingerprint = DecorationFingerprintRepository.createFingerprint(analysisDetails, almSettingDto, projectAlmSettingDto, decorator);
+        assertThat(changedConditionFingerprint).isNotEqualTo(fingerprint);
+
+        doReturn(80.0).when(coverage).getDoubleValue();
+        String changedMeasureFingerprint = DecorationFingerprintRepository.createFingerprint(analysisDetails, almSettingDto, projectAlmSettingDto, decorator);
+        assertThat(changedMeasureFingerprint).isNotEqualTo(changedConditionFingerprint);
+
+        doReturn(Optional.of("true")).when(analysisDetails).getConfigurationProperty(CommunityBranchPlugin.PR_SUMMARY_NOTE_EDIT);
+        String changedSettingFingerprint = DecorationFingerprintRepository.createFingerprint(analysisDetails, almSettingDto, projectAlmSettingDto, decorator);
+        assertThat(changedSettingFingerprint).isNotEqualTo(changedMeasureFingerprint);
+
+        doReturn(false).when(projectAlmSettingDto).getSummaryCommentEnabled();
+        assertThat(DecorationFingerprintRepository.createFingerprint(analysisDetails, almSettingDto, projectAlmSettingDto, decorator)).isNotEqualTo(changedSettingFingerprint);
+    }
+
+    private static PostAnalysisIssueVisitor.ComponentIssue mockComponentIssue(String key, String status) {
+        PostAnalysisIssueVisitor.LightIssue lightIssue = mock(PostAnalysisIssueVisitor.LightIssue.class);
+        doReturn(key).when(lightIssue).key();
+        doReturn(status).when(lightIssue).status();
+        PostAnalysisIssueVisitor.ComponentIssue componentIssue = mock(PostAnalysisIssueVisitor.ComponentIssue.class);
+        doReturn(lightIssue).when(componentIssue).getIssue();
+        return componentIssue;
+    }
+}
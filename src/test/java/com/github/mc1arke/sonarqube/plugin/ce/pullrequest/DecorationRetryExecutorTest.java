@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import com.github.mc1arke.sonarqube.plugin.CommunityBranchPlugin;
+import com.github.mc1arke.sonarqube.plugin.InvalidConfigurationException;
+import com.github.mc1arke.sonarqube.plugin.almclient.UnexpectedResponseException;
+import io.aexp.nodes.graphql.exceptions.GraphQLException;
+import org.junit.Test;
+import org.sonar.api.config.Configuration;
+
+import java.net.SocketTimeoutException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class DecorationRetryExecutorTest {
+
+    private final Configuration configuration = mock(Configuration.class);
+    private final DecorationRetryExecutor testCase = new DecorationRetryExecutor(configuration, 0);
+
+    @Test
+    public void testResultReturnedFromFirstSuccessfulAttempt() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = testCase.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("Could not decorate", new SocketTimeoutException("Read timed out"));
+            }
+            return "result";
+        });
+
+        assertThat(result).isEqualTo("result");
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    public void testLastFailureRethrownWhenAttemptsExhausted() {
+        doReturn(Optional.of(2)).when(configuration).getInt(CommunityBranchPlugin.PR_DECORATION_ATTEMPTS);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> testCase.execute(() -> {
+            throw new UnexpectedResponseException("Could not decorate " + attempts.incrementAndGet(), 503);
+        })).isInstanceOf(IllegalStateException.class).hasMessage("Could not decorate 2");
+    }
+
+    @Test
+    public void testSingleAttemptMadeWhenAttemptsNotPositive() {
+        doReturn(Optional.of(0)).when(configuration).getInt(CommunityBranchPlugin.PR_DECORATION_ATTEMPTS);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> testCase.execute(() -> {
+            throw new UnexpectedResponseException("Could not decorate " + attempts.incrementAndGet(), 503);
+        })).hasMessage("Could not decorate 1");
+    }
+
+    @Test
+    public void testRateLimitedResponseRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = testCase.execute(() -> {
+            if (attempts.incrementAndGet() < 2) {
+                GraphQLException exception = new GraphQLException("Rate limited");
+                exception.setStatus("429");
+                throw exception;
+            }
+            return "result";
+        });
+
+        assertThat(result).isEqualTo("result");
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    public void testClientErrorResponseNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> testCase.execute(() -> {
+            throw new UnexpectedResponseException("Could not decorate " + attempts.incrementAndGet(), 404);
+        })).hasMessage("Could not decorate 1");
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    public void testInvalidConfigurationNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> testCase.execute(() -> {
+            throw new InvalidConfigurationException(InvalidConfigurationException.Scope.PROJECT, "Invalid configuration " + attempts.incrementAndGet());
+        })).isInstanceOf(InvalidConfigurationException.class);
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    public void testFailureWithoutTransientCauseNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> testCase.execute(() -> {
+            throw new IllegalStateException("Could not decorate " + attempts.incrementAndGet());
+        })).hasMessage("Could not decorate 1");
+        assertThat(attempts).hasValue(1);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.property.InternalPropertiesDao;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class PullRequestDecorationLockTest {
+
+    private final DbClient dbClient = mock(DbClient.class);
+    private final DbSession dbSession = mock(DbSession.class);
+    private final InternalPropertiesDao internalPropertiesDao = mock(InternalPropertiesDao.class);
+    private final System2 system2 = mock(System2.class);
+    private final PullRequestDecorationLock testCase = new PullRequestDecorationLock(dbClient, system2, 60, 0);
+
+    @Before
+    public void setUp() {
+        doReturn(dbSession).when(dbClient).openSession(anyBoolean());
+        doReturn(internalPropertiesDao).when(dbClient).internalPropertiesDao();
+    }
+
+    @Test
+    public void testActionRunOnceLeaseAcquiredAndLeaseReleased() {
+        String lockName = PullRequestDecorationLock.createLockName("project", "pr");
+        doReturn(false, false, true).when(internalPropertiesDao).tryLock(dbSession, lockName, 60);
+        doReturn(Optional.of("1000")).when(internalPropertiesDao).selectByKey(dbSession, "lock." + lockName);
+        Runnable action = mock(Runnable.class);
+
+        testCase.runExclusively("project", "pr", action);
+
+        InOrder inOrder = inOrder(internalPropertiesDao, action);
+        inOrder.verify(internalPropertiesDao, times(3)).tryLock(dbSession, lockName, 60);
+        inOrder.verify(action).run();
+        inOrder.verify(internalPropertiesDao).delete(dbSession, "lock." + lockName);
+    }
+
+    @Test
+    public void testLeaseReleasedWhenActionFails() {
+        doReturn(true).when(internalPropertiesDao).tryLock(any(), any(), eq(60));
+        doReturn(Optional.of("1000")).when(internalPropertiesDao).selectByKey(any(), any());
+
+        assertThatThrownBy(() -> testCase.runExclusively("project", "pr", () -> {
+            throw new IllegalStateException("dummy");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("dummy");
+
+        verify(internalPropertiesDao).delete(dbSession, "lock." + PullRequestDecorationLock.createLockName("project", "pr"));
+    }
+
+    @Test
+    public void testLeaseNotReleasedWhenTakenOverByAnotherWorker() {
+        String lockName = PullRequestDecorationLock.createLockName("project", "pr");
+        doReturn(true).when(internalPropertiesDao).tryLock(dbSession, lockName, 60);
+        doReturn(Optional.of("1000"), Optional.of("2000")).when(internalPropertiesDao).selectByKey(dbSession, "lock." + lockName);
+
+        testCase.runExclusively("project", "pr", mock(Runnable.class));
+
+        verify(internalPropertiesDao, never()).delete(any(), any());
+    }
+
+    @Test
+    public void testLeaseRenewedWhilstActionRuns() {
+        PullRequestDecorationLock testCase = new PullRequestDecorationLock(dbClient, system2, 0, 0);
+        String lockName = PullRequestDecorationLock.createLockName("project", "pr");
+        doReturn(true).when(internalPropertiesDao).tryLock(dbSession, lockName, 0);
+        doReturn(Optional.of("1000")).when(internalPropertiesDao).selectByKey(dbSession, "lock." + lockName);
+        doReturn(1000L).when(system2).now();
+
+        testCase.runExclusively("project", "pr", () -> verify(internalPropertiesDao, timeout(5000).atLeastOnce())
+                .save(dbSession, "lock." + lockName, "1000"));
+
+        verify(internalPropertiesDao).delete(dbSession, "lock." + lockName);
+    }
+
+    @Test
+    public void testLockNamesFitInternalPropertyLimitAndDifferPerPullRequest() {
+        String lockName = PullRequestDecorationLock.createLockName("project", "pr1");
+
+        assertThat(lockName).hasSize(15).isEqualTo(PullRequestDecorationLock.createLockName("project", "pr1"))
+                .isNotEqualTo(PullRequestDecorationLock.createLockName("project", "pr2"))
+                .isNotEqualTo(PullRequestDecorationLock.createLockName("project2", "pr1"));
+    }
+}
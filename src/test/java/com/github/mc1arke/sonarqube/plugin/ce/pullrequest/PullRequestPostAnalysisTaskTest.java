@@ -23,12 +23,14 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.sonar.api.ce.posttask.Analysis;
 import org.sonar.api.ce.posttask.Branch;
+import org.sonar.api.ce.posttask.CeTask;
 import org.sonar.api.ce.posttask.PostProjectAnalysisTask;
 import org.sonar.api.ce.posttask.Project;
 import org.sonar.api.ce.posttask.QualityGate;
 import org.sonar.api.ce.posttask.ScannerContext;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.platform.Server;
+import org.sonar.api.utils.System2;
 import org.sonar.ce.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.ce.task.projectanalysis.measure.MeasureRepository;
 import org.sonar.ce.task.projectanalysis.metric.MetricRepository;
@@ -39,11 +41,17 @@ import org.sonar.db.alm.setting.AlmSettingDao;
 import org.sonar.db.alm.setting.AlmSettingDto;
 import org.sonar.db.alm.setting.ProjectAlmSettingDao;
 import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+import org.sonar.db.ce.CeQueueDao;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskCharacteristicDao;
+import org.sonar.db.ce.CeTaskCharacteristicDto;
 import org.sonar.db.component.BranchDao;
 import org.sonar.db.component.BranchDto;
 import org.sonar.db.protobuf.DbProjectBranches;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -55,7 +63,9 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -76,13 +86,20 @@ public class PullRequestPostAnalysisTaskTest {
     private TreeRootHolder treeRootHolder = mock(TreeRootHolder.class);
     private PostProjectAnalysisTask.Context context = mock(PostProjectAnalysisTask.Context.class);
     private DbClient dbClient = mock(DbClient.class);
+    private CeQueueDao ceQueueDao = mock(CeQueueDao.class);
+    private CeTaskCharacteristicDao ceTaskCharacteristicDao = mock(CeTaskCharacteristicDao.class);
+    private CeTask ceTask = mock(CeTask.class);
     private Project project = mock(Project.class);
     private Configuration configuration = mock(Configuration.class);
+    private DecorationFingerprintRepository decorationFingerprintRepository = new DecorationFingerprintRepository();
+    private PullRequestDecorationLock pullRequestDecorationLock = mock(PullRequestDecorationLock.class);
 
     private PullRequestPostAnalysisTask testCase =
             new PullRequestPostAnalysisTask(server, pullRequestBuildStatusDecorators,
                     postAnalysisIssueVisitor, metricRepository, measureRepository,
-                    treeRootHolder, configuration, dbClient);
+                    treeRootHolder, configuration, dbClient, decorationFingerprintRepository,
+                    pullRequestDecorationLock, new DecorationRetryExecutor(configuration, 0),
+                    new AlmCircuitBreaker(configuration, System2.INSTANCE), new AlmBindingCache(System2.INSTANCE));
 
     @Before
     public void init() {
@@ -92,8 +109,14 @@ public class PullRequestPostAnalysisTaskTest {
         doReturn(projectAnalysis).when(context).getProjectAnalysis();
         doReturn(project).when(projectAnalysis).getProject();
         doReturn("uuid").when(project).getUuid();
-
-
+        doReturn(ceTask).when(projectAnalysis).getCeTask();
+        doReturn("task-uuid").when(ceTask).getId();
+        doReturn(ceQueueDao).when(dbClient).ceQueueDao();
+        doReturn(ceTaskCharacteristicDao).when(dbClient).ceTaskCharacteristicsDao();
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return null;
+        }).when(pullRequestDecorationLock).runExclusively(any(), any(), any());
     }
 
     @Test
@@ -328,6 +351,7 @@ public class PullRequestPostAnalysisTaskTest {
 
         ProjectAlmSettingDto projectAlmSettingDto = mock(ProjectAlmSettingDto.class);
         AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        doReturn("setting-uuid").when(almSettingDto).getUuid();
         doReturn(ALM.GITHUB).when(almSettingDto).getAlm();
 
         when(dbClient.openSession(anyBoolean())).thenReturn(mock(DbSession.class));
@@ -393,6 +417,7 @@ public class PullRequestPostAnalysisTaskTest {
 
         ProjectAlmSettingDto projectAlmSettingDto = mock(ProjectAlmSettingDto.class);
         AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        doReturn("setting-uuid").when(almSettingDto).getUuid();
         doReturn(ALM.BITBUCKET).when(almSettingDto).getAlm();
 
         DbSession dbSession = mock(DbSession.class);
@@ -421,6 +446,7 @@ public class PullRequestPostAnalysisTaskTest {
         verify(dbClient).branchDao();
         verify(branchDao).selectByPullRequestKey(eq(dbSession), eq("uuid"), eq("pull-request"));
         verify(decorator2).decorateQualityGateStatus(analysisDetailsArgumentCaptor.capture(), eq(almSettingDto), eq(projectAlmSettingDto));
+        verify(pullRequestDecorationLock).runExclusively(eq("uuid"), eq("pull-request"), any());
 
         ArgumentCaptor<DbProjectBranches.PullRequestData> pullRequestDataArgumentCaptor = ArgumentCaptor.forClass(
                 DbProjectBranches.PullRequestData.class);
@@ -468,6 +494,7 @@ public class PullRequestPostAnalysisTaskTest {
         when(projectAlmSettingDto.getAlmSlug()).thenReturn("dummy/repo");
         when(projectAlmSettingDto.getAlmSettingUuid()).thenReturn("almUuid");
         AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        doReturn("setting-uuid").when(almSettingDto).getUuid();
         when(almSettingDto.getUrl()).thenReturn("http://host.name");
         when(almSettingDto.getAppId()).thenReturn("app id");
         when(almSettingDto.getDecryptedPrivateKey(any())).thenReturn("private key");
@@ -519,6 +546,176 @@ public class PullRequestPostAnalysisTaskTest {
         assertThat(analysisDetailsArgumentCaptor.getValue()).usingRecursiveComparison().isEqualTo(analysisDetails);
     }
 
+    @Test
+    public void testFinishedAnalysisOnlyRefreshesStatusForRepeatedIdenticalAnalysis() {
+        doReturn(Branch.Type.PULL_REQUEST).when(branch).getType();
+        doReturn(Optional.of("pull-request")).when(branch).getName();
+
+        Analysis analysis = mock(Analysis.class);
+        doReturn(Optional.of("revision")).when(analysis).getRevision();
+        doReturn(Optional.of(analysis)).when(projectAnalysis).getAnalysis();
+
+        QualityGate qualityGate = mock(QualityGate.class);
+        doReturn(QualityGate.Status.OK).when(qualityGate).getStatus();
+        doReturn(qualityGate).when(projectAnalysis).getQualityGate();
+
+        PullRequestBuildStatusDecorator decorator = mock(PullRequestBuildStatusDecorator.class);
+        doReturn(Collections.singletonList(ALM.GITLAB)).when(decorator).alm();
+        doReturn(DecorationResult.builder().withPullRequestUrl("pullRequestUrl").build()).when(decorator).decorateQualityGateStatus(any(), any(), any());
+        doReturn(DecorationResult.builder().withPullRequestUrl("pullRequestUrl").build()).when(decorator).decorateQualityGateStatusOnly(any(), any(), any());
+        pullRequestBuildStatusDecorators.add(decorator);
+
+        ProjectAlmSettingDto projectAlmSettingDto = mock(ProjectAlmSettingDto.class);
+        doReturn("setting-uuid").when(projectAlmSettingDto).getAlmSettingUuid();
+        doReturn("repo").when(projectAlmSettingDto).getAlmRepo();
+        AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        doReturn(ALM.GITLAB).when(almSettingDto).getAlm();
+        doReturn("setting-uuid").when(almSettingDto).getUuid();
+
+        DbSession dbSession = mock(DbSession.class);
+        doReturn(dbSession).when(dbClient).openSession(anyBoolean());
+        BranchDao branchDao = mock(BranchDao.class);
+        doReturn(branchDao).when(dbClient).branchDao();
+        BranchDto branchDto = mock(BranchDto.class);
+        doReturn(Optional.of(branchDto)).when(branchDao).selectByPullRequestKey(any(), any(), any());
+        doReturn(DbProjectBranches.PullRequestData.newBuilder().build()).when(branchDto).getPullRequestData();
+
+        ProjectAlmSettingDao projectAlmSettingDao = mock(ProjectAlmSettingDao.class);
+        doReturn(Optional.of(projectAlmSettingDto)).when(projectAlmSettingDao).selectByProject(eq(dbSession), eq("uuid"));
+        AlmSettingDao almSettingDao = mock(AlmSettingDao.class);
+        doReturn(Optional.of(almSettingDto)).when(almSettingDao).selectByUuid(eq(dbSession), eq("setting-uuid"));
+        doReturn(projectAlmSettingDao).when(dbClient).projectAlmSettingDao();
+        doReturn(almSettingDao).when(dbClient).almSettingDao();
+
+        testCase.finished(context);
+        testCase.finished(context);
+
+        verify(decorator, times(1)).decorateQualityGateStatus(any(), eq(almSettingDto), eq(projectAlmSettingDto));
+        verify(decorator, times(1)).decorateQualityGateStatusOnly(any(), eq(almSettingDto), eq(projectAlmSettingDto));
+        verify(branchDao, times(2)).upsert(eq(dbSession), eq(branchDto));
+
+        doReturn(QualityGate.Status.ERROR).when(qualityGate).getStatus();
+        testCase.finished(context);
+
+        verify(decorator, times(2)).decorateQualityGateStatus(any(), eq(almSettingDto), eq(projectAlmSettingDto));
+        verify(decorator, times(1)).decorateQualityGateStatusOnly(any(), eq(almSettingDto), eq(projectAlmSettingDto));
+        verify(projectAlmSettingDao).selectByProject(dbSession, "uuid");
+        verify(almSettingDao).selectByUuid(dbSession, "setting-uuid");
+    }
+
+    @Test
+    public void testFinishedAnalysisOnlyPublishesStatusIfNewerAnalysisOfPullRequestQueued() {
+        PullRequestBuildStatusDecorator decorator = mockDecoratorForQueueTests();
+        DbSession dbSession = mockBindingForQueueTests();
+
+        CeQueueDto currentTask = new CeQueueDto().setUuid("task-uuid").setCreatedAt(100L);
+        CeQueueDto earlierTask = new CeQueueDto().setUuid("earlier-task-uuid").setCreatedAt(50L);
+        CeQueueDto laterOtherPullRequestTask = new CeQueueDto().setUuid("other-task-uuid").setCreatedAt(150L);
+        CeQueueDto laterTask = new CeQueueDto().setUuid("later-task-uuid").setCreatedAt(200L);
+        doReturn(Arrays.asList(earlierTask, currentTask, laterOtherPullRequestTask, laterTask)).when(ceQueueDao).selectByMainComponentUuid(dbSession, "uuid");
+        doReturn(Arrays.asList(new CeTaskCharacteristicDto().setTaskUuid("other-task-uuid").setKey(CeTaskCharacteristicDto.PULL_REQUEST).setValue("other-pull-request"),
+                new CeTaskCharacteristicDto().setTaskUuid("later-task-uuid").setKey(CeTaskCharacteristicDto.PULL_REQUEST).setValue("pull-request")))
+                .when(ceTaskCharacteristicDao).selectByTaskUuids(dbSession, Arrays.asList("other-task-uuid", "later-task-uuid"));
+
+        testCase.finished(context);
+
+        verify(decorator, never()).decorateQualityGateStatus(any(), any(), any());
+        verify(decorator).decorateQualityGateStatusOnly(any(), any(), any());
+    }
+
+    @Test
+    public void testFinishedAnalysisFullyDecoratedIfCurrentTaskNotQueued() {
+        PullRequestBuildStatusDecorator decorator = mockDecoratorForQueueTests();
+        DbSession dbSession = mockBindingForQueueTests();
+
+        CeQueueDto otherTask = new CeQueueDto().setUuid("other-task-uuid").setCreatedAt(50L);
+        doReturn(Collections.singletonList(otherTask)).when(ceQueueDao).selectByMainComponentUuid(dbSession, "uuid");
+
+        testCase.finished(context);
+
+        verify(decorator).decorateQualityGateStatus(any(), any(), any());
+        verify(decorator, never()).decorateQualityGateStatusOnly(any(), any(), any());
+        verify(ceTaskCharacteristicDao, never()).selectByTaskUuids(any(), any());
+    }
+
+    private PullRequestBuildStatusDecorator mockDecoratorForQueueTests() {
+        doReturn(Branch.Type.PULL_REQUEST).when(branch).getType();
+        doReturn(Optional.of("pull-request")).when(branch).getName();
+
+        Analysis analysis = mock(Analysis.class);
+        doReturn(Optional.of("revision")).when(analysis).getRevision();
+        doReturn(Optional.of(analysis)).when(projectAnalysis).getAnalysis();
+        doReturn(mock(QualityGate.class)).when(projectAnalysis).getQualityGate();
+
+        PullRequestBuildStatusDecorator decorator = mock(PullRequestBuildStatusDecorator.class);
+        doReturn(Collections.singletonList(ALM.GITLAB)).when(decorator).alm();
+        doReturn(DecorationResult.builder().build()).when(decorator).decorateQualityGateStatus(any(), any(), any());
+        doReturn(DecorationResult.builder().build()).when(decorator).decorateQualityGateStatusOnly(any(), any(), any());
+        pullRequestBuildStatusDecorators.add(decorator);
+        return decorator;
+    }
+
+    private DbSession mockBindingForQueueTests() {
+        ProjectAlmSettingDto projectAlmSettingDto = mock(ProjectAlmSettingDto.class);
+        doReturn("setting-uuid").when(projectAlmSettingDto).getAlmSettingUuid();
+        AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        doReturn("setting-uuid").when(almSettingDto).getUuid();
+        doReturn(ALM.GITLAB).when(almSettingDto).getAlm();
+
+        DbSession dbSession = mock(DbSession.class);
+        doReturn(dbSession).when(dbClient).openSession(anyBoolean());
+        ProjectAlmSettingDao projectAlmSettingDao = mock(ProjectAlmSettingDao.class);
+        doReturn(Optional.of(projectAlmSettingDto)).when(projectAlmSettingDao).selectByProject(eq(dbSession), eq("uuid"));
+        AlmSettingDao almSettingDao = mock(AlmSettingDao.class);
+        doReturn(Optional.of(almSettingDto)).when(almSettingDao).selectByUuid(eq(dbSession), eq("setting-uuid"));
+        doReturn(projectAlmSettingDao).when(dbClient).projectAlmSettingDao();
+        doReturn(almSettingDao).when(dbClient).almSettingDao();
+        return dbSession;
+    }
+
+    @Test
+    public void testFinishedAnalysisDecorationRetriedAfterFailure() {
+        doReturn(Branch.Type.PULL_REQUEST).when(branch).getType();
+        doReturn(Optional.of("pull-request")).when(branch).getName();
+
+        Analysis analysis = mock(Analysis.class);
+        doReturn(Optional.of("revision")).when(analysis).getRevision();
+        doReturn(Optional.of(analysis)).when(projectAnalysis).getAnalysis();
+        doReturn(mock(QualityGate.class)).when(projectAnalysis).getQualityGate();
+
+        PullRequestBuildStatusDecorator decorator = mock(PullRequestBuildStatusDecorator.class);
+        doReturn(Collections.singletonList(ALM.GITLAB)).when(decorator).alm();
+        doThrow(new IllegalStateException("Could not submit commit comment to Gitlab", new IOException("Connection reset")))
+                .doReturn(DecorationResult.builder().withPullRequestUrl("pullRequestUrl").build())
+                .when(decorator).decorateQualityGateStatus(any(), any(), any());
+        pullRequestBuildStatusDecorators.add(decorator);
+
+        ProjectAlmSettingDto projectAlmSettingDto = mock(ProjectAlmSettingDto.class);
+        doReturn("setting-uuid").when(projectAlmSettingDto).getAlmSettingUuid();
+        AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        doReturn("setting-uuid").when(almSettingDto).getUuid();
+        doReturn(ALM.GITLAB).when(almSettingDto).getAlm();
+
+        DbSession dbSession = mock(DbSession.class);
+        doReturn(dbSession).when(dbClient).openSession(anyBoolean());
+        BranchDao branchDao = mock(BranchDao.class);
+        doReturn(branchDao).when(dbClient).branchDao();
+        BranchDto branchDto = mock(BranchDto.class);
+        doReturn(Optional.of(branchDto)).when(branchDao).selectByPullRequestKey(any(), any(), any());
+        doReturn(DbProjectBranches.PullRequestData.newBuilder().build()).when(branchDto).getPullRequestData();
+        ProjectAlmSettingDao projectAlmSettingDao = mock(ProjectAlmSettingDao.class);
+        doReturn(Optional.of(projectAlmSettingDto)).when(projectAlmSettingDao).selectByProject(eq(dbSession), eq("uuid"));
+        AlmSettingDao almSettingDao = mock(AlmSettingDao.class);
+        doReturn(Optional.of(almSettingDto)).when(almSettingDao).selectByUuid(eq(dbSession), eq("setting-uuid"));
+        doReturn(projectAlmSettingDao).when(dbClient).projectAlmSettingDao();
+        doReturn(almSettingDao).when(dbClient).almSettingDao();
+
+        testCase.finished(context);
+
+        verify(decorator, times(2)).decorateQualityGateStatus(any(), eq(almSettingDto), eq(projectAlmSettingDto));
+        verify(branchDao).upsert(eq(dbSession), eq(branchDto));
+    }
+
     @Test
     public void testCorrectDescriptionReturnedForTask() {
         assertThat(testCase.getDescription()).isEqualTo("Pull Request Decoration");
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.ce.pullrequest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RankedSelectionTest {
+
+    @Test
+    public void shouldKeepAllItemsInRankOrderWhenUnderLimit() {
+        RankedSelection<String> underTest = new RankedSelection<>(10, 3, RankedSelectionTest::rank);
+        Arrays.asList("c1", "a1", "b1", "a2").forEach(underTest::offer);
+
+        assertThat(underTest.getSelected()).containsExactly("a1", "a2", "b1", "c1");
+        assertThat(underTest.getDiscardedCount()).isZero();
+    }
+
+    @Test
+    public void shouldMatchStableSortAndTruncateWhenOverLimit() {
+        RankedSelection<String> underTest = new RankedSelection<>(3, 3, RankedSelectionTest::rank);
+        Arrays.asList("c1", "b1", "c2", "a1", "b2", "c3", "a2", "b3").forEach(underTest::offer);
+
+        assertThat(underTest.getSelected()).containsExactly("a1", "a2", "b1");
+        assertThat(underTest.getDiscardedCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void shouldDiscardLaterItemsOfTheSameRankOnceFull() {
+        RankedSelection<String> underTest = new RankedSelection<>(2, 3, RankedSelectionTest::rank);
+        Arrays.asList("b1", "b2", "b3", "b4").forEach(underTest::offer);
+
+        assertThat(underTest.getSelected()).containsExactly("b1", "b2");
+        assertThat(underTest.getDiscardedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldSelectNothingWhenLimitIsZero() {
+        RankedSelection<String> underTest = new RankedSelection<>(0, 3, RankedSelectionTest::rank);
+        Arrays.asList("a1", "b1").forEach(underTest::offer);
+
+        assertThat(underTest.getSelected()).isEmpty();
+        assertThat(underTest.getDiscardedCount()).isEqualTo(2);
+    }
+
+    private static int rank(String item) {
+        return item.charAt(0) - 'a';
+    }
+}
@@ -388,7 +388,7 @@ public class AzureDevOpsPullRequestDecoratorTest {
                 .withHeader("Accept", equalTo("application/json"))
                 .withHeader("Content-Type", equalTo("application/json; charset=UTF-8"))
                 .withHeader("Authorization", equalTo(authHeader))
-                .withRequestBody(equalTo("{\"comments\":[{\"content\":\"analysis summary\"}],\"status\":\"active\"}"))
+                .withRequestBody(equalTo("{\"comments\":[{\"content\":\"analysis summary" + jsonLineSeparator() + "<!-- sonarqube-issue " + sonarProject + " decorator-summary-comment -->\"}],\"status\":\"active\"}"))
                 .willReturn(aResponse().withStatus(200).withBody("{" + System.lineSeparator() +
                         "  \"pullRequestThreadContext\": {" + System.lineSeparator() +
                         "    \"iterationContext\": {" + System.lineSeparator() +
@@ -445,7 +445,7 @@ public class AzureDevOpsPullRequestDecoratorTest {
                 .withHeader("Accept", equalTo("application/json"))
                 .withHeader("Content-Type", equalTo("application/json; charset=UTF-8"))
                 .withHeader("Authorization", equalTo(authHeader))
-                .withRequestBody(equalTo("{\"threadContext\":{\"filePath\":\"/scmPath\",\"rightFileStart\":{\"line\":0,\"offset\":1},\"rightFileEnd\":{\"line\":0,\"offset\":1}},\"comments\":[{\"content\":\"issue summary\"}],\"status\":\"active\"}"))
+                .withRequestBody(equalTo("{\"threadContext\":{\"filePath\":\"/scmPath\",\"rightFileStart\":{\"line\":0,\"offset\":1},\"rightFileEnd\":{\"line\":0,\"offset\":1}},\"comments\":[{\"content\":\"issue summary" + jsonLineSeparator() + "<!-- sonarqube-issue " + sonarProject + " " + issueKeyVal + " -->\"}],\"status\":\"active\"}"))
                 .willReturn(aResponse().withStatus(200).withBody("{" + System.lineSeparator() +
                         "  \"pullRequestThreadContext\": {" + System.lineSeparator() +
                         "    \"iterationContext\": {" + System.lineSeparator() +
@@ -581,4 +581,7 @@ public class AzureDevOpsPullRequestDecoratorTest {
         assertThat(result.getPullRequestUrl()).isEqualTo(Optional.of(String.format("%s/%s/_git/%s/pullRequest/%s", wireMockRule.baseUrl(), azureProject, azureRepository, pullRequestId)));
     }
 
+    private static String jsonLineSeparator() {
+        return System.lineSeparator().replace("\r", "\\r").replace("\n", "\\n");
+    }
 }
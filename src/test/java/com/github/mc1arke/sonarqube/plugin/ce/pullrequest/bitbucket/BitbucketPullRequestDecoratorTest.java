@@ -21,16 +21,21 @@ import org.sonar.db.alm.setting.ProjectAlmSettingDto;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
-import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -80,59 +85,79 @@ public class BitbucketPullRequestDecoratorTest {
     }
 
     @Test
-    public void testExceedsMaximumNumberOfAnnotations() {
+    public void testStatusOnlyDecorationLeavesAnnotationsUntouched() throws IOException {
+        when(client.supportsCodeInsights()).thenReturn(true);
+
+        mockAnalysisSummary();
+        underTest.decorateQualityGateStatusOnly(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(client).createCodeInsightsReport(any(), eq("Quality Gate passed" + System.lineSeparator()), any(), eq(DASHBOARD_URL), eq(String.format("%s/common/icon.png", IMAGE_URL)), eq(QualityGate.Status.OK));
+        verify(client).uploadReport(eq(PROJECT), eq(REPO), eq(COMMIT), any());
+        verify(client, never()).deleteAnnotations(any(), any(), any());
+        verify(client, never()).getAnnotationUploadLimit();
+    }
+
+    @Test
+    public void testMaximumNumberOfAnnotations() {
         // given
         AnnotationUploadLimit uploadLimit = new AnnotationUploadLimit(100, 1000);
-        int counter = 2;
 
         // when
-        boolean result = BitbucketPullRequestDecorator.exceedsMaximumNumberOfAnnotations(counter, uploadLimit);
+        int result = BitbucketPullRequestDecorator.maximumNumberOfAnnotations(uploadLimit);
 
         // then
-        assertFalse(result);
+        assertEquals(1000, result);
     }
 
     @Test
-    public void testExceedsMaximumNumberOfAnnotationsEdgeCase() {
+    public void testMaximumNumberOfAnnotationsEdgeCase() {
         // given
         AnnotationUploadLimit uploadLimit = new AnnotationUploadLimit(1000, 1000);
-        int counter = 1;
 
         // when
-        boolean result = BitbucketPullRequestDecorator.exceedsMaximumNumberOfAnnotations(counter, uploadLimit);
+        int result = BitbucketPullRequestDecorator.maximumNumberOfAnnotations(uploadLimit);
 
         // then
-        assertFalse(result);
+        assertEquals(1000, result);
     }
 
     @Test
-    public void testExceedsMaximumNumberOfAnnotationsEdgeBatchCase() {
+    public void testMaximumNumberOfAnnotationsOnlyCountsWholeBatches() {
         // given
-        AnnotationUploadLimit uploadLimit = new AnnotationUploadLimit(100, 1000);
-        int counter = 10;
+        AnnotationUploadLimit uploadLimit = new AnnotationUploadLimit(300, 1000);
 
         // when
-        boolean result = BitbucketPullRequestDecorator.exceedsMaximumNumberOfAnnotations(counter, uploadLimit);
+        int result = BitbucketPullRequestDecorator.maximumNumberOfAnnotations(uploadLimit);
 
         // then
-        assertFalse(result);
+        assertEquals(900, result);
     }
 
-    private void mockValidAnalysis() {
-        when(analysisDetails.getCommitSha()).thenReturn(COMMIT);
-        when(analysisDetails.getQualityGateStatus()).thenReturn(QualityGate.Status.OK);
+    @Test
+    public void testOnlyMostSevereIssuesAnnotatedWhenLimitExceeded() throws IOException {
+        when(client.supportsCodeInsights()).thenReturn(true);
+        when(client.getAnnotationUploadLimit()).thenReturn(new AnnotationUploadLimit(2, 3));
 
-        Map<RuleType, Long> ruleCount = new HashMap<>();
-        ruleCount.put(RuleType.CODE_SMELL, 1L);
-        ruleCount.put(RuleType.VULNERABILITY, 2L);
-        ruleCount.put(RuleType.SECURITY_HOTSPOT, 3L);
-        ruleCount.put(RuleType.BUG, 4L);
+        mockAnalysisSummary();
+        PostAnalysisIssueVisitor postAnalysisIssueVisitor = mock(PostAnalysisIssueVisitor.class);
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(Arrays.asList(
+                mockComponentIssue("info", Severity.INFO),
+                mockComponentIssue("blocker-1", Severity.BLOCKER),
+                mockComponentIssue("major", Severity.MAJOR),
+                mockComponentIssue("blocker-2", Severity.BLOCKER)));
+        when(analysisDetails.getPostAnalysisIssueVisitor()).thenReturn(postAnalysisIssueVisitor);
 
-        when(analysisDetails.countRuleByType()).thenReturn(ruleCount);
-        when(analysisDetails.findQualityGateCondition(CoreMetrics.NEW_COVERAGE_KEY)).thenReturn(Optional.empty());
-        when(analysisDetails.findQualityGateCondition(CoreMetrics.NEW_DUPLICATED_LINES_DENSITY_KEY)).thenReturn(Optional.empty());
-        when(analysisDetails.getAnalysisDate()).thenReturn(Date.from(Instant.now()));
-        when(analysisDetails.getDashboardUrl()).thenReturn(DASHBOARD_URL);
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(client).createCodeInsightsAnnotation(eq("blocker-1"), eq(ISSUE_LINE), any(), eq(ISSUE_MESSAGE), eq(ISSUE_PATH), eq("HIGH"), eq("BUG"));
+        verify(client).createCodeInsightsAnnotation(eq("blocker-2"), eq(ISSUE_LINE), any(), eq(ISSUE_MESSAGE), eq(ISSUE_PATH), eq("HIGH"), eq("BUG"));
+        verify(client, times(2)).createCodeInsightsAnnotation(any(), anyInt(), any(), any(), any(), any(), any());
+        verify(analysisDetails, times(2)).getIssueUrl(any());
+        verify(client).uploadAnnotations(eq(PROJECT), eq(REPO), eq(COMMIT), any());
+    }
+
+    private void mockValidAnalysis() {
+        mockAnalysisSummary();
 
         ReportAttributes reportAttributes = mock(ReportAttributes.class);
         when(reportAttributes.getScmPath()).thenReturn(Optional.of(ISSUE_PATH));
@@ -149,7 +174,6 @@ public class BitbucketPullRequestDecoratorTest {
         when(defaultIssue.type()).thenReturn(RuleType.BUG);
         when(defaultIssue.getMessage()).thenReturn(ISSUE_MESSAGE);
         when(analysisDetails.getIssueUrl(defaultIssue)).thenReturn(ISSUE_LINK);
-        when(analysisDetails.getBaseImageUrl()).thenReturn(IMAGE_URL);
 
         PostAnalysisIssueVisitor.ComponentIssue componentIssue = mock(PostAnalysisIssueVisitor.ComponentIssue.class);
         when(componentIssue.getIssue()).thenReturn(defaultIssue);
@@ -161,4 +185,44 @@ public class BitbucketPullRequestDecoratorTest {
         when(analysisDetails.getPostAnalysisIssueVisitor()).thenReturn(postAnalysisIssueVisitor);
     }
 
+    private void mockAnalysisSummary() {
+        when(analysisDetails.getCommitSha()).thenReturn(COMMIT);
+        when(analysisDetails.getQualityGateStatus()).thenReturn(QualityGate.Status.OK);
+
+        Map<RuleType, Long> ruleCount = new HashMap<>();
+        ruleCount.put(RuleType.CODE_SMELL, 1L);
+        ruleCount.put(RuleType.VULNERABILITY, 2L);
+        ruleCount.put(RuleType.SECURITY_HOTSPOT, 3L);
+        ruleCount.put(RuleType.BUG, 4L);
+
+        when(analysisDetails.countRuleByType()).thenReturn(ruleCount);
+        when(analysisDetails.findQualityGateCondition(CoreMetrics.NEW_COVERAGE_KEY)).thenReturn(Optional.empty());
+        when(analysisDetails.findQualityGateCondition(CoreMetrics.NEW_DUPLICATED_LINES_DENSITY_KEY)).thenReturn(Optional.empty());
+        when(analysisDetails.getAnalysisDate()).thenReturn(Date.from(Instant.now()));
+        when(analysisDetails.getDashboardUrl()).thenReturn(DASHBOARD_URL);
+        when(analysisDetails.getBaseImageUrl()).thenReturn(IMAGE_URL);
+    }
+
+    private PostAnalysisIssueVisitor.ComponentIssue mockComponentIssue(String key, String severity) {
+        ReportAttributes reportAttributes = mock(ReportAttributes.class);
+        when(reportAttributes.getScmPath()).thenReturn(Optional.of(ISSUE_PATH));
+
+        Component component = mock(Component.class);
+        when(component.getType()).thenReturn(Component.Type.FILE);
+        when(component.getReportAttributes()).thenReturn(reportAttributes);
+
+        PostAnalysisIssueVisitor.LightIssue issue = mock(PostAnalysisIssueVisitor.LightIssue.class);
+        when(issue.status()).thenReturn(Issue.STATUS_OPEN);
+        when(issue.severity()).thenReturn(severity);
+        when(issue.type()).thenReturn(RuleType.BUG);
+        lenient().when(issue.getLine()).thenReturn(ISSUE_LINE);
+        lenient().when(issue.key()).thenReturn(key);
+        lenient().when(issue.getMessage()).thenReturn(ISSUE_MESSAGE);
+
+        PostAnalysisIssueVisitor.ComponentIssue componentIssue = mock(PostAnalysisIssueVisitor.ComponentIssue.class);
+        when(componentIssue.getIssue()).thenReturn(issue);
+        when(componentIssue.getComponent()).thenReturn(component);
+        return componentIssue;
+    }
+
 }
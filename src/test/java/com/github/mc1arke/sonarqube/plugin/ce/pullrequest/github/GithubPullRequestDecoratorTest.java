@@ -39,6 +39,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 public class GithubPullRequestDecoratorTest {
@@ -79,4 +80,16 @@ public class GithubPullRequestDecoratorTest {
         assertEquals(analysisDetails, argumentCaptor.getValue());
         assertThat(decorationResult).isSameAs(expectedResult);
     }
+
+    @Test
+    public void testDecorateQualityGateStatusOnlyCreatesCheckRunWithoutComments() throws IOException {
+        DecorationResult expectedResult = DecorationResult.builder().build();
+        doReturn(githubClient).when(githubClientFactory).createClient(any(), any());
+        doReturn(expectedResult).when(githubClient).createCheckRunWithoutComments(any(), any(), any());
+        DecorationResult decorationResult = testCase.decorateQualityGateStatusOnly(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(githubClient).createCheckRunWithoutComments(analysisDetails, almSettingDto, projectAlmSettingDto);
+        verify(githubClient, never()).createCheckRun(any(), any(), any());
+        assertThat(decorationResult).isSameAs(expectedResult);
+    }
 }
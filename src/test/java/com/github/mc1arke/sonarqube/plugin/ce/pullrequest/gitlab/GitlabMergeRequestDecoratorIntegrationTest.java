@@ -155,6 +155,19 @@ public class GitlabMergeRequestDecoratorIntegrationTest {
                 "    \"id\": \"" + commitSHA + "\"\n" +
                 "  }]")));
 
+        wireMockRule.stubFor(get(urlPathEqualTo("/api/v4/projects/" + sourceProjectId + "/merge_requests/" + mergeRequestIid + "/changes")).willReturn(okJson("{\n" +
+                "  \"changes\": [\n" +
+                "    {\n" +
+                "      \"old_path\": \"" + filePath + "\",\n" +
+                "      \"new_path\": \"" + filePath + "\",\n" +
+                "      \"new_file\": false,\n" +
+                "      \"deleted_file\": false,\n" +
+                "      \"diff\": \"@@ -3,3 +3,4 @@\\n context\\n-removed\\n+added\\n+added " + lineNumber + "\\n context\\n\"\n" +
+                "    }\n" +
+                "  ],\n" +
+                "  \"overflow\": false\n" +
+                "}")));
+
         wireMockRule.stubFor(get(urlPathEqualTo("/api/v4/projects/" + sourceProjectId + "/merge_requests/" + mergeRequestIid + "/discussions")).willReturn(okJson(
                 "[\n" + discussionPostResponseBody(discussionId,
                         discussionNote(noteId, user, "Old sonarqube issue.\\nPlease fix this finding", true, false),
@@ -202,11 +215,11 @@ public class GitlabMergeRequestDecoratorIntegrationTest {
                 .willReturn(created()));
 
         wireMockRule.stubFor(post(urlPathEqualTo("/api/v4/projects/" + sourceProjectId + "/merge_requests/" + mergeRequestIid + "/discussions"))
-                .withRequestBody(equalTo("body=summary+comm%C3%A9nt%0A%0A%5Blink+text%5D"))
+                .withRequestBody(equalTo("body=" + urlEncode("summary commént\n\n[link text]" + System.lineSeparator() + "<!-- sonarqube-issue " + projectKey + " decorator-summary-comment -->")))
                 .willReturn(created().withBody(discussionPostResponseBody(discussionId, discussionNote(noteId, user, "summary comment", true, false)))));
 
         wireMockRule.stubFor(post(urlPathEqualTo("/api/v4/projects/" + sourceProjectId + "/merge_requests/" + mergeRequestIid + "/discussions"))
-                .withRequestBody(equalTo("body=issu%C3%A9&" +
+                .withRequestBody(equalTo("body=" + urlEncode("issué" + System.lineSeparator() + "<!-- sonarqube-issue " + projectKey + " issueKey0 -->") + "&" +
                         urlEncode("position[base_sha]") + "=d6a420d043dfe85e7c240fd136fc6e197998b10a&" +
                         urlEncode("position[start_sha]") + "=d6a420d043dfe85e7c240fd136fc6e197998b10a&" +
                         urlEncode("position[head_sha]") + "=" + commitSHA + "&" +
@@ -23,11 +23,14 @@ import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.GitlabClientFactory;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.AnalysisDetails;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.DecorationResult;
 import com.github.mc1arke.sonarqube.plugin.ce.pullrequest.PostAnalysisIssueVisitor;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Change;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Commit;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.CommitNote;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.DiffRefs;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Discussion;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.DraftNote;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequest;
+import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequestChanges;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.MergeRequestNote;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.Note;
 import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.PipelineStatus;
@@ -35,9 +38,11 @@ import com.github.mc1arke.sonarqube.plugin.almclient.gitlab.model.User;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.sonar.api.ce.posttask.QualityGate;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.platform.Server;
+import org.sonar.api.rule.Severity;
 import org.sonar.ce.task.projectanalysis.component.Component;
 import org.sonar.ce.task.projectanalysis.scm.Changeset;
 import org.sonar.ce.task.projectanalysis.scm.ScmInfo;
@@ -51,15 +56,18 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -114,6 +122,7 @@ public class GitlabMergeRequestDecoratorTest {
         when(gitlabClient.getMergeRequestCommits(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(Arrays.stream(new String[]{"ABC", "DEF", "GHI", "JKL"})
                 .map(Commit::new)
                 .collect(Collectors.toList()));
+        when(gitlabClient.getMergeRequestChanges(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(new MergeRequestChanges(new ArrayList<>(), true));
         when(sonarqubeUser.getUsername()).thenReturn(SONARQUBE_USERNAME);
         when(gitlabClient.getCurrentUser()).thenReturn(sonarqubeUser);
         when(analysisDetails.getPostAnalysisIssueVisitor()).thenReturn(postAnalysisIssueVisitor);
@@ -156,6 +165,13 @@ public class GitlabMergeRequestDecoratorTest {
 
     @Test
     public void shouldThrowErrorWhenGitlabMergeRequestCommitsRetrievalFails() throws IOException {
+        PostAnalysisIssueVisitor.ComponentIssue componentIssue = mockComponentIssue("issueKey1", 999, "path-to-file");
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(Collections.singletonList(componentIssue));
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(new ArrayList<>());
+        ScmInfo scmInfo = mock(ScmInfo.class);
+        when(scmInfo.hasChangesetForLine(999)).thenReturn(true);
+        when(scmInfo.getChangesetForLine(999)).thenReturn(mock(Changeset.class));
+        when(scmInfoRepository.getScmInfo(componentIssue.getComponent())).thenReturn(Optional.of(scmInfo));
         when(gitlabClient.getMergeRequestCommits(anyLong(), anyLong())).thenThrow(new IOException("dummy"));
 
         assertThatThrownBy(() -> underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto))
@@ -163,6 +179,15 @@ public class GitlabMergeRequestDecoratorTest {
                 .hasMessage("Could not retrieve commit details for Merge Request");
     }
 
+    @Test
+    public void shouldThrowErrorWhenGitlabMergeRequestChangesRetrievalFails() throws IOException {
+        when(gitlabClient.getMergeRequestChanges(anyLong(), anyLong())).thenThrow(new IOException("dummy"));
+
+        assertThatThrownBy(() -> underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto))
+                .hasMessage("Could not retrieve changes for Merge Request")
+                .isExactlyInstanceOf(IllegalStateException.class);
+    }
+
     @Test
     public void shouldThrowErrorWhenGitlabMergeRequestDiscussionRetrievalFails() throws IOException {
         when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenThrow(new IOException("dummy"));
@@ -459,6 +484,35 @@ public class GitlabMergeRequestDecoratorTest {
         verify(gitlabClient, never()).addMergeRequestDiscussionNote(anyLong(), anyLong(), any(), any());
     }
 
+    @Test
+    public void shouldCloseDiscussionIdentifiedByHiddenIssueMarkerWithoutParsingLinks() throws IOException {
+        Note note = mock(Note.class);
+        when(note.getAuthor()).thenReturn(sonarqubeUser);
+        when(note.getBody()).thenReturn("Sonarqube reported issue\n[View in SonarQube](url)\n<!-- sonarqube-issue " + PROJECT_KEY + " closedIssue -->");
+        when(note.isResolvable()).thenReturn(true);
+
+        Note otherProjectNote = mock(Note.class);
+        when(otherProjectNote.getAuthor()).thenReturn(sonarqubeUser);
+        when(otherProjectNote.getBody()).thenReturn("Sonarqube reported issue\n[View in SonarQube](url)\n<!-- sonarqube-issue other:project closedIssue -->");
+        when(otherProjectNote.isResolvable()).thenReturn(true);
+
+        Discussion discussion = mock(Discussion.class);
+        when(discussion.getId()).thenReturn("discussionId7");
+        when(discussion.getNotes()).thenReturn(Collections.singletonList(note));
+
+        Discussion otherProjectDiscussion = mock(Discussion.class);
+        when(otherProjectDiscussion.getId()).thenReturn("discussionId8");
+        when(otherProjectDiscussion.getNotes()).thenReturn(Collections.singletonList(otherProjectNote));
+
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(Arrays.asList(discussion, otherProjectDiscussion));
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(gitlabClient).resolveMergeRequestDiscussion(PROJECT_ID, MERGE_REQUEST_IID, "discussionId7");
+        verify(gitlabClient, never()).resolveMergeRequestDiscussion(PROJECT_ID, MERGE_REQUEST_IID, "discussionId8");
+        verify(analysisDetails, never()).parseIssueIdFromUrl(any());
+    }
+
     @Test
     public void shouldThrowErrorIfSubmittingNewIssueToGitlabFails() throws IOException {
         PostAnalysisIssueVisitor.LightIssue lightIssue = mock(PostAnalysisIssueVisitor.LightIssue.class);
@@ -497,7 +551,7 @@ public class GitlabMergeRequestDecoratorTest {
         ArgumentCaptor<MergeRequestNote> mergeRequestNoteArgumentCaptor = ArgumentCaptor.forClass(MergeRequestNote.class);
         verify(gitlabClient).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), mergeRequestNoteArgumentCaptor.capture());
 
-        assertThat(mergeRequestNoteArgumentCaptor.getValue()).isEqualToComparingFieldByField(new CommitNote("Issue Summary", BASE_SHA, START_SHA, HEAD_SHA, "path-to-file", "path-to-file", 999));
+        assertThat(mergeRequestNoteArgumentCaptor.getValue()).isEqualToComparingFieldByField(new CommitNote("Issue Summary" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " issueKey1 -->", BASE_SHA, START_SHA, HEAD_SHA, "path-to-file", "path-to-file", 999));
     }
 
     @Test
@@ -534,10 +588,353 @@ public class GitlabMergeRequestDecoratorTest {
         ArgumentCaptor<MergeRequestNote> mergeRequestNoteArgumentCaptor = ArgumentCaptor.forClass(MergeRequestNote.class);
         verify(gitlabClient, times(2)).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), mergeRequestNoteArgumentCaptor.capture());
 
-        assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(0)).isEqualToComparingFieldByField(new CommitNote("Issue Summary", BASE_SHA, START_SHA, HEAD_SHA, "path-to-file", "path-to-file", 999));
+        assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(0)).isEqualToComparingFieldByField(new CommitNote("Issue Summary" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " issueKey1 -->", BASE_SHA, START_SHA, HEAD_SHA, "path-to-file", "path-to-file", 999));
+        assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(1)).isNotInstanceOf(CommitNote.class);
+    }
+
+    @Test
+    public void shouldUseMergeRequestChangesRatherThanScmInfoToSelectIssuesForNewDiscussions() throws IOException {
+        PostAnalysisIssueVisitor.ComponentIssue changedLineIssue = mockComponentIssue("issueKey1", 12, "path-to-file");
+        PostAnalysisIssueVisitor.ComponentIssue contextLineIssue = mockComponentIssue("issueKey2", 11, "path-to-file");
+        PostAnalysisIssueVisitor.ComponentIssue unchangedFileIssue = mockComponentIssue("issueKey3", 12, "other-file");
+
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(Arrays.asList(changedLineIssue, contextLineIssue, unchangedFileIssue));
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(new ArrayList<>());
+        when(gitlabClient.getMergeRequestChanges(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(new MergeRequestChanges(Collections.singletonList(
+                new Change("path-to-file", "@@ -10,3 +10,4 @@\n context\n context\n+added\n context\n", false)), false));
+        when(analysisDetails.createAnalysisIssueSummary(any(), any())).thenReturn("Issue Summary");
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(scmInfoRepository, never()).getScmInfo(any());
+
+        ArgumentCaptor<MergeRequestNote> mergeRequestNoteArgumentCaptor = ArgumentCaptor.forClass(MergeRequestNote.class);
+        verify(gitlabClient, times(2)).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), mergeRequestNoteArgumentCaptor.capture());
+
+        assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(0)).isEqualToComparingFieldByField(new CommitNote("Issue Summary" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " issueKey1 -->", BASE_SHA, START_SHA, HEAD_SHA, "path-to-file", "path-to-file", 12));
+        assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(1)).isNotInstanceOf(CommitNote.class);
+    }
+
+    @Test
+    public void shouldFallBackToScmInfoForFilesWithoutDiffInMergeRequestChanges() throws IOException {
+        PostAnalysisIssueVisitor.ComponentIssue componentIssue = mockComponentIssue("issueKey1", 999, "path-to-file");
+
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(Collections.singletonList(componentIssue));
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(new ArrayList<>());
+        when(gitlabClient.getMergeRequestChanges(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(new MergeRequestChanges(Arrays.asList(
+                new Change("path-to-file", "", false),
+                new Change("deleted-file", "@@ -1,1 +0,0 @@\n-removed\n", true)), false));
+        when(analysisDetails.createAnalysisIssueSummary(any(), any())).thenReturn("Issue Summary");
+
+        Changeset changeset = mock(Changeset.class);
+        when(changeset.getRevision()).thenReturn("DEF");
+
+        ScmInfo scmInfo = mock(ScmInfo.class);
+        when(scmInfo.hasChangesetForLine(999)).thenReturn(true);
+        when(scmInfo.getChangesetForLine(999)).thenReturn(changeset);
+        when(scmInfoRepository.getScmInfo(componentIssue.getComponent())).thenReturn(Optional.of(scmInfo));
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        ArgumentCaptor<MergeRequestNote> mergeRequestNoteArgumentCaptor = ArgumentCaptor.forClass(MergeRequestNote.class);
+        verify(gitlabClient, times(2)).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), mergeRequestNoteArgumentCaptor.capture());
+
+        assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(0)).isEqualToComparingFieldByField(new CommitNote("Issue Summary" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " issueKey1 -->", BASE_SHA, START_SHA, HEAD_SHA, "path-to-file", "path-to-file", 999));
+    }
+
+    @Test
+    public void shouldResolveScmDetailsOncePerComponentWhenDecoratingLargeNumberOfIssues() throws IOException {
+        int fileCount = 200;
+        int issueCount = 10000;
+
+        Changeset changeset = mock(Changeset.class);
+        when(changeset.getRevision()).thenReturn("DEF");
+        ScmInfo scmInfo = mock(ScmInfo.class);
+        when(scmInfo.hasChangesetForLine(anyInt())).thenReturn(true);
+        when(scmInfo.getChangesetForLine(anyInt())).thenReturn(changeset);
+
+        List<Component> components = new ArrayList<>();
+        for (int i = 0; i < fileCount; i++) {
+            Component component = mock(Component.class);
+            when(scmInfoRepository.getScmInfo(component)).thenReturn(Optional.of(scmInfo));
+            components.add(component);
+        }
+
+        List<PostAnalysisIssueVisitor.ComponentIssue> issues = new ArrayList<>();
+        for (int i = 0; i < issueCount; i++) {
+            PostAnalysisIssueVisitor.LightIssue lightIssue = mock(PostAnalysisIssueVisitor.LightIssue.class);
+            when(lightIssue.key()).thenReturn("issueKey" + i);
+            when(lightIssue.getStatus()).thenReturn(Issue.STATUS_OPEN);
+            when(lightIssue.getLine()).thenReturn(i / fileCount + 1);
+
+            Component component = components.get(i % fileCount);
+            PostAnalysisIssueVisitor.ComponentIssue componentIssue = mock(PostAnalysisIssueVisitor.ComponentIssue.class);
+            when(componentIssue.getIssue()).thenReturn(lightIssue);
+            when(componentIssue.getComponent()).thenReturn(component);
+            when(analysisDetails.getSCMPathForIssue(componentIssue)).thenReturn(Optional.of("path-to-file-" + (i % fileCount)));
+            issues.add(componentIssue);
+        }
+
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(issues);
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(new ArrayList<>());
+        when(analysisDetails.createAnalysisIssueSummary(any(), any())).thenReturn("Issue Summary");
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(analysisDetails, times(fileCount)).getSCMPathForIssue(any());
+        for (Component component : components) {
+            verify(scmInfoRepository).getScmInfo(component);
+        }
+        verify(gitlabClient, times(issueCount + 1)).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), any());
+    }
+
+    @Test
+    public void shouldStageNewIssuesAsDraftNotesAndPublishOnceWhenDraftNotesEnabled() throws IOException {
+        PostAnalysisIssueVisitor.ComponentIssue firstIssue = mockComponentIssue("issueKey1", 12, "path-to-file");
+        PostAnalysisIssueVisitor.ComponentIssue secondIssue = mockComponentIssue("issueKey2", 13, "path-to-file");
+
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.gitlab.draftnotes")).thenReturn(Optional.of("true"));
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(Arrays.asList(firstIssue, secondIssue));
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(new ArrayList<>());
+        when(gitlabClient.getMergeRequestChanges(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(new MergeRequestChanges(Collections.singletonList(
+                new Change("path-to-file", "@@ -10,2 +10,4 @@\n context\n context\n+added\n+added\n", false)), false));
+        when(gitlabClient.getMergeRequestDraftNotes(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(Collections.singletonList(new DraftNote(77, "Old Issue Summary" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " issueKey0 -->")));
+        when(analysisDetails.createAnalysisIssueSummary(any(), any())).thenReturn("Issue Summary");
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        ArgumentCaptor<CommitNote> commitNoteArgumentCaptor = ArgumentCaptor.forClass(CommitNote.class);
+        InOrder inOrder = inOrder(gitlabClient);
+        inOrder.verify(gitlabClient).deleteMergeRequestDraftNote(PROJECT_ID, MERGE_REQUEST_IID, 77);
+        inOrder.verify(gitlabClient, times(2)).addMergeRequestDraftNote(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), commitNoteArgumentCaptor.capture());
+        inOrder.verify(gitlabClient).publishMergeRequestDraftNotes(PROJECT_ID, MERGE_REQUEST_IID);
+
+        assertThat(commitNoteArgumentCaptor.getAllValues().get(0)).isEqualToComparingFieldByField(new CommitNote("Issue Summary" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " issueKey1 -->", BASE_SHA, START_SHA, HEAD_SHA, "path-to-file", "path-to-file", 12));
+        assertThat(commitNoteArgumentCaptor.getAllValues().get(1)).isEqualToComparingFieldByField(new CommitNote("Issue Summary" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " issueKey2 -->", BASE_SHA, START_SHA, HEAD_SHA, "path-to-file", "path-to-file", 13));
+
+        ArgumentCaptor<MergeRequestNote> mergeRequestNoteArgumentCaptor = ArgumentCaptor.forClass(MergeRequestNote.class);
+        verify(gitlabClient).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), mergeRequestNoteArgumentCaptor.capture());
+        assertThat(mergeRequestNoteArgumentCaptor.getValue()).isNotInstanceOf(CommitNote.class);
+    }
+
+    @Test
+    public void shouldSubmitIssuesAsDiscussionsWithoutPublishingWhenOtherDraftNotesExist() throws IOException {
+        PostAnalysisIssueVisitor.ComponentIssue componentIssue = mockComponentIssue("issueKey1", 12, "path-to-file");
+
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.gitlab.draftnotes")).thenReturn(Optional.of("true"));
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(Collections.singletonList(componentIssue));
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(new ArrayList<>());
+        when(gitlabClient.getMergeRequestChanges(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(new MergeRequestChanges(Collections.singletonList(
+                new Change("path-to-file", "@@ -12,0 +12,1 @@\n+added\n", false)), false));
+        when(gitlabClient.getMergeRequestDraftNotes(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(Arrays.asList(
+                new DraftNote(77, "Old Issue Summary" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " issueKey0 -->"),
+                new DraftNote(78, "Review comment in progress"),
+                new DraftNote(79, "Other project" + System.lineSeparator() + "<!-- sonarqube-issue other-project issueKey0 -->")));
+        when(analysisDetails.createAnalysisIssueSummary(any(), any())).thenReturn("Issue Summary");
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(gitlabClient).deleteMergeRequestDraftNote(PROJECT_ID, MERGE_REQUEST_IID, 77);
+        verify(gitlabClient, never()).deleteMergeRequestDraftNote(PROJECT_ID, MERGE_REQUEST_IID, 78);
+        verify(gitlabClient, never()).deleteMergeRequestDraftNote(PROJECT_ID, MERGE_REQUEST_IID, 79);
+        verify(gitlabClient, never()).addMergeRequestDraftNote(anyLong(), anyLong(), any());
+        verify(gitlabClient, never()).publishMergeRequestDraftNotes(anyLong(), anyLong());
+        verify(gitlabClient, times(2)).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), any());
+        verify(gitlabClient).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), any(CommitNote.class));
+    }
+
+    @Test
+    public void shouldNotPublishDraftNotesWhenDraftNotesEnabledButNoNewIssues() throws IOException {
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.gitlab.draftnotes")).thenReturn(Optional.of("true"));
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(new ArrayList<>());
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(gitlabClient, never()).getMergeRequestDraftNotes(anyLong(), anyLong());
+        verify(gitlabClient, never()).publishMergeRequestDraftNotes(anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldThrowErrorIfPublishingDraftNotesToGitlabFails() throws IOException {
+        PostAnalysisIssueVisitor.ComponentIssue componentIssue = mockComponentIssue("issueKey1", 12, "path-to-file");
+
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.gitlab.draftnotes")).thenReturn(Optional.of("true"));
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(Collections.singletonList(componentIssue));
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(new ArrayList<>());
+        when(gitlabClient.getMergeRequestChanges(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(new MergeRequestChanges(Collections.singletonList(
+                new Change("path-to-file", "@@ -12,0 +12,1 @@\n+added\n", false)), false));
+        when(gitlabClient.getMergeRequestDraftNotes(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(new ArrayList<>());
+        doThrow(new IOException("dummy")).when(gitlabClient).publishMergeRequestDraftNotes(PROJECT_ID, MERGE_REQUEST_IID);
+
+        assertThatThrownBy(() -> underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto))
+                .hasMessage("Could not submit draft commit comments to Gitlab")
+                .isExactlyInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void shouldReconcileSingleDiscussionPerFileWhenAggregatingCommentsByFile() throws IOException {
+        PostAnalysisIssueVisitor.ComponentIssue firstFileIssue = mockComponentIssue("issueKey1", 13, "file-a");
+        PostAnalysisIssueVisitor.ComponentIssue secondFileIssue = mockComponentIssue("issueKey2", 12, "file-a");
+        PostAnalysisIssueVisitor.ComponentIssue otherFileIssue = mockComponentIssue("issueKey3", 12, "file-b");
+
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.comment.aggregation")).thenReturn(Optional.of("FILE"));
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(Arrays.asList(firstFileIssue, secondFileIssue, otherFileIssue));
+        when(gitlabClient.getMergeRequestChanges(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(new MergeRequestChanges(Arrays.asList(
+                new Change("file-a", "@@ -10,2 +10,4 @@\n context\n context\n+added\n+added\n", false),
+                new Change("file-b", "@@ -12,0 +12,1 @@\n+added\n", false)), false));
+        when(analysisDetails.createAnalysisFileIssueSummary(any(), any(), any())).thenAnswer(i -> "Issues for " + i.getArgument(0) + ": " + i.<List<?>>getArgument(1).size());
+
+        Note outdatedFileNote = mock(Note.class);
+        when(outdatedFileNote.getId()).thenReturn(21L);
+        when(outdatedFileNote.getAuthor()).thenReturn(sonarqubeUser);
+        when(outdatedFileNote.getBody()).thenReturn("Issues for file-a: 1\n<!-- sonarqube-issue " + PROJECT_KEY + " file:file-a -->");
+        when(outdatedFileNote.isResolvable()).thenReturn(true);
+        Discussion outdatedFileDiscussion = mock(Discussion.class);
+        when(outdatedFileDiscussion.getId()).thenReturn("discussionId1");
+        when(outdatedFileDiscussion.getNotes()).thenReturn(Collections.singletonList(outdatedFileNote));
+
+        Note fixedFileNote = mock(Note.class);
+        when(fixedFileNote.getAuthor()).thenReturn(sonarqubeUser);
+        when(fixedFileNote.getBody()).thenReturn("Issues for file-c: 4\n<!-- sonarqube-issue " + PROJECT_KEY + " file:file-c -->");
+        when(fixedFileNote.isResolvable()).thenReturn(true);
+        Discussion fixedFileDiscussion = mock(Discussion.class);
+        when(fixedFileDiscussion.getId()).thenReturn("discussionId2");
+        when(fixedFileDiscussion.getNotes()).thenReturn(Collections.singletonList(fixedFileNote));
+
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(Arrays.asList(outdatedFileDiscussion, fixedFileDiscussion));
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(gitlabClient).updateMergeRequestDiscussionNote(PROJECT_ID, MERGE_REQUEST_IID, "discussionId1", 21L,
+                "Issues for file-a: 2" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " file:file-a -->");
+        verify(gitlabClient, never()).resolveMergeRequestDiscussion(PROJECT_ID, MERGE_REQUEST_IID, "discussionId1");
+        verify(gitlabClient).resolveMergeRequestDiscussion(PROJECT_ID, MERGE_REQUEST_IID, "discussionId2");
+        verify(analysisDetails, never()).createAnalysisIssueSummary(any(), any());
+
+        ArgumentCaptor<MergeRequestNote> mergeRequestNoteArgumentCaptor = ArgumentCaptor.forClass(MergeRequestNote.class);
+        verify(gitlabClient, times(2)).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), mergeRequestNoteArgumentCaptor.capture());
+        assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(0)).isEqualToComparingFieldByField(new CommitNote("Issues for file-b: 1" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " file:file-b -->", BASE_SHA, START_SHA, HEAD_SHA, "file-b", "file-b", 12));
         assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(1)).isNotInstanceOf(CommitNote.class);
     }
 
+    @Test
+    public void shouldNotUpdateFileDiscussionWhenIssuesInFileAreUnchanged() throws IOException {
+        PostAnalysisIssueVisitor.ComponentIssue componentIssue = mockComponentIssue("issueKey1", 12, "file-a");
+
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.comment.aggregation")).thenReturn(Optional.of("FILE"));
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(Collections.singletonList(componentIssue));
+        when(gitlabClient.getMergeRequestChanges(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(new MergeRequestChanges(Collections.singletonList(
+                new Change("file-a", "@@ -12,0 +12,1 @@\n+added\n", false)), false));
+        when(analysisDetails.createAnalysisFileIssueSummary(any(), any(), any())).thenReturn("Issues for file-a");
+
+        Note fileNote = mock(Note.class);
+        when(fileNote.getAuthor()).thenReturn(sonarqubeUser);
+        when(fileNote.getBody()).thenReturn("Issues for file-a\r\n<!-- sonarqube-issue " + PROJECT_KEY + " file:file-a -->\n");
+        when(fileNote.isResolvable()).thenReturn(true);
+        Discussion fileDiscussion = mock(Discussion.class);
+        when(fileDiscussion.getId()).thenReturn("discussionId1");
+        when(fileDiscussion.getNotes()).thenReturn(Collections.singletonList(fileNote));
+
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(Collections.singletonList(fileDiscussion));
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(gitlabClient, never()).updateMergeRequestDiscussionNote(anyLong(), anyLong(), any(), anyLong(), any());
+        verify(gitlabClient, never()).resolveMergeRequestDiscussion(anyLong(), anyLong(), any());
+        verify(gitlabClient, never()).addMergeRequestDiscussion(anyLong(), anyLong(), any(CommitNote.class));
+    }
+
+    @Test
+    public void shouldOnlyCommentOnMostSevereIssuesAndListSuppressedIssuesInSummaryWhenCommentLimitExceeded() throws IOException {
+        PostAnalysisIssueVisitor.ComponentIssue minorIssue = mockComponentIssue("issueKey1", 12, "path-to-file");
+        when(minorIssue.getIssue().severity()).thenReturn(Severity.MINOR);
+        PostAnalysisIssueVisitor.ComponentIssue blockerIssue = mockComponentIssue("issueKey2", 13, "path-to-file");
+        when(blockerIssue.getIssue().severity()).thenReturn(Severity.BLOCKER);
+        PostAnalysisIssueVisitor.ComponentIssue majorIssue = mockComponentIssue("issueKey3", 14, "path-to-file");
+        when(majorIssue.getIssue().severity()).thenReturn(Severity.MAJOR);
+
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.comment.limit")).thenReturn(Optional.of("2"));
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(Arrays.asList(minorIssue, blockerIssue, majorIssue));
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(new ArrayList<>());
+        when(gitlabClient.getMergeRequestChanges(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(new MergeRequestChanges(Collections.singletonList(
+                new Change("path-to-file", "@@ -11,0 +12,3 @@\n+added\n+added\n+added\n", false)), false));
+        when(analysisDetails.createAnalysisIssueSummary(any(), any())).thenReturn("Issue Summary");
+        when(analysisDetails.createAnalysisSummary(any())).thenReturn("Summary comment");
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(gitlabClient, never()).getMergeRequestCommits(anyLong(), anyLong());
+        ArgumentCaptor<MergeRequestNote> mergeRequestNoteArgumentCaptor = ArgumentCaptor.forClass(MergeRequestNote.class);
+        verify(gitlabClient, times(3)).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), mergeRequestNoteArgumentCaptor.capture());
+
+        assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(0)).isEqualToComparingFieldByField(new CommitNote("Issue Summary" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " issueKey2 -->", BASE_SHA, START_SHA, HEAD_SHA, "path-to-file", "path-to-file", 13));
+        assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(1)).isEqualToComparingFieldByField(new CommitNote("Issue Summary" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " issueKey3 -->", BASE_SHA, START_SHA, HEAD_SHA, "path-to-file", "path-to-file", 14));
+        assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(2).getContent()).isEqualTo("Summary comment" + System.lineSeparator() +
+                "## Decoration Notes" + System.lineSeparator() +
+                "- Comments were only added for the 2 most severe of the 3 new issues in this analysis." + System.lineSeparator() + System.lineSeparator() +
+                System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " decorator-summary-comment -->");
+    }
+
+    @Test
+    public void shouldOnlyCommentOnFilesWithMostSevereIssuesWhenAggregatingByFileAndCommentLimitExceeded() throws IOException {
+        PostAnalysisIssueVisitor.ComponentIssue minorIssue = mockComponentIssue("issueKey1", 12, "file-a");
+        when(minorIssue.getIssue().severity()).thenReturn(Severity.MINOR);
+        PostAnalysisIssueVisitor.ComponentIssue blockerIssue = mockComponentIssue("issueKey2", 12, "file-b");
+        when(blockerIssue.getIssue().severity()).thenReturn(Severity.BLOCKER);
+
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.comment.aggregation")).thenReturn(Optional.of("FILE"));
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.comment.limit")).thenReturn(Optional.of("1"));
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(Arrays.asList(minorIssue, blockerIssue));
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(new ArrayList<>());
+        when(gitlabClient.getMergeRequestChanges(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(new MergeRequestChanges(Arrays.asList(
+                new Change("file-a", "@@ -12,0 +12,1 @@\n+added\n", false),
+                new Change("file-b", "@@ -12,0 +12,1 @@\n+added\n", false)), false));
+        when(analysisDetails.createAnalysisFileIssueSummary(any(), any(), any())).thenAnswer(i -> "Issues for " + i.getArgument(0));
+        when(analysisDetails.createAnalysisSummary(any())).thenReturn("Summary comment");
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        ArgumentCaptor<MergeRequestNote> mergeRequestNoteArgumentCaptor = ArgumentCaptor.forClass(MergeRequestNote.class);
+        verify(gitlabClient, times(2)).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), mergeRequestNoteArgumentCaptor.capture());
+
+        assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(0)).isEqualToComparingFieldByField(new CommitNote("Issues for file-b" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " file:file-b -->", BASE_SHA, START_SHA, HEAD_SHA, "file-b", "file-b", 12));
+        assertThat(mergeRequestNoteArgumentCaptor.getAllValues().get(1).getContent()).isEqualTo("Summary comment" + System.lineSeparator() +
+                "## Decoration Notes" + System.lineSeparator() +
+                "- Comments were only added for the 1 most severely affected of the 2 files with new issues in this analysis." + System.lineSeparator() + System.lineSeparator() +
+                System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " decorator-summary-comment -->");
+    }
+
+    @Test
+    public void shouldOnlySubmitSummaryWhenOpenIssuesExceedSummaryOnlyThreshold() throws IOException {
+        PostAnalysisIssueVisitor.ComponentIssue firstIssue = mockComponentIssue("issueKey1", 12, "path-to-file");
+        PostAnalysisIssueVisitor.ComponentIssue secondIssue = mockComponentIssue("issueKey2", 13, "path-to-file");
+
+        Note note = mock(Note.class);
+        when(note.getAuthor()).thenReturn(sonarqubeUser);
+        when(note.getBody()).thenReturn("Issue Summary\n<!-- sonarqube-issue " + PROJECT_KEY + " closedIssue -->");
+        when(note.isResolvable()).thenReturn(true);
+        Discussion discussion = mock(Discussion.class);
+        when(discussion.getId()).thenReturn("discussionId1");
+        when(discussion.getNotes()).thenReturn(Collections.singletonList(note));
+
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.summaryonly.threshold")).thenReturn(Optional.of("1"));
+        when(postAnalysisIssueVisitor.getIssues()).thenReturn(Arrays.asList(firstIssue, secondIssue));
+        when(gitlabClient.getMergeRequestDiscussions(anyLong(), anyLong())).thenReturn(Collections.singletonList(discussion));
+        when(analysisDetails.createAnalysisSummary(any())).thenReturn("Summary comment");
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(gitlabClient, never()).getMergeRequestCommits(anyLong(), anyLong());
+        verify(gitlabClient, never()).getMergeRequestChanges(anyLong(), anyLong());
+        verify(gitlabClient, never()).resolveMergeRequestDiscussion(anyLong(), anyLong(), any());
+        verify(analysisDetails, never()).getSCMPathForIssue(any());
+
+        ArgumentCaptor<MergeRequestNote> mergeRequestNoteArgumentCaptor = ArgumentCaptor.forClass(MergeRequestNote.class);
+        verify(gitlabClient).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), mergeRequestNoteArgumentCaptor.capture());
+        assertThat(mergeRequestNoteArgumentCaptor.getValue()).isNotInstanceOf(CommitNote.class);
+        assertThat(mergeRequestNoteArgumentCaptor.getValue().getContent()).contains("- Issue comments were not updated as the 2 open issues in this analysis exceed the limit of 1.");
+    }
+
     @Test
     public void shouldNotStartNewDiscussionForIssueWithExistingCommentFromCommitInMergeRequest() throws IOException {
         PostAnalysisIssueVisitor.LightIssue lightIssue = mock(PostAnalysisIssueVisitor.LightIssue.class);
@@ -614,6 +1011,25 @@ public class GitlabMergeRequestDecoratorTest {
         assertThat(mergeRequestNoteArgumentCaptor.getValue()).isNotInstanceOf(CommitNote.class);
     }
 
+    @Test
+    public void shouldOnlySubmitPipelineStatusWhenDecoratingStatusOnly() throws IOException {
+        when(analysisDetails.getQualityGateStatus()).thenReturn(QualityGate.Status.OK);
+        when(analysisDetails.getCommitSha()).thenReturn("commitsha");
+
+        when(server.getPublicRootUrl()).thenReturn("https://sonarqube.dummy");
+
+        DecorationResult decorationResult = underTest.decorateQualityGateStatusOnly(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        ArgumentCaptor<PipelineStatus> pipelineStatusArgumentCaptor = ArgumentCaptor.forClass(PipelineStatus.class);
+        verify(gitlabClient).setMergeRequestPipelineStatus(eq(PROJECT_ID), eq("commitsha"), pipelineStatusArgumentCaptor.capture());
+        verify(gitlabClient, never()).getMergeRequestDiscussions(anyLong(), anyLong());
+        verify(gitlabClient, never()).addMergeRequestDiscussion(anyLong(), anyLong(), any());
+        assertThat(pipelineStatusArgumentCaptor.getValue())
+                .isEqualToComparingFieldByField(new PipelineStatus("SonarQube", "SonarQube Status",
+                        PipelineStatus.State.SUCCESS, "https://sonarqube.dummy/dashboard?id=" + PROJECT_KEY + "&pullRequest=" + MERGE_REQUEST_IID, null, null));
+        assertThat(decorationResult.getPullRequestUrl()).contains(MERGE_REQUEST_WEB_URL);
+    }
+
     @Test
     public void shouldSubmitSuccessfulPipelineStatusAndResolvedSummaryCommentOnSuccessAnalysis() throws IOException {
         when(analysisDetails.getQualityGateStatus()).thenReturn(QualityGate.Status.OK);
@@ -634,7 +1050,7 @@ public class GitlabMergeRequestDecoratorTest {
         ArgumentCaptor<PipelineStatus> pipelineStatusArgumentCaptor = ArgumentCaptor.forClass(PipelineStatus.class);
         verify(gitlabClient).setMergeRequestPipelineStatus(eq(PROJECT_ID), eq("commitsha"), pipelineStatusArgumentCaptor.capture());
 
-        assertThat(mergeRequestNoteArgumentCaptor.getValue()).isEqualToComparingFieldByField(new MergeRequestNote("Summary comment"));
+        assertThat(mergeRequestNoteArgumentCaptor.getValue()).isEqualToComparingFieldByField(new MergeRequestNote("Summary comment" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " decorator-summary-comment -->"));
         assertThat(pipelineStatusArgumentCaptor.getValue())
                 .isEqualToComparingFieldByField(new PipelineStatus("SonarQube", "SonarQube Status",
                         PipelineStatus.State.SUCCESS, "https://sonarqube.dummy/dashboard?id=" + PROJECT_KEY + "&pullRequest=" + MERGE_REQUEST_IID, null, null));
@@ -662,7 +1078,7 @@ public class GitlabMergeRequestDecoratorTest {
         ArgumentCaptor<PipelineStatus> pipelineStatusArgumentCaptor = ArgumentCaptor.forClass(PipelineStatus.class);
         verify(gitlabClient).setMergeRequestPipelineStatus(eq(PROJECT_ID), eq("other sha"), pipelineStatusArgumentCaptor.capture());
 
-        assertThat(mergeRequestNoteArgumentCaptor.getValue()).isEqualToComparingFieldByField(new MergeRequestNote("Different Summary comment"));
+        assertThat(mergeRequestNoteArgumentCaptor.getValue()).isEqualToComparingFieldByField(new MergeRequestNote("Different Summary comment" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " decorator-summary-comment -->"));
         assertThat(pipelineStatusArgumentCaptor.getValue())
                 .isEqualToComparingFieldByField(new PipelineStatus("SonarQube", "SonarQube Status",
                         PipelineStatus.State.FAILED, "https://sonarqube2.dummy/dashboard?id=" + PROJECT_KEY + "&pullRequest=" + MERGE_REQUEST_IID, BigDecimal.TEN, 11L));
@@ -693,7 +1109,7 @@ public class GitlabMergeRequestDecoratorTest {
         ArgumentCaptor<PipelineStatus> pipelineStatusArgumentCaptor = ArgumentCaptor.forClass(PipelineStatus.class);
         verify(gitlabClient).setMergeRequestPipelineStatus(eq(PROJECT_ID), eq("other sha"), pipelineStatusArgumentCaptor.capture());
 
-        assertThat(mergeRequestNoteArgumentCaptor.getValue()).isEqualToComparingFieldByField(new MergeRequestNote("Different Summary comment"));
+        assertThat(mergeRequestNoteArgumentCaptor.getValue()).isEqualToComparingFieldByField(new MergeRequestNote("Different Summary comment" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " decorator-summary-comment -->"));
         assertThat(pipelineStatusArgumentCaptor.getValue())
                 .isEqualToComparingFieldByField(new PipelineStatus("SonarQube", "SonarQube Status",
                         PipelineStatus.State.FAILED, "https://sonarqube2.dummy/dashboard?id=" + PROJECT_KEY + "&pullRequest=" + MERGE_REQUEST_IID, BigDecimal.TEN, 11L));
@@ -723,7 +1139,62 @@ public class GitlabMergeRequestDecoratorTest {
         verify(gitlabClient, never()).resolveMergeRequestDiscussion(PROJECT_ID, MERGE_REQUEST_IID, discussion.getId());
         verify(gitlabClient, never()).setMergeRequestPipelineStatus(anyLong(), any(), any());
 
-        assertThat(mergeRequestNoteArgumentCaptor.getValue()).isEqualToComparingFieldByField(new MergeRequestNote("Different Summary comment"));
+        assertThat(mergeRequestNoteArgumentCaptor.getValue()).isEqualToComparingFieldByField(new MergeRequestNote("Different Summary comment" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " decorator-summary-comment -->"));
+    }
+
+    @Test
+    public void shouldUpdateExistingSummaryNoteAndReopenDiscussionOnFailedAnalysisWhenEditEnabled() throws IOException {
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.summary.edit")).thenReturn(Optional.of("true"));
+        when(analysisDetails.getQualityGateStatus()).thenReturn(QualityGate.Status.ERROR);
+        when(analysisDetails.createAnalysisSummary(any())).thenReturn("Updated Summary comment");
+        when(analysisDetails.getCommitSha()).thenReturn("commitsha");
+        when(server.getPublicRootUrl()).thenReturn("https://sonarqube.dummy");
+
+        Note oldSummaryNote = mock(Note.class);
+        when(oldSummaryNote.getAuthor()).thenReturn(sonarqubeUser);
+        when(oldSummaryNote.getBody()).thenReturn("Old summary\n[View in SonarQube](oldSummaryUrl)");
+        Discussion oldSummaryDiscussion = mock(Discussion.class);
+        when(oldSummaryDiscussion.getId()).thenReturn("oldSummaryDiscussion");
+        when(oldSummaryDiscussion.getNotes()).thenReturn(Collections.singletonList(oldSummaryNote));
+
+        Note summaryNote = mock(Note.class);
+        when(summaryNote.getId()).thenReturn(42L);
+        when(summaryNote.getAuthor()).thenReturn(sonarqubeUser);
+        when(summaryNote.getBody()).thenReturn("Summary\n[View in SonarQube](summaryUrl)");
+        when(summaryNote.isResolved()).thenReturn(true);
+        Discussion summaryDiscussion = mock(Discussion.class);
+        when(summaryDiscussion.getId()).thenReturn("summaryDiscussion");
+        when(summaryDiscussion.getNotes()).thenReturn(Collections.singletonList(summaryNote));
+
+        when(analysisDetails.parseIssueIdFromUrl(any())).thenReturn(Optional.of(new AnalysisDetails.ProjectIssueIdentifier(PROJECT_KEY, AnalysisDetails.SUMMARY_COMMENT_ISSUE_KEY)));
+        when(gitlabClient.getMergeRequestDiscussions(PROJECT_ID, MERGE_REQUEST_IID)).thenReturn(Arrays.asList(oldSummaryDiscussion, summaryDiscussion));
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(gitlabClient).updateMergeRequestDiscussionNote(PROJECT_ID, MERGE_REQUEST_IID, "summaryDiscussion", 42L, "Updated Summary comment" + System.lineSeparator() + "<!-- sonarqube-issue " + PROJECT_KEY + " decorator-summary-comment -->");
+        verify(gitlabClient).unresolveMergeRequestDiscussion(PROJECT_ID, MERGE_REQUEST_IID, "summaryDiscussion");
+        verify(gitlabClient).resolveMergeRequestDiscussion(PROJECT_ID, MERGE_REQUEST_IID, "oldSummaryDiscussion");
+        verify(gitlabClient, never()).resolveMergeRequestDiscussion(PROJECT_ID, MERGE_REQUEST_IID, "summaryDiscussion");
+        verify(gitlabClient, never()).addMergeRequestDiscussion(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    public void shouldCreateNewSummaryNoteWhenEditEnabledButNoSummaryNoteExists() throws IOException {
+        when(analysisDetails.getConfigurationProperty("com.github.mc1arke.sonarqube.plugin.branch.pullrequest.summary.edit")).thenReturn(Optional.of("true"));
+        when(analysisDetails.getQualityGateStatus()).thenReturn(QualityGate.Status.OK);
+        when(analysisDetails.createAnalysisSummary(any())).thenReturn("Summary comment");
+        when(analysisDetails.getCommitSha()).thenReturn("commitsha");
+        when(server.getPublicRootUrl()).thenReturn("https://sonarqube.dummy");
+
+        Discussion discussion = mock(Discussion.class);
+        when(discussion.getId()).thenReturn("discussion id");
+        when(gitlabClient.addMergeRequestDiscussion(anyLong(), anyLong(), any())).thenReturn(discussion);
+
+        underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto);
+
+        verify(gitlabClient, never()).updateMergeRequestDiscussionNote(anyLong(), anyLong(), any(), anyLong(), any());
+        verify(gitlabClient).addMergeRequestDiscussion(eq(PROJECT_ID), eq(MERGE_REQUEST_IID), any());
+        verify(gitlabClient).resolveMergeRequestDiscussion(PROJECT_ID, MERGE_REQUEST_IID, "discussion id");
     }
 
     @Test
@@ -738,4 +1209,17 @@ public class GitlabMergeRequestDecoratorTest {
         assertThat(underTest.decorateQualityGateStatus(analysisDetails, almSettingDto, projectAlmSettingDto))
                 .isEqualToComparingFieldByField(DecorationResult.builder().withPullRequestUrl(MERGE_REQUEST_WEB_URL + "/additional/merge_requests/" + MERGE_REQUEST_IID).build());
     }
+
+    private PostAnalysisIssueVisitor.ComponentIssue mockComponentIssue(String issueKey, int line, String scmPath) {
+        PostAnalysisIssueVisitor.LightIssue lightIssue = mock(PostAnalysisIssueVisitor.LightIssue.class);
+        when(lightIssue.key()).thenReturn(issueKey);
+        when(lightIssue.getStatus()).thenReturn(Issue.STATUS_OPEN);
+        when(lightIssue.getLine()).thenReturn(line);
+
+        PostAnalysisIssueVisitor.ComponentIssue componentIssue = mock(PostAnalysisIssueVisitor.ComponentIssue.class);
+        when(componentIssue.getIssue()).thenReturn(lightIssue);
+        when(componentIssue.getComponent()).thenReturn(mock(Component.class));
+        when(analysisDetails.getSCMPathForIssue(componentIssue)).thenReturn(Optional.of(scmPath));
+        return componentIssue;
+    }
 }
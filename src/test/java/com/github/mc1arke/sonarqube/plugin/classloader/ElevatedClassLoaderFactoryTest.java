@@ -9,8 +9,14 @@ import org.sonar.api.Plugin;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class ElevatedClassLoaderFactoryTest {
 
@@ -65,6 +71,70 @@ public class ElevatedClassLoaderFactoryTest {
         }
     }
 
+    @Test
+    public void testClassLookupsCached() throws IOException, ClassNotFoundException {
+        ElevatedClassLoaderFactory testCase = new ElevatedClassLoaderFactoryImpl();
+        List<String> coreLookups = new ArrayList<>();
+        List<String> pluginLookups = new ArrayList<>();
+
+        try (URLClassLoader coreClassLoader = new URLClassLoader(new URL[]{}) {
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                coreLookups.add(name);
+                throw new ClassNotFoundException("Not in core");
+            }
+        }; URLClassLoader pluginClassLoader = new URLClassLoader(new URL[]{}) {
+            public Class<?> loadClass(String name) throws ClassNotFoundException {
+                pluginLookups.add(name);
+                if ("missing".equals(name)) {
+                    throw new ClassNotFoundException("Not in plugin");
+                }
+                return this.getClass();
+            }
+        }) {
+            ClassLoader createdClassLoader = testCase.createClassLoader(pluginClassLoader, coreClassLoader);
+            assertEquals(pluginClassLoader.getClass(), createdClassLoader.loadClass("present"));
+            assertEquals(pluginClassLoader.getClass(), createdClassLoader.loadClass("present"));
+
+            try {
+                createdClassLoader.loadClass("missing");
+                fail("Expected class to be missing");
+            } catch (ClassNotFoundException ex) {
+                assertEquals("Not in plugin", ex.getMessage());
+            }
+            try {
+                createdClassLoader.loadClass("missing");
+                fail("Expected class to be missing");
+            } catch (ClassNotFoundException ex) {
+                assertEquals("missing", ex.getMessage());
+            }
+
+            assertEquals(Arrays.asList("present", "missing"), coreLookups);
+            assertEquals(Arrays.asList("present", "missing"), pluginLookups);
+        }
+    }
+
+    @Test
+    public void testResourceLookupFallsThroughToPluginClassLoader() throws IOException {
+        ElevatedClassLoaderFactory testCase = new ElevatedClassLoaderFactoryImpl();
+        URL resource = new URL("file:/plugin/resource.properties");
+
+        try (URLClassLoader coreClassLoader = new URLClassLoader(new URL[]{}, null);
+             URLClassLoader pluginClassLoader = new URLClassLoader(new URL[]{}, null) {
+                 public URL getResource(String name) {
+                     return "resource.properties".equals(name) ? resource : null;
+                 }
+
+                 public Enumeration<URL> getResources(String name) {
+                     return Collections.enumeration(Collections.singletonList(getResource(name)));
+                 }
+             }) {
+            ClassLoader createdClassLoader = testCase.createClassLoader(pluginClassLoader, coreClassLoader);
+
+            assertEquals(resource, createdClassLoader.getResource("resource.properties"));
+            assertEquals(Collections.singletonList(resource),
+                         Collections.list(createdClassLoader.getResources("resource.properties")));
+        }
+    }
 
     private static class ElevatedClassLoaderFactoryImpl implements ElevatedClassLoaderFactory {
 
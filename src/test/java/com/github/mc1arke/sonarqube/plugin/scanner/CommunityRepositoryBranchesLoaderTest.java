@@ -21,12 +21,16 @@ package com.github.mc1arke.sonarqube.plugin.scanner;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.MessageException;
+import org.sonar.api.utils.System2;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonar.scanner.protocol.GsonHelper;
 import org.sonar.scanner.scan.branch.BranchInfo;
 import org.sonar.scanner.scan.branch.BranchType;
 import org.sonar.scanner.scan.branch.ProjectBranches;
+import org.sonarqube.ws.client.GetRequest;
 import org.sonarqube.ws.client.HttpException;
 import org.sonarqube.ws.client.WsResponse;
 
@@ -36,13 +40,17 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -51,6 +59,8 @@ import static org.mockito.Mockito.when;
 public class CommunityRepositoryBranchesLoaderTest {
 
     private final ScannerWsClient scannerWsClient = mock(ScannerWsClient.class);
+    private final Configuration configuration = mock(Configuration.class);
+    private final System2 system2 = mock(System2.class);
     private final ExpectedException expectedException = ExpectedException.none();
 
     @Rule
@@ -67,7 +77,7 @@ public class CommunityRepositoryBranchesLoaderTest {
                 GsonHelper.create().toJson(new CommunityProjectBranchesLoader.BranchesResponse(new ArrayList<>())));
         when(mockResponse.contentReader()).thenReturn(stringReader);
 
-        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient);
+        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient, configuration, system2);
         ProjectBranches response = testCase.load("projectKey");
         assertTrue(response.isEmpty());
     }
@@ -86,7 +96,7 @@ public class CommunityRepositoryBranchesLoaderTest {
                 GsonHelper.create().toJson(new CommunityProjectBranchesLoader.BranchesResponse(infos)));
         when(mockResponse.contentReader()).thenReturn(stringReader);
 
-        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient);
+        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient, configuration, system2);
         ProjectBranches response = testCase.load("key");
         assertFalse(response.isEmpty());
         for (BranchInfo info : infos) {
@@ -115,7 +125,7 @@ public class CommunityRepositoryBranchesLoaderTest {
         expectedException.expectMessage("Could not load branches from server");
         expectedException.expect(MessageException.class);
 
-        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient);
+        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient, configuration, system2);
         testCase.load("project");
 
 
@@ -138,7 +148,7 @@ public class CommunityRepositoryBranchesLoaderTest {
         expectedException.expectMessage("Could not load branches from server");
         expectedException.expect(MessageException.class);
 
-        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient);
+        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient, configuration, system2);
         testCase.load("project");
     }
 
@@ -147,7 +157,66 @@ public class CommunityRepositoryBranchesLoaderTest {
     public void testEmptyListOn404HttpResponse() {
         when(scannerWsClient.call(any())).thenThrow(new HttpException("url", 404, "content"));
 
-        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient);
+        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient, configuration, system2);
         assertTrue(testCase.load("project").isEmpty());
     }
+
+    @Test
+    public void testOnlyAnalysedBranchesRequestedFromServer() {
+        when(configuration.get("sonar.pullrequest.key")).thenReturn(Optional.of("101"));
+        when(configuration.get("sonar.pullrequest.base")).thenReturn(Optional.of("release/1.0"));
+        WsResponse mockResponse = mock(WsResponse.class);
+        when(scannerWsClient.call(any())).thenReturn(mockResponse);
+        when(mockResponse.contentReader()).thenReturn(new StringReader(
+                "{\"branches\":[{\"name\":\"master\",\"isMain\":true,\"type\":\"BRANCH\"},{\"name\":\"release/1.0\",\"isMain\":false,\"type\":\"BRANCH\"}]}"));
+
+        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient, configuration, system2);
+        ProjectBranches response = testCase.load("project");
+
+        ArgumentCaptor<GetRequest> requestArgumentCaptor = ArgumentCaptor.forClass(GetRequest.class);
+        verify(scannerWsClient).call(requestArgumentCaptor.capture());
+        assertEquals("/api/project_branches/show?project=project&branch=release%2F1.0", requestArgumentCaptor.getValue().getPath());
+        assertEquals("master", response.defaultBranchName());
+        assertNotNull(response.get("release/1.0"));
+    }
+
+    @Test
+    public void testEachAnalysedBranchRequestedAsSeparateParameter() {
+        when(configuration.get("sonar.branch.name")).thenReturn(Optional.of("feature,1"));
+        when(configuration.get("sonar.pullrequest.base")).thenReturn(Optional.of("release/1.0"));
+        WsResponse mockResponse = mock(WsResponse.class);
+        when(scannerWsClient.call(any())).thenReturn(mockResponse);
+        when(mockResponse.contentReader()).thenReturn(new StringReader(
+                "{\"branches\":[{\"name\":\"master\",\"isMain\":true,\"type\":\"BRANCH\"},{\"name\":\"feature,1\",\"isMain\":false,\"type\":\"BRANCH\"}]}"));
+
+        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient, configuration, system2);
+        ProjectBranches response = testCase.load("project");
+
+        ArgumentCaptor<GetRequest> requestArgumentCaptor = ArgumentCaptor.forClass(GetRequest.class);
+        verify(scannerWsClient).call(requestArgumentCaptor.capture());
+        assertEquals("/api/project_branches/show?project=project&branch=feature%2C1&branch=release%2F1.0", requestArgumentCaptor.getValue().getPath());
+        assertNotNull(response.get("feature,1"));
+    }
+
+    @Test
+    public void testAllBranchesStreamedAndFilteredWhenTargetedLookupNotSupported() {
+        when(configuration.get("sonar.branch.name")).thenReturn(Optional.of("feature"));
+        WsResponse mockResponse = mock(WsResponse.class);
+        when(scannerWsClient.call(any())).thenThrow(new HttpException("url", 404, "content")).thenReturn(mockResponse);
+        when(mockResponse.contentReader()).thenReturn(new StringReader(
+                "{\"branches\":[{\"name\":\"other\",\"isMain\":false,\"type\":\"BRANCH\",\"status\":{\"qualityGateStatus\":\"OK\"}},"
+                        + "{\"name\":\"master\",\"isMain\":true,\"type\":\"BRANCH\"},"
+                        + "{\"name\":\"feature\",\"isMain\":false,\"type\":\"BRANCH\",\"analysisDate\":\"2019-04-04T19:44:27+0100\"}],\"paging\":{}}"));
+
+        CommunityProjectBranchesLoader testCase = new CommunityProjectBranchesLoader(scannerWsClient, configuration, system2);
+        ProjectBranches response = testCase.load("project");
+
+        ArgumentCaptor<GetRequest> requestArgumentCaptor = ArgumentCaptor.forClass(GetRequest.class);
+        verify(scannerWsClient, times(2)).call(requestArgumentCaptor.capture());
+        assertEquals("/api/project_branches/show?project=project&branch=feature", requestArgumentCaptor.getAllValues().get(0).getPath());
+        assertEquals("/api/project_branches/list?project=project", requestArgumentCaptor.getAllValues().get(1).getPath());
+        assertEquals("master", response.defaultBranchName());
+        assertNotNull(response.get("feature"));
+        assertNull(response.get("other"));
+    }
 }
@@ -21,11 +21,15 @@ package com.github.mc1arke.sonarqube.plugin.scanner;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.MessageException;
+import org.sonar.api.utils.System2;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonar.scanner.protocol.GsonHelper;
 import org.sonar.scanner.scan.branch.ProjectPullRequests;
 import org.sonar.scanner.scan.branch.PullRequestInfo;
+import org.sonarqube.ws.client.GetRequest;
 import org.sonarqube.ws.client.HttpException;
 import org.sonarqube.ws.client.WsResponse;
 
@@ -36,6 +40,7 @@ import java.io.StringReader;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -43,6 +48,8 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -52,6 +59,8 @@ import static org.mockito.Mockito.when;
 public class CommunityRepositoryPullRequestsLoaderTest {
 
     private final ScannerWsClient scannerWsClient = mock(ScannerWsClient.class);
+    private final Configuration configuration = mock(Configuration.class);
+    private final System2 system2 = mock(System2.class);
     private final ExpectedException expectedException = ExpectedException.none();
 
     @Rule
@@ -69,7 +78,7 @@ public class CommunityRepositoryPullRequestsLoaderTest {
                                                                      new ArrayList<>())));
         when(mockResponse.contentReader()).thenReturn(stringReader);
 
-        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient);
+        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient, configuration, system2);
         ProjectPullRequests response = testCase.load("projectKey");
         assertTrue(response.isEmpty());
     }
@@ -83,7 +92,7 @@ public class CommunityRepositoryPullRequestsLoaderTest {
                 "{\"pullRequests\":[{\"key\":\"101\",\"title\":\"dummybranch\",\"branch\":\"dummybranch\",\"base\":\"master\",\"status\":{\"qualityGateStatus\":\"OK\",\"bugs\":0,\"vulnerabilities\":0,\"codeSmells\":0},\"analysisDate\":\"2019-04-04T19:44:27+0100\"}]}");
         when(mockResponse.contentReader()).thenReturn(stringReader);
 
-        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient);
+        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient, configuration, system2);
         ProjectPullRequests response = testCase.load("key");
         assertFalse(response.isEmpty());
 
@@ -105,7 +114,7 @@ public class CommunityRepositoryPullRequestsLoaderTest {
                 "{\"pullRequests\":[{\"key\":\"101\",\"title\":\"dummybranch\",\"branch\":\"dummybranch\",\"base\":\"master\",\"status\":{\"qualityGateStatus\":\"OK\",\"bugs\":0,\"vulnerabilities\":0,\"codeSmells\":0},\"analysisDate\":\"\"}]}");
         when(mockResponse.contentReader()).thenReturn(stringReader);
 
-        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient);
+        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient, configuration, system2);
         ProjectPullRequests response = testCase.load("key");
         assertFalse(response.isEmpty());
 
@@ -126,7 +135,7 @@ public class CommunityRepositoryPullRequestsLoaderTest {
                 "{\"pullRequests\":[{\"key\":\"101\",\"title\":\"dummybranch\",\"branch\":\"dummybranch\",\"status\":{\"qualityGateStatus\":\"OK\",\"bugs\":0,\"vulnerabilities\":0,\"codeSmells\":0},\"analysisDate\":\"\"}]}");
         when(mockResponse.contentReader()).thenReturn(stringReader);
 
-        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient);
+        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient, configuration, system2);
         ProjectPullRequests response = testCase.load("key");
         assertFalse(response.isEmpty());
 
@@ -147,7 +156,7 @@ public class CommunityRepositoryPullRequestsLoaderTest {
                 "{\"pullRequests\":[{\"key\":\"101\",\"title\":\"dummybranch\",\"branch\":\"dummybranch\",\"base\":\"master\",\"status\":{\"bugs\":0,\"vulnerabilities\":0,\"codeSmells\":0}}]}");
         when(mockResponse.contentReader()).thenReturn(stringReader);
 
-        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient);
+        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient, configuration, system2);
         ProjectPullRequests response = testCase.load("key");
         assertFalse(response.isEmpty());
 
@@ -177,7 +186,7 @@ public class CommunityRepositoryPullRequestsLoaderTest {
         expectedException.expectMessage("Could not load pull requests from server");
         expectedException.expect(MessageException.class);
 
-        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient);
+        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient, configuration, system2);
         testCase.load("project");
 
 
@@ -201,7 +210,7 @@ public class CommunityRepositoryPullRequestsLoaderTest {
         expectedException.expectMessage("Could not load pull requests from server");
         expectedException.expect(MessageException.class);
 
-        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient);
+        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient, configuration, system2);
         testCase.load("project");
     }
 
@@ -210,7 +219,44 @@ public class CommunityRepositoryPullRequestsLoaderTest {
     public void testEmptyListOn404HttpResponse() {
         when(scannerWsClient.call(any())).thenThrow(new HttpException("url", 404, "content"));
 
-        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient);
+        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient, configuration, system2);
         assertTrue(testCase.load("project").isEmpty());
     }
+
+    @Test
+    public void testSinglePullRequestRetrievedWhenAnalysingPullRequest() {
+        when(configuration.get("sonar.pullrequest.key")).thenReturn(Optional.of("101"));
+        WsResponse mockResponse = mock(WsResponse.class);
+        when(scannerWsClient.call(any())).thenReturn(mockResponse);
+        when(mockResponse.contentReader()).thenReturn(new StringReader(
+                "{\"pullRequests\":[{\"key\":\"101\",\"title\":\"dummybranch\",\"branch\":\"dummybranch\",\"base\":\"master\",\"analysisDate\":\"2019-04-04T19:44:27+0100\"}]}"));
+
+        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient, configuration, system2);
+        ProjectPullRequests response = testCase.load("project key");
+
+        ArgumentCaptor<GetRequest> requestArgumentCaptor = ArgumentCaptor.forClass(GetRequest.class);
+        verify(scannerWsClient).call(requestArgumentCaptor.capture());
+        assertEquals("/api/project_pull_requests/show?project=project+key&pullRequest=101", requestArgumentCaptor.getValue().getPath());
+        assertEquals("101", response.get("dummybranch").getKey());
+        assertEquals(1554403467000L, response.get("dummybranch").getAnalysisDate());
+    }
+
+    @Test
+    public void testAllPullRequestsRetrievedWhenSinglePullRequestLookupNotSupported() {
+        when(system2.envVariable("GITLAB_CI")).thenReturn("true");
+        when(system2.envVariable("CI_MERGE_REQUEST_IID")).thenReturn("101");
+        WsResponse mockResponse = mock(WsResponse.class);
+        when(scannerWsClient.call(any())).thenThrow(new HttpException("url", 404, "content")).thenReturn(mockResponse);
+        when(mockResponse.contentReader()).thenReturn(new StringReader(
+                "{\"pullRequests\":[{\"key\":\"101\",\"title\":\"dummybranch\",\"branch\":\"dummybranch\",\"base\":\"master\"}]}"));
+
+        CommunityProjectPullRequestsLoader testCase = new CommunityProjectPullRequestsLoader(scannerWsClient, configuration, system2);
+        ProjectPullRequests response = testCase.load("project");
+
+        ArgumentCaptor<GetRequest> requestArgumentCaptor = ArgumentCaptor.forClass(GetRequest.class);
+        verify(scannerWsClient, times(2)).call(requestArgumentCaptor.capture());
+        assertEquals("/api/project_pull_requests/show?project=project&pullRequest=101", requestArgumentCaptor.getAllValues().get(0).getPath());
+        assertEquals("/api/project_pull_requests/list?project=project", requestArgumentCaptor.getAllValues().get(1).getPath());
+        assertEquals("101", response.get("dummybranch").getKey());
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.scanner;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonarqube.ws.client.GetRequest;
+import org.sonarqube.ws.client.HttpException;
+import org.sonarqube.ws.client.WsResponse;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ServerResponseCacheTest {
+
+    private final TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private final ScannerWsClient scannerWsClient = mock(ScannerWsClient.class);
+
+    @Rule
+    public TemporaryFolder temporaryFolder() {
+        return temporaryFolder;
+    }
+
+    @Test
+    public void testResponseWithEntityTagRevalidatedOnNextRequest() throws IOException {
+        ServerResponseCache testCase = new ServerResponseCache(temporaryFolder.getRoot().toPath(), "http://server");
+        WsResponse response = mockResponse("{\"branches\":[]}", Optional.of("\"abc\""));
+        when(scannerWsClient.call(any())).thenReturn(response).thenThrow(new HttpException("url", 304, ""));
+
+        assertThat(testCase.call(scannerWsClient, new GetRequest("/api/project_branches/show?project=project"))).isEqualTo("{\"branches\":[]}");
+        assertThat(testCase.call(scannerWsClient, new GetRequest("/api/project_branches/show?project=project"))).isEqualTo("{\"branches\":[]}");
+
+        ArgumentCaptor<GetRequest> requestArgumentCaptor = ArgumentCaptor.forClass(GetRequest.class);
+        verify(scannerWsClient, times(2)).call(requestArgumentCaptor.capture());
+        assertThat(requestArgumentCaptor.getAllValues().get(0).getHeaders().getValue("If-None-Match")).isEmpty();
+        assertThat(requestArgumentCaptor.getAllValues().get(1).getHeaders().getValue("If-None-Match")).contains("\"abc\"");
+    }
+
+    @Test
+    public void testResponseWithoutEntityTagNotCached() throws IOException {
+        ServerResponseCache testCase = new ServerResponseCache(temporaryFolder.getRoot().toPath(), "http://server");
+        WsResponse firstResponse = mockResponse("first", Optional.empty());
+        WsResponse secondResponse = mockResponse("second", Optional.empty());
+        when(scannerWsClient.call(any())).thenReturn(firstResponse).thenReturn(secondResponse);
+
+        assertThat(testCase.call(scannerWsClient, new GetRequest("/path"))).isEqualTo("first");
+        assertThat(testCase.call(scannerWsClient, new GetRequest("/path"))).isEqualTo("second");
+
+        ArgumentCaptor<GetRequest> requestArgumentCaptor = ArgumentCaptor.forClass(GetRequest.class);
+        verify(scannerWsClient, times(2)).call(requestArgumentCaptor.capture());
+        assertThat(requestArgumentCaptor.getAllValues().get(1).getHeaders().getValue("If-None-Match")).isEmpty();
+        assertThat(temporaryFolder.getRoot().list()).isEmpty();
+    }
+
+    @Test
+    public void testCachedResponsesSeparatedByServer() throws IOException {
+        WsResponse firstResponse = mockResponse("first", Optional.of("\"abc\""));
+        WsResponse secondResponse = mockResponse("second", Optional.of("\"def\""));
+        when(scannerWsClient.call(any())).thenReturn(firstResponse).thenReturn(secondResponse);
+
+        new ServerResponseCache(temporaryFolder.getRoot().toPath(), "http://server").call(scannerWsClient, new GetRequest("/path"));
+        new ServerResponseCache(temporaryFolder.getRoot().toPath(), "http://other").call(scannerWsClient, new GetRequest("/path"));
+
+        ArgumentCaptor<GetRequest> requestArgumentCaptor = ArgumentCaptor.forClass(GetRequest.class);
+        verify(scannerWsClient, times(2)).call(requestArgumentCaptor.capture());
+        assertThat(requestArgumentCaptor.getAllValues().get(1).getHeaders().getValue("If-None-Match")).isEmpty();
+        assertThat(temporaryFolder.getRoot().list()).hasSize(2);
+    }
+
+    @Test
+    public void testUnusedResponsesRemovedWhenResponseWritten() throws IOException {
+        ServerResponseCache testCase = new ServerResponseCache(temporaryFolder.getRoot().toPath(), "http://server");
+        Path expired = temporaryFolder.newFile("expired").toPath();
+        Files.setLastModifiedTime(expired, FileTime.from(Instant.now().minus(ServerResponseCache.MAXIMUM_AGE).minus(1, ChronoUnit.DAYS)));
+        Path recent = temporaryFolder.newFile("recent").toPath();
+        Files.setLastModifiedTime(recent, FileTime.from(Instant.now().minus(1, ChronoUnit.DAYS)));
+        WsResponse response = mockResponse("content", Optional.of("\"abc\""));
+        when(scannerWsClient.call(any())).thenReturn(response);
+
+        testCase.call(scannerWsClient, new GetRequest("/path"));
+
+        assertThat(expired).doesNotExist();
+        assertThat(recent).exists();
+        assertThat(temporaryFolder.getRoot().list()).hasSize(2);
+    }
+
+    @Test
+    public void testCachedResponseKeptWhilstItIsUsed() throws IOException {
+        ServerResponseCache testCase = new ServerResponseCache(temporaryFolder.getRoot().toPath(), "http://server");
+        WsResponse response = mockResponse("content", Optional.of("\"abc\""));
+        when(scannerWsClient.call(any())).thenReturn(response).thenThrow(new HttpException("url", 304, ""));
+        testCase.call(scannerWsClient, new GetRequest("/path"));
+        Path cacheFile = temporaryFolder.getRoot().listFiles()[0].toPath();
+        Files.setLastModifiedTime(cacheFile, FileTime.from(Instant.now().minus(ServerResponseCache.MAXIMUM_AGE).minus(1, ChronoUnit.DAYS)));
+
+        assertThat(testCase.call(scannerWsClient, new GetRequest("/path"))).isEqualTo("content");
+
+        assertThat(Files.getLastModifiedTime(cacheFile).toInstant()).isAfter(Instant.now().minus(1, ChronoUnit.DAYS));
+    }
+
+    @Test
+    public void testNotModifiedWithoutCachedResponseRethrown() {
+        ServerResponseCache testCase = new ServerResponseCache(temporaryFolder.getRoot().toPath(), "http://server");
+        when(scannerWsClient.call(any())).thenThrow(new HttpException("url", 304, ""));
+
+        assertThatThrownBy(() -> testCase.call(scannerWsClient, new GetRequest("/path")))
+                .isInstanceOf(HttpException.class);
+    }
+
+    private static WsResponse mockResponse(String content, Optional<String> entityTag) {
+        WsResponse response = mock(WsResponse.class);
+        when(response.contentReader()).thenReturn(new StringReader(content));
+        when(response.header("ETag")).thenReturn(entityTag);
+        return response;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator;
+
+import com.github.mc1arke.sonarqube.plugin.InvalidConfigurationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.config.Configuration;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.alm.setting.ALM;
+import org.sonar.db.alm.setting.AlmSettingDao;
+import org.sonar.db.alm.setting.AlmSettingDto;
+import org.sonar.db.alm.setting.ProjectAlmSettingDao;
+import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+import org.sonar.db.project.ProjectDao;
+import org.sonar.db.project.ProjectDto;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BindingHealthCheckTest {
+
+    private final DbClient dbClient = mock(DbClient.class);
+    private final DbSession dbSession = mock(DbSession.class);
+    private final ProjectDao projectDao = mock(ProjectDao.class);
+    private final AlmSettingDao almSettingDao = mock(AlmSettingDao.class);
+    private final ProjectAlmSettingDao projectAlmSettingDao = mock(ProjectAlmSettingDao.class);
+    private final Validator validator = mock(Validator.class);
+    private final Validator.ProjectBindingValidator projectBindingValidator = mock(Validator.ProjectBindingValidator.class);
+    private final BindingHealthCheck underTest = new BindingHealthCheck(dbClient, Collections.singletonList(validator), mock(Configuration.class), 2);
+
+    @BeforeEach
+    void setUp() {
+        when(dbClient.openSession(false)).thenReturn(dbSession);
+        when(dbClient.projectDao()).thenReturn(projectDao);
+        when(dbClient.almSettingDao()).thenReturn(almSettingDao);
+        when(dbClient.projectAlmSettingDao()).thenReturn(projectAlmSettingDao);
+        when(validator.alm()).thenReturn(Collections.singletonList(ALM.GITLAB));
+        when(validator.forAlmSetting(any())).thenReturn(projectBindingValidator);
+    }
+
+    @Test
+    void testCheckSharesValidatorForEachAlmSettingAndReportsFailures() {
+        AlmSettingDto gitlabSetting = almSetting("gitlab-uuid", "gitlab", ALM.GITLAB);
+        AlmSettingDto githubSetting = almSetting("github-uuid", "github", ALM.GITHUB);
+        when(almSettingDao.selectAll(dbSession)).thenReturn(Arrays.asList(gitlabSetting, githubSetting));
+
+        ProjectDto validProject = project("valid");
+        ProjectDto invalidProject = project("invalid");
+        ProjectDto unsupportedProject = project("unsupported");
+        ProjectDto orphanedProject = project("orphaned");
+        ProjectDto unboundProject = project("unbound");
+        when(projectDao.selectProjects(dbSession)).thenReturn(Arrays.asList(validProject, invalidProject, unsupportedProject, orphanedProject, unboundProject));
+
+        ProjectAlmSettingDto validBinding = binding(validProject, "gitlab-uuid");
+        ProjectAlmSettingDto invalidBinding = binding(invalidProject, "gitlab-uuid");
+        binding(unsupportedProject, "github-uuid");
+        binding(orphanedProject, "deleted-uuid");
+        when(projectAlmSettingDao.selectByProject(dbSession, unboundProject)).thenReturn(Optional.empty());
+
+        doThrow(new InvalidConfigurationException(InvalidConfigurationException.Scope.GLOBAL, "Invalid token"))
+                .when(projectBindingValidator).validate(invalidBinding);
+
+        BindingHealthCheck.Report report = underTest.check();
+
+        assertThat(report.getChecked()).isEqualTo(4);
+        assertThat(report.getFailures())
+                .extracting(BindingHealthCheck.Failure::getProject, BindingHealthCheck.Failure::getAlmSetting,
+                        BindingHealthCheck.Failure::getScope, BindingHealthCheck.Failure::getMessage)
+                .containsExactly(tuple("invalid", "gitlab", "GLOBAL", "Invalid token"),
+                        tuple("orphaned", null, "PROJECT", "The ALM setting bound to the project no longer exists"),
+                        tuple("unsupported", "github", "PROJECT", "The GITHUB ALM is not supported by any validators"));
+
+        verify(validator, times(1)).forAlmSetting(gitlabSetting);
+        verify(projectBindingValidator).validate(validBinding);
+        verify(projectBindingValidator).validate(invalidBinding);
+    }
+
+    @Test
+    void testCheckReportsUnexpectedValidationErrors() {
+        AlmSettingDto gitlabSetting = almSetting("gitlab-uuid", "gitlab", ALM.GITLAB);
+        when(almSettingDao.selectAll(dbSession)).thenReturn(Collections.singletonList(gitlabSetting));
+        ProjectDto project = project("project");
+        when(projectDao.selectProjects(dbSession)).thenReturn(Collections.singletonList(project));
+        ProjectAlmSettingDto projectAlmSettingDto = binding(project, "gitlab-uuid");
+        doThrow(new IllegalStateException("dummy")).when(projectBindingValidator).validate(projectAlmSettingDto);
+
+        BindingHealthCheck.Report report = underTest.check();
+
+        assertThat(report.getFailures())
+                .extracting(BindingHealthCheck.Failure::getProject, BindingHealthCheck.Failure::getMessage)
+                .containsExactly(tuple("project", "Could not validate binding - dummy"));
+    }
+
+    @Test
+    void testStopWithoutBackgroundCheckConfigured() {
+        underTest.start();
+        underTest.stop();
+
+        verify(dbClient, times(0)).openSession(false);
+    }
+
+    private static AlmSettingDto almSetting(String uuid, String key, ALM alm) {
+        AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        when(almSettingDto.getUuid()).thenReturn(uuid);
+        when(almSettingDto.getKey()).thenReturn(key);
+        when(almSettingDto.getAlm()).thenReturn(alm);
+        return almSettingDto;
+    }
+
+    private static ProjectDto project(String key) {
+        ProjectDto projectDto = mock(ProjectDto.class);
+        when(projectDto.getKey()).thenReturn(key);
+        return projectDto;
+    }
+
+    private ProjectAlmSettingDto binding(ProjectDto project, String almSettingUuid) {
+        ProjectAlmSettingDto projectAlmSettingDto = mock(ProjectAlmSettingDto.class);
+        when(projectAlmSettingDto.getAlmSettingUuid()).thenReturn(almSettingUuid);
+        when(projectAlmSettingDao.selectByProject(dbSession, project)).thenReturn(Optional.of(projectAlmSettingDto));
+        return projectAlmSettingDto;
+    }
+}
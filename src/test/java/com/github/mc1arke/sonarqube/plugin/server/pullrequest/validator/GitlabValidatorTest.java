@@ -29,11 +29,20 @@ import org.sonar.db.alm.setting.AlmSettingDto;
 import org.sonar.db.alm.setting.ProjectAlmSettingDto;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -92,4 +101,72 @@ class GitlabValidatorTest {
 
         verify(gitlabClient).getProject(any());
     }
+
+    @Test
+    void testAlmSettingValidatorSharesClientBetweenProjects() throws IOException {
+        GitlabValidator underTest = new GitlabValidator(gitlabClientFactory);
+        GitlabClient gitlabClient = mock(GitlabClient.class);
+        when(gitlabClient.getProject(any())).thenReturn(mock(Project.class));
+        when(gitlabClientFactory.createClient(any(), any())).thenReturn(gitlabClient);
+        ProjectAlmSettingDto otherProjectAlmSettingDto = mock(ProjectAlmSettingDto.class);
+        when(projectAlmSettingDto.getAlmRepo()).thenReturn("group/project");
+        when(otherProjectAlmSettingDto.getAlmRepo()).thenReturn("group/other");
+
+        Validator.ProjectBindingValidator projectBindingValidator = underTest.forAlmSetting(almSettingDto);
+        projectBindingValidator.validate(projectAlmSettingDto);
+        projectBindingValidator.validate(otherProjectAlmSettingDto);
+
+        verify(gitlabClientFactory, times(1)).createClient(any(), any());
+        verify(gitlabClient).getProject("group/project");
+        verify(gitlabClient).getProject("group/other");
+    }
+
+    @Test
+    void testAlmSettingValidatorCreatesSingleClientForConcurrentProjects() throws Exception {
+        GitlabValidator underTest = new GitlabValidator(gitlabClientFactory);
+        GitlabClient gitlabClient = mock(GitlabClient.class);
+        when(gitlabClient.getProject(any())).thenReturn(mock(Project.class));
+        CountDownLatch allStarted = new CountDownLatch(4);
+        when(gitlabClientFactory.createClient(any(), any())).thenAnswer(invocation -> {
+            allStarted.await(100, TimeUnit.MILLISECONDS);
+            return gitlabClient;
+        });
+
+        Validator.ProjectBindingValidator projectBindingValidator = underTest.forAlmSetting(almSettingDto);
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> checks = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                checks.add(executorService.submit(() -> {
+                    allStarted.countDown();
+                    projectBindingValidator.validate(projectAlmSettingDto);
+                }));
+            }
+            for (Future<?> check : checks) {
+                check.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        verify(gitlabClientFactory, times(1)).createClient(any(), any());
+        verify(gitlabClient, times(4)).getProject(any());
+    }
+
+    @Test
+    void testAlmSettingValidatorReportsClientFailureToEachProjectWithoutRetrying() {
+        GitlabValidator underTest = new GitlabValidator(gitlabClientFactory);
+        when(gitlabClientFactory.createClient(any(), any())).thenThrow(new InvalidConfigurationException(InvalidConfigurationException.Scope.GLOBAL, "ALM URL must be specified"));
+        ProjectAlmSettingDto otherProjectAlmSettingDto = mock(ProjectAlmSettingDto.class);
+
+        Validator.ProjectBindingValidator projectBindingValidator = underTest.forAlmSetting(almSettingDto);
+        for (ProjectAlmSettingDto dto : Arrays.asList(projectAlmSettingDto, otherProjectAlmSettingDto)) {
+            assertThatThrownBy(() -> projectBindingValidator.validate(dto))
+                    .isInstanceOf(InvalidConfigurationException.class)
+                    .hasMessage("ALM URL must be specified")
+                    .has(new Condition<>(t -> ((InvalidConfigurationException) t).getScope() == InvalidConfigurationException.Scope.GLOBAL, "GLOBAL Scope for exception"));
+        }
+
+        verify(gitlabClientFactory, times(1)).createClient(any(), any());
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator;
+
+import org.junit.jupiter.api.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.alm.setting.AlmSettingDto;
+import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ValidationResultCacheTest {
+
+    private final System2 system2 = mock(System2.class);
+    private final ValidationResultCache underTest = new ValidationResultCache(system2);
+    private final ProjectAlmSettingDto projectAlmSettingDto = mock(ProjectAlmSettingDto.class);
+    private final AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+
+    @Test
+    void testSuccessfulValidationReusedUntilExpiry() {
+        Validator validator = mock(Validator.class);
+
+        underTest.validate(projectAlmSettingDto, almSettingDto, false, validator);
+        when(system2.now()).thenReturn(TimeUnit.MINUTES.toMillis(5) - 1);
+        underTest.validate(projectAlmSettingDto, almSettingDto, false, validator);
+        verify(validator).validate(projectAlmSettingDto, almSettingDto);
+
+        when(system2.now()).thenReturn(TimeUnit.MINUTES.toMillis(5));
+        underTest.validate(projectAlmSettingDto, almSettingDto, false, validator);
+        verify(validator, times(2)).validate(projectAlmSettingDto, almSettingDto);
+    }
+
+    @Test
+    void testUnexpectedFailuresNotCached() {
+        Validator validator = mock(Validator.class);
+        doThrow(new IllegalStateException("Could not connect")).when(validator).validate(any(), any());
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> underTest.validate(projectAlmSettingDto, almSettingDto, false, validator))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("Could not connect");
+        }
+        verify(validator, times(2)).validate(projectAlmSettingDto, almSettingDto);
+    }
+
+    @Test
+    void testErrorsRethrownAndNotCached() {
+        Validator validator = mock(Validator.class);
+        doThrow(new NoClassDefFoundError("com/example/Missing")).when(validator).validate(any(), any());
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> underTest.validate(projectAlmSettingDto, almSettingDto, false, validator))
+                    .isInstanceOf(NoClassDefFoundError.class)
+                    .hasMessage("com/example/Missing");
+        }
+        verify(validator, times(2)).validate(projectAlmSettingDto, almSettingDto);
+    }
+
+    @Test
+    void testConcurrentRequestReleasedWhenValidationThrowsError() throws InterruptedException {
+        CountDownLatch validationStarted = new CountDownLatch(1);
+        CountDownLatch releaseValidation = new CountDownLatch(1);
+        Validator validator = mock(Validator.class);
+        doAnswer(invocation -> {
+            validationStarted.countDown();
+            releaseValidation.await();
+            throw new StackOverflowError();
+        }).when(validator).validate(any(), any());
+        AtomicReference<Throwable> secondFailure = new AtomicReference<>();
+
+        Thread first = new Thread(() -> assertThatThrownBy(() -> underTest.validate(projectAlmSettingDto, almSettingDto, false, validator))
+                .isInstanceOf(StackOverflowError.class));
+        first.start();
+        assertThat(validationStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+        Thread second = new Thread(() -> {
+            try {
+                underTest.validate(projectAlmSettingDto, almSettingDto, false, validator);
+            } catch (Throwable ex) {
+                secondFailure.set(ex);
+            }
+        });
+        second.start();
+        while (second.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        releaseValidation.countDown();
+        first.join();
+        second.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertThat(second.isAlive()).isFalse();
+        assertThat(secondFailure.get()).isInstanceOf(StackOverflowError.class);
+    }
+
+    @Test
+    void testConcurrentRequestsShareSingleValidation() throws InterruptedException {
+        CountDownLatch validationStarted = new CountDownLatch(1);
+        CountDownLatch releaseValidation = new CountDownLatch(1);
+        Validator validator = mock(Validator.class);
+        doAnswer(invocation -> {
+            validationStarted.countDown();
+            releaseValidation.await();
+            return null;
+        }).when(validator).validate(any(), any());
+
+        Thread first = new Thread(() -> underTest.validate(projectAlmSettingDto, almSettingDto, false, validator));
+        first.start();
+        assertThat(validationStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+        Thread second = new Thread(() -> underTest.validate(projectAlmSettingDto, almSettingDto, true, validator));
+        second.start();
+        while (second.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        releaseValidation.countDown();
+        first.join();
+        second.join();
+
+        verify(validator).validate(projectAlmSettingDto, almSettingDto);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.web.UserRole;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.alm.setting.ALM;
+import org.sonar.db.alm.setting.AlmSettingDao;
+import org.sonar.db.alm.setting.AlmSettingDto;
+import org.sonar.db.alm.setting.ProjectAlmSettingDao;
+import org.sonar.db.alm.setting.ProjectAlmSettingDto;
+import org.sonar.db.project.ProjectDao;
+import org.sonar.db.project.ProjectDto;
+import org.sonar.server.user.UserSession;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BulkSetBindingActionTest {
+
+    private final DbClient dbClient = mock(DbClient.class);
+    private final DbSession dbSession = mock(DbSession.class);
+    private final UserSession userSession = mock(UserSession.class);
+    private final ProjectDao projectDao = mock(ProjectDao.class);
+    private final AlmSettingDao almSettingDao = mock(AlmSettingDao.class);
+    private final ProjectAlmSettingDao projectAlmSettingDao = mock(ProjectAlmSettingDao.class);
+    private final Request request = mock(Request.class);
+    private final Response response = mock(Response.class);
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final BulkSetBindingAction testCase = new BulkSetBindingAction(dbClient, userSession);
+
+    @Before
+    public void setUp() {
+        when(dbClient.openSession(true)).thenReturn(dbSession);
+        when(dbClient.projectDao()).thenReturn(projectDao);
+        when(dbClient.almSettingDao()).thenReturn(almSettingDao);
+        when(dbClient.projectAlmSettingDao()).thenReturn(projectAlmSettingDao);
+
+        Response.Stream stream = mock(Response.Stream.class);
+        when(stream.output()).thenReturn(output);
+        when(response.stream()).thenReturn(stream);
+
+        when(projectDao.selectProjectsByKeys(eq(dbSession), anySet())).then(i -> i.<Collection<String>>getArgument(1).stream()
+                .filter(key -> !"missing".equals(key))
+                .map(key -> new ProjectDto().setKey(key).setUuid(key + "-uuid").setName(key + "-name"))
+                .collect(Collectors.toList()));
+        when(userSession.hasProjectPermission(eq(UserRole.ADMIN), any(ProjectDto.class))).then(i -> !"forbidden".equals(i.<ProjectDto>getArgument(1).getKey()));
+
+        when(almSettingDao.selectByKey(dbSession, "gitlab")).thenReturn(Optional.of(new AlmSettingDto().setUuid("gitlab-uuid").setAlm(ALM.GITLAB)));
+        when(almSettingDao.selectByKey(dbSession, "bitbucket")).thenReturn(Optional.of(new AlmSettingDto().setUuid("bitbucket-uuid").setAlm(ALM.BITBUCKET)));
+        when(almSettingDao.selectByKey(dbSession, "unknown")).thenReturn(Optional.empty());
+    }
+
+    @Test
+    public void testDefine() {
+        WebService.NewController newController = mock(WebService.NewController.class);
+        WebService.NewAction newAction = mock(WebService.NewAction.class);
+        WebService.NewParam newParam = mock(WebService.NewParam.class);
+        when(newController.createAction("bulk_set_binding")).thenReturn(newAction);
+        when(newAction.setPost(true)).thenReturn(newAction);
+        when(newAction.setHandler(testCase)).thenReturn(newAction);
+        when(newAction.createParam("bindings")).thenReturn(newParam);
+        when(newParam.setRequired(true)).thenReturn(newParam);
+
+        testCase.define(newController);
+
+        verify(newAction).setPost(true);
+        verify(newParam).setRequired(true);
+    }
+
+    @Test
+    public void testNewlineDelimitedBindingsSavedWithResultPerBinding() throws IOException {
+        givenBindings("{\"project\": \"project1\", \"almSetting\": \"gitlab\", \"repository\": \"group/project1\"}\n"
+                + "{\"project\": \"missing\", \"almSetting\": \"gitlab\"}\n"
+                + "{\"project\": \"forbidden\", \"almSetting\": \"gitlab\"}\n"
+                + "{\"project\": \"project2\", \"almSetting\": \"unknown\"}\n"
+                + "{\"project\": \"project3\", \"almSetting\": \"bitbucket\", \"repository\": \"PROJ\"}\n"
+                + "{\"project\": \"project4\", \"almSetting\": \"bitbucket\", \"repository\": \"PROJ\", \"slug\": \"repo\"}\n");
+
+        testCase.handle(request, response);
+
+        assertThat(output.toString(StandardCharsets.UTF_8).split("\n")).containsExactly(
+                "{\"project\":\"project1\",\"status\":\"OK\"}",
+                "{\"project\":\"missing\",\"status\":\"ERROR\",\"error\":\"Project 'missing' could not be found\"}",
+                "{\"project\":\"forbidden\",\"status\":\"ERROR\",\"error\":\"Insufficient privileges to bind project\"}",
+                "{\"project\":\"project2\",\"status\":\"ERROR\",\"error\":\"ALM setting 'unknown' could not be found\"}",
+                "{\"project\":\"project3\",\"status\":\"ERROR\",\"error\":\"A slug must be provided\"}",
+                "{\"project\":\"project4\",\"status\":\"OK\"}");
+
+        ArgumentCaptor<ProjectAlmSettingDto> projectAlmSettingDtoArgumentCaptor = ArgumentCaptor.forClass(ProjectAlmSettingDto.class);
+        verify(projectAlmSettingDao, times(2)).insertOrUpdate(eq(dbSession), projectAlmSettingDtoArgumentCaptor.capture(), any(), any(), any());
+        assertThat(projectAlmSettingDtoArgumentCaptor.getAllValues()).extracting(ProjectAlmSettingDto::getProjectUuid, ProjectAlmSettingDto::getAlmSettingUuid, ProjectAlmSettingDto::getAlmRepo, ProjectAlmSettingDto::getAlmSlug)
+                .containsExactly(tuple("project1-uuid", "gitlab-uuid", "group/project1", null),
+                        tuple("project4-uuid", "bitbucket-uuid", "PROJ", "repo"));
+        verify(projectAlmSettingDao).insertOrUpdate(dbSession, projectAlmSettingDtoArgumentCaptor.getAllValues().get(0), "gitlab-uuid", "project1-name", "project1");
+        verify(almSettingDao).selectByKey(dbSession, "gitlab");
+        verify(dbSession).commit();
+    }
+
+    @Test
+    public void testBindingsCommittedInBatches() throws IOException {
+        StringBuilder bindings = new StringBuilder("[");
+        for (int i = 0; i < 250; i++) {
+            bindings.append(i == 0 ? "" : ",").append("{\"project\": \"project").append(i).append("\", \"almSetting\": \"gitlab\"}");
+        }
+        givenBindings(bindings.append(']').toString());
+
+        testCase.handle(request, response);
+
+        assertThat(output.toString(StandardCharsets.UTF_8).split("\n")).hasSize(250).allMatch(line -> line.endsWith("\"status\":\"OK\"}"));
+        verify(projectDao, times(3)).selectProjectsByKeys(eq(dbSession), anySet());
+        verify(dbSession, times(3)).commit();
+    }
+
+    @Test
+    public void testFailedBatchRolledBackAndReportedWhilstLaterBatchesSaved() throws IOException {
+        StringBuilder bindings = new StringBuilder("[");
+        for (int i = 0; i < 150; i++) {
+            bindings.append(i == 0 ? "" : ",").append("{\"project\": \"project").append(i).append("\", \"almSetting\": \"gitlab\"}");
+        }
+        givenBindings(bindings.append(']').toString());
+        doThrow(new IllegalStateException("Constraint violation")).when(projectAlmSettingDao)
+                .insertOrUpdate(eq(dbSession), any(), any(), eq("project5-name"), eq("project5"));
+
+        testCase.handle(request, response);
+
+        String[] results = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(results).hasSize(150);
+        assertThat(Arrays.asList(results).subList(0, 100))
+                .allMatch(line -> line.endsWith("\"status\":\"ERROR\",\"error\":\"Could not save the batch containing this binding: Constraint violation\"}"));
+        assertThat(Arrays.asList(results).subList(100, 150)).allMatch(line -> line.endsWith("\"status\":\"OK\"}"));
+        InOrder inOrder = inOrder(dbSession);
+        inOrder.verify(dbSession).rollback();
+        inOrder.verify(dbSession).commit();
+        verify(dbSession, times(1)).commit();
+    }
+
+    private void givenBindings(String bindings) {
+        doReturn(new ByteArrayInputStream(bindings.getBytes(StandardCharsets.UTF_8))).when(request).paramAsInputStream("bindings");
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action;
+
+import com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator.BindingHealthCheck;
+import org.junit.Test;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.server.user.UserSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CheckBindingsActionTest {
+
+    private final BindingHealthCheck bindingHealthCheck = mock(BindingHealthCheck.class);
+    private final UserSession userSession = mock(UserSession.class);
+    private final CheckBindingsAction testCase = new CheckBindingsAction(bindingHealthCheck, userSession);
+
+    @Test
+    public void testDefine() {
+        WebService.NewController newController = mock(WebService.NewController.class);
+        WebService.NewAction newAction = mock(WebService.NewAction.class);
+        when(newController.createAction(any())).thenReturn(newAction);
+        when(newAction.setPost(true)).thenReturn(newAction);
+        when(newAction.setHandler(testCase)).thenReturn(newAction);
+
+        testCase.define(newController);
+
+        verify(newController).createAction("check_bindings");
+        verify(newAction).setPost(true);
+        verify(newAction).setHandler(testCase);
+    }
+
+    @Test
+    public void testHandleRejectsNonAdministrators() {
+        doThrow(new IllegalStateException("Insufficient privileges")).when(userSession).checkIsSystemAdministrator();
+
+        assertThatThrownBy(() -> testCase.handle(mock(Request.class), mock(Response.class)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Insufficient privileges");
+        verify(bindingHealthCheck, never()).check();
+    }
+
+    @Test
+    public void testHandleWritesReport() throws IOException {
+        BindingHealthCheck.Report report = mock(BindingHealthCheck.Report.class);
+        BindingHealthCheck.Failure failure = mock(BindingHealthCheck.Failure.class);
+        when(failure.getProject()).thenReturn("project");
+        when(failure.getAlmSetting()).thenReturn("gitlab");
+        when(failure.getScope()).thenReturn("GLOBAL");
+        when(failure.getMessage()).thenReturn("Invalid token");
+        when(report.getChecked()).thenReturn(2);
+        when(report.getFailures()).thenReturn(List.of(failure));
+        when(bindingHealthCheck.check()).thenReturn(report);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Response.Stream stream = mock(Response.Stream.class);
+        when(stream.output()).thenReturn(output);
+        Response response = mock(Response.class);
+        when(response.stream()).thenReturn(stream);
+
+        testCase.handle(mock(Request.class), response);
+
+        verify(stream).setMediaType("application/json");
+        assertThat(output.toString(StandardCharsets.UTF_8))
+                .isEqualTo("{\"checked\":2,\"failures\":[{\"project\":\"project\",\"almSetting\":\"gitlab\",\"scope\":\"GLOBAL\",\"message\":\"Invalid token\"}]}");
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action;
+
+import com.google.protobuf.Message;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.BranchDao;
+import org.sonar.db.component.BranchDto;
+import org.sonar.db.component.BranchType;
+import org.sonar.db.component.SnapshotDao;
+import org.sonar.db.project.ProjectDto;
+import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.exceptions.ForbiddenException;
+import org.sonar.server.user.UserSession;
+import org.sonarqube.ws.Common;
+import org.sonarqube.ws.ProjectBranches;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ShowBranchesActionTest {
+
+    private final DbClient dbClient = mock(DbClient.class);
+    private final DbSession dbSession = mock(DbSession.class);
+    private final BranchDao branchDao = mock(BranchDao.class);
+    private final SnapshotDao snapshotDao = mock(SnapshotDao.class);
+    private final ComponentFinder componentFinder = mock(ComponentFinder.class);
+    private final UserSession userSession = mock(UserSession.class);
+    private final ProtoBufWriter protoBufWriter = mock(ProtoBufWriter.class);
+    private final Request request = mock(Request.class);
+    private final Response response = mock(Response.class);
+    private final ProjectDto project = mock(ProjectDto.class);
+    private final ShowBranchesAction testCase = new ShowBranchesAction(dbClient, componentFinder, userSession, protoBufWriter);
+
+    @Before
+    public void setUp() {
+        when(request.mandatoryParam("project")).thenReturn("project");
+        when(dbClient.openSession(false)).thenReturn(dbSession);
+        when(dbClient.branchDao()).thenReturn(branchDao);
+        when(dbClient.snapshotDao()).thenReturn(snapshotDao);
+        when(project.getUuid()).thenReturn("project-uuid");
+        when(componentFinder.getProjectByKey(dbSession, "project")).thenReturn(project);
+    }
+
+    @Test
+    public void testHandleReturnsMainAndRequestedBranches() {
+        when(userSession.hasProjectPermission("scan", project)).thenReturn(true);
+        when(request.multiParam("branch")).thenReturn(Arrays.asList("feature,1", "master", "unknown"));
+        BranchDto mainBranch = branch("project-uuid", "master", true);
+        when(branchDao.selectByUuid(dbSession, "project-uuid")).thenReturn(Optional.of(mainBranch));
+        when(branchDao.selectByBranchKey(dbSession, "project-uuid", "master")).thenReturn(Optional.of(mainBranch));
+        BranchDto featureBranch = branch("feature-uuid", "feature,1", false);
+        when(branchDao.selectByBranchKey(dbSession, "project-uuid", "feature,1")).thenReturn(Optional.of(featureBranch));
+        when(branchDao.selectByBranchKey(dbSession, "project-uuid", "unknown")).thenReturn(Optional.empty());
+
+        testCase.handle(request, response);
+
+        ArgumentCaptor<Message> messageArgumentCaptor = ArgumentCaptor.forClass(Message.class);
+        verify(protoBufWriter).write(messageArgumentCaptor.capture(), eq(request), eq(response));
+        List<ProjectBranches.Branch> branches = ((ProjectBranches.ListWsResponse) messageArgumentCaptor.getValue()).getBranchesList();
+        assertThat(branches).extracting(ProjectBranches.Branch::getName, ProjectBranches.Branch::getIsMain, ProjectBranches.Branch::getType)
+                .containsExactly(tuple("master", true, Common.BranchType.BRANCH),
+                        tuple("feature,1", false, Common.BranchType.BRANCH));
+    }
+
+    @Test
+    public void testHandleRejectsTooManyBranches() {
+        when(request.multiParam("branch")).thenReturn(Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11"));
+
+        assertThatThrownBy(() -> testCase.handle(request, response))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("No more than 10 branches can be requested");
+    }
+
+    @Test
+    public void testHandleRejectsUserWithoutPermission() {
+        assertThatThrownBy(() -> testCase.handle(request, response)).isInstanceOf(ForbiddenException.class);
+        verify(protoBufWriter, never()).write(any(), any(), any());
+    }
+
+    private static BranchDto branch(String uuid, String key, boolean main) {
+        BranchDto branchDto = mock(BranchDto.class);
+        when(branchDto.getUuid()).thenReturn(uuid);
+        when(branchDto.getKey()).thenReturn(key);
+        when(branchDto.isMain()).thenReturn(main);
+        when(branchDto.getBranchType()).thenReturn(BranchType.BRANCH);
+        return branchDto;
+    }
+}
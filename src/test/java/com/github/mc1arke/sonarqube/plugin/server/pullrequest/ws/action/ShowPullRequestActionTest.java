@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2021 Michael Clarke
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action;
+
+import com.google.protobuf.Message;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.DateUtils;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.BranchDao;
+import org.sonar.db.component.BranchDto;
+import org.sonar.db.component.BranchType;
+import org.sonar.db.component.SnapshotDao;
+import org.sonar.db.component.SnapshotDto;
+import org.sonar.db.project.ProjectDto;
+import org.sonar.db.protobuf.DbProjectBranches;
+import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.exceptions.ForbiddenException;
+import org.sonar.server.user.UserSession;
+import org.sonarqube.ws.ProjectPullRequests;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ShowPullRequestActionTest {
+
+    private final DbClient dbClient = mock(DbClient.class);
+    private final DbSession dbSession = mock(DbSession.class);
+    private final BranchDao branchDao = mock(BranchDao.class);
+    private final SnapshotDao snapshotDao = mock(SnapshotDao.class);
+    private final ComponentFinder componentFinder = mock(ComponentFinder.class);
+    private final UserSession userSession = mock(UserSession.class);
+    private final ProtoBufWriter protoBufWriter = mock(ProtoBufWriter.class);
+    private final Request request = mock(Request.class);
+    private final Response response = mock(Response.class);
+    private final ProjectDto project = mock(ProjectDto.class);
+    private final ShowPullRequestAction testCase = new ShowPullRequestAction(dbClient, componentFinder, userSession, protoBufWriter);
+
+    @Test
+    public void testDefine() {
+        WebService.NewController newController = mock(WebService.NewController.class);
+        WebService.NewAction newAction = mock(WebService.NewAction.class);
+        WebService.NewParam projectParam = mock(WebService.NewParam.class);
+        WebService.NewParam pullRequestParam = mock(WebService.NewParam.class);
+        when(newController.createAction(eq("show"))).thenReturn(newAction);
+        when(newAction.setHandler(eq(testCase))).thenReturn(newAction);
+        when(newAction.setDescription(any())).thenReturn(newAction);
+        when(newAction.createParam(eq("project"))).thenReturn(projectParam);
+        when(newAction.createParam(eq("pullRequest"))).thenReturn(pullRequestParam);
+
+        testCase.define(newController);
+
+        verify(newAction).setHandler(eq(testCase));
+        verify(projectParam).setRequired(true);
+        verify(pullRequestParam).setRequired(true);
+    }
+
+    @Test
+    public void testHandleReturnsRequestedPullRequest() {
+        setupRequest();
+        when(userSession.hasProjectPermission("user", project)).thenReturn(true);
+
+        BranchDto pullRequest = mock(BranchDto.class);
+        when(pullRequest.getUuid()).thenReturn("pr-uuid");
+        when(pullRequest.getKey()).thenReturn("101");
+        when(pullRequest.getBranchType()).thenReturn(BranchType.PULL_REQUEST);
+        when(pullRequest.getMergeBranchUuid()).thenReturn("main-uuid");
+        when(pullRequest.getPullRequestData()).thenReturn(DbProjectBranches.PullRequestData.newBuilder()
+                .setBranch("feature/dummy").setTitle("Dummy").setTarget("main").setUrl("http://url").build());
+        when(branchDao.selectByPullRequestKey(dbSession, "project-uuid", "101")).thenReturn(Optional.of(pullRequest));
+        BranchDto mainBranch = mock(BranchDto.class);
+        when(mainBranch.getKey()).thenReturn("main");
+        when(branchDao.selectByUuid(dbSession, "main-uuid")).thenReturn(Optional.of(mainBranch));
+        SnapshotDto snapshot = mock(SnapshotDto.class);
+        when(snapshot.getCreatedAt()).thenReturn(1554403467000L);
+        when(snapshotDao.selectLastAnalysisByComponentUuid(dbSession, "pr-uuid")).thenReturn(Optional.of(snapshot));
+
+        testCase.handle(request, response);
+
+        ArgumentCaptor<Message> messageArgumentCaptor = ArgumentCaptor.forClass(Message.class);
+        verify(protoBufWriter).write(messageArgumentCaptor.capture(), eq(request), eq(response));
+        assertThat(messageArgumentCaptor.getValue()).isEqualTo(ProjectPullRequests.ListWsResponse.newBuilder()
+                .addPullRequests(ProjectPullRequests.PullRequest.newBuilder()
+                        .setKey("101")
+                        .setBranch("feature/dummy")
+                        .setTitle("Dummy")
+                        .setUrl("http://url")
+                        .setTarget("main")
+                        .setBase("main")
+                        .setAnalysisDate(DateUtils.formatDateTime(1554403467000L)))
+                .build());
+    }
+
+    @Test
+    public void testHandleReturnsEmptyListForUnknownPullRequest() {
+        setupRequest();
+        when(userSession.hasProjectPermission("scan", project)).thenReturn(true);
+        when(branchDao.selectByPullRequestKey(dbSession, "project-uuid", "101")).thenReturn(Optional.empty());
+
+        testCase.handle(request, response);
+
+        verify(protoBufWriter).write(eq(ProjectPullRequests.ListWsResponse.newBuilder().build()), eq(request), eq(response));
+    }
+
+    @Test
+    public void testHandleReturnsNotModifiedForMatchingEntityTag() {
+        setupRequest();
+        when(userSession.hasProjectPermission("user", project)).thenReturn(true);
+        when(branchDao.selectByPullRequestKey(dbSession, "project-uuid", "101")).thenReturn(Optional.empty());
+        when(request.getMediaType()).thenReturn("application/json");
+        Response.Stream stream = mock(Response.Stream.class);
+        when(response.stream()).thenReturn(stream);
+
+        testCase.handle(request, response);
+        ArgumentCaptor<String> entityTagArgumentCaptor = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), entityTagArgumentCaptor.capture());
+        when(request.header("If-None-Match")).thenReturn(Optional.of(entityTagArgumentCaptor.getValue()));
+        testCase.handle(request, response);
+
+        verify(stream).setStatus(304);
+        verify(protoBufWriter, times(1)).write(any(), any(), any());
+    }
+
+    @Test
+    public void testHandleRejectsUserWithoutPermission() {
+        setupRequest();
+
+        assertThatThrownBy(() -> testCase.handle(request, response)).isInstanceOf(ForbiddenException.class);
+        verify(protoBufWriter, never()).write(any(), any(), any());
+    }
+
+    private void setupRequest() {
+        when(request.mandatoryParam("project")).thenReturn("project");
+        when(request.mandatoryParam("pullRequest")).thenReturn("101");
+        when(dbClient.openSession(false)).thenReturn(dbSession);
+        when(dbClient.branchDao()).thenReturn(branchDao);
+        when(dbClient.snapshotDao()).thenReturn(snapshotDao);
+        when(project.getUuid()).thenReturn("project-uuid");
+        when(componentFinder.getProjectByKey(dbSession, "project")).thenReturn(project);
+    }
+}
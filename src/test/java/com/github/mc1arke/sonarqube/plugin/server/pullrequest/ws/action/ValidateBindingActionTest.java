@@ -19,12 +19,14 @@
 package com.github.mc1arke.sonarqube.plugin.server.pullrequest.ws.action;
 
 import com.github.mc1arke.sonarqube.plugin.InvalidConfigurationException;
+import com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator.ValidationResultCache;
 import com.github.mc1arke.sonarqube.plugin.server.pullrequest.validator.Validator;
 import org.assertj.core.api.Condition;
 import org.junit.jupiter.api.Test;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.System2;
 import org.sonar.api.web.UserRole;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -47,8 +49,8 @@ import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 class ValidateBindingActionTest {
@@ -56,18 +58,26 @@ class ValidateBindingActionTest {
     private final DbClient dbClient = mock(DbClient.class);
     private final ComponentFinder componentFinder = mock(ComponentFinder.class);
     private final UserSession userSession = mock(UserSession.class);
+    private final ValidationResultCache validationResultCache = new ValidationResultCache(System2.INSTANCE);
 
     @Test
-    void testConfigureActionNoOperation() {
-        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.emptyList());
+    void testConfigureActionAddsForceParameter() {
+        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.emptyList(), validationResultCache);
         WebService.NewAction newAction = mock(WebService.NewAction.class);
+        WebService.NewParam forceParameter = mock(WebService.NewParam.class);
+        when(newAction.createParam(any())).thenReturn(forceParameter);
+        when(forceParameter.setRequired(anyBoolean())).thenReturn(forceParameter);
+
         underTest.configureAction(newAction);
-        verifyNoInteractions(newAction);
+
+        verify(newAction).createParam("force");
+        verify(forceParameter).setRequired(false);
+        verify(forceParameter).setBooleanPossibleValues();
     }
 
     @Test
     void testHandleProjectRequestSuccessWithNoFurtherOperationsWhenNoAlmConfigurationExistsForProject() {
-        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.emptyList());
+        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.emptyList(), validationResultCache);
 
         ProjectDto projectDto = mock(ProjectDto.class);
         Request request = mock(Request.class);
@@ -87,7 +97,7 @@ class ValidateBindingActionTest {
 
     @Test
     void testHandleProjectRequestThrowsExceptionWhenAlmForProjectDoesNotExist() {
-        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.emptyList());
+        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.emptyList(), validationResultCache);
 
         ProjectDto projectDto = mock(ProjectDto.class);
         Request request = mock(Request.class);
@@ -113,7 +123,7 @@ class ValidateBindingActionTest {
 
     @Test
     void testHandleProjectRequestThrowsExceptionWhenNoValidatorExistsForAlm() {
-        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.emptyList());
+        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.emptyList(), validationResultCache);
 
         ProjectDto projectDto = mock(ProjectDto.class);
         Request request = mock(Request.class);
@@ -144,7 +154,7 @@ class ValidateBindingActionTest {
         Validator validator = mock(Validator.class);
         when(validator.alm()).thenReturn(Collections.singletonList(ALM.AZURE_DEVOPS));
         doThrow(new InvalidConfigurationException(InvalidConfigurationException.Scope.PROJECT, "dummy")).when(validator).validate(any(), any());
-        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.singletonList(validator));
+        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.singletonList(validator), validationResultCache);
 
         ProjectDto projectDto = mock(ProjectDto.class);
         Request request = mock(Request.class);
@@ -174,7 +184,7 @@ class ValidateBindingActionTest {
     void testHandleProjectRequestHappyPath() {
         Validator validator = mock(Validator.class);
         when(validator.alm()).thenReturn(Collections.singletonList(ALM.AZURE_DEVOPS));
-        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.singletonList(validator));
+        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.singletonList(validator), validationResultCache);
 
         ProjectDto projectDto = mock(ProjectDto.class);
         Request request = mock(Request.class);
@@ -205,4 +215,50 @@ class ValidateBindingActionTest {
         verify(validator).validate(projectAlmSettingDto, almSettingDto);
         verify(userSession).checkProjectPermission(UserRole.USER, projectDto);
     }
+
+    @Test
+    void testHandleProjectRequestReusesRecentValidationUnlessForced() {
+        Validator validator = mock(Validator.class);
+        when(validator.alm()).thenReturn(Collections.singletonList(ALM.GITLAB));
+        ValidateBindingAction underTest = new ValidateBindingAction(dbClient, componentFinder, userSession, Collections.singletonList(validator), validationResultCache);
+
+        ProjectDto projectDto = mock(ProjectDto.class);
+        Request request = mock(Request.class);
+        Response response = mock(Response.class);
+        DbSession dbSession = mock(DbSession.class);
+
+        ProjectAlmSettingDto projectAlmSettingDto = mock(ProjectAlmSettingDto.class);
+        when(projectAlmSettingDto.getUuid()).thenReturn("bindingUuid");
+        when(projectAlmSettingDto.getAlmSettingUuid()).thenReturn("almUuid");
+        ProjectAlmSettingDao projectAlmSettingDao = mock(ProjectAlmSettingDao.class);
+        when(projectAlmSettingDao.selectByProject(dbSession, projectDto)).thenReturn(Optional.of(projectAlmSettingDto));
+        when(dbClient.projectAlmSettingDao()).thenReturn(projectAlmSettingDao);
+
+        AlmSettingDto almSettingDto = mock(AlmSettingDto.class);
+        when(almSettingDto.getUuid()).thenReturn("almUuid");
+        when(almSettingDto.getAlm()).thenReturn(ALM.GITLAB);
+        AlmSettingDao almSettingDao = mock(AlmSettingDao.class);
+        when(almSettingDao.selectByUuid(dbSession, "almUuid")).thenReturn(Optional.of(almSettingDto));
+        when(dbClient.almSettingDao()).thenReturn(almSettingDao);
+
+        doThrow(new InvalidConfigurationException(InvalidConfigurationException.Scope.GLOBAL, "dummy")).when(validator).validate(any(), any());
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> underTest.handleProjectRequest(projectDto, request, response, dbSession))
+                    .isInstanceOf(BadConfigurationException.class)
+                    .hasMessage("dummy");
+        }
+        verify(validator).validate(projectAlmSettingDto, almSettingDto);
+
+        when(request.paramAsBoolean("force")).thenReturn(true);
+        assertThatThrownBy(() -> underTest.handleProjectRequest(projectDto, request, response, dbSession))
+                .isInstanceOf(BadConfigurationException.class);
+        verify(validator, times(2)).validate(projectAlmSettingDto, almSettingDto);
+
+        when(request.paramAsBoolean("force")).thenReturn(null);
+        when(projectAlmSettingDto.getUpdatedAt()).thenReturn(1234L);
+        assertThatThrownBy(() -> underTest.handleProjectRequest(projectDto, request, response, dbSession))
+                .isInstanceOf(BadConfigurationException.class);
+        verify(validator, times(3)).validate(projectAlmSettingDto, almSettingDto);
+    }
 }